@@ -0,0 +1,49 @@
+package com.example.cloudstoragediploma;
+
+import com.example.authservice.AuthServiceApplication;
+import com.example.authservice.controller.AuthController;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserRepository;
+import com.example.fileservice.FileServiceApplication;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.repository.FileRepository;
+import com.example.securitylib.SecurityConfig;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.FullyQualifiedAnnotationBeanNameGenerator;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+
+/**
+ * Runs auth-service and file-service in one context. File-service reaches auth through
+ * {@link InProcessAuthClient} instead of the Feign client, so /cloud/login is served by
+ * FileController alone.
+ */
+@SpringBootApplication
+@Import(SecurityConfig.class)
+@EnableJpaRepositories(basePackageClasses = UserRepository.class)
+@EnableMongoRepositories(basePackageClasses = FileRepository.class)
+@EntityScan(basePackageClasses = {User.class, FileDocument.class})
+// both services declare a GlobalExceptionHandler, so bean names must be fully qualified
+@ComponentScan(basePackages = {
+        "com.example.cloudstoragediploma",
+        "com.example.authservice", // auth-service
+        "com.example.fileservice", // file-service
+        "com.example.securitylib" // security-lib
+}, nameGenerator = FullyQualifiedAnnotationBeanNameGenerator.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+                AuthServiceApplication.class,
+                FileServiceApplication.class,
+                AuthController.class
+        }))
+public class CloudStorageDiplomaApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(CloudStorageDiplomaApplication.class, args);
+    }
+
+}
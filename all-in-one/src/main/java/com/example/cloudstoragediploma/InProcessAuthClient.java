@@ -0,0 +1,52 @@
+package com.example.cloudstoragediploma;
+
+import com.example.authservice.entity.Role;
+import com.example.authservice.exception.UserAlreadyExistsException;
+import com.example.authservice.service.AuthService;
+import com.example.securitylib.client.AuthOperations;
+import com.example.securitylib.dto.LoginRequest;
+import com.example.securitylib.dto.LoginResponse;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Calls {@link AuthService} directly. Errors are mapped to the same 400 answers
+ * auth-service would have sent over HTTP.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class InProcessAuthClient implements AuthOperations {
+
+    private final AuthService authService;
+
+    @Override
+    public ResponseEntity<LoginResponse> login(LoginRequest request) {
+        try {
+            return ResponseEntity.ok(authService.login(request.getLogin(), request.getPassword()));
+        } catch (UsernameNotFoundException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Override
+    public ResponseEntity<Void> register(UserRegistrationRequest request) {
+        try {
+            authService.register(request.getLogin(), request.getPassword(), Role.USER);
+            return ResponseEntity.ok().build();
+        } catch (UserAlreadyExistsException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Override
+    public ResponseEntity<Void> logout() {
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.authservice.cache;
+
+import com.example.authservice.entity.Role;
+import com.example.authservice.entity.User;
+
+public record CachedUser(String login, String passwordHash, Role role) {
+
+    static CachedUser from(User user) {
+        return new CachedUser(user.getLogin(), user.getPasswordHash(), user.getRole());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.authservice.cache;
+
+import com.example.authservice.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for the login path. Unknown logins are remembered for a short time
+ * so floods of failed logins do not reach Postgres either.
+ */
+@Component
+@Slf4j
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, CachedUser> users;
+    private final Cache<String, Boolean> unknownLogins;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserCache(UserRepository userRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${auth.user-cache.max-size:100000}") long maxSize,
+                     @Value("${auth.user-cache.ttl-seconds:600}") long ttlSeconds,
+                     @Value("${auth.user-cache.negative-max-size:100000}") long negativeMaxSize,
+                     @Value("${auth.user-cache.negative-ttl-seconds:30}") long negativeTtlSeconds) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.unknownLogins = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "auth.users");
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownLogins, "auth.users.unknown");
+    }
+
+    public Optional<CachedUser> findByLogin(String login) {
+        if (unknownLogins.getIfPresent(login) != null) {
+            return Optional.empty();
+        }
+        long generation = invalidations.get();
+        CachedUser user = users.get(login, this::load);
+        if (user == null) {
+            unknownLogins.put(login, Boolean.TRUE);
+            // an invalidation may have raced with the lookup, do not keep a stale negative entry
+            if (generation != invalidations.get()) {
+                unknownLogins.invalidate(login);
+            }
+        }
+        return Optional.ofNullable(user);
+    }
+
+    public void invalidate(String login) {
+        invalidations.incrementAndGet();
+        users.invalidate(login);
+        unknownLogins.invalidate(login);
+        log.debug("User cache entry for '{}' invalidated", login);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        users.invalidateAll();
+        unknownLogins.invalidateAll();
+        log.info("User cache cleared");
+    }
+
+    private CachedUser load(String login) {
+        return userRepository.findByLogin(login).map(CachedUser::from).orElse(null);
+    }
+}
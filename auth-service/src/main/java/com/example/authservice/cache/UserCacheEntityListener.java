@@ -0,0 +1,23 @@
+package com.example.authservice.cache;
+
+import com.example.authservice.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// Catches every JPA write to users, including password and role changes
+@Component
+@RequiredArgsConstructor
+public class UserCacheEntityListener {
+
+    private final UserCacheInvalidator invalidator;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(User user) {
+        invalidator.publish(user.getLogin());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.authservice.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Evicts a login locally and tells the other auth-service instances through Postgres NOTIFY.
+ * NOTIFY is transactional, so peers only hear about changes that were actually committed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserCacheInvalidator {
+
+    static final String CHANNEL = "user_cache_invalidation";
+    static final String ALL = "*";
+
+    private final UserCache userCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    public void publish(String login) {
+        evictLocally(() -> userCache.invalidate(login));
+        notifyPeers(login);
+    }
+
+    public void publishAll() {
+        evictLocally(userCache::invalidateAll);
+        notifyPeers(ALL);
+    }
+
+    private void evictLocally(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private void notifyPeers(String payload) {
+        try {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("Failed to notify peers about user cache change for '{}': {}", payload, e.getMessage());
+        }
+    }
+}
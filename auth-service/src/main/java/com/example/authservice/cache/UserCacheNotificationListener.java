@@ -0,0 +1,109 @@
+package com.example.authservice.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Listens for user cache invalidations published by other instances. Uses its own
+ * connection so it never holds a slot in the Hikari pool.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserCacheNotificationListener {
+
+    private static final int POLL_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final UserCache userCache;
+    private final DataSourceProperties dataSourceProperties;
+
+    @Value("${auth.user-cache.listen.enabled:true}")
+    private boolean enabled;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        String url = dataSourceProperties.determineUrl();
+        if (!enabled || url == null || !url.startsWith("jdbc:postgresql:")) {
+            log.info("User cache invalidation listener disabled");
+            return;
+        }
+        running = true;
+        thread = new Thread(() -> listen(url), "user-cache-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void listen(String url) {
+        while (running) {
+            try (Connection connection = connect(url)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + UserCacheInvalidator.CHANNEL);
+                }
+                // anything published while we were not listening is lost, start from a clean cache
+                userCache.invalidateAll();
+                log.info("Listening for user cache invalidations");
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("User cache invalidation listener failed, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // a plain driver connection, outside the pool
+    protected Connection connect(String url) throws SQLException {
+        return DriverManager.getConnection(url,
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    private void handle(String payload) {
+        if (UserCacheInvalidator.ALL.equals(payload)) {
+            userCache.invalidateAll();
+        } else {
+            userCache.invalidate(payload);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.authservice.controller;
+
+import com.example.authservice.dto.BulkRegistrationRequest;
+import com.example.authservice.dto.BulkRegistrationResponse;
+import com.example.authservice.service.UserProvisioningService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/cloud/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private final UserProvisioningService provisioningService;
+
+    @PostMapping("/users/bulk")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<BulkRegistrationResponse> registerUsers(@Valid @RequestBody BulkRegistrationRequest request) {
+        log.info("Bulk registration request for {} users", request.getUsers().size());
+
+        BulkRegistrationResponse response = provisioningService.registerAll(request.getUsers(), request.getRole());
+
+        log.info("Bulk registration created {} users, {} failed", response.getCreated(), response.getFailed());
+        return ResponseEntity.ok(response);
+    }
+}
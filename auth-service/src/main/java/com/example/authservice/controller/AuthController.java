@@ -5,6 +5,8 @@ import com.example.authservice.service.AuthService;
 import com.example.securitylib.dto.LoginRequest;
 import com.example.securitylib.dto.LoginResponse;
 import com.example.securitylib.dto.UserRegistrationRequest;
+import com.example.securitylib.ratelimit.LoginRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,10 +23,12 @@ import org.springframework.web.bind.annotation.RestController;
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginRateLimiter loginRateLimiter;
 
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest request) {
+    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest request, HttpServletRequest httpRequest) {
         log.info("Attempt login for user '{}'", request.getLogin());
+        loginRateLimiter.acquire(request.getLogin(), httpRequest.getRemoteAddr());
 
         LoginResponse response = authService.login(request.getLogin(), request.getPassword());
 
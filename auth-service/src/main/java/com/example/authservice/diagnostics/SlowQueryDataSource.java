@@ -0,0 +1,218 @@
+package com.example.authservice.diagnostics;
+
+import com.example.securitylib.diagnostics.SlowQueryDetector;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * DataSource decorator that times statements per query shape. Statements are tracked through
+ * JDK proxies; bound parameters are remembered so a slow statement can be explained with the
+ * values it actually ran with.
+ */
+final class SlowQueryDataSource implements DataSource {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+    private static final Set<String> EXPLAINABLE = Set.of("select", "update", "delete", "with");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final int MAX_SHAPE_LENGTH = 300;
+
+    private final DataSource delegate;
+    private final Supplier<SlowQueryDetector> detector;
+
+    private SlowQueryDataSource(DataSource delegate, Supplier<SlowQueryDetector> detector) {
+        this.delegate = delegate;
+        this.detector = detector;
+    }
+
+    static DataSource wrap(DataSource delegate, Supplier<SlowQueryDetector> detector) {
+        return new SlowQueryDataSource(delegate, detector);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, delegate.getConnection(), this::onConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, delegate.getConnection(username, password), this::onConnection);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    // pool metrics and health checks unwrap to HikariDataSource
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(delegate) ? iface.cast(delegate) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(delegate) || delegate.isWrapperFor(iface);
+    }
+
+    @FunctionalInterface
+    private interface Interceptor<T> {
+        Object invoke(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    private Object onConnection(Connection connection, Method method, Object[] args) throws Throwable {
+        Object result = invoke(connection, method, args);
+        if (result instanceof PreparedStatement statement && args != null && args[0] instanceof String sql) {
+            TrackedStatement tracked = new TrackedStatement(sql);
+            return proxy(PreparedStatement.class, statement, tracked::intercept);
+        }
+        if (result instanceof Statement statement && !(result instanceof PreparedStatement)) {
+            TrackedStatement tracked = new TrackedStatement(null);
+            return proxy(Statement.class, statement, tracked::intercept);
+        }
+        return result;
+    }
+
+    private final class TrackedStatement {
+        private final String preparedSql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        TrackedStatement(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+
+        Object intercept(Statement statement, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+            if (!EXECUTE_METHODS.contains(name)) {
+                return invoke(statement, method, args);
+            }
+
+            String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            long start = System.nanoTime();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                if (sql != null) {
+                    record(sql, System.nanoTime() - start, name.contains("Batch"));
+                }
+            }
+        }
+
+        private void record(String sql, long elapsedNanos, boolean batch) {
+            String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+            int space = normalized.indexOf(' ');
+            String operation = (space > 0 ? normalized.substring(0, space) : normalized).toLowerCase(Locale.ROOT);
+            String shape = preparedSql != null ? normalized
+                    : NUMBER_LITERAL.matcher(STRING_LITERAL.matcher(normalized).replaceAll("?")).replaceAll("?");
+            if (shape.length() > MAX_SHAPE_LENGTH) {
+                shape = shape.substring(0, MAX_SHAPE_LENGTH);
+            }
+            Runnable explain = null;
+            if (!batch && EXPLAINABLE.contains(operation)) {
+                Map<Integer, Object> bound = new TreeMap<>(parameters);
+                String plannedShape = shape;
+                explain = () -> explain(plannedShape, normalized, bound);
+            }
+            detector.get().record(operation, shape, elapsedNanos, explain);
+        }
+    }
+
+    // runs on the detector's explain thread against the undecorated DataSource
+    private void explain(String shape, String sql, Map<Integer, Object> parameters) {
+        try (Connection connection = delegate.getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                explain.setObject(parameter.getKey(), parameter.getValue());
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                String plan = rs.getString(1);
+                boolean[] problems = new boolean[2];
+                scanPlan(JSON.readTree(plan), problems);
+                detector.get().reportPlan(shape, problems[0], problems[1], plan);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("EXPLAIN failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void scanPlan(JsonNode node, boolean[] problems) {
+        if (node.isObject()) {
+            String type = node.path("Node Type").asText("");
+            problems[0] |= "Seq Scan".equals(type);
+            problems[1] |= "Sort".equals(type) || "Incremental Sort".equals(type);
+        }
+        for (JsonNode child : node) {
+            scanPlan(child, problems);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Interceptor<T> interceptor) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("unwrap") && args != null && args[0] instanceof Class<?> iface && iface.isInstance(proxy)) {
+                return proxy;
+            }
+            return interceptor.invoke(target, method, args);
+        };
+        return (T) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
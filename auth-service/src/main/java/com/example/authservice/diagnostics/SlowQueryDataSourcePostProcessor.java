@@ -0,0 +1,69 @@
+package com.example.authservice.diagnostics;
+
+import com.example.securitylib.diagnostics.SlowQueryDetector;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource so every JDBC statement Hibernate or JdbcTemplate runs is timed
+ * per query shape, and slow ones get an {@code EXPLAIN (FORMAT JSON)}.
+ */
+@Component
+public class SlowQueryDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final boolean enabled;
+    private final long thresholdMs;
+    private final int maxShapes;
+    private final long explainIntervalSeconds;
+    private volatile SlowQueryDetector detector;
+
+    public SlowQueryDataSourcePostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                            @Value("${slow-query.enabled:true}") boolean enabled,
+                                            @Value("${slow-query.threshold-ms:100}") long thresholdMs,
+                                            @Value("${slow-query.max-shapes:200}") int maxShapes,
+                                            @Value("${slow-query.explain-interval-seconds:300}") long explainIntervalSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.thresholdMs = thresholdMs;
+        this.maxShapes = maxShapes;
+        this.explainIntervalSeconds = explainIntervalSeconds;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof DataSource dataSource) || bean instanceof SlowQueryDataSource) {
+            return bean;
+        }
+        // the registry is resolved on the first statement: its pool metrics binder needs this DataSource
+        return SlowQueryDataSource.wrap(dataSource, this::detector);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (detector != null) {
+            detector.shutdown();
+        }
+    }
+
+    // called for every statement, only the first ones may take the lock
+    private SlowQueryDetector detector() {
+        SlowQueryDetector current = detector;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (detector == null) {
+                detector = new SlowQueryDetector(meterRegistry.getObject(), "jdbc.query", thresholdMs, maxShapes,
+                        explainIntervalSeconds);
+            }
+            return detector;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.authservice.dto;
+
+import com.example.authservice.entity.Role;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BulkRegistrationRequest {
+    @NotEmpty(message = "users must not be empty")
+    private List<UserRegistrationRequest> users;
+
+    private Role role = Role.USER;
+}
@@ -0,0 +1,14 @@
+package com.example.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BulkRegistrationResponse {
+    private int created;
+    private int failed;
+    private List<BulkRegistrationResult> results;
+}
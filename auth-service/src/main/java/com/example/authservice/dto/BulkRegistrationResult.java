@@ -0,0 +1,19 @@
+package com.example.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkRegistrationResult {
+    private String login;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        CREATED,
+        ALREADY_EXISTS,
+        DUPLICATE_IN_REQUEST,
+        INVALID
+    }
+}
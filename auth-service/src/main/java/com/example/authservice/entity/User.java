@@ -1,5 +1,6 @@
 package com.example.authservice.entity;
 
+import com.example.authservice.cache.UserCacheEntityListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheEntityListener.class)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
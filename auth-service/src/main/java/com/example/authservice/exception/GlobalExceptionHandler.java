@@ -1,14 +1,17 @@
 package com.example.authservice.exception;
 
 import com.example.authservice.exception.dto.AuthErrorResponse;
+import com.example.securitylib.ratelimit.RateLimitExceededException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
-@ControllerAdvice
+@ControllerAdvice(basePackages = "com.example.authservice")
 @Slf4j
 public class GlobalExceptionHandler {
     @ExceptionHandler(UsernameNotFoundException.class)
@@ -25,6 +28,20 @@ public class GlobalExceptionHandler {
                 .body(new AuthErrorResponse("400", e.getMessage()));
     }
 
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<AuthErrorResponse> handleAccessDenied(AccessDeniedException e) {
+        log.warn("Access denied: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new AuthErrorResponse("403", "Access denied"));
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<AuthErrorResponse> handleRateLimit(RateLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new AuthErrorResponse("429", e.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<AuthErrorResponse> handleOtherExceptions(Exception e) {
         log.error("Unexpected error", e);
@@ -0,0 +1,54 @@
+package com.example.authservice.repository;
+
+import com.example.authservice.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// users.id is an IDENTITY column, so Hibernate would insert row by row; plain JDBC batches instead
+@Repository
+@RequiredArgsConstructor
+public class UserBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO users (login, password_hash, role, created_at) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT (login) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return update counts per batch, {@code 0} means the login was taken concurrently.
+     * Batches rewritten by the driver ({@code reWriteBatchedInserts}) report
+     * {@link java.sql.Statement#SUCCESS_NO_INFO} for every row, use {@link #findPasswordHashes} to tell them apart.
+     */
+    public int[][] insertAll(List<User> users, int batchSize) {
+        return jdbcTemplate.batchUpdate(INSERT_SQL, users, batchSize, (ps, user) -> {
+            ps.setString(1, user.getLogin());
+            ps.setString(2, user.getPasswordHash());
+            ps.setString(3, user.getRole().name());
+            ps.setTimestamp(4, Timestamp.valueOf(user.getCreatedAt()));
+        });
+    }
+
+    /**
+     * @return stored password hash per login, logins without a row are absent
+     */
+    public Map<String, String> findPasswordHashes(List<String> logins) {
+        if (logins.isEmpty()) {
+            return Map.of();
+        }
+        String sql = "SELECT login, password_hash FROM users WHERE login IN ("
+                + String.join(", ", Collections.nCopies(logins.size(), "?")) + ")";
+        Map<String, String> hashes = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            hashes.put(rs.getString("login"), rs.getString("password_hash"));
+        }, logins.toArray());
+        return hashes;
+    }
+}
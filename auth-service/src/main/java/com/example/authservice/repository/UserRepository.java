@@ -2,9 +2,13 @@ package com.example.authservice.repository;
 
 import com.example.authservice.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -12,4 +16,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByLogin(String login);
 
     boolean existsByLogin(String login);
+
+    @Query("select u.login from User u where u.login in :logins")
+    Set<String> findExistingLogins(@Param("logins") Collection<String> logins);
 }
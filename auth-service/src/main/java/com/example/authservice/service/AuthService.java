@@ -1,11 +1,14 @@
 package com.example.authservice.service;
 
+import com.example.authservice.cache.CachedUser;
+import com.example.authservice.cache.UserCache;
 import com.example.authservice.entity.Role;
 import com.example.authservice.entity.User;
 import com.example.authservice.exception.UserAlreadyExistsException;
 import com.example.authservice.repository.UserRepository;
 import com.example.securitylib.JwtService;
 import com.example.securitylib.dto.LoginResponse;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -20,25 +23,28 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AuthService {
     private final UserRepository userRepository;
+    private final UserCache userCache;
     private final JwtService jwt;
     private final BCryptPasswordEncoder encoder;
 
+    @Observed(name = "auth.service", contextualName = "auth-login", lowCardinalityKeyValues = {"operation", "login"})
     public LoginResponse login(String login, String rawPassword) {
         log.info("User '{}' is logging in", login);
-        User user = userRepository.findByLogin(login)
+        CachedUser user = userCache.findByLogin(login)
                 .orElseThrow(() -> {
                     log.error("User with login '{}' not found", login);
                     return new UsernameNotFoundException("User not found");
                 });
 
-        if (!encoder.matches(rawPassword, user.getPasswordHash())) {
+        if (!encoder.matches(rawPassword, user.passwordHash())) {
             log.error("Bad credentials for user '{}'", login);
             throw new IllegalArgumentException("Bad credentials");
         }
-        String token = jwt.generateAccessToken(user.getLogin(), List.of(user.getRole().name()));
+        String token = jwt.generateAccessToken(user.login(), List.of(user.role().name()));
         return new LoginResponse(token);
     }
 
+    @Observed(name = "auth.service", contextualName = "auth-register", lowCardinalityKeyValues = {"operation", "register"})
     public void register(String login, String rawPassword, Role role) {
         log.info("User '{}' is registering", login);
 
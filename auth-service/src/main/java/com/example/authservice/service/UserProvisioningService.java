@@ -0,0 +1,170 @@
+package com.example.authservice.service;
+
+import com.example.authservice.cache.UserCacheInvalidator;
+import com.example.authservice.dto.BulkRegistrationResponse;
+import com.example.authservice.dto.BulkRegistrationResult;
+import com.example.authservice.dto.BulkRegistrationResult.Status;
+import com.example.authservice.entity.Role;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserBatchRepository;
+import com.example.authservice.repository.UserRepository;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UserProvisioningService {
+
+    private static final int EXISTENCE_CHECK_CHUNK = 1000;
+
+    private final UserRepository userRepository;
+    private final UserBatchRepository userBatchRepository;
+    private final BCryptPasswordEncoder encoder;
+    private final UserCacheInvalidator userCacheInvalidator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${auth.bulk-registration.max-users:10000}")
+    private int maxUsers;
+
+    @Value("${auth.bulk-registration.batch-size:500}")
+    private int batchSize;
+
+    // BCrypt is CPU bound; keep it off the common pool so other parallel work is not starved
+    private final ForkJoinPool hashingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    @PreDestroy
+    void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    /**
+     * Hashing a large batch takes minutes of CPU, so it runs before any connection is held: only the
+     * insert and the re-read of rewritten rows share a transaction. The existence check is a hint that
+     * spares hashing taken logins, a concurrent insert still loses on the unique login.
+     */
+    public BulkRegistrationResponse registerAll(List<UserRegistrationRequest> requests, Role role) {
+        if (requests.size() > maxUsers) {
+            log.warn("Bulk registration rejected: {} users exceeds limit of {}", requests.size(), maxUsers);
+            throw new IllegalArgumentException("Too many users in one request, max is " + maxUsers);
+        }
+        log.info("Bulk registration of {} users with role '{}'", requests.size(), role);
+
+        BulkRegistrationResult[] results = new BulkRegistrationResult[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            UserRegistrationRequest request = requests.get(i);
+            String login = request != null ? request.getLogin() : null;
+            if (request == null || !StringUtils.hasText(login) || !StringUtils.hasText(request.getPassword())) {
+                results[i] = new BulkRegistrationResult(login, Status.INVALID, "Login and password are required");
+            } else if (candidates.putIfAbsent(login, i) != null) {
+                results[i] = new BulkRegistrationResult(login, Status.DUPLICATE_IN_REQUEST, "Duplicate login in request");
+            }
+        }
+
+        for (String login : findExistingLogins(candidates.keySet())) {
+            int index = candidates.remove(login);
+            results[index] = new BulkRegistrationResult(login, Status.ALREADY_EXISTS,
+                    "User with login '" + login + "' already exists");
+        }
+
+        List<Integer> indexes = new ArrayList<>(candidates.values());
+        List<User> users = hashPasswords(indexes, requests, role);
+        boolean[] inserted = users.isEmpty() ? new boolean[0] : transactionTemplate.execute(status -> insert(users));
+
+        int created = 0;
+        for (int i = 0; i < users.size(); i++) {
+            int index = indexes.get(i);
+            String login = users.get(i).getLogin();
+            if (inserted[i]) {
+                results[index] = new BulkRegistrationResult(login, Status.CREATED, null);
+                created++;
+            } else {
+                results[index] = new BulkRegistrationResult(login, Status.ALREADY_EXISTS,
+                        "User with login '" + login + "' already exists");
+            }
+        }
+
+        if (created > 0) {
+            // rows were written with plain JDBC, the JPA listener did not see them
+            userCacheInvalidator.publishAll();
+        }
+        log.info("Bulk registration finished: {} created, {} failed", created, requests.size() - created);
+        return new BulkRegistrationResponse(created, requests.size() - created, Arrays.asList(results));
+    }
+
+    private boolean[] insert(List<User> users) {
+        int[][] counts = userBatchRepository.insertAll(users, batchSize);
+
+        // a rewritten batch reports SUCCESS_NO_INFO per row, those rows are ours only if they carry our hash
+        List<Integer> unknown = new ArrayList<>();
+        int position = 0;
+        boolean[] inserted = new boolean[users.size()];
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    unknown.add(position);
+                } else {
+                    inserted[position] = count > 0;
+                }
+                position++;
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Map<String, String> stored = findPasswordHashes(unknown.stream().map(i -> users.get(i).getLogin()).toList());
+            for (int i : unknown) {
+                User user = users.get(i);
+                inserted[i] = user.getPasswordHash().equals(stored.get(user.getLogin()));
+            }
+        }
+        return inserted;
+    }
+
+    private Set<String> findExistingLogins(Set<String> logins) {
+        Set<String> existing = new HashSet<>();
+        List<String> all = new ArrayList<>(logins);
+        for (int from = 0; from < all.size(); from += EXISTENCE_CHECK_CHUNK) {
+            List<String> chunk = all.subList(from, Math.min(from + EXISTENCE_CHECK_CHUNK, all.size()));
+            existing.addAll(userRepository.findExistingLogins(chunk));
+        }
+        return existing;
+    }
+
+    private Map<String, String> findPasswordHashes(List<String> logins) {
+        Map<String, String> hashes = new HashMap<>();
+        for (int from = 0; from < logins.size(); from += EXISTENCE_CHECK_CHUNK) {
+            hashes.putAll(userBatchRepository.findPasswordHashes(
+                    logins.subList(from, Math.min(from + EXISTENCE_CHECK_CHUNK, logins.size()))));
+        }
+        return hashes;
+    }
+
+    private List<User> hashPasswords(List<Integer> indexes, List<UserRegistrationRequest> requests, Role role) {
+        LocalDateTime now = LocalDateTime.now();
+        return hashingPool.submit(() -> indexes.parallelStream()
+                        .map(requests::get)
+                        .map(request -> new User(null, request.getLogin(),
+                                encoder.encode(request.getPassword()), role, now))
+                        .toList())
+                .join();
+    }
+}
@@ -6,6 +6,8 @@ import com.example.authservice.exception.GlobalExceptionHandler;
 import com.example.securitylib.dto.LoginRequest;
 import com.example.securitylib.dto.LoginResponse;
 import com.example.securitylib.dto.UserRegistrationRequest;
+import com.example.securitylib.ratelimit.LoginRateLimiter;
+import com.example.securitylib.ratelimit.RateLimitExceededException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,6 +30,8 @@ public class AuthControllerTests {
     private final String TEST_TOKEN = "jwt.test.token";
     @Mock
     private AuthService authService;
+    @Mock
+    private LoginRateLimiter loginRateLimiter;
     @InjectMocks
     private AuthController authController;
     private MockMvc mockMvc;
@@ -136,6 +140,23 @@ public class AuthControllerTests {
         verify(authService).login(loginRequest.getLogin(), loginRequest.getPassword());
     }
 
+    @Test
+    void whenLoginRateLimitExceeded_thenReturnTooManyRequestsWithoutCallingService() throws Exception {
+        // Given
+        doThrow(new RateLimitExceededException(30))
+                .when(loginRateLimiter).acquire(eq(loginRequest.getLogin()), anyString());
+
+        // When & Then
+        mockMvc.perform(post("/cloud/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"))
+                .andExpect(jsonPath("$.code").value("429"));
+
+        verifyNoInteractions(authService);
+    }
+
     @Test
     void whenLogout_thenReturnSuccess() throws Exception {
         mockMvc.perform(post("/cloud/logout"))
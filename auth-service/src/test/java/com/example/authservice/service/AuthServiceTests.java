@@ -1,10 +1,12 @@
 package com.example.authservice.service;
 
+import com.example.authservice.cache.UserCache;
 import com.example.authservice.entity.Role;
 import com.example.authservice.entity.User;
 import com.example.authservice.repository.UserRepository;
 import com.example.securitylib.JwtService;
 import com.example.securitylib.dto.LoginResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,7 +45,8 @@ public class AuthServiceTests {
     @BeforeEach
     void setUp() {
         encoder = new BCryptPasswordEncoder();
-        authService = new AuthService(userRepository, jwtService, encoder);
+        UserCache userCache = new UserCache(userRepository, new SimpleMeterRegistry(), 100, 600, 100, 30);
+        authService = new AuthService(userRepository, userCache, jwtService, encoder);
 
         testUser = new User();
         testUser.setId(1L);
@@ -101,6 +104,33 @@ public class AuthServiceTests {
         verifyNoInteractions(jwtService);
     }
 
+    @Test
+    void whenLoginTwice_thenUserIsLoadedFromRepositoryOnce() {
+        // Given
+        when(userRepository.findByLogin(TEST_LOGIN)).thenReturn(Optional.of(testUser));
+        when(jwtService.generateAccessToken(eq(TEST_LOGIN), eq(List.of("USER")))).thenReturn(TEST_TOKEN);
+
+        // When
+        authService.login(TEST_LOGIN, TEST_PASSWORD);
+        authService.login(TEST_LOGIN, TEST_PASSWORD);
+
+        // Then
+        verify(userRepository, times(1)).findByLogin(TEST_LOGIN);
+    }
+
+    @Test
+    void whenUnknownUserLogsInTwice_thenRepositoryIsQueriedOnce() {
+        // Given
+        when(userRepository.findByLogin(TEST_LOGIN)).thenReturn(Optional.empty());
+
+        // When
+        assertThrows(UsernameNotFoundException.class, () -> authService.login(TEST_LOGIN, TEST_PASSWORD));
+        assertThrows(UsernameNotFoundException.class, () -> authService.login(TEST_LOGIN, TEST_PASSWORD));
+
+        // Then
+        verify(userRepository, times(1)).findByLogin(TEST_LOGIN);
+    }
+
     @Test
     void whenValidRegistrationDataProvided_thenSaveUserWithEncodedPassword() {
         when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
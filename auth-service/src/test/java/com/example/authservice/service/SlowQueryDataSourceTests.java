@@ -0,0 +1,129 @@
+package com.example.authservice.service;
+
+import com.example.authservice.diagnostics.SlowQueryDataSourcePostProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SlowQueryDataSourceTests {
+
+    private static final String LOOKUP = "SELECT id FROM users WHERE login = ?";
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private Statement statement;
+    @Mock
+    private PreparedStatement prepared;
+    @Mock
+    private PreparedStatement explain;
+    @Mock
+    private ResultSet plan;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SlowQueryDataSourcePostProcessor postProcessor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        when(meterRegistryProvider.getObject()).thenReturn(meterRegistry);
+        when(dataSource.getConnection()).thenReturn(connection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(postProcessor, "shutdown");
+    }
+
+    @Test
+    void whenStatementsDifferOnlyInLiterals_thenTheyShareOneShapeTimer() throws Exception {
+        // given
+        when(connection.createStatement()).thenReturn(statement);
+        Connection wrapped = wrap(100).getConnection();
+
+        // when
+        wrapped.createStatement().executeQuery("SELECT *\n  FROM users WHERE login = 'alice' AND id = 42");
+        wrapped.createStatement().executeQuery("SELECT * FROM users WHERE login = 'o''brien' AND id = 7");
+
+        // then
+        Timer timer = meterRegistry.find("jdbc.query")
+                .tag("operation", "select")
+                .tag("shape", "SELECT * FROM users WHERE login = ? AND id = ?")
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(2);
+    }
+
+    @Test
+    void whenStatementIsUnderTheThreshold_thenItIsNotExplained() throws Exception {
+        // given
+        when(connection.prepareStatement(LOOKUP)).thenReturn(prepared);
+        PreparedStatement lookup = wrap(60_000).getConnection().prepareStatement(LOOKUP);
+        lookup.setString(1, "alice");
+
+        // when
+        lookup.executeQuery();
+
+        // then: only the caller's connection was taken, explain would need a second one
+        verify(dataSource, after(200).times(1)).getConnection();
+        verify(connection, never()).prepareStatement("EXPLAIN (FORMAT JSON) " + LOOKUP);
+        assertThat(meterRegistry.find("jdbc.query").tag("shape", LOOKUP).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenSlowStatementScansAndSorts_thenPlanWarningsAreCounted() throws Exception {
+        // given: every statement is slow with a zero threshold
+        when(connection.prepareStatement(LOOKUP)).thenReturn(prepared);
+        when(connection.prepareStatement("EXPLAIN (FORMAT JSON) " + LOOKUP)).thenReturn(explain);
+        when(explain.executeQuery()).thenReturn(plan);
+        when(plan.next()).thenReturn(true);
+        when(plan.getString(1)).thenReturn(
+                "[{\"Plan\": {\"Node Type\": \"Sort\", \"Plans\": [{\"Node Type\": \"Seq Scan\", \"Relation Name\": \"users\"}]}}]");
+        PreparedStatement lookup = wrap(0).getConnection().prepareStatement(LOOKUP);
+        lookup.setString(1, "alice");
+
+        // when
+        lookup.executeQuery();
+
+        // then: explained with the value the statement ran with, on a connection of its own
+        verify(explain, timeout(2000)).setObject(1, "alice");
+        verify(connection, timeout(2000)).close();
+        assertThat(warnings("full_scan")).isEqualTo(1.0);
+        assertThat(warnings("in_memory_sort")).isEqualTo(1.0);
+    }
+
+    private DataSource wrap(long thresholdMs) {
+        postProcessor = new SlowQueryDataSourcePostProcessor(meterRegistryProvider, true, thresholdMs, 200, 300);
+        return (DataSource) postProcessor.postProcessAfterInitialization(dataSource, "dataSource");
+    }
+
+    private double warnings(String problem) {
+        return meterRegistry.get("jdbc.query.plan.warnings")
+                .tag("shape", LOOKUP)
+                .tag("problem", problem)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.authservice.service;
+
+import com.example.authservice.cache.UserCache;
+import com.example.authservice.cache.UserCacheInvalidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserCacheInvalidatorTests {
+
+    private static final String CHANNEL = "user_cache_invalidation";
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private UserCacheInvalidator invalidator;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void whenInvalidatedInsideTransaction_thenLocalEvictionWaitsForCommit() {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // when
+        invalidator.publish("alice");
+
+        // then: peers are told through NOTIFY, which Postgres only delivers on commit
+        verify(jdbcTemplate).queryForList("SELECT pg_notify(?, ?)", CHANNEL, "alice");
+        verify(userCache, never()).invalidate(anyString());
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        verify(userCache).invalidate("alice");
+    }
+
+    @Test
+    void whenTransactionRollsBack_thenNothingIsEvictedLocally() {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // when
+        invalidator.publishAll();
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // then
+        verify(jdbcTemplate).queryForList("SELECT pg_notify(?, ?)", CHANNEL, "*");
+        verifyNoInteractions(userCache);
+    }
+
+    @Test
+    void whenInvalidatedOutsideTransaction_thenEvictedAtOnce() {
+        // when
+        invalidator.publish("alice");
+
+        // then
+        verify(userCache).invalidate("alice");
+        verify(jdbcTemplate).queryForList("SELECT pg_notify(?, ?)", CHANNEL, "alice");
+    }
+
+    @Test
+    void whenNotifyFails_thenLocalEvictionStillHappens() {
+        // given
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        // when
+        invalidator.publishAll();
+
+        // then
+        verify(userCache).invalidateAll();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.authservice.service;
+
+import com.example.authservice.cache.UserCache;
+import com.example.authservice.cache.UserCacheNotificationListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserCacheNotificationListenerTests {
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private DataSourceProperties dataSourceProperties;
+
+    // each connect hands out the next connection
+    private final Deque<Connection> connections = new ArrayDeque<>();
+    private UserCacheNotificationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        when(dataSourceProperties.determineUrl()).thenReturn("jdbc:postgresql://localhost:5432/auth");
+        listener = new UserCacheNotificationListener(userCache, dataSourceProperties) {
+            @Override
+            protected Connection connect(String url) throws SQLException {
+                Connection next = connections.poll();
+                if (next == null) {
+                    throw new SQLException("no more connections");
+                }
+                return next;
+            }
+        };
+        ReflectionTestUtils.setField(listener, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    void whenPeerPublishes_thenTheNamedLoginOrEverythingIsEvicted() throws SQLException {
+        // given
+        connections.add(connection(List.of(notification("alice")), List.of(notification("*"))));
+
+        // when
+        listener.start();
+
+        // then: the clean start comes first, then each payload in order
+        InOrder order = inOrder(userCache);
+        order.verify(userCache, timeout(2000)).invalidateAll();
+        order.verify(userCache, timeout(2000)).invalidate("alice");
+        order.verify(userCache, timeout(2000)).invalidateAll();
+        verify(userCache, never()).invalidate("*");
+    }
+
+    @Test
+    void whenListenerReconnects_thenTheCacheIsClearedAgain() throws SQLException {
+        // given: the first connection breaks, whatever was published meanwhile is lost
+        Connection broken = connection();
+        PGConnection pgConnection = broken.unwrap(PGConnection.class);
+        when(pgConnection.getNotifications(anyInt())).thenThrow(new SQLException("connection reset"));
+        connections.add(broken);
+        connections.add(connection());
+
+        // when
+        listener.start();
+
+        // then
+        verify(userCache, timeout(5000).times(2)).invalidateAll();
+    }
+
+    @Test
+    void whenDataSourceIsNotPostgres_thenListenerDoesNotStart() {
+        // given
+        when(dataSourceProperties.determineUrl()).thenReturn("jdbc:h2:mem:auth");
+
+        // when
+        listener.start();
+
+        // then
+        verifyNoInteractions(userCache);
+    }
+
+    @SafeVarargs
+    private static Connection connection(List<PGNotification>... batches) throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        Deque<List<PGNotification>> pending = new ArrayDeque<>(List.of(batches));
+        lenient().when(pgConnection.getNotifications(anyInt())).thenAnswer(invocation -> {
+            List<PGNotification> batch = pending.poll();
+            if (batch == null) {
+                Thread.sleep(10);
+                return null;
+            }
+            return batch.toArray(new PGNotification[0]);
+        });
+        return connection;
+    }
+
+    private static PGNotification notification(String payload) {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getParameter()).thenReturn(payload);
+        return notification;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.authservice.service;
+
+import com.example.authservice.cache.CachedUser;
+import com.example.authservice.cache.UserCache;
+import com.example.authservice.entity.Role;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserCacheTests {
+
+    private static final String LOGIN = "alice";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserCache(userRepository, new SimpleMeterRegistry(), 100, 600, 100, 30);
+    }
+
+    @Test
+    void whenLoginIsUnknown_thenRepeatedLookupsStayInMemory() {
+        // given
+        when(userRepository.findByLogin(LOGIN)).thenReturn(Optional.empty());
+
+        // when
+        Optional<CachedUser> first = userCache.findByLogin(LOGIN);
+        Optional<CachedUser> second = userCache.findByLogin(LOGIN);
+
+        // then
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        verify(userRepository, times(1)).findByLogin(LOGIN);
+    }
+
+    @Test
+    void whenLoginIsInvalidated_thenNextLookupReadsTheRepository() {
+        // given
+        when(userRepository.findByLogin(LOGIN)).thenReturn(Optional.empty()).thenReturn(Optional.of(user()));
+        userCache.findByLogin(LOGIN);
+
+        // when
+        userCache.invalidate(LOGIN);
+        Optional<CachedUser> found = userCache.findByLogin(LOGIN);
+
+        // then
+        assertThat(found).map(CachedUser::login).contains(LOGIN);
+        verify(userRepository, times(2)).findByLogin(LOGIN);
+    }
+
+    @Test
+    void whenInvalidationRacesAMiss_thenNoNegativeEntryIsLeft() throws InterruptedException {
+        // given: the user is created on another instance while this one is still looking it up
+        AtomicReference<Thread> invalidation = new AtomicReference<>();
+        when(userRepository.findByLogin(LOGIN))
+                .thenAnswer(invocation -> {
+                    Thread thread = new Thread(() -> userCache.invalidate(LOGIN));
+                    invalidation.set(thread);
+                    thread.start();
+                    // the invalidation counts itself before it waits for this load to finish
+                    Thread.sleep(100);
+                    return Optional.empty();
+                })
+                .thenReturn(Optional.of(user()));
+
+        // when
+        Optional<CachedUser> missed = userCache.findByLogin(LOGIN);
+        invalidation.get().join();
+        Optional<CachedUser> found = userCache.findByLogin(LOGIN);
+
+        // then: the miss read before the insert committed, it must not hide the user for the negative TTL
+        assertThat(missed).isEmpty();
+        assertThat(found).map(CachedUser::login).contains(LOGIN);
+        verify(userRepository, times(2)).findByLogin(LOGIN);
+    }
+
+    private static User user() {
+        return new User(1L, LOGIN, "hash", Role.USER, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.authservice.service;
+
+import com.example.authservice.cache.UserCacheInvalidator;
+import com.example.authservice.dto.BulkRegistrationResponse;
+import com.example.authservice.dto.BulkRegistrationResult;
+import com.example.authservice.entity.Role;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserBatchRepository;
+import com.example.authservice.repository.UserRepository;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserProvisioningServiceTests {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private UserBatchRepository userBatchRepository;
+    @Mock
+    private UserCacheInvalidator userCacheInvalidator;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private BCryptPasswordEncoder encoder;
+    private UserProvisioningService provisioningService;
+
+    @BeforeEach
+    void setUp() {
+        encoder = spy(new BCryptPasswordEncoder(4));
+        provisioningService = new UserProvisioningService(userRepository, userBatchRepository, encoder,
+                userCacheInvalidator, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(provisioningService, "maxUsers", 100);
+        ReflectionTestUtils.setField(provisioningService, "batchSize", 2);
+    }
+
+    @Test
+    void whenBulkRegister_thenReportResultPerUserInRequestOrder() {
+        // Given
+        List<UserRegistrationRequest> requests = List.of(
+                request("alice", "pass1"),
+                request("bob", "pass2"),
+                request("alice", "pass3"),
+                request("carol", ""),
+                request("dave", "pass4"));
+        when(userRepository.findExistingLogins(anyCollection())).thenReturn(Set.of("bob"));
+        when(userBatchRepository.insertAll(anyList(), anyInt())).thenReturn(new int[][]{{1, 1}});
+
+        // When
+        BulkRegistrationResponse response = provisioningService.registerAll(requests, Role.USER);
+
+        // Then
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(3);
+        assertThat(response.getResults()).extracting(BulkRegistrationResult::getStatus).containsExactly(
+                BulkRegistrationResult.Status.CREATED,
+                BulkRegistrationResult.Status.ALREADY_EXISTS,
+                BulkRegistrationResult.Status.DUPLICATE_IN_REQUEST,
+                BulkRegistrationResult.Status.INVALID,
+                BulkRegistrationResult.Status.CREATED);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+        verify(userBatchRepository).insertAll(captor.capture(), eq(2));
+        List<User> inserted = captor.getValue();
+        assertThat(inserted).extracting(User::getLogin).containsExactly("alice", "dave");
+        assertThat(encoder.matches("pass1", inserted.get(0).getPasswordHash())).isTrue();
+        assertThat(inserted).allMatch(user -> user.getRole() == Role.USER);
+        verify(userCacheInvalidator).publishAll();
+    }
+
+    @Test
+    void whenLoginTakenConcurrently_thenReportAlreadyExists() {
+        // Given
+        when(userRepository.findExistingLogins(anyCollection())).thenReturn(Set.of());
+        when(userBatchRepository.insertAll(anyList(), anyInt())).thenReturn(new int[][]{{0}});
+
+        // When
+        BulkRegistrationResponse response = provisioningService.registerAll(
+                List.of(request("alice", "pass1")), Role.USER);
+
+        // Then
+        assertThat(response.getCreated()).isZero();
+        assertThat(response.getResults().get(0).getStatus()).isEqualTo(BulkRegistrationResult.Status.ALREADY_EXISTS);
+    }
+
+    @Test
+    void whenDriverRewritesBatch_thenClassifyRowsByStoredHash() {
+        // Given
+        when(userRepository.findExistingLogins(anyCollection())).thenReturn(Set.of());
+        when(userBatchRepository.insertAll(anyList(), anyInt())).thenReturn(new int[][]{
+                {Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO}});
+        when(userBatchRepository.findPasswordHashes(anyList())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+            verify(userBatchRepository).insertAll(captor.capture(), anyInt());
+            User alice = captor.getValue().get(0);
+            // bob was inserted by a concurrent request with another password
+            return Map.of(alice.getLogin(), alice.getPasswordHash(), "bob", encoder.encode("other"));
+        });
+
+        // When
+        BulkRegistrationResponse response = provisioningService.registerAll(
+                List.of(request("alice", "pass1"), request("bob", "pass2")), Role.USER);
+
+        // Then
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(response.getResults()).extracting(BulkRegistrationResult::getStatus).containsExactly(
+                BulkRegistrationResult.Status.CREATED,
+                BulkRegistrationResult.Status.ALREADY_EXISTS);
+        verify(userBatchRepository).findPasswordHashes(List.of("alice", "bob"));
+        verify(userCacheInvalidator).publishAll();
+    }
+
+    @Test
+    void whenBulkRegister_thenPasswordsAreHashedBeforeTheTransactionOpens() {
+        // Given
+        when(userRepository.findExistingLogins(anyCollection())).thenReturn(Set.of());
+        when(userBatchRepository.insertAll(anyList(), anyInt())).thenReturn(new int[][]{{1, 1}});
+
+        // When
+        provisioningService.registerAll(List.of(request("alice", "pass1"), request("bob", "pass2")), Role.USER);
+
+        // Then: the transaction holds a pooled connection, BCrypt must not run while it is open
+        InOrder order = inOrder(userRepository, encoder, transactionManager, userBatchRepository, userCacheInvalidator);
+        order.verify(userRepository).findExistingLogins(anyCollection());
+        order.verify(encoder, times(2)).encode(anyString());
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(userBatchRepository).insertAll(anyList(), anyInt());
+        order.verify(transactionManager).commit(any());
+        order.verify(userCacheInvalidator).publishAll();
+    }
+
+    @Test
+    void whenNothingIsLeftToInsert_thenNoTransactionIsOpened() {
+        // Given
+        when(userRepository.findExistingLogins(anyCollection())).thenReturn(Set.of("alice"));
+
+        // When
+        BulkRegistrationResponse response = provisioningService.registerAll(
+                List.of(request("alice", "pass1")), Role.USER);
+
+        // Then
+        assertThat(response.getResults().get(0).getStatus()).isEqualTo(BulkRegistrationResult.Status.ALREADY_EXISTS);
+        verifyNoInteractions(transactionManager, userBatchRepository);
+        verify(encoder, never()).encode(anyString());
+    }
+
+    @Test
+    void whenRequestContainsNullUser_thenItIsReportedAsInvalid() {
+        // Given
+        when(userRepository.findExistingLogins(anyCollection())).thenReturn(Set.of());
+        when(userBatchRepository.insertAll(anyList(), anyInt())).thenReturn(new int[][]{{1}});
+
+        // When
+        BulkRegistrationResponse response = provisioningService.registerAll(
+                Arrays.asList(null, request("alice", "pass1")), Role.USER);
+
+        // Then
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getResults()).extracting(BulkRegistrationResult::getStatus).containsExactly(
+                BulkRegistrationResult.Status.INVALID,
+                BulkRegistrationResult.Status.CREATED);
+        assertThat(response.getResults().get(0).getLogin()).isNull();
+    }
+
+    @Test
+    void whenTooManyUsers_thenThrowIllegalArgumentException() {
+        ReflectionTestUtils.setField(provisioningService, "maxUsers", 1);
+
+        assertThatThrownBy(() -> provisioningService.registerAll(
+                List.of(request("alice", "pass1"), request("bob", "pass2")), Role.USER))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        verifyNoInteractions(userRepository, userBatchRepository);
+    }
+
+    private UserRegistrationRequest request(String login, String password) {
+        UserRegistrationRequest request = new UserRegistrationRequest();
+        request.setLogin(login);
+        request.setPassword(password);
+        return request;
+    }
+}
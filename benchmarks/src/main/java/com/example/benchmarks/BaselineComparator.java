@@ -0,0 +1,134 @@
+package com.example.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result ({@code -rf json}) with the committed baseline. A benchmark regresses when
+ * its score gets worse by more than the time threshold and by more than the combined error margins,
+ * or when its normalised allocation ({@code gc.alloc.rate.norm}, needs {@code -prof gc}) grows by more
+ * than the allocation threshold. Exits with 1 on regressions.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.benchmarks.BaselineComparator \
+ *     benchmarks/baseline/jmh-baseline.json benchmarks/target/jmh-result.json [--update]
+ * </pre>
+ */
+public final class BaselineComparator {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    // a few bytes per op move with JIT decisions, not with code changes
+    private static final double ALLOCATION_NOISE_BYTES = 16;
+
+    private record Result(double score, double error, String unit, double allocation) {
+    }
+
+    private BaselineComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineComparator <baseline.json> <result.json> [--update] "
+                    + "[--time-threshold=0.10] [--alloc-threshold=0.05]");
+            System.exit(2);
+        }
+        Path baselineFile = Path.of(args[0]);
+        Path resultFile = Path.of(args[1]);
+        double timeThreshold = 0.10;
+        double allocThreshold = 0.05;
+        boolean update = false;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--update")) {
+                update = true;
+            } else if (args[i].startsWith("--time-threshold=")) {
+                timeThreshold = Double.parseDouble(args[i].substring("--time-threshold=".length()));
+            } else if (args[i].startsWith("--alloc-threshold=")) {
+                allocThreshold = Double.parseDouble(args[i].substring("--alloc-threshold=".length()));
+            }
+        }
+
+        if (update || !Files.exists(baselineFile)) {
+            Files.createDirectories(baselineFile.toAbsolutePath().getParent());
+            Files.copy(resultFile, baselineFile, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+
+        Map<String, Result> baseline = read(baselineFile);
+        Map<String, Result> current = read(resultFile);
+        List<String> regressions = new ArrayList<>();
+        System.out.printf("%-70s %14s %14s %8s %12s %12s%n", "benchmark", "baseline", "current", "change",
+                "B/op before", "B/op after");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %8s%n", entry.getKey(), "-", after.score(), "new");
+                continue;
+            }
+            double change = (after.score() - before.score()) / before.score();
+            System.out.printf("%-70s %14.3f %14.3f %+7.1f%% %12.0f %12.0f%n", entry.getKey(), before.score(),
+                    after.score(), change * 100, before.allocation(), after.allocation());
+
+            double worse = worse(before, after);
+            if (worse > timeThreshold * before.score() && worse > before.error() + after.error()) {
+                regressions.add(entry.getKey() + ": " + before.score() + " -> " + after.score() + " " + after.unit());
+            }
+            if (before.allocation() >= 0 && after.allocation() >= 0
+                    && after.allocation() - before.allocation() > Math.max(allocThreshold * before.allocation(), ALLOCATION_NOISE_BYTES)) {
+                regressions.add(entry.getKey() + ": " + Math.round(before.allocation()) + " -> "
+                        + Math.round(after.allocation()) + " B/op");
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            System.out.println();
+            System.out.println("Regressions against " + baselineFile + ":");
+            regressions.forEach(r -> System.out.println("  " + r));
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baselineFile);
+    }
+
+    // how much worse the score got, in the score's unit: time modes grow when slower, throughput shrinks
+    private static double worse(Result before, Result after) {
+        boolean throughput = after.unit().startsWith("ops/");
+        return throughput ? before.score() - after.score() : after.score() - before.score();
+    }
+
+    private static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        for (JsonNode run : JSON.readTree(file.toFile())) {
+            JsonNode primary = run.path("primaryMetric");
+            double allocation = -1;
+            for (Map.Entry<String, JsonNode> metric : run.path("secondaryMetrics").properties()) {
+                // older JMH versions prefix secondary metric names with a middle dot
+                if (metric.getKey().replace("·", "").equals(ALLOCATION)) {
+                    allocation = metric.getValue().path("score").asDouble();
+                }
+            }
+            // scoreError is "NaN" when there was a single measurement iteration
+            double error = primary.path("scoreError").asDouble(0);
+            results.put(key(run), new Result(primary.path("score").asDouble(), Double.isNaN(error) ? 0 : error,
+                    primary.path("scoreUnit").asText(), allocation));
+        }
+        return results;
+    }
+
+    private static String key(JsonNode run) {
+        Map<String, String> params = new TreeMap<>();
+        run.path("params").properties().forEach(e -> params.put(e.getKey(), e.getValue().asText()));
+        String benchmark = run.path("benchmark").asText().replace("com.example.benchmarks.", "");
+        return params.isEmpty() ? benchmark : benchmark + params;
+    }
+}
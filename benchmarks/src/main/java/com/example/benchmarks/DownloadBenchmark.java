@@ -0,0 +1,58 @@
+package com.example.benchmarks;
+
+import com.example.fileservice.dto.FileDownloadResponse;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.service.FileService;
+import com.example.securitylib.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code downloadFile} up to the {@link FileDownloadResponse} the controller turns into a response:
+ * metadata lookup, memory reservation, content fetch, metrics and JFR event, and
+ * {@code buildDownloadResponse}. The content size is a parameter so a change that starts copying the
+ * file data shows up as allocation proportional to it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 8, time = 2)
+@Fork(value = 3, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int contentSize;
+
+    private FileService fileService;
+    private String token;
+    private String fileName;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = Fixtures.jwtService();
+        List<FileDocument> files = Fixtures.files(100, contentSize);
+        fileService = Fixtures.fileService(jwtService, files);
+        token = jwtService.generateAccessToken(Fixtures.USER, List.of("USER"));
+        fileName = files.get(50).getFileName();
+    }
+
+    @Benchmark
+    public FileDownloadResponse downloadFile() {
+        FileDownloadResponse response = fileService.downloadFile(token, fileName);
+        response.getReservation().close();
+        return response;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.benchmarks;
+
+import com.example.fileservice.dto.ErrorResponse;
+import com.example.fileservice.exception.FileNotFoundException;
+import com.example.fileservice.exception.GlobalExceptionHandler;
+import com.example.fileservice.service.FileService;
+import com.example.securitylib.JwtService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Download of a missing file: the exception thrown by {@link FileService} (stack trace included),
+ * {@link GlobalExceptionHandler} and serialisation of the {@link ErrorResponse}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 8, time = 2)
+@Fork(value = 3, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    private FileService fileService;
+    private GlobalExceptionHandler exceptionHandler;
+    private ObjectMapper objectMapper;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = Fixtures.jwtService();
+        fileService = Fixtures.fileService(jwtService, Fixtures.files(100, 0));
+        exceptionHandler = new GlobalExceptionHandler();
+        objectMapper = Fixtures.objectMapper();
+        token = jwtService.generateAccessToken(Fixtures.USER, List.of("USER"));
+    }
+
+    @Benchmark
+    public byte[] missingFile() throws JsonProcessingException {
+        try {
+            fileService.downloadFile(token, "missing.txt");
+            throw new IllegalStateException("missing.txt was found");
+        } catch (FileNotFoundException e) {
+            ResponseEntity<ErrorResponse> response = exceptionHandler.handleFileNotFound(e);
+            return objectMapper.writeValueAsBytes(response.getBody());
+        }
+    }
+}
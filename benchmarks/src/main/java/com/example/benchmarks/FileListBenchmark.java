@@ -0,0 +1,66 @@
+package com.example.benchmarks;
+
+import com.example.fileservice.dto.FileListResponse;
+import com.example.fileservice.service.FileService;
+import com.example.securitylib.JwtService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /cloud/list} without the web layer: token parsing, sort and map into
+ * {@link FileListResponse}, and Jackson serialisation of the result with its {@code LocalDateTime}s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 8, time = 2)
+@Fork(value = 3, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class FileListBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int files;
+
+    private FileService fileService;
+    private ObjectMapper objectMapper;
+    private String token;
+    private List<FileListResponse> listed;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = Fixtures.jwtService();
+        fileService = Fixtures.fileService(jwtService, Fixtures.files(files, 0));
+        objectMapper = Fixtures.objectMapper();
+        token = jwtService.generateAccessToken(Fixtures.USER, List.of("USER"));
+        listed = fileService.getAllFiles(token, files);
+    }
+
+    @Benchmark
+    public List<FileListResponse> getAllFiles() {
+        return fileService.getAllFiles(token, files);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(listed);
+    }
+
+    @Benchmark
+    public byte[] listAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(fileService.getAllFiles(token, files));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.benchmarks;
+
+import com.example.fileservice.access.AccessStats;
+import com.example.fileservice.bandwidth.BandwidthThrottle;
+import com.example.fileservice.bulkhead.TransferLane;
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
+import com.example.fileservice.controller.FileController;
+import com.example.fileservice.exception.GlobalExceptionHandler;
+import com.example.fileservice.index.FileMetadataIndex;
+import com.example.fileservice.metrics.FileMetrics;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.replica.ReadRouting;
+import com.example.fileservice.repository.FileRepository;
+import com.example.fileservice.service.ChangeFeedService;
+import com.example.fileservice.service.DownloadCoalescer;
+import com.example.fileservice.service.FileService;
+import com.example.securitylib.JwtService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Production classes wired by hand: a real {@link JwtService} and {@link FileService} over an in-memory
+ * {@link FileRepository}, and the ObjectMapper the MVC message converter uses.
+ */
+final class Fixtures {
+
+    static final String USER = "bench-user";
+    private static final String SECRET = "vdeNR3G2uMdCQD3vY3O1Z7vjBoBN4Uv3UwGM+2P3kZQ=";
+    private static final String[] CONTENT_TYPES = {"image/jpeg", "application/pdf", "text/plain",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "video/mp4"};
+
+    private Fixtures() {
+    }
+
+    static JwtService jwtService() {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "issuer", "benchmarks");
+        ReflectionTestUtils.setField(jwtService, "ttlMinutes", 600L);
+        return jwtService;
+    }
+
+    static FileService fileService(JwtService jwtService, List<FileDocument> files) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransferMemoryBudget memoryBudget = new TransferMemoryBudget(meterRegistry, 512L * 1024 * 1024, 1000);
+        FileRepository repository = repository(files);
+        FileService fileService = new FileService(jwtService, repository, new FileMetrics(meterRegistry),
+                memoryBudget, new DownloadCoalescer(meterRegistry, memoryBudget),
+                new ChangeFeedService(sequences(), null, jwtService, 5000, 16),
+                new FileMetadataIndex(repository, meterRegistry, true, 100, 60000),
+                new ReadRouting(meterRegistry, false, "primary", 0, 0, 1), null,
+                new AccessStats(null, meterRegistry, true, 10000, 100000), null);
+        ReflectionTestUtils.setField(fileService, "MaxFileSize", 10L * 1024 * 1024);
+        return fileService;
+    }
+
+    /**
+     * The mapper file-service actually uses: security-lib's {@code @EnableWebMvc} switches off Boot's MVC
+     * auto-configuration, so the converter gets a plain {@link Jackson2ObjectMapperBuilder} mapper.
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static MockMvc mockMvc(FileService fileService) {
+        return MockMvcBuilders.standaloneSetup(new FileController(fileService, null, null,
+                        new TransferLane(new SimpleMeterRegistry(), 4, 64),
+                        new BandwidthThrottle(new SimpleMeterRegistry(), false, 1, 1, 1, 0)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new ResourceHttpMessageConverter(),
+                        new MappingJackson2HttpMessageConverter(objectMapper()))
+                .build();
+    }
+
+    /** Files of one user with realistic names, types, sizes and upload dates spread over two years. */
+    static List<FileDocument> files(int count, int contentSize) {
+        Random random = new Random(count);
+        LocalDateTime now = LocalDateTime.of(2025, 6, 1, 12, 0);
+        byte[] content = new byte[contentSize];
+        random.nextBytes(content);
+        List<FileDocument> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String contentType = CONTENT_TYPES[random.nextInt(CONTENT_TYPES.length)];
+            files.add(FileDocument.builder()
+                    .id(Long.toHexString(random.nextLong()))
+                    .ownerName(USER)
+                    .fileName("document-" + i + "-" + Integer.toHexString(random.nextInt()) + extension(contentType))
+                    .contentType(contentType)
+                    .size(1024L + random.nextInt(8 * 1024 * 1024))
+                    .uploadDate(now.minusMinutes(random.nextInt(2 * 365 * 24 * 60)))
+                    .fileData(content)
+                    .build());
+        }
+        return files;
+    }
+
+    private static String extension(String contentType) {
+        return switch (contentType) {
+            case "image/jpeg" -> ".jpg";
+            case "application/pdf" -> ".pdf";
+            case "text/plain" -> ".txt";
+            case "video/mp4" -> ".mp4";
+            default -> ".docx";
+        };
+    }
+
+    // the namespace version lookup of /cloud/list, no change has been recorded yet
+    private static MongoOperations sequences() {
+        return (MongoOperations) Proxy.newProxyInstance(MongoOperations.class.getClassLoader(),
+                new Class<?>[]{MongoOperations.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> null;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "EmptySequences";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // only the finders FileService reads through are implemented
+    private static FileRepository repository(List<FileDocument> files) {
+        Map<String, FileDocument> byName = new HashMap<>();
+        Map<String, FileDocument> byId = new HashMap<>();
+        files.forEach(f -> {
+            byName.put(f.getFileName(), f);
+            byId.put(f.getId(), f);
+        });
+        return (FileRepository) Proxy.newProxyInstance(FileRepository.class.getClassLoader(),
+                new Class<?>[]{FileRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findByOwnerName", "findMetadataByOwnerName" -> USER.equals(args[0]) ? new ArrayList<>(files) : List.of();
+                    case "findByOwnerNameAndFileName", "findMetadataByOwnerNameAndFileName" -> USER.equals(args[0])
+                            ? Optional.ofNullable(byName.get((String) args[1])) : Optional.empty();
+                    case "findById" -> Optional.ofNullable(byId.get((String) args[0]));
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryFileRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.benchmarks;
+
+import com.example.fileservice.model.FileDocument;
+import com.example.securitylib.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Whole requests through {@code DispatcherServlet} (MockMvc, no socket or Tomcat): handler mapping,
+ * argument resolution, {@code FileController}, message conversion and the exception handler. Downloads
+ * run on the transfer lane and include the async dispatch that writes the streamed body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 8, time = 2)
+@Fork(value = 3, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class RequestHandlingBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int files;
+
+    private MockMvc mockMvc;
+    private String token;
+    private String fileName;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = Fixtures.jwtService();
+        List<FileDocument> documents = Fixtures.files(files, 4096);
+        mockMvc = Fixtures.mockMvc(Fixtures.fileService(jwtService, documents));
+        token = jwtService.generateAccessToken(Fixtures.USER, List.of("USER"));
+        fileName = documents.get(documents.size() / 2).getFileName();
+    }
+
+    @Benchmark
+    public MvcResult list() throws Exception {
+        return mockMvc.perform(get("/cloud/list").param("limit", String.valueOf(files))
+                .header("auth-token", token)).andReturn();
+    }
+
+    // a sync client polling an unchanged namespace: 304 without listing
+    @Benchmark
+    public MvcResult listNotModified() throws Exception {
+        return mockMvc.perform(get("/cloud/list").param("limit", String.valueOf(files))
+                .header("auth-token", token)
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"0-" + files + "\"")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult download() throws Exception {
+        return transfer(get("/cloud/file").param("filename", fileName).header("auth-token", token));
+    }
+
+    @Benchmark
+    public MvcResult downloadMissing() throws Exception {
+        return transfer(get("/cloud/file").param("filename", "missing.txt").header("auth-token", token));
+    }
+
+    private MvcResult transfer(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.fileservice.access;
+
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind {@code downloadCount} and {@code lastAccessed} of files. A download only bumps striped
+ * counters of the file in memory, without locks and without allocating once the file has a cell; a
+ * background flush writes what accumulated since the previous one as one unordered bulk of
+ * {@code $inc}/{@code $max} updates per shard. Cells keep running totals and remember what was
+ * flushed, so a failed flush is retried by the next one. Accesses not flushed yet are lost on a crash.
+ */
+@Component
+@Slf4j
+public class AccessStats {
+
+    private static final class Cell {
+        private final String owner;
+        private final LongAdder downloads = new LongAdder();
+        private final LongAccumulator lastAccess = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        // only touched by the flushing thread
+        private long flushedDownloads;
+        private long flushedLastAccess = Long.MIN_VALUE;
+
+        private Cell(String owner) {
+            this.owner = owner;
+        }
+    }
+
+    private record Pending(String id, Cell cell, long downloads, long lastAccess) {
+    }
+
+    private final ShardDirectory directory;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final int maxTrackedFiles;
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+    private final Timer flushes;
+    private final Counter flushedUpdates;
+    private final Counter dropped;
+    private volatile long lastFlushMillis = System.currentTimeMillis();
+    private ScheduledExecutorService flusher;
+
+    public AccessStats(ShardDirectory directory,
+                       MeterRegistry meterRegistry,
+                       @Value("${access-stats.enabled:true}") boolean enabled,
+                       @Value("${access-stats.flush-interval-ms:10000}") long flushIntervalMs,
+                       @Value("${access-stats.max-tracked-files:100000}") int maxTrackedFiles) {
+        this.directory = directory;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxTrackedFiles = maxTrackedFiles;
+        this.flushes = Timer.builder("file.access.flush")
+                .description("Write-behind flushes of file access statistics")
+                .register(meterRegistry);
+        this.flushedUpdates = Counter.builder("file.access.flushed")
+                .description("File documents updated by access statistics flushes")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("file.access.dropped")
+                .description("Accesses not recorded because too many files were waiting for a flush")
+                .register(meterRegistry);
+        Gauge.builder("file.access.pending", cells, Map::size)
+                .description("Files with access statistics in memory")
+                .register(meterRegistry);
+        Gauge.builder("file.access.flush.lag", this, stats -> System.currentTimeMillis() - stats.lastFlushMillis)
+                .baseUnit("milliseconds")
+                .description("Time since the last successful flush, the most a crash can lose")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("access-stats-"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    /** Records a download of the file; called on every download, so it stays allocation-free on a hit. */
+    public void recordDownload(String id, String owner) {
+        if (!enabled) {
+            return;
+        }
+        Cell cell = cells.get(id);
+        if (cell == null) {
+            if (cells.size() >= maxTrackedFiles) {
+                dropped.increment();
+                return;
+            }
+            Cell created = new Cell(owner);
+            cell = cells.putIfAbsent(id, created);
+            if (cell == null) {
+                cell = created;
+            }
+        }
+        cell.downloads.increment();
+        cell.lastAccess.accumulate(System.currentTimeMillis());
+    }
+
+    /** Writes the accesses since the previous flush; returns the number of documents updated. */
+    public synchronized long flush() {
+        long start = System.nanoTime();
+        Map<StorageShards.Shard, List<Pending>> byShard = new HashMap<>();
+        List<String> idle = new ArrayList<>();
+        for (Map.Entry<String, Cell> entry : cells.entrySet()) {
+            Cell cell = entry.getValue();
+            long downloads = cell.downloads.sum();
+            long lastAccess = cell.lastAccess.get();
+            if (downloads == cell.flushedDownloads && lastAccess == cell.flushedLastAccess) {
+                idle.add(entry.getKey());
+                continue;
+            }
+            byShard.computeIfAbsent(directory.shardOf(cell.owner), shard -> new ArrayList<>())
+                    .add(new Pending(entry.getKey(), cell, downloads, lastAccess));
+        }
+
+        long updated = 0;
+        RuntimeException failure = null;
+        for (Map.Entry<StorageShards.Shard, List<Pending>> shard : byShard.entrySet()) {
+            try {
+                updated += write(shard.getKey(), shard.getValue());
+            } catch (RuntimeException e) {
+                // the cells keep their totals, the next flush retries
+                failure = e;
+            }
+        }
+        evict(idle);
+        flushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        flushedUpdates.increment(updated);
+        if (failure != null) {
+            throw failure;
+        }
+        lastFlushMillis = System.currentTimeMillis();
+        return updated;
+    }
+
+    private long write(StorageShards.Shard shard, List<Pending> pending) {
+        List<WriteModel<Document>> updates = new ArrayList<>(pending.size());
+        for (Pending p : pending) {
+            updates.add(new UpdateOneModel<>(
+                    Filters.eq("_id", ObjectId.isValid(p.id()) ? new ObjectId(p.id()) : p.id()),
+                    Updates.combine(
+                            Updates.inc("downloadCount", p.downloads() - p.cell().flushedDownloads),
+                            Updates.max("lastAccessed", new Date(p.lastAccess())))));
+        }
+        try {
+            long matched = shard.template().getCollection("files")
+                    .bulkWrite(updates, new BulkWriteOptions().ordered(false))
+                    .getMatchedCount();
+            markFlushed(pending, Set.of());
+            return matched;
+        } catch (MongoBulkWriteException e) {
+            // an unordered bulk applies everything but the failed updates, only those are retried
+            Set<Integer> failed = new HashSet<>();
+            e.getWriteErrors().forEach(error -> failed.add(error.getIndex()));
+            markFlushed(pending, failed);
+            throw e;
+        }
+    }
+
+    private static void markFlushed(List<Pending> pending, Set<Integer> failed) {
+        for (int i = 0; i < pending.size(); i++) {
+            if (!failed.contains(i)) {
+                Pending p = pending.get(i);
+                p.cell().flushedDownloads = p.downloads();
+                p.cell().flushedLastAccess = p.lastAccess();
+            }
+        }
+    }
+
+    // cells without accesses for a whole interval; a download racing the removal can be lost
+    private void evict(List<String> idle) {
+        for (String id : idle) {
+            Cell cell = cells.get(id);
+            if (cell != null && cell.downloads.sum() == cell.flushedDownloads) {
+                cells.remove(id, cell);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Flushing file access statistics failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.fileservice.bandwidth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Paces download streams with two token buckets: a node-wide budget and one per user. A user's rate is
+ * the lower of its role rate ({@code ADMIN} or {@code USER} authority) and an equal share of the node
+ * budget among users with a transfer in progress, so one user looping over large files cannot take the
+ * uplink from everybody else, and capacity left by idle users goes back to the active ones.
+ * <p>
+ * Uploads are not paced: the container has buffered the multipart body before the controller runs,
+ * so there is nothing left to slow down on this side of the socket.
+ */
+@Component
+@Slf4j
+public class BandwidthThrottle {
+
+    private static final String ADMIN_AUTHORITY = "ADMIN";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int SWEEP_SLACK = 1024;
+
+    private final boolean enabled;
+    private final double globalRate;
+    private final double globalCapacity;
+    private final double userRate;
+    private final double adminRate;
+    private final long burstNanos;
+    private final ByteBucket global;
+    private final Map<String, UserShare> users = new ConcurrentHashMap<>();
+    private final AtomicInteger activeUsers = new AtomicInteger();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final Counter bytes;
+    private final Counter throttledBytes;
+    private final Timer waits;
+
+    public BandwidthThrottle(MeterRegistry meterRegistry,
+                             @Value("${bandwidth.enabled:true}") boolean enabled,
+                             @Value("${bandwidth.global.bytes-per-second:104857600}") long globalBytesPerSecond,
+                             @Value("${bandwidth.user.bytes-per-second:10485760}") long userBytesPerSecond,
+                             @Value("${bandwidth.admin.bytes-per-second:52428800}") long adminBytesPerSecond,
+                             @Value("${bandwidth.burst-ms:250}") long burstMs) {
+        this.enabled = enabled;
+        this.globalRate = perNano(globalBytesPerSecond);
+        this.userRate = perNano(userBytesPerSecond);
+        this.adminRate = perNano(adminBytesPerSecond);
+        this.burstNanos = TimeUnit.MILLISECONDS.toNanos(burstMs);
+        this.globalCapacity = capacity(globalRate);
+        this.global = new ByteBucket(globalCapacity, System.nanoTime());
+
+        this.bytes = Counter.builder("bandwidth.bytes")
+                .description("Bytes sent through the bandwidth throttle")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.throttledBytes = Counter.builder("bandwidth.throttled.bytes")
+                .description("Bytes that had to wait for the per-user or node-wide budget")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.waits = Timer.builder("bandwidth.throttle.wait")
+                .description("Time downloads spent waiting for bandwidth")
+                .register(meterRegistry);
+        Gauge.builder("bandwidth.active.users", activeUsers, AtomicInteger::get)
+                .description("Users with a transfer in progress")
+                .register(meterRegistry);
+        Gauge.builder("bandwidth.fair.share", this, t -> t.fairShare() * TimeUnit.SECONDS.toNanos(1))
+                .description("Node budget share of each active user")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Bandwidth throttle enabled={}, global {} B/s, user {} B/s, admin {} B/s",
+                enabled, globalBytesPerSecond, userBytesPerSecond, adminBytesPerSecond);
+    }
+
+    /**
+     * Starts a transfer for the given caller, {@code null} for an anonymous one, which is only bound by
+     * the node-wide budget. The returned transfer must be closed.
+     */
+    public Transfer open(Authentication authentication) {
+        String user = authentication != null && authentication.isAuthenticated() ? authentication.getName() : null;
+        if (user == null) {
+            return new Transfer(null, null);
+        }
+        double roleRate = isAdmin(authentication) ? adminRate : userRate;
+        UserShare share = users.compute(user, (key, existing) -> {
+            UserShare s = existing != null ? existing : new UserShare(roleRate, capacity(roleRate));
+            if (s.transfers++ == 0) {
+                activeUsers.incrementAndGet();
+            }
+            return s;
+        });
+        if (users.size() > activeUsers.get() + SWEEP_SLACK) {
+            sweep();
+        }
+        return new Transfer(user, share);
+    }
+
+    private void release(String user) {
+        users.computeIfPresent(user, (key, s) -> {
+            if (--s.transfers > 0) {
+                return s;
+            }
+            activeUsers.decrementAndGet();
+            return s.bucket.isFull(s.capacity, s.rate, System.nanoTime()) ? null : s;
+        });
+    }
+
+    // users whose bucket was still refilling when their last transfer ended
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            for (String user : users.keySet()) {
+                users.computeIfPresent(user, (key, s) ->
+                        s.transfers == 0 && s.bucket.isFull(s.capacity, s.rate, now) ? null : s);
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private double fairShare() {
+        return globalRate / Math.max(1, activeUsers.get());
+    }
+
+    private double capacity(double bytesPerNano) {
+        return Math.max(CHUNK_SIZE, bytesPerNano * burstNanos);
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (ADMIN_AUTHORITY.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double perNano(long bytesPerSecond) {
+        return bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    // transfers counter is only touched inside users.compute*, which serialises per key
+    private static final class UserShare {
+        private final double rate;
+        private final double capacity;
+        private final ByteBucket bucket;
+        private int transfers;
+
+        UserShare(double rate, double capacity) {
+            this.rate = rate;
+            this.capacity = capacity;
+            this.bucket = new ByteBucket(capacity, System.nanoTime());
+        }
+    }
+
+    public final class Transfer implements AutoCloseable {
+        private final String user;
+        private final UserShare share;
+        private boolean closed;
+
+        private Transfer(String user, UserShare share) {
+            this.user = user;
+            this.share = share;
+        }
+
+        /** Blocks until {@code count} bytes may pass. */
+        public void pace(long count) throws InterruptedIOException {
+            bytes.increment(count);
+            if (!enabled || count <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long waitNanos = global.reserve(count, globalCapacity, globalRate, now);
+            if (share != null) {
+                double rate = Math.min(share.rate, fairShare());
+                waitNanos = Math.max(waitNanos, share.bucket.reserve(count, share.capacity, rate, now));
+            }
+            if (waitNanos == 0L) {
+                return;
+            }
+            throttledBytes.increment(count);
+            waits.record(waitNanos, TimeUnit.NANOSECONDS);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+
+        /** Wraps a response stream so that every write is paced, in chunks small enough to keep it smooth. */
+        public OutputStream throttle(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    pace(1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        int chunk = Math.min(len, CHUNK_SIZE);
+                        pace(chunk);
+                        out.write(b, off, chunk);
+                        off += chunk;
+                        len -= chunk;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            if (!closed && user != null) {
+                release(user);
+            }
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.fileservice.bandwidth;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token bucket counted in bytes. Unlike the login limiter's bucket it may go into debt:
+ * a caller takes what it is about to send and sleeps for the returned time, so large chunks are paced
+ * instead of refused. The rate is passed on every call because the fair share changes with load.
+ */
+final class ByteBucket {
+
+    private record State(double tokens, long refilledAtNanos) {
+    }
+
+    private final AtomicReference<State> state;
+
+    ByteBucket(double capacity, long nowNanos) {
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+
+    /**
+     * @return {@code 0} if the bytes can be sent now, otherwise the number of nanoseconds to wait first
+     */
+    long reserve(long bytes, double capacity, double bytesPerNano, long nowNanos) {
+        while (true) {
+            State current = state.get();
+            double remaining = refill(current, capacity, bytesPerNano, nowNanos) - bytes;
+            if (state.compareAndSet(current, new State(remaining, nowNanos))) {
+                return remaining >= 0 ? 0L : (long) Math.ceil(-remaining / bytesPerNano);
+            }
+        }
+    }
+
+    boolean isFull(double capacity, double bytesPerNano, long nowNanos) {
+        return refill(state.get(), capacity, bytesPerNano, nowNanos) >= capacity;
+    }
+
+    private static double refill(State current, double capacity, double bytesPerNano, long nowNanos) {
+        long elapsed = Math.max(0L, nowNanos - current.refilledAtNanos());
+        return Math.min(capacity, current.tokens() + elapsed * bytesPerNano);
+    }
+}
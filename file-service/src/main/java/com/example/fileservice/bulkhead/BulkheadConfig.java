@@ -0,0 +1,41 @@
+package com.example.fileservice.bulkhead;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Separate budgets for transfers and metadata calls. Transfers run on the {@link TransferLane} and hand
+ * download bodies to the {@link StreamingLane}, where they are paced; the Mongo pool is sized as one connection per transfer thread plus a
+ * reserved lane for list, rename and delete, which stay on Tomcat threads.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class BulkheadConfig implements WebMvcConfigurer {
+
+    private final TransferLane transferLane;
+    private final StreamingLane streamingLane;
+
+    @Value("${bulkhead.metadata.mongo-connections:20}")
+    private int metadataConnections;
+
+    @Value("${bulkhead.transfer.timeout-ms:300000}")
+    private long transferTimeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // StreamingResponseBody writes run here; the auth proxy's futures have their own timeouts
+        configurer.setTaskExecutor(streamingLane.executor());
+        configurer.setDefaultTimeout(transferTimeoutMs);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer bulkheadConnectionPoolCustomizer() {
+        return builder -> builder.applyToConnectionPoolSettings(pool ->
+                pool.maxSize(transferLane.threads() + metadataConnections));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.fileservice.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded pool that writes download bodies to the client. The body is already on the heap when it gets
+ * here, so these threads hold no Mongo connection and may spend most of their time in the bandwidth
+ * throttle without taking a {@link TransferLane} slot from the next upload or download.
+ */
+@Component
+public class StreamingLane implements DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor;
+
+    public StreamingLane(MeterRegistry meterRegistry,
+                         @Value("${bulkhead.streaming.threads:64}") int threads,
+                         @Value("${bulkhead.streaming.queue-capacity:128}") int queueCapacity) {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("streaming-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "streaming", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    public AsyncTaskExecutor executor() {
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
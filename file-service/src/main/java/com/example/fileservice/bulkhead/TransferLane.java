@@ -0,0 +1,58 @@
+package com.example.fileservice.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounded pool that runs uploads and downloads up to the point the body is on the heap, Mongo access
+ * included, so they never hold Tomcat threads and cannot take more Mongo connections than there are
+ * threads. Download bodies are then written on the {@link StreamingLane}.
+ * When the pool and its queue are full, submissions fail with a {@code RejectedExecutionException}
+ * (503 to the client) instead of waiting.
+ */
+@Component
+public class TransferLane implements DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor;
+
+    public TransferLane(MeterRegistry meterRegistry,
+                        @Value("${bulkhead.transfer.threads:16}") int threads,
+                        @Value("${bulkhead.transfer.queue-capacity:32}") int queueCapacity) {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("transfer-");
+        // trace and MDC context of the request follow the task
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "transfer", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return executor.submitCompletable(task);
+    }
+
+    public AsyncTaskExecutor executor() {
+        return executor;
+    }
+
+    public int threads() {
+        return executor.getMaxPoolSize();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.fileservice.bulkhead;
+
+import com.example.fileservice.exception.TransferMemoryExhaustedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-wide budget for file contents held on the heap. Uploads and downloads reserve the size of the
+ * file before it is buffered and give it back once the bytes are stored or written out. When the budget
+ * is used up, callers wait up to {@code transfer-memory.max-wait-ms} in arrival order and are then
+ * rejected with a {@link TransferMemoryExhaustedException} (503 to the client).
+ */
+@Component
+@Slf4j
+public class TransferMemoryBudget {
+
+    // the semaphore counts KiB so that budgets above 2 GiB still fit in int permits
+    private static final long UNIT = 1024;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int totalPermits;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final Timer waits;
+    private final Counter rejections;
+
+    public TransferMemoryBudget(MeterRegistry meterRegistry,
+                                @Value("${transfer-memory.budget-bytes:0}") long budgetBytes,
+                                @Value("${transfer-memory.max-wait-ms:2000}") long maxWaitMs) {
+        // 0 means a quarter of the heap
+        long budget = budgetBytes > 0 ? budgetBytes : Runtime.getRuntime().maxMemory() / 4;
+        this.totalPermits = (int) Math.min(Integer.MAX_VALUE, budget / UNIT);
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(totalPermits, true);
+
+        Gauge.builder("transfer.memory.reserved", this, b -> b.reservedBytes())
+                .description("Heap reserved for file contents of transfers in progress")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("transfer.memory.available", this, b -> b.availableBytes())
+                .description("Heap left in the transfer memory budget")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.waits = Timer.builder("transfer.memory.wait")
+                .description("Time transfers waited for the memory budget")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("transfer.memory.rejected")
+                .description("Transfers rejected because the memory budget stayed exhausted")
+                .register(meterRegistry);
+        log.info("Transfer memory budget {} bytes, max wait {} ms", totalPermits * UNIT, maxWaitMs);
+    }
+
+    /**
+     * Reserves {@code bytes} of the budget, waiting for other transfers to release theirs if needed.
+     * The reservation must be closed once the buffered content is no longer referenced.
+     */
+    public Reservation reserve(long bytes) {
+        int needed = (int) Math.max(1, (bytes + UNIT - 1) / UNIT);
+        if (needed > totalPermits) {
+            rejections.increment();
+            throw new TransferMemoryExhaustedException("Transfer of " + bytes + " bytes exceeds the memory budget");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(needed, maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferMemoryExhaustedException("Interrupted while waiting for transfer memory");
+        } finally {
+            waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejections.increment();
+            log.warn("Transfer memory budget exhausted: {} bytes requested, {} available", bytes, availableBytes());
+            throw new TransferMemoryExhaustedException("Server is short of transfer memory, retry later");
+        }
+        return new Reservation(new Reserved(needed));
+    }
+
+    public long reservedBytes() {
+        return (totalPermits - (long) permits.availablePermits()) * UNIT;
+    }
+
+    public long availableBytes() {
+        return permits.availablePermits() * UNIT;
+    }
+
+    /**
+     * A handle on reserved bytes. {@link #retain()} hands out further handles on the same bytes, e.g. to
+     * every request served by one buffered copy; the bytes go back to the budget when the last handle
+     * is closed.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final Reserved reserved;
+        private final Release release;
+        private final Cleaner.Cleanable cleanable;
+
+        private Reservation(Reserved reserved) {
+            this.reserved = reserved;
+            this.release = new Release(reserved);
+            // a handle dropped without close(), e.g. a response that was never written, is released
+            // once it is garbage collected instead of shrinking the budget for good
+            this.cleanable = CLEANER.register(this, release);
+        }
+
+        public Reservation retain() {
+            int handles;
+            do {
+                handles = reserved.handles.get();
+                if (handles == 0) {
+                    throw new IllegalStateException("Reservation already released");
+                }
+            } while (!reserved.handles.compareAndSet(handles, handles + 1));
+            return new Reservation(reserved);
+        }
+
+        @Override
+        public void close() {
+            release.closed = true;
+            cleanable.clean();
+        }
+    }
+
+    private static final class Reserved {
+        private final int permits;
+        private final AtomicInteger handles = new AtomicInteger(1);
+
+        Reserved(int permits) {
+            this.permits = permits;
+        }
+    }
+
+    private final class Release implements Runnable {
+        private final Reserved reserved;
+        private volatile boolean closed;
+
+        Release(Reserved reserved) {
+            this.reserved = reserved;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                log.warn("Transfer memory reservation of {} bytes was not closed", reserved.permits * UNIT);
+            }
+            if (reserved.handles.decrementAndGet() == 0) {
+                permits.release(reserved.permits);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.fileservice.client;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AuthClientMetricsConfig {
+
+    // Exposes httpcomponents.httpclient.pool.* gauges for the Feign hc5 connection pool
+    @Bean
+    public MeterBinder authClientPoolMetrics(ObjectProvider<HttpClientConnectionManager> connectionManager) {
+        return registry -> {
+            if (connectionManager.getIfAvailable() instanceof PoolingHttpClientConnectionManager pool) {
+                new PoolingHttpClientConnectionManagerMetricsBinder(pool, "auth-service").bindTo(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.fileservice.client;
+
+import com.example.fileservice.exception.AuthServiceUnavailableException;
+import com.example.securitylib.client.AuthOperations;
+import com.example.securitylib.dto.LoginRequest;
+import com.example.securitylib.dto.LoginResponse;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous front for {@link AuthOperations}, normally the remote {@link AuthServiceClient}. Servlet threads are released while the
+ * upstream call runs on a bounded worker pool; each route has its own concurrency budget,
+ * a shared circuit breaker sheds load when auth-service is failing, and idempotent calls
+ * can be hedged with a second request when the first one is slow (off by default). Login is not
+ * hedged, a second attempt would double the BCrypt work for the same credentials.
+ */
+@Service
+@Slf4j
+public class AuthProxy {
+
+    private static final String[] ROUTES = {"login", "register", "logout"};
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final AuthOperations client;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final Map<String, Semaphore> routePermits = new HashMap<>();
+    private final Map<String, Counter> hedgeCounters = new HashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final long timeoutMs;
+    private final boolean hedgingEnabled;
+    private final long hedgeDelayMs;
+
+    public AuthProxy(AuthOperations client,
+                     MeterRegistry meterRegistry,
+                     @Value("${auth-proxy.max-concurrency-per-route:50}") int maxConcurrencyPerRoute,
+                     @Value("${auth-proxy.timeout-ms:3000}") long timeoutMs,
+                     @Value("${auth-proxy.hedging.enabled:false}") boolean hedgingEnabled,
+                     @Value("${auth-proxy.hedging.delay-ms:300}") long hedgeDelayMs,
+                     @Value("${auth-proxy.circuit-breaker.window-size:20}") int windowSize,
+                     @Value("${auth-proxy.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                     @Value("${auth-proxy.circuit-breaker.open-duration-ms:5000}") long openDurationMs) {
+        this.client = client;
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeDelayMs = hedgeDelayMs;
+        this.circuitBreaker = new CircuitBreaker("auth-service", windowSize, failureRateThreshold,
+                TimeUnit.MILLISECONDS.toNanos(openDurationMs));
+
+        for (String route : ROUTES) {
+            Semaphore permits = new Semaphore(maxConcurrencyPerRoute);
+            routePermits.put(route, permits);
+            hedgeCounters.put(route, Counter.builder("auth.proxy.hedges").tag("route", route).register(meterRegistry));
+            Gauge.builder("auth.proxy.in.flight", permits, p -> maxConcurrencyPerRoute - p.availablePermits())
+                    .tag("route", route)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("auth.proxy.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open")
+                .register(meterRegistry);
+
+        // route permits bound the number of running calls, so the queue never grows past the pool size
+        int threads = ROUTES.length * maxConcurrencyPerRoute;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("auth-proxy-"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("auth-proxy-timer-"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdown();
+    }
+
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(LoginRequest request) {
+        return call("login", false, () -> client.login(request));
+    }
+
+    public CompletableFuture<ResponseEntity<Void>> register(UserRegistrationRequest request) {
+        return call("register", false, () -> client.register(request));
+    }
+
+    public CompletableFuture<ResponseEntity<Void>> logout() {
+        return call("logout", true, client::logout);
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private <T> CompletableFuture<T> call(String route, boolean idempotent, Supplier<T> upstream) {
+        long start = System.nanoTime();
+        Semaphore permits = routePermits.get(route);
+        if (!permits.tryAcquire()) {
+            log.warn("Auth proxy route '{}' reached its concurrency limit", route);
+            record(route, "rejected", start);
+            return CompletableFuture.failedFuture(new AuthServiceUnavailableException("Too many concurrent auth requests"));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            permits.release();
+            record(route, "circuit_open", start);
+            return CompletableFuture.failedFuture(new AuthServiceUnavailableException("Auth service is unavailable"));
+        }
+
+        HedgedCall<T> call = new HedgedCall<>(permits, upstream, ForwardedForRequestInterceptor.currentForwardedFor());
+        call.launch();
+        ScheduledFuture<?> hedge = idempotent && hedgingEnabled
+                ? scheduler.schedule(() -> call.hedge(route), hedgeDelayMs, TimeUnit.MILLISECONDS)
+                : null;
+        ScheduledFuture<?> timeout = scheduler.schedule(call::timeout, timeoutMs, TimeUnit.MILLISECONDS);
+
+        return call.result.whenComplete((value, error) -> {
+            timeout.cancel(false);
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+            String outcome = error != null && unwrap(error) == call.timeoutError ? "timeout" : outcome(error);
+            if ("error".equals(outcome) || "timeout".equals(outcome)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            record(route, outcome, start);
+        });
+    }
+
+    private void record(String route, String outcome, long startNanos) {
+        Timer.builder("auth.proxy.requests")
+                .tag("route", route)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String outcome(Throwable error) {
+        if (error == null) {
+            return "success";
+        }
+        return isClientError(error) ? "client_error" : "error";
+    }
+
+    // 4xx answers (bad credentials, user exists) mean auth-service is healthy
+    private static boolean isClientError(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof FeignException fe) {
+            return fe.status() >= 400 && fe.status() < 500;
+        }
+        return cause instanceof ResponseStatusException rse && rse.getStatusCode().is4xxClientError();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private final class HedgedCall<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Semaphore permits;
+        private final Supplier<T> upstream;
+        private final String forwardedFor;
+        // carries the caller's trace onto worker threads, so the Feign span joins the request trace
+        private final ContextSnapshot context = CONTEXT_SNAPSHOTS.captureAll();
+        private final AuthServiceUnavailableException timeoutError =
+                new AuthServiceUnavailableException("Auth service timed out");
+
+        HedgedCall(Semaphore permits, Supplier<T> upstream, String forwardedFor) {
+            this.permits = permits;
+            this.upstream = upstream;
+            this.forwardedFor = forwardedFor;
+        }
+
+        // the caller already holds a route permit for this attempt
+        void launch() {
+            pending.incrementAndGet();
+            CompletableFuture.supplyAsync(() -> {
+                        try (ContextSnapshot.Scope scope = context.setThreadLocals()) {
+                            return ForwardedForRequestInterceptor.withForwardedFor(forwardedFor, upstream);
+                        }
+                    }, executor)
+                    .whenComplete((value, error) -> {
+                        permits.release();
+                        if (error == null) {
+                            result.complete(value);
+                        } else if (isClientError(error) || pending.decrementAndGet() == 0) {
+                            result.completeExceptionally(unwrap(error));
+                        }
+                    });
+        }
+
+        void hedge(String route) {
+            if (result.isDone() || !permits.tryAcquire()) {
+                return;
+            }
+            log.debug("Hedging slow auth-service call on route '{}'", route);
+            hedgeCounters.get(route).increment();
+            launch();
+        }
+
+        void timeout() {
+            result.completeExceptionally(timeoutError);
+        }
+    }
+}
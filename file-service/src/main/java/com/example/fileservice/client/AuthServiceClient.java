@@ -1,5 +1,6 @@
 package com.example.fileservice.client;
 
+import com.example.securitylib.client.AuthOperations;
 import com.example.securitylib.dto.LoginRequest;
 import com.example.securitylib.dto.LoginResponse;
 import com.example.securitylib.dto.UserRegistrationRequest;
@@ -9,14 +10,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
 @FeignClient(name = "auth-service", url = "${auth-service.url:http://localhost:8081}")
-public interface AuthServiceClient {
+public interface AuthServiceClient extends AuthOperations {
 
+    @Override
     @PostMapping("/cloud/login")
     ResponseEntity<LoginResponse> login(@RequestBody LoginRequest request);
 
+    @Override
     @PostMapping("/cloud/register")
     ResponseEntity<Void> register(@RequestBody UserRegistrationRequest request);
 
+    @Override
     @PostMapping("/cloud/logout")
     ResponseEntity<Void> logout();
-}
\ No newline at end of file
+}
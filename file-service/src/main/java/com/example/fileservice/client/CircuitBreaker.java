@@ -0,0 +1,119 @@
+package com.example.fileservice.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker: opens when the failure rate over the last {@code windowSize}
+ * calls reaches the threshold, then lets a single trial call through after {@code openDurationNanos}.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final boolean[] window;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int calls;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int windowSize, double failureRateThreshold, long openDurationNanos) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDurationNanos;
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    yield false;
+                }
+                transitionTo(State.HALF_OPEN);
+                trialInFlight = true;
+                yield true;
+            }
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            transitionTo(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && calls == window.length && failures >= failureRateThreshold * calls) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (calls == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[position] = failed;
+        if (failed) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void open() {
+        reset();
+        openedAt = System.nanoTime();
+        transitionTo(State.OPEN);
+    }
+
+    private void reset() {
+        position = 0;
+        calls = 0;
+        failures = 0;
+        trialInFlight = false;
+        Arrays.fill(window, false);
+    }
+
+    private void transitionTo(State next) {
+        if (state != next) {
+            log.warn("Circuit breaker '{}' changed state {} -> {}", name, state, next);
+            state = next;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.fileservice.client;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.function.Supplier;
+
+// Lets auth-service apply its per-IP login limit to the real client instead of this proxy
+@Component
+public class ForwardedForRequestInterceptor implements RequestInterceptor {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+    private static final ThreadLocal<String> FORWARDED = new ThreadLocal<>();
+
+    /**
+     * Resolves the header value on the servlet thread; proxied calls run on worker threads
+     * that must not touch the request object.
+     */
+    public static String currentForwardedFor() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        String forwarded = request.getHeader(FORWARDED_FOR);
+        return forwarded != null
+                ? forwarded + ", " + request.getRemoteAddr()
+                : request.getRemoteAddr();
+    }
+
+    public static <T> T withForwardedFor(String forwardedFor, Supplier<T> call) {
+        FORWARDED.set(forwardedFor);
+        try {
+            return call.get();
+        } finally {
+            FORWARDED.remove();
+        }
+    }
+
+    @Override
+    public void apply(RequestTemplate template) {
+        String forwarded = FORWARDED.get();
+        if (forwarded == null) {
+            forwarded = currentForwardedFor();
+        }
+        if (forwarded != null) {
+            template.header(FORWARDED_FOR, forwarded);
+        }
+    }
+}
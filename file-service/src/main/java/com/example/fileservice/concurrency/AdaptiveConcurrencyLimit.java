@@ -0,0 +1,104 @@
+package com.example.fileservice.concurrency;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gradient concurrency limit: compares the latest latency with a slowly moving long-term average.
+ * While they match the limit grows by about its square root per sample; when latency rises (requests
+ * queue up somewhere behind us) the limit shrinks in proportion, down to half per sample. Requests
+ * over the limit are rejected instead of waiting, so queueing stays bounded and the requests that
+ * are admitted keep their normal latency.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimit {
+
+    // long-term average over roughly this many samples
+    private static final int LONG_WINDOW = 600;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit,
+                                    double tolerance, double smoothing) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a slot if fewer than {@link #getLimit()} requests are in flight.
+     *
+     * @return the in-flight count including this request, or {@code -1} if the request must be rejected
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot and feeds the sample into the limit.
+     *
+     * @param rttNanos         latency of the request
+     * @param inFlightAtStart  value returned by {@link #tryAcquire()}
+     * @param dropped          the request failed in a way that signals overload (timeout, 503)
+     */
+    public void release(long rttNanos, int inFlightAtStart, boolean dropped) {
+        inFlight.decrementAndGet();
+        onSample(rttNanos, inFlightAtStart, dropped);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        double current = limit;
+        double next;
+        if (dropped) {
+            next = current * DROP_BACKOFF;
+        } else {
+            double shortRtt = Math.max(1, rttNanos);
+            longRttNanos = longRttNanos == 0 ? shortRtt : longRttNanos + (shortRtt - longRttNanos) / LONG_WINDOW;
+            // after a long overload the average is inflated; let it come back down quickly
+            if (longRttNanos / shortRtt > 2) {
+                longRttNanos *= 0.95;
+            }
+            // with little traffic latency says nothing about the limit
+            if (inFlightAtStart < current / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+            double target = current * gradient + Math.sqrt(current);
+            next = current * (1 - smoothing) + target * smoothing;
+        }
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+        if ((int) next != (int) current) {
+            log.debug("Concurrency limit '{}' {} -> {}", name, (int) current, (int) next);
+        }
+        limit = next;
+    }
+}
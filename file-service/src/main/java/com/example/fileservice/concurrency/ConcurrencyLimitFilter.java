@@ -0,0 +1,216 @@
+package com.example.fileservice.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sheds load in front of the controllers: each {@link EndpointClass} has an
+ * {@link AdaptiveConcurrencyLimit}, and requests over it get an immediate 503 with {@code Retry-After}
+ * instead of queueing for Tomcat threads and Mongo connections. Runs before security, so a rejected
+ * request costs no token verification either.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    // transfer latency grows with the payload, samples are normalised to this many bytes
+    private static final long TRANSFER_COST_UNIT = 256 * 1024;
+
+    private final boolean enabled;
+    private final long retryAfterSeconds;
+    private final Map<EndpointClass, AdaptiveConcurrencyLimit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${concurrency-limit.enabled:true}") boolean enabled,
+                                  @Value("${concurrency-limit.initial-limit:20}") int initialLimit,
+                                  @Value("${concurrency-limit.min-limit:4}") int minLimit,
+                                  @Value("${concurrency-limit.max-limit:400}") int maxLimit,
+                                  @Value("${concurrency-limit.tolerance:1.5}") double tolerance,
+                                  @Value("${concurrency-limit.smoothing:0.2}") double smoothing,
+                                  @Value("${concurrency-limit.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+        for (EndpointClass endpoint : EndpointClass.values()) {
+            String tag = endpoint.name().toLowerCase(Locale.ROOT);
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(tag, initialLimit, minLimit, maxLimit,
+                    tolerance, smoothing);
+            limits.put(endpoint, limit);
+            Gauge.builder("http.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests currently admitted")
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+            rejections.put(endpoint, Counter.builder("http.concurrency.rejected")
+                    .description("Requests rejected by the concurrency limit")
+                    .tag("endpoint", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    public AdaptiveConcurrencyLimit limit(EndpointClass endpoint) {
+        return limits.get(endpoint);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || EndpointClass.of(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpoint = EndpointClass.of(request);
+        AdaptiveConcurrencyLimit limit = limits.get(endpoint);
+        int inFlight = limit.tryAcquire();
+        if (inFlight < 0) {
+            rejections.get(endpoint).increment();
+            log.debug("Rejected {} {}: {} limit {} reached", request.getMethod(), request.getRequestURI(),
+                    endpoint, limit.getLimit());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType("application/json");
+            response.getWriter().write("{\"code\":\"OVERLOADED\",\"message\":\"Server is busy, retry later\"}");
+            return;
+        }
+
+        LengthCapturingResponse captured = new LengthCapturingResponse(response);
+        Permit permit = new Permit(endpoint, limit, request, captured, inFlight);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, captured);
+            failed = false;
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        permit.release(false, false);
+                    }
+
+                    // the container still completes the request afterwards, the permit ignores that second release
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        permit.release(true, true);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        permit.release(true, true);
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                permit.release(failed, false);
+            }
+        }
+    }
+
+    // an admitted request; released exactly once, whichever of completion, timeout or error comes first
+    private static final class Permit {
+        private final EndpointClass endpoint;
+        private final AdaptiveConcurrencyLimit limit;
+        private final HttpServletRequest request;
+        private final LengthCapturingResponse response;
+        private final int inFlight;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(EndpointClass endpoint, AdaptiveConcurrencyLimit limit, HttpServletRequest request,
+               LengthCapturingResponse response, int inFlight) {
+            this.endpoint = endpoint;
+            this.limit = limit;
+            this.request = request;
+            this.response = response;
+            this.inFlight = inFlight;
+        }
+
+        void release(boolean failed, boolean dropped) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            long rtt = System.nanoTime() - startNanos;
+            if (endpoint == EndpointClass.TRANSFER) {
+                long bytes = Math.max(request.getContentLengthLong(), response.contentLength);
+                rtt = rtt / Math.max(1, bytes / TRANSFER_COST_UNIT);
+            }
+            int status = response.getStatus();
+            // timeouts and 503s from downstream mean the limit is already too high
+            boolean overloaded = status == HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                    || status == HttpServletResponse.SC_GATEWAY_TIMEOUT;
+            limit.release(rtt, inFlight, dropped || (!failed && overloaded));
+        }
+    }
+
+    private static final class LengthCapturingResponse extends HttpServletResponseWrapper {
+        private long contentLength;
+
+        LengthCapturingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            contentLength = len;
+            super.setContentLength(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            contentLength = len;
+            super.setContentLengthLong(len);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+                contentLength = parse(value);
+            }
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+                contentLength = parse(value);
+            }
+            super.addHeader(name, value);
+        }
+
+        private static long parse(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.fileservice.concurrency;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Groups of endpoints with similar cost, each with its own concurrency limit so that slow transfers
+ * cannot starve cheap metadata calls or logins.
+ */
+public enum EndpointClass {
+    /** File upload and download: bounded by bandwidth and Mongo document size. */
+    TRANSFER,
+    /** Listing, change feed, rename and delete: small Mongo queries. */
+    METADATA,
+    /** Login, register and logout, proxied to auth-service. */
+    AUTH;
+
+    /** Returns the class of the request, or {@code null} for endpoints that are not limited (actuator). */
+    public static EndpointClass of(HttpServletRequest request) {
+        String path = request.getServletPath();
+        String method = request.getMethod();
+        return switch (path) {
+            case "/cloud/file" -> "GET".equals(method) || "POST".equals(method) ? TRANSFER : METADATA;
+            case "/cloud/list" -> METADATA;
+            // a long poll is idle by design, its duration says nothing about load
+            case "/cloud/changes" -> request.getParameter("wait") == null ? METADATA : null;
+            case "/cloud/login", "/cloud/register", "/cloud/logout" -> AUTH;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.fileservice.controller;
+
+import com.example.fileservice.dto.ChangesResponse;
+import com.example.fileservice.service.ChangeFeedService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequiredArgsConstructor
+@Validated
+@RequestMapping("/cloud")
+@Slf4j
+public class ChangeFeedController {
+
+    private final ChangeFeedService changeFeedService;
+
+    @Value("${change-feed.max-wait-seconds:30}")
+    private long maxWaitSeconds;
+
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<ChangesResponse>> getChanges(
+            @RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
+            @RequestParam(name = "since", defaultValue = "0") @Min(value = 0, message = "since must be >= 0") long since,
+            @RequestParam(name = "limit", defaultValue = "500") @Min(value = 1, message = "limit must be >= 1")
+            @Max(value = 1000, message = "limit must be <= 1000") int limit,
+            @RequestParam(name = "wait", defaultValue = "0") @Min(value = 0, message = "wait must be >= 0") long waitSeconds) {
+        log.debug("Changes request: since={}, limit={}, wait={}s", since, limit, waitSeconds);
+        return changeFeedService.changesSince(token, since, limit, Math.min(waitSeconds, maxWaitSeconds))
+                .thenApply(ResponseEntity::ok);
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.fileservice.controller;
 
-import com.example.fileservice.client.AuthServiceClient;
+import com.example.fileservice.bandwidth.BandwidthThrottle;
+import com.example.fileservice.bulkhead.TransferLane;
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
+import com.example.fileservice.client.AuthProxy;
 import com.example.fileservice.dto.FileDownloadResponse;
 import com.example.fileservice.dto.FileListResponse;
 import com.example.fileservice.dto.request.RenameFileRequest;
@@ -8,21 +11,32 @@ import com.example.fileservice.service.FileService;
 import com.example.securitylib.dto.LoginRequest;
 import com.example.securitylib.dto.LoginResponse;
 import com.example.securitylib.dto.UserRegistrationRequest;
+import com.example.securitylib.ratelimit.LoginRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
@@ -32,57 +46,76 @@ import java.util.Map;
 public class FileController {
 
     private final FileService fileService;
-    private final AuthServiceClient authServiceClient;
+    private final AuthProxy authProxy;
+    private final LoginRateLimiter loginRateLimiter;
+    private final TransferLane transferLane;
+    private final BandwidthThrottle bandwidthThrottle;
 
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest request) {
-        log.info("Proxying login request for user '{}'", request.getLogin());
-        return authServiceClient.login(request);
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@Valid @RequestBody LoginRequest request,
+                                                                 HttpServletRequest httpRequest) {
+        log.debug("Proxying login request for user '{}'", request.getLogin());
+        loginRateLimiter.acquire(request.getLogin(), httpRequest.getRemoteAddr());
+        return authProxy.login(request);
     }
 
     @PostMapping("/register")
-    public ResponseEntity<Void> register(@Valid @RequestBody UserRegistrationRequest request) {
-        log.info("Proxying registration request for user '{}'", request.getLogin());
-        return authServiceClient.register(request);
+    public CompletableFuture<ResponseEntity<Void>> register(@Valid @RequestBody UserRegistrationRequest request) {
+        log.debug("Proxying registration request for user '{}'", request.getLogin());
+        return authProxy.register(request);
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<Void> logout() {
-        log.info("Proxying logout request");
-        return authServiceClient.logout();
+    public CompletableFuture<ResponseEntity<Void>> logout() {
+        log.debug("Proxying logout request");
+        return authProxy.logout();
     }
 
     @PostMapping(path = "/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> uploadFile(@RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
-                                        @RequestParam("filename") @NotBlank(message = "filename is required") String filename,
-                                        @RequestPart("file") MultipartFile file) throws IOException {
-        log.info("Upload request: filename='{}', size={} bytes", filename, file.getSize());
-        fileService.uploadFile(token, filename, file);
-        log.info("File '{}' uploaded successfully", filename);
-        return ResponseEntity.ok(Map.of("message", "File uploaded successfully"));
+    public CompletableFuture<ResponseEntity<?>> uploadFile(@RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
+                                                           @RequestParam("filename") @NotBlank(message = "filename is required") String filename,
+                                                           @RequestPart("file") MultipartFile file) {
+        log.debug("Upload request: filename='{}', size={} bytes", filename, file.getSize());
+        // not paced: the container has buffered the multipart body by now, sleeping would only hold a lane slot
+        return transferLane.submit(() -> {
+            fileService.uploadFile(token, filename, file);
+            log.debug("File '{}' uploaded successfully", filename);
+            return ResponseEntity.ok(Map.of("message", "File uploaded successfully"));
+        });
     }
 
     @DeleteMapping("/file")
     public ResponseEntity<?> deleteFile(
             @RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
             @RequestParam("filename") @NotBlank(message = "filename is required") String filename) {
-        log.info("Delete request: filename='{}'", filename);
+        log.debug("Delete request: filename='{}'", filename);
         fileService.deleteFile(token, filename);
-        log.info("File '{}' deleted successfully", filename);
+        log.debug("File '{}' deleted successfully", filename);
         return ResponseEntity.ok(Map.of("message", "File deleted successfully"));
     }
 
     @GetMapping("/file")
-    public ResponseEntity<?> downloadFile(@RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
-                                          @RequestParam("filename") @NotBlank(message = "filename is required") String filename) {
-        log.info("Download request: filename='{}'", filename);
-        FileDownloadResponse resp = fileService.downloadFile(token, filename);
-        log.info("File '{}' successfully downloaded", filename);
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(resp.getContentType()))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resp.getFileName() + "\"")
-                .contentLength(resp.getSize())
-                .body(resp.getResource());
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadFile(@RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
+                                                                              @RequestParam("filename") @NotBlank(message = "filename is required") String filename) {
+        log.debug("Download request: filename='{}'", filename);
+        Authentication caller = SecurityContextHolder.getContext().getAuthentication();
+        return transferLane.submit(() -> {
+            FileDownloadResponse resp = fileService.downloadFile(token, filename);
+            log.debug("File '{}' successfully downloaded", filename);
+            // the body is written and paced on the streaming lane, slow clients hold neither Tomcat threads nor transfer slots
+            StreamingResponseBody body = out -> {
+                try (TransferMemoryBudget.Reservation reservation = resp.getReservation();
+                     BandwidthThrottle.Transfer transfer = bandwidthThrottle.open(caller);
+                     InputStream in = resp.getResource().getInputStream()) {
+                    in.transferTo(transfer.throttle(out));
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(resp.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resp.getFileName() + "\"")
+                    .contentLength(resp.getSize())
+                    .body(body);
+        });
     }
 
     @PutMapping("/file")
@@ -90,19 +123,38 @@ public class FileController {
                                         @RequestParam("filename") @NotBlank(message = "filename is required") String oldName,
                                         @RequestBody @Valid RenameFileRequest request) {
         String newName = request.getFilename();
-        log.info("Rename request: filename='{}' to '{}'", oldName, newName);
+        log.debug("Rename request: filename='{}' to '{}'", oldName, newName);
         fileService.renameFile(token, oldName, newName);
-        log.info("File '{}' renamed to '{}'", oldName, newName);
+        log.debug("File '{}' renamed to '{}'", oldName, newName);
         return ResponseEntity.ok(Map.of("message", "File renamed successfully"));
 
     }
 
     @GetMapping("/list")
     public ResponseEntity<?> getFileList(@RequestHeader("auth-token") @NotBlank(message = "auth-token is required") String token,
-                                         @RequestParam("limit") @Min(value = 1, message = "limit must be >= 1") int limit) {
-        log.info("List request: limit={}", limit);
-        List<FileListResponse> list = fileService.getAllFiles(token, limit);
-        log.info("Returning {} files", list.size());
-        return ResponseEntity.ok(list);
+                                         @RequestParam("limit") @Min(value = 1, message = "limit must be >= 1") int limit,
+                                         ServletWebRequest webRequest) {
+        log.debug("List request: limit={}", limit);
+        // read before listing, which reflects at least this version: a change in between only makes
+        // the tag older than the body, never newer
+        FileService.NamespaceVersion version = fileService.namespaceVersion(token);
+        // sequences are small per-user counters, the owner part keeps two accounts in one browser apart
+        String etag = "W/\"" + ownerTag(version.ownerName()) + "-" + version.sequence() + "-" + limit + "\"";
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.VARY, "auth-token");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        }
+        if (webRequest.checkNotModified(etag)) {
+            log.debug("File list unchanged ({})", etag);
+            return null;
+        }
+        List<FileListResponse> list = fileService.getAllFiles(token, limit, version.sequence());
+        log.debug("Returning {} files", list.size());
+        return ResponseEntity.ok().eTag(etag).body(list);
+    }
+
+    private static String ownerTag(String ownerName) {
+        return DigestUtils.md5DigestAsHex(ownerName.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.fileservice.controller;
+
+import com.example.fileservice.dto.ShardMoveResponse;
+import com.example.fileservice.shard.ShardRebalancer;
+import jakarta.validation.constraints.NotBlank;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@Validated
+@RequestMapping("/cloud/admin/shards")
+@Slf4j
+public class ShardAdminController {
+
+    private final ShardRebalancer rebalancer;
+
+    // blocks for the copy plus a few seconds of fencing
+    @PostMapping("/move")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<ShardMoveResponse> moveOwner(
+            @RequestParam("owner") @NotBlank(message = "owner is required") String owner,
+            @RequestParam("target") @NotBlank(message = "target is required") String target) {
+        log.info("Shard move request: user '{}' to {}", owner, target);
+        return ResponseEntity.ok(rebalancer.move(owner, target));
+    }
+}
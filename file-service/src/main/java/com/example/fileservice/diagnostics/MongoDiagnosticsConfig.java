@@ -0,0 +1,14 @@
+package com.example.fileservice.diagnostics;
+
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoDiagnosticsConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer slowQueryListenerCustomizer(MongoSlowQueryListener listener) {
+        return builder -> builder.addCommandListener(listener);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.fileservice.diagnostics;
+
+import com.example.fileservice.shard.StorageShards;
+import com.example.securitylib.diagnostics.SlowQueryDetector;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every query the Mongo driver sends, grouped by query shape, and explains the slow ones
+ * to flag collection scans and in-memory sorts. The listener is shared by the clients of all storage
+ * shards, so the explain goes through the client of the shard whose server ran the query.
+ */
+@Component
+public class MongoSlowQueryListener implements CommandListener {
+
+    private static final Set<String> QUERY_COMMANDS = Set.of("find", "aggregate", "count", "distinct",
+            "delete", "update", "findAndModify");
+
+    private final ObjectProvider<StorageShards> storageShards;
+    private final SlowQueryDetector detector;
+    private final boolean enabled;
+    private final Map<Integer, PendingQuery> pending = new ConcurrentHashMap<>();
+
+    private record PendingQuery(String operation, String shape, ServerAddress server, String database,
+                                BsonDocument command) {
+    }
+
+    public MongoSlowQueryListener(ObjectProvider<StorageShards> storageShards,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${slow-query.enabled:true}") boolean enabled,
+                                  @Value("${slow-query.threshold-ms:100}") long thresholdMs,
+                                  @Value("${slow-query.max-shapes:200}") int maxShapes,
+                                  @Value("${slow-query.explain-interval-seconds:300}") long explainIntervalSeconds) {
+        this.storageShards = storageShards;
+        this.enabled = enabled;
+        this.detector = new SlowQueryDetector(meterRegistry, "mongo.query", thresholdMs, maxShapes, explainIntervalSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        detector.shutdown();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!enabled || !QUERY_COMMANDS.contains(event.getCommandName())) {
+            return;
+        }
+        // the event document is only valid during this callback
+        BsonDocument command = event.getCommand();
+        String collection = command.get(event.getCommandName()).isString()
+                ? command.getString(event.getCommandName()).getValue() : "?";
+        String shape = event.getCommandName() + " " + collection + " " + shapeOf(event.getCommandName(), command);
+        ConnectionDescription connection = event.getConnectionDescription();
+        pending.put(event.getRequestId(), new PendingQuery(event.getCommandName(), shape,
+                connection != null ? connection.getServerAddress() : null, event.getDatabaseName(),
+                explainable(event.getCommandName(), collection, command)));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        complete(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        complete(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void complete(int requestId, long elapsedNanos) {
+        PendingQuery query = pending.remove(requestId);
+        if (query == null) {
+            return;
+        }
+        detector.record(query.operation(), query.shape(), elapsedNanos, () -> explain(query));
+    }
+
+    private void explain(PendingQuery query) {
+        StorageShards shards = storageShards.getIfAvailable();
+        if (shards == null) {
+            return;
+        }
+        BsonDocument explain = new BsonDocument("explain", query.command())
+                .append("verbosity", new BsonString("queryPlanner"));
+        BsonDocument result = shards.servedBy(query.server()).client()
+                .getDatabase(query.database()).runCommand(explain, BsonDocument.class);
+        boolean[] problems = new boolean[2];
+        scanPlan(result, problems);
+        detector.reportPlan(query.shape(), problems[0], problems[1], result.toJson());
+    }
+
+    // walks the winning plan tree (classic and SBE layouts) looking for COLLSCAN and SORT stages
+    private static void scanPlan(BsonValue value, boolean[] problems) {
+        if (value.isDocument()) {
+            for (Map.Entry<String, BsonValue> entry : value.asDocument().entrySet()) {
+                if ("rejectedPlans".equals(entry.getKey())) {
+                    continue;
+                }
+                if ("stage".equals(entry.getKey()) && entry.getValue().isString()) {
+                    String stage = entry.getValue().asString().getValue();
+                    problems[0] |= "COLLSCAN".equals(stage);
+                    problems[1] |= "SORT".equals(stage);
+                }
+                scanPlan(entry.getValue(), problems);
+            }
+        } else if (value.isArray()) {
+            for (BsonValue item : value.asArray()) {
+                scanPlan(item, problems);
+            }
+        }
+    }
+
+    private static String shapeOf(String commandName, BsonDocument command) {
+        return switch (commandName) {
+            case "find" -> shape(command.get("filter")) + sortShape(command);
+            case "aggregate" -> shape(command.get("pipeline"));
+            case "count", "findAndModify" -> shape(command.get("query")) + sortShape(command);
+            case "distinct" -> command.getString("key", new BsonString("?")).getValue() + " " + shape(command.get("query"));
+            case "delete" -> shape(first(command, "deletes").get("q"));
+            case "update" -> shape(first(command, "updates").get("q"));
+            default -> "";
+        };
+    }
+
+    private static String sortShape(BsonDocument command) {
+        BsonValue sort = command.get("sort");
+        return sort != null && sort.isDocument() && !sort.asDocument().isEmpty() ? " sort " + sort.asDocument().toJson() : "";
+    }
+
+    private static BsonDocument first(BsonDocument command, String field) {
+        BsonValue value = command.get(field);
+        return value != null && value.isArray() && !value.asArray().isEmpty() && value.asArray().get(0).isDocument()
+                ? value.asArray().get(0).asDocument() : new BsonDocument();
+    }
+
+    // keeps field names and operators, replaces every literal with '?'
+    private static String shape(BsonValue value) {
+        if (value == null) {
+            return "{}";
+        }
+        if (value.isDocument()) {
+            StringBuilder out = new StringBuilder("{");
+            for (Map.Entry<String, BsonValue> entry : value.asDocument().entrySet()) {
+                if (out.length() > 1) {
+                    out.append(", ");
+                }
+                out.append(entry.getKey()).append(": ").append(shape(entry.getValue()));
+            }
+            return out.append('}').toString();
+        }
+        if (value.isArray()) {
+            BsonArray array = value.asArray();
+            boolean documents = !array.isEmpty() && array.get(0).isDocument();
+            if (!documents) {
+                return "[?]";
+            }
+            StringBuilder out = new StringBuilder("[");
+            for (BsonValue item : array) {
+                if (out.length() > 1) {
+                    out.append(", ");
+                }
+                out.append(shape(item));
+            }
+            return out.append(']').toString();
+        }
+        return "?";
+    }
+
+    // explain must be sent as a new command, so the session and cluster fields the driver added are
+    // dropped; writes are explained as the equivalent find, without copying the (possibly large) update
+    private static BsonDocument explainable(String commandName, String collection, BsonDocument command) {
+        switch (commandName) {
+            case "delete", "update" -> {
+                BsonValue filter = first(command, commandName.equals("delete") ? "deletes" : "updates").get("q");
+                return new BsonDocument("find", new BsonString(collection))
+                        .append("filter", filter != null ? copy(filter) : new BsonDocument());
+            }
+            case "findAndModify" -> {
+                BsonDocument find = new BsonDocument("find", new BsonString(collection))
+                        .append("filter", command.containsKey("query") ? copy(command.get("query")) : new BsonDocument());
+                if (command.containsKey("sort")) {
+                    find.append("sort", copy(command.get("sort")));
+                }
+                return find;
+            }
+            default -> {
+                BsonDocument copy = new BsonDocument();
+                for (Map.Entry<String, BsonValue> entry : command.entrySet()) {
+                    String key = entry.getKey();
+                    if (key.startsWith("$") || key.equals("lsid") || key.equals("txnNumber")
+                            || key.equals("readConcern") || key.equals("writeConcern")) {
+                        continue;
+                    }
+                    copy.append(key, copy(entry.getValue()));
+                }
+                return copy;
+            }
+        }
+    }
+
+    // the event's command is only valid during the callback, documents and arrays are copied deeply
+    private static BsonValue copy(BsonValue value) {
+        if (value.isDocument()) {
+            return value.asDocument().clone();
+        }
+        if (value.isArray()) {
+            return value.asArray().clone();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.fileservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ChangesResponse {
+    private List<FileChangeResponse> changes;
+    // pass back as "since" on the next call
+    private long cursor;
+    private boolean hasMore;
+}
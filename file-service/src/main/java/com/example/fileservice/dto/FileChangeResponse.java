@@ -0,0 +1,19 @@
+package com.example.fileservice.dto;
+
+import com.example.fileservice.model.FileChange;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class FileChangeResponse {
+    private long sequence;
+    private FileChange.Type type;
+    private String filename;
+    private String previousFilename;
+    private Long size;
+    private String contentType;
+    private LocalDateTime changedAt;
+}
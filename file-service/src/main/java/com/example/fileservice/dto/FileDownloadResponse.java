@@ -1,6 +1,7 @@
 package com.example.fileservice.dto;
 
 
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.core.io.Resource;
@@ -12,4 +13,6 @@ public class FileDownloadResponse {
     private String contentType;
     private String fileName;
     private Long size;
+    // the content's share of the transfer memory budget, closed once the body has been written
+    private TransferMemoryBudget.Reservation reservation;
 }
@@ -0,0 +1,16 @@
+package com.example.fileservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ShardMoveResponse {
+    private String owner;
+    private String from;
+    private String to;
+    // false when the owner already was on the target
+    private boolean moved;
+    private long documents;
+    private long durationMs;
+}
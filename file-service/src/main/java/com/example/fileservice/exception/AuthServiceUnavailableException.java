@@ -0,0 +1,7 @@
+package com.example.fileservice.exception;
+
+public class AuthServiceUnavailableException extends RuntimeException {
+    public AuthServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,15 +1,22 @@
 package com.example.fileservice.exception;
 
 import com.example.fileservice.dto.ErrorResponse;
+import com.example.securitylib.ratelimit.RateLimitExceededException;
+import feign.FeignException;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.method.annotation.HandlerMethodValidationException;
+import org.springframework.web.server.ResponseStatusException;
 
-@ControllerAdvice
+import java.util.concurrent.RejectedExecutionException;
+
+@ControllerAdvice(basePackages = "com.example.fileservice")
 @Slf4j
 public class GlobalExceptionHandler {
 
@@ -34,6 +41,67 @@ public class GlobalExceptionHandler {
                 .body(ErrorResponse.builder().code("VALIDATION_ERROR").message(e.getMessage()).build());
     }
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleRateLimit(RateLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ErrorResponse.builder().code("TOO_MANY_REQUESTS").message(e.getMessage()).build());
+    }
+
+    @ExceptionHandler(AuthServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleAuthUnavailable(AuthServiceUnavailableException e) {
+        log.warn("Auth service unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ErrorResponse.builder().code("AUTH_UNAVAILABLE").message(e.getMessage()).build());
+    }
+
+    // the transfer lane and its queue are full
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ErrorResponse> handleTransferRejected(RejectedExecutionException e) {
+        log.warn("Transfer rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ErrorResponse.builder().code("TRANSFER_BUSY").message("Too many transfers in progress, retry later").build());
+    }
+
+    @ExceptionHandler(TransferMemoryExhaustedException.class)
+    public ResponseEntity<ErrorResponse> handleMemoryExhausted(TransferMemoryExhaustedException e) {
+        log.warn("Transfer memory exhausted: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ErrorResponse.builder().code("MEMORY_EXHAUSTED").message(e.getMessage()).build());
+    }
+
+    @ExceptionHandler(ShardMoveInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleShardMove(ShardMoveInProgressException e) {
+        log.warn("Write refused during shard move: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(ErrorResponse.builder().code("SHARD_MOVING").message(e.getMessage()).build());
+    }
+
+    // auth-service answers with the same {code, message} shape, pass its client errors through
+    @ExceptionHandler(FeignException.class)
+    public ResponseEntity<?> handleAuthServiceError(FeignException e) {
+        if (e.status() >= 400 && e.status() < 500) {
+            log.warn("Auth service rejected request: {}", e.status());
+            return ResponseEntity.status(e.status())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(e.contentUTF8());
+        }
+        log.error("Auth service error", e);
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .body(ErrorResponse.builder().code("AUTH_ERROR").message("Auth service error").build());
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ErrorResponse> handleResponseStatus(ResponseStatusException e) {
+        log.warn("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(e.getStatusCode())
+                .body(ErrorResponse.builder().code(String.valueOf(e.getStatusCode().value())).message(e.getReason()).build());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleOther(Exception e) {
         log.error("Unexpected error", e);
@@ -0,0 +1,7 @@
+package com.example.fileservice.exception;
+
+public class ShardMoveInProgressException extends RuntimeException {
+    public ShardMoveInProgressException(String message) {
+        super(message);
+    }
+}
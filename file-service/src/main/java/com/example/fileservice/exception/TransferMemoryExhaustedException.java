@@ -0,0 +1,7 @@
+package com.example.fileservice.exception;
+
+public class TransferMemoryExhaustedException extends RuntimeException {
+    public TransferMemoryExhaustedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.fileservice.index;
+
+import com.example.fileservice.service.ChangeFeedService;
+import com.example.fileservice.shard.StorageShards;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Follows the change feed collection of every storage shard with a Mongo change stream and drops the metadata index of every
+ * user another instance wrote for; this instance's own writes are already applied write-through. Change
+ * streams need a replica set: when the stream cannot start or fails, the index falls back to expiring
+ * its entries.
+ */
+@Component
+@Slf4j
+public class ChangeStreamInvalidator implements SmartLifecycle {
+
+    private static final String CHANGES_COLLECTION = "file_changes";
+
+    private final StorageShards shards;
+    private final FileMetadataIndex index;
+    private final ChangeFeedService changeFeedService;
+    private final boolean enabled;
+    private final List<MessageListenerContainer> containers = new ArrayList<>();
+    private volatile boolean running;
+
+    public ChangeStreamInvalidator(StorageShards shards,
+                                   FileMetadataIndex index,
+                                   ChangeFeedService changeFeedService,
+                                   @Value("${metadata-index.change-stream.enabled:true}") boolean enabled) {
+        this.shards = shards;
+        this.index = index;
+        this.changeFeedService = changeFeedService;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled || !index.isEnabled()) {
+            return;
+        }
+        boolean active = true;
+        for (StorageShards.Shard shard : shards.all()) {
+            MessageListenerContainer container = new DefaultMessageListenerContainer(shard.template());
+            containers.add(container);
+            container.start();
+            ChangeStreamRequest<Document> request = ChangeStreamRequest.builder(this::onChange)
+                    .collection(CHANGES_COLLECTION)
+                    .filter(newAggregation(match(where("operationType").is("insert"))))
+                    .build();
+            Subscription subscription = container.register(request, Document.class, this::onError);
+            try {
+                active &= subscription.await(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                active = false;
+            }
+        }
+        // a shard without a stream would leave its owners' entries stale forever
+        if (active) {
+            index.coherent(true);
+            log.info("Metadata index follows '{}' through a change stream", CHANGES_COLLECTION);
+        } else {
+            log.warn("No change stream on '{}', metadata index entries expire instead", CHANGES_COLLECTION);
+        }
+    }
+
+    private void onChange(Message<ChangeStreamDocument<Document>, Document> message) {
+        Document change = message.getBody();
+        if (change == null || changeFeedService.nodeId().equals(change.getString("nodeId"))) {
+            return;
+        }
+        index.invalidate(change.getString("ownerName"));
+    }
+
+    private void onError(Throwable error) {
+        log.warn("Change stream on '{}' failed, metadata index entries expire instead", CHANGES_COLLECTION, error);
+        index.coherent(false);
+    }
+
+    @Override
+    public void stop() {
+        containers.forEach(MessageListenerContainer::stop);
+        containers.clear();
+        index.coherent(false);
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.fileservice.index;
+
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.repository.FileRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of file metadata per user: entries sorted newest first plus a name map, loaded on
+ * first use and kept up to date by {@code FileService} after each write (write-through). Changes made
+ * by other file-service instances arrive through {@link ChangeStreamInvalidator}, which drops the
+ * user's index so it is reloaded. Without a change stream (standalone Mongo) entries only live for
+ * {@code metadata-index.max-staleness-ms}. Each index also knows the change feed sequence it reflects,
+ * so a listing that has to be at least as new as a namespace version reloads an index behind it.
+ * When disabled every call goes to Mongo.
+ */
+@Component
+@Slf4j
+public class FileMetadataIndex {
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparing(Entry::uploadDate, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Entry::fileName);
+
+    private record Entry(String id, String fileName, long size, LocalDateTime uploadDate, String contentType) {
+        static Entry of(FileDocument doc) {
+            return new Entry(doc.getId(), doc.getFileName(), doc.getSize(), doc.getUploadDate(), doc.getContentType());
+        }
+
+        Entry renamed(String newName) {
+            return new Entry(id, newName, size, uploadDate, contentType);
+        }
+
+        FileDocument toDocument(String ownerName) {
+            return FileDocument.builder()
+                    .id(id)
+                    .ownerName(ownerName)
+                    .fileName(fileName)
+                    .size(size)
+                    .uploadDate(uploadDate)
+                    .contentType(contentType)
+                    .build();
+        }
+    }
+
+    private static final class UserIndex {
+        private final NavigableSet<Entry> newestFirst = new TreeSet<>(NEWEST_FIRST);
+        private final Map<String, Entry> byName = new HashMap<>();
+        // every change up to this sequence of the user is in the index
+        private long version;
+
+        UserIndex(long version) {
+            this.version = version;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void recorded(long sequence) {
+            if (version == sequence - 1) {
+                version = sequence;
+            }
+        }
+
+        synchronized void put(Entry entry) {
+            Entry previous = byName.put(entry.fileName(), entry);
+            if (previous != null) {
+                newestFirst.remove(previous);
+            }
+            newestFirst.add(entry);
+        }
+
+        synchronized void remove(String fileName) {
+            Entry previous = byName.remove(fileName);
+            if (previous != null) {
+                newestFirst.remove(previous);
+            }
+        }
+
+        synchronized void rename(String oldName, String newName) {
+            Entry previous = byName.get(oldName);
+            if (previous != null) {
+                remove(oldName);
+                put(previous.renamed(newName));
+            }
+        }
+
+        synchronized boolean contains(String fileName) {
+            return byName.containsKey(fileName);
+        }
+
+        synchronized List<Entry> newest(int limit) {
+            List<Entry> result = new ArrayList<>(Math.min(limit, newestFirst.size()));
+            for (Entry entry : newestFirst) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(entry);
+            }
+            return result;
+        }
+    }
+
+    private final FileRepository fileRepository;
+    private final boolean enabled;
+    private final long maxStalenessNanos;
+    private final Cache<String, UserIndex> users;
+    // set while a change stream delivers other instances' writes
+    private volatile boolean coherent;
+
+    public FileMetadataIndex(FileRepository fileRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${metadata-index.enabled:true}") boolean enabled,
+                             @Value("${metadata-index.max-users:10000}") long maxUsers,
+                             @Value("${metadata-index.max-staleness-ms:5000}") long maxStalenessMs) {
+        this.fileRepository = fileRepository;
+        this.enabled = enabled;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfter(new Expiry<String, UserIndex>() {
+                    @Override
+                    public long expireAfterCreate(String owner, UserIndex index, long currentTime) {
+                        return coherent ? Long.MAX_VALUE : maxStalenessNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String owner, UserIndex index, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String owner, UserIndex index, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "file.metadata.index");
+        Gauge.builder("file.metadata.index.coherent", this, i -> i.coherent ? 1 : 0)
+                .description("1 while changes from other instances invalidate the index")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the user has a file of that name. A miss is answered from the index, a duplicate it lets
+     * through is rejected by the unique {@code owner_file} index. A hit is confirmed in Mongo so a stale
+     * entry does not refuse the write, and drops the user's index when it was stale.
+     */
+    public boolean exists(String ownerName, String fileName) {
+        if (!enabled) {
+            return fileRepository.findByOwnerNameAndFileName(ownerName, fileName).isPresent();
+        }
+        if (!index(ownerName).contains(fileName)) {
+            return false;
+        }
+        if (fileRepository.existsByOwnerNameAndFileName(ownerName, fileName)) {
+            return true;
+        }
+        invalidate(ownerName);
+        return false;
+    }
+
+    /**
+     * Metadata of the user's files without content, newest first when served from the index. The
+     * Mongo fallback returns every file in storage order.
+     */
+    public List<FileDocument> list(String ownerName, Integer limit) {
+        return list(ownerName, limit, 0L);
+    }
+
+    /**
+     * Like {@link #list(String, Integer)}, reflecting at least every change up to {@code version} of
+     * the change feed: an index behind it, missing another instance's write or loaded before the
+     * version was read, is reloaded first.
+     */
+    public List<FileDocument> list(String ownerName, Integer limit, long version) {
+        if (!enabled) {
+            return fileRepository.findByOwnerName(ownerName);
+        }
+        int max = limit != null && limit > 0 ? limit : Integer.MAX_VALUE;
+        return index(ownerName, version).newest(max).stream()
+                .map(entry -> entry.toDocument(ownerName))
+                .toList();
+    }
+
+    // the write-through updates wait for a load of the same user in progress, so a load that read
+    // Mongo before the write cannot overwrite them
+    public void added(FileDocument doc) {
+        update(doc.getOwnerName(), index -> index.put(Entry.of(doc)));
+    }
+
+    public void renamed(String ownerName, String oldName, String newName) {
+        update(ownerName, index -> index.rename(oldName, newName));
+    }
+
+    public void removed(String ownerName, String fileName) {
+        update(ownerName, index -> index.remove(fileName));
+    }
+
+    /**
+     * The user's change written through before took {@code sequence} in the feed; the index moves to it
+     * only if it already had everything before, otherwise the next versioned listing reloads it.
+     */
+    public void recorded(String ownerName, long sequence) {
+        update(ownerName, index -> index.recorded(sequence));
+    }
+
+    public void invalidate(String ownerName) {
+        users.invalidate(ownerName);
+        log.debug("Metadata index of user '{}' invalidated", ownerName);
+    }
+
+    void coherent(boolean coherent) {
+        this.coherent = coherent;
+        if (!coherent) {
+            // entries loaded while coherent never expire on their own
+            users.invalidateAll();
+        }
+    }
+
+    private void update(String ownerName, Consumer<UserIndex> change) {
+        if (!enabled) {
+            return;
+        }
+        users.asMap().computeIfPresent(ownerName, (key, index) -> {
+            change.accept(index);
+            return index;
+        });
+    }
+
+    private UserIndex index(String ownerName) {
+        return index(ownerName, 0L);
+    }
+
+    // reloading inside compute makes write-through updates wait for it, like the first load
+    private UserIndex index(String ownerName, long version) {
+        UserIndex index = users.get(ownerName, owner -> load(owner, version));
+        if (index.version() >= version) {
+            return index;
+        }
+        log.debug("Metadata index of user '{}' is behind version {}", ownerName, version);
+        return users.asMap().compute(ownerName, (owner, current) ->
+                current != null && current.version() >= version ? current : load(owner, version));
+    }
+
+    // the caller read the version before, so the documents read now reflect at least that much
+    private UserIndex load(String ownerName, long version) {
+        UserIndex index = new UserIndex(version);
+        for (FileDocument doc : fileRepository.findMetadataByOwnerName(ownerName)) {
+            index.put(Entry.of(doc));
+        }
+        log.debug("Metadata index of user '{}' loaded", ownerName);
+        return index;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.fileservice.logging;
+
+import com.example.securitylib.MyJwtFilter;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes one structured record per request to the {@code ACCESS} logger, which logback-spring.xml
+ * routes through a bounded async appender. Errors and slow requests are always logged,
+ * successful ones are sampled; async timeouts and errors are logged at ERROR.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String CORRELATION_ID = "correlationId";
+
+    private static final Logger ACCESS = LoggerFactory.getLogger("ACCESS");
+
+    @Value("${access-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${access-log.success-sample-rate:0.1}")
+    private double successSampleRate;
+
+    @Value("${access-log.slow-threshold-ms:1000}")
+    private long slowThresholdMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String correlationId = request.getHeader(REQUEST_ID_HEADER);
+        if (!StringUtils.hasText(correlationId) || correlationId.length() > 64) {
+            correlationId = UUID.randomUUID().toString();
+        }
+        response.setHeader(REQUEST_ID_HEADER, correlationId);
+        MDC.put(CORRELATION_ID, correlationId);
+
+        long start = System.nanoTime();
+        CountingResponse counting = new CountingResponse(response);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, counting);
+            failed = false;
+        } finally {
+            MDC.remove(CORRELATION_ID);
+            if (request.isAsyncStarted()) {
+                String id = correlationId;
+                // the container completes a timed-out or failed request afterwards, only the first event is logged
+                AtomicBoolean logged = new AtomicBoolean();
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        if (logged.compareAndSet(false, true)) {
+                            log(request, counting, id, start, counting.getStatus(), null);
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        if (logged.compareAndSet(false, true)) {
+                            log(request, counting, id, start, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "timeout");
+                        }
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        if (logged.compareAndSet(false, true)) {
+                            Throwable error = event.getThrowable();
+                            log(request, counting, id, start, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                    error != null ? error.getClass().getSimpleName() : "error");
+                        }
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                // an exception escaping the chain becomes a 500 further up, the response does not know yet
+                log(request, counting, correlationId, start,
+                        failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : counting.getStatus(), null);
+            }
+        }
+    }
+
+    private void log(HttpServletRequest request, CountingResponse response, String correlationId,
+                     long startNanos, int status, String error) {
+        if (!enabled) {
+            return;
+        }
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        boolean alwaysLog = status >= 400 || latencyMs >= slowThresholdMs;
+        if (!alwaysLog && ThreadLocalRandom.current().nextDouble() >= successSampleRate) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Object user = request.getAttribute(MyJwtFilter.USER_ATTRIBUTE);
+        LoggingEventBuilder record = error != null ? ACCESS.atError().addKeyValue("error", error) : ACCESS.atInfo();
+        record.addKeyValue(CORRELATION_ID, correlationId)
+                .addKeyValue("operation", request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()))
+                .addKeyValue("user", user != null ? user : "-")
+                .addKeyValue("status", status)
+                .addKeyValue("bytesIn", Math.max(0L, request.getContentLengthLong()))
+                .addKeyValue("bytesOut", response.bytesWritten())
+                .addKeyValue("latencyMs", latencyMs)
+                .addKeyValue("sampled", !alwaysLog)
+                .log("access");
+    }
+
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private long bytes;
+        private ServletOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        // error bodies written through getWriter() are small and not counted
+        long bytesWritten() {
+            return bytes;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytes += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+                };
+            }
+            return outputStream;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.fileservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Metrics of the file operations: a timer per operation and outcome, bytes moved in each
+ * direction and the size distribution of uploaded files. Every operation is also emitted
+ * as a {@link FileOperationEvent} for Flight Recorder.
+ */
+@Component
+public class FileMetrics {
+
+    public static final String UPLOAD = "upload";
+    public static final String DOWNLOAD = "download";
+    public static final String LIST = "list";
+    public static final String RENAME = "rename";
+    public static final String DELETE = "delete";
+
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+        T run(FileOperationEvent event) throws E;
+    }
+
+    private final MeterRegistry registry;
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final DistributionSummary fileSize;
+
+    public FileMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.bytesIn = Counter.builder("file.bytes.in")
+                .description("Bytes received in uploads")
+                .baseUnit("bytes")
+                .register(registry);
+        this.bytesOut = Counter.builder("file.bytes.out")
+                .description("Bytes sent in downloads")
+                .baseUnit("bytes")
+                .register(registry);
+        this.fileSize = DistributionSummary.builder("file.size")
+                .description("Size of uploaded files")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024d)
+                .maximumExpectedValue(64d * 1024 * 1024)
+                .register(registry);
+    }
+
+    public <T, E extends Exception> T record(String operation, Operation<T, E> body) throws E {
+        FileOperationEvent event = new FileOperationEvent(operation);
+        event.begin();
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return body.run(event);
+        } catch (Exception e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            String outcome = "none".equals(exception) ? "success" : "error";
+            sample.stop(Timer.builder("file.operation")
+                    .description("Latency of file operations")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            event.end();
+            if (event.shouldCommit()) {
+                event.outcome("none".equals(exception) ? "success" : exception);
+                event.commit();
+            }
+        }
+    }
+
+    public void uploaded(long bytes) {
+        bytesIn.increment(bytes);
+        fileSize.record(bytes);
+    }
+
+    public void downloaded(long bytes) {
+        bytesOut.increment(bytes);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.fileservice.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.function.Supplier;
+
+/**
+ * JFR event for one file operation. Enabled by default; when no recording is running
+ * begin/commit are no-ops, so it costs a few field writes per request.
+ */
+@Name("com.example.fileservice.FileOperation")
+@Label("File Operation")
+@Category({"Cloud Storage", "Files"})
+@Description("Upload, download, list, rename or delete of a user's files")
+@StackTrace(false)
+public class FileOperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    private final String operation;
+
+    @Label("Owner")
+    private String owner;
+
+    @Label("File Name")
+    private String fileName;
+
+    @Label("File Size")
+    @DataAmount
+    private long fileSize;
+
+    @Label("Bytes Transferred")
+    @DataAmount
+    private long bytesTransferred;
+
+    @Label("Storage Latency")
+    @Description("Time spent in Mongo calls")
+    @Timespan
+    private long storageLatency;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public FileOperationEvent(String operation) {
+        this.operation = operation;
+    }
+
+    public void owner(String owner) {
+        this.owner = owner;
+    }
+
+    public void file(String fileName, long fileSize) {
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+    }
+
+    public void transferred(long bytes) {
+        this.bytesTransferred += bytes;
+    }
+
+    void outcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    public <T> T storage(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            storageLatency += System.nanoTime() - start;
+        }
+    }
+
+    public void storage(Runnable call) {
+        storage(() -> {
+            call.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.fileservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Where the content of a tiered file lives: one record of an archive segment. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchiveLocation {
+    private String segment;
+    private long offset;
+    // of the whole record, header included
+    private int length;
+}
@@ -0,0 +1,40 @@
+package com.example.fileservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of a user's change feed. Sequences come from {@link UserSequence} and only grow; a delete
+ * is kept as a tombstone and a rename names the file it replaces.
+ */
+@Document(collection = "file_changes")
+@CompoundIndex(name = "owner_sequence", def = "{'ownerName': 1, 'sequence': 1}", unique = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FileChange {
+    public enum Type {
+        UPLOADED, RENAMED, DELETED
+    }
+
+    @Id
+    private String id;
+    private String ownerName;
+    private long sequence;
+    private Type type;
+    private String fileName;
+    private String previousFileName;
+    private long size;
+    private String contentType;
+    private LocalDateTime changedAt;
+    // file-service instance that made the change, lets it skip its own writes when following the feed
+    private String nodeId;
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -12,6 +13,11 @@ import java.time.LocalDateTime;
 
 
 @Document(collection = "files")
+// serves findByOwnerName and findByOwnerNameAndFileName without a separate ownerName index;
+// unique, so two uploads or renames racing past the existence check cannot both win
+@CompoundIndex(name = "owner_file", def = "{'ownerName': 1, 'fileName': 1}", unique = true)
+// lets PendingChangeSweeper find the few documents with an unrecorded change
+@CompoundIndex(name = "pending_change", def = "{'pendingChange.createdAt': 1}", sparse = true)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,7 +25,6 @@ import java.time.LocalDateTime;
 public class FileDocument {
     @Id
     private String id;
-    @Indexed
     private String ownerName;
     @Indexed
     private LocalDateTime uploadDate;
@@ -27,6 +32,13 @@ public class FileDocument {
     private String fileName;
     private String contentType;
     private long size;
+    // written behind by AccessStats
+    private LocalDateTime lastAccessed;
+    private long downloadCount;
 
     private byte[] fileData;
+    // set instead of fileData once the file has been moved to an archive segment
+    private ArchiveLocation archive;
+    // set by the write that changed the file, cleared once the change is in the feed
+    private PendingChange pendingChange;
 }
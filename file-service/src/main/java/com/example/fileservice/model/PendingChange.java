@@ -0,0 +1,28 @@
+package com.example.fileservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+
+/**
+ * Change of a file written in the same update as the file itself, so it survives a failure between the
+ * file write and the change feed insert. The feed entry takes {@code changeId} as its id, which makes
+ * recording it a second time a no-op.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingChange {
+    // not "id": nested id properties are mapped to _id
+    private String changeId;
+    private FileChange.Type type;
+    private String previousFileName;
+    private LocalDateTime createdAt;
+
+    public static PendingChange of(FileChange.Type type, String previousFileName) {
+        return new PendingChange(new ObjectId().toHexString(), type, previousFileName, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.fileservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Shard an owner's documents live on, kept on the home shard. {@code movingTo} is set while the owner
+ * is being moved and the owner's writes are refused.
+ */
+@Document(collection = "shard_directory")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardAssignment {
+    @Id
+    private String ownerName;
+    private String shard;
+    private String movingTo;
+    // instances pick up changed entries by this
+    @Indexed
+    private LocalDateTime updatedAt;
+}
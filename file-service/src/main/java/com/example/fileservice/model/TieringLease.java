@@ -0,0 +1,21 @@
+package com.example.fileservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/** Instance allowed to run the tiering pass over a shard until {@code expiresAt}; renewed between batches. */
+@Document(collection = "tiering_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TieringLease {
+    @Id
+    private String shardId;
+    private String holder;
+    private LocalDateTime expiresAt;
+}
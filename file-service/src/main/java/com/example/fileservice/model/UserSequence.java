@@ -0,0 +1,18 @@
+package com.example.fileservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/** Last change sequence handed out for a user, incremented atomically with {@code $inc}. */
+@Document(collection = "user_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSequence {
+    @Id
+    private String ownerName;
+    private long sequence;
+}
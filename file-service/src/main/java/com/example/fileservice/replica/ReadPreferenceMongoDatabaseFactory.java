@@ -0,0 +1,53 @@
+package com.example.fileservice.replica;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+/** Hands out databases with the read preference {@link ReadRouting} set for the current thread. */
+public class ReadPreferenceMongoDatabaseFactory implements MongoDatabaseFactory {
+
+    private final MongoDatabaseFactory delegate;
+    private final ObjectProvider<ReadRouting> readRouting;
+
+    public ReadPreferenceMongoDatabaseFactory(MongoDatabaseFactory delegate, ObjectProvider<ReadRouting> readRouting) {
+        this.delegate = delegate;
+        this.readRouting = readRouting;
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase() throws DataAccessException {
+        return apply(delegate.getMongoDatabase());
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase(String dbName) throws DataAccessException {
+        return apply(delegate.getMongoDatabase(dbName));
+    }
+
+    @Override
+    public PersistenceExceptionTranslator getExceptionTranslator() {
+        return delegate.getExceptionTranslator();
+    }
+
+    @Override
+    public ClientSession getSession(ClientSessionOptions options) {
+        return delegate.getSession(options);
+    }
+
+    @Override
+    public MongoDatabaseFactory withSession(ClientSession session) {
+        return new ReadPreferenceMongoDatabaseFactory(delegate.withSession(session), readRouting);
+    }
+
+    private MongoDatabase apply(MongoDatabase database) {
+        ReadRouting routing = readRouting.getIfAvailable();
+        ReadPreference preference = routing != null ? routing.current() : null;
+        return preference != null ? database.withReadPreference(preference) : database;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.fileservice.replica;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the application's database factory, Boot's or the shard router, so that MongoTemplate and the
+ * repositories honour {@link ReadRouting}.
+ */
+@Component
+public class ReadPreferencePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<ReadRouting> readRouting;
+
+    public ReadPreferencePostProcessor(ObjectProvider<ReadRouting> readRouting) {
+        this.readRouting = readRouting;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof MongoDatabaseFactory factory) || bean instanceof ReadPreferenceMongoDatabaseFactory) {
+            return bean;
+        }
+        return new ReadPreferenceMongoDatabaseFactory(factory, readRouting);
+    }
+}
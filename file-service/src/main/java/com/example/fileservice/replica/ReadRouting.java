@@ -0,0 +1,132 @@
+package com.example.fileservice.replica;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read preference of the Mongo calls on the current thread. Everything reads from the primary unless
+ * an operation opts into {@link #relaxed}, which reads from secondaries (or the nearest member) within
+ * the configured staleness. A user who wrote through this instance within the read-your-writes window
+ * keeps reading from the primary, so an upload is never missing from the next download or listing;
+ * the gateway keeps a user on one instance, which makes the window cover the user's own writes. A
+ * secondary can be up to the max staleness behind, so the window has to be at least that long.
+ */
+@Component
+@Slf4j
+public class ReadRouting {
+
+    private final boolean enabled;
+    private final ReadPreference relaxed;
+    private final Cache<String, Boolean> recentWriters;
+    private final ThreadLocal<ReadPreference> current = new ThreadLocal<>();
+    private final Counter relaxedReads;
+    private final Counter pinnedReads;
+
+    public ReadRouting(MeterRegistry meterRegistry,
+                       @Value("${mongo.reads.relaxed.enabled:true}") boolean enabled,
+                       @Value("${mongo.reads.relaxed.read-preference:secondaryPreferred}") String readPreference,
+                       @Value("${mongo.reads.relaxed.max-staleness-seconds:90}") long maxStalenessSeconds,
+                       @Value("${mongo.reads.read-your-writes-window-ms:90000}") long readYourWritesWindowMs,
+                       @Value("${mongo.reads.max-tracked-writers:100000}") long maxTrackedWriters) {
+        this.enabled = enabled;
+        this.relaxed = readPreference(readPreference, maxStalenessSeconds);
+        if (enabled && !relaxed.equals(ReadPreference.primary())) {
+            checkWindowCoversStaleness(maxStalenessSeconds, readYourWritesWindowMs);
+        }
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(readYourWritesWindowMs))
+                .maximumSize(maxTrackedWriters)
+                .build();
+        this.relaxedReads = Counter.builder("mongo.reads.routed")
+                .description("Operations allowed to read from secondaries, by where they went")
+                .tag("target", "relaxed")
+                .register(meterRegistry);
+        this.pinnedReads = Counter.builder("mongo.reads.routed")
+                .description("Operations allowed to read from secondaries, by where they went")
+                .tag("target", "primary-after-write")
+                .register(meterRegistry);
+        log.info("Relaxed Mongo reads enabled={}, {}", enabled, relaxed);
+    }
+
+    /** Preference for the calls of this thread, {@code null} for the client default (primary). */
+    public ReadPreference current() {
+        return current.get();
+    }
+
+    /**
+     * Lets the enclosed reads of the owner go to secondaries, unless the owner wrote recently. Only for
+     * reads whose result is shown, never for checks that guard a write.
+     */
+    public Scope relaxed(String owner) {
+        if (!enabled) {
+            return Scope.NONE;
+        }
+        ReadPreference preference;
+        if (recentWriters.getIfPresent(owner) != null) {
+            pinnedReads.increment();
+            preference = ReadPreference.primary();
+        } else {
+            relaxedReads.increment();
+            preference = relaxed;
+        }
+        ReadPreference previous = current.get();
+        current.set(preference);
+        return () -> {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        };
+    }
+
+    /** Records a write of the owner, which pins its reads to the primary for the window. */
+    public void wrote(String owner) {
+        if (enabled) {
+            recentWriters.put(owner, Boolean.TRUE);
+        }
+    }
+
+    private static ReadPreference readPreference(String name, long maxStalenessSeconds) {
+        if ("primary".equalsIgnoreCase(name)) {
+            return ReadPreference.primary();
+        }
+        // Mongo rejects a max staleness below 90 seconds, 0 leaves it unbounded
+        if (maxStalenessSeconds > 0 && maxStalenessSeconds < 90) {
+            throw new IllegalArgumentException("mongo.reads.relaxed.max-staleness-seconds must be 0 or at least 90");
+        }
+        return maxStalenessSeconds > 0
+                ? ReadPreference.valueOf(name, List.of(), maxStalenessSeconds, TimeUnit.SECONDS)
+                : ReadPreference.valueOf(name);
+    }
+
+    // a read after the window may hit a secondary that is still missing the write
+    private static void checkWindowCoversStaleness(long maxStalenessSeconds, long readYourWritesWindowMs) {
+        if (maxStalenessSeconds == 0) {
+            throw new IllegalArgumentException("mongo.reads.relaxed.max-staleness-seconds must be bounded "
+                    + "for relaxed reads, no read-your-writes window covers an unbounded lag");
+        }
+        if (readYourWritesWindowMs < TimeUnit.SECONDS.toMillis(maxStalenessSeconds)) {
+            throw new IllegalArgumentException("mongo.reads.read-your-writes-window-ms must be at least "
+                    + "mongo.reads.relaxed.max-staleness-seconds (" + maxStalenessSeconds + " s)");
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+        Scope NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+}
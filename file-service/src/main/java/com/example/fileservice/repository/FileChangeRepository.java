@@ -0,0 +1,13 @@
+package com.example.fileservice.repository;
+
+import com.example.fileservice.model.FileChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FileChangeRepository extends MongoRepository<FileChange, String> {
+    List<FileChange> findByOwnerNameAndSequenceGreaterThanOrderBySequenceAsc(String ownerName, long sequence, Pageable page);
+}
@@ -1,7 +1,10 @@
 package com.example.fileservice.repository;
 
 import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.PendingChange;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,8 +12,33 @@ import java.util.Optional;
 
 @Repository
 public interface FileRepository extends MongoRepository<FileDocument, String> {
+    // a delete only marks the document until the feed has its tombstone, so readers skip marked documents
+    @Query("{ 'ownerName': ?0, 'pendingChange.type': { '$ne': 'DELETED' } }")
     List<FileDocument> findByOwnerName(String username);
 
+    @Query("{ 'ownerName': ?0, 'fileName': ?1, 'pendingChange.type': { '$ne': 'DELETED' } }")
     Optional<FileDocument> findByOwnerNameAndFileName(String username, String fileName);
 
+    @Query(value = "{ 'ownerName': ?0, 'fileName': ?1, 'pendingChange.type': { '$ne': 'DELETED' } }", exists = true)
+    boolean existsByOwnerNameAndFileName(String username, String fileName);
+
+    @Query(value = "{ 'ownerName': ?0, 'pendingChange.type': { '$ne': 'DELETED' } }", fields = "{ 'fileData': 0 }")
+    List<FileDocument> findMetadataByOwnerName(String username);
+
+    // everything but the content, to size the memory reservation before loading it
+    @Query(value = "{ 'ownerName': ?0, 'fileName': ?1, 'pendingChange.type': { '$ne': 'DELETED' } }", fields = "{ 'fileData': 0 }")
+    Optional<FileDocument> findMetadataByOwnerNameAndFileName(String username, String fileName);
+
+    // the document holding the name on the unique owner_file index, marked deleted or not
+    @Query("{ 'ownerName': ?0, 'fileName': ?1 }")
+    Optional<FileDocument> findNameHolder(String username, String fileName);
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$set': { 'fileName': ?1, 'pendingChange': ?2 } }")
+    long updateFileNameById(String id, String fileName, PendingChange pendingChange);
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$set': { 'pendingChange': ?1 } }")
+    long updatePendingChangeById(String id, PendingChange pendingChange);
+
 }
@@ -0,0 +1,223 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.dto.ChangesResponse;
+import com.example.fileservice.dto.FileChangeResponse;
+import com.example.fileservice.model.FileChange;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.PendingChange;
+import com.example.fileservice.model.UserSequence;
+import com.example.fileservice.repository.FileChangeRepository;
+import com.example.fileservice.shard.ShardContext;
+import com.example.securitylib.JwtService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Per-user change feed: every upload, rename and delete takes the next sequence of its owner and is
+ * appended to {@code file_changes}, so sync clients can ask for what changed since their last cursor
+ * instead of listing everything. Long polls wait on this node for the next change of their user, which
+ * is why the gateway never spills them off the user's own replica.
+ * File writes carry their change as a {@link PendingChange} on the document and {@link #publish} moves
+ * it into the feed, so a failed insert is picked up later by {@link PendingChangeSweeper}.
+ */
+@Service
+@Slf4j
+public class ChangeFeedService {
+
+    private record Waiter(long since, int limit, CompletableFuture<ChangesResponse> result) {
+    }
+
+    private final MongoOperations mongo;
+    private final FileChangeRepository changeRepository;
+    private final JwtService jwtService;
+    private final long gapGraceMs;
+    private final int maxWaitersPerUser;
+    private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ChangeFeedService(MongoOperations mongo,
+                             FileChangeRepository changeRepository,
+                             JwtService jwtService,
+                             @Value("${change-feed.gap-grace-ms:5000}") long gapGraceMs,
+                             @Value("${change-feed.max-waiters-per-user:16}") int maxWaitersPerUser) {
+        this.mongo = mongo;
+        this.changeRepository = changeRepository;
+        this.jwtService = jwtService;
+        this.gapGraceMs = gapGraceMs;
+        this.maxWaitersPerUser = maxWaitersPerUser;
+    }
+
+    /**
+     * Records the change the document carries and clears it from the document, or removes the document
+     * when the change is its delete. Repeating it for the same change only takes an unused sequence.
+     *
+     * @return the sequence taken for the change
+     */
+    public long publish(FileDocument doc) {
+        PendingChange pending = doc.getPendingChange();
+        String ownerName = doc.getOwnerName();
+        long sequence;
+        try (ShardContext.Scope shard = ShardContext.bind(ownerName)) {
+            sequence = nextSequence(ownerName);
+            try {
+                changeRepository.insert(FileChange.builder()
+                        .id(pending.getChangeId())
+                        .ownerName(ownerName)
+                        .sequence(sequence)
+                        .type(pending.getType())
+                        .fileName(doc.getFileName())
+                        .previousFileName(pending.getPreviousFileName())
+                        .size(doc.getSize())
+                        .contentType(doc.getContentType())
+                        .changedAt(LocalDateTime.now())
+                        .nodeId(nodeId)
+                        .build());
+                log.debug("Recorded change {} {} of '{}' for user '{}'", sequence, pending.getType(), doc.getFileName(), ownerName);
+            } catch (DuplicateKeyException e) {
+                // recorded before, the sequence taken now is a gap readers skip
+                log.debug("Change {} of '{}' for user '{}' was already recorded", pending.getChangeId(), doc.getFileName(), ownerName);
+            }
+            Query marked = query(where("_id").is(doc.getId()).and("pendingChange.changeId").is(pending.getChangeId()));
+            if (pending.getType() == FileChange.Type.DELETED) {
+                mongo.remove(marked, FileDocument.class);
+            } else {
+                mongo.updateFirst(marked, new Update().unset("pendingChange"), FileDocument.class);
+            }
+        }
+        wakeUp(ownerName);
+        return sequence;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Last sequence handed out for the user, {@code 0} before the first change. */
+    public long currentSequence(String ownerName) {
+        UserSequence sequence;
+        try (ShardContext.Scope shard = ShardContext.bind(ownerName)) {
+            sequence = mongo.findById(ownerName, UserSequence.class);
+        }
+        return sequence != null ? sequence.getSequence() : 0L;
+    }
+
+    /**
+     * Changes after {@code since}, at most {@code limit}. With {@code waitSeconds > 0} and nothing new
+     * yet, the result completes with the next change of the user or empty once the wait is over.
+     */
+    public CompletableFuture<ChangesResponse> changesSince(String token, long since, int limit, long waitSeconds) {
+        String ownerName = jwtService.getUsername(token);
+        ChangesResponse current = read(ownerName, since, limit);
+        if (!current.getChanges().isEmpty() || waitSeconds <= 0) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        Waiter waiter = new Waiter(since, limit, new CompletableFuture<>());
+        boolean[] registered = new boolean[1];
+        waiters.compute(ownerName, (key, set) -> {
+            Set<Waiter> s = set != null ? set : new HashSet<>();
+            if (s.size() < maxWaitersPerUser) {
+                registered[0] = s.add(waiter);
+            }
+            return s.isEmpty() ? null : s;
+        });
+        if (!registered[0]) {
+            log.debug("Too many long polls for user '{}', answering immediately", ownerName);
+            return CompletableFuture.completedFuture(current);
+        }
+        // a change recorded between the first read and the registration did not see this waiter
+        ChangesResponse recheck = read(ownerName, since, limit);
+        if (!recheck.getChanges().isEmpty()) {
+            waiter.result().complete(recheck);
+        }
+        return waiter.result()
+                .completeOnTimeout(current, waitSeconds, TimeUnit.SECONDS)
+                .whenComplete((response, error) -> waiters.computeIfPresent(ownerName, (key, set) -> {
+                    set.remove(waiter);
+                    return set.isEmpty() ? null : set;
+                }));
+    }
+
+    // runs on the thread that recorded the change; a user has only a few devices waiting
+    private void wakeUp(String ownerName) {
+        Set<Waiter> pending = waiters.remove(ownerName);
+        if (pending == null) {
+            return;
+        }
+        for (Waiter waiter : pending) {
+            try {
+                waiter.result().complete(read(ownerName, waiter.since(), waiter.limit()));
+            } catch (RuntimeException e) {
+                waiter.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private long nextSequence(String ownerName) {
+        UserSequence sequence = mongo.findAndModify(
+                query(where("_id").is(ownerName)),
+                new Update().inc("sequence", 1),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                UserSequence.class);
+        return sequence.getSequence();
+    }
+
+    private ChangesResponse read(String ownerName, long since, int limit) {
+        List<FileChange> found;
+        try (ShardContext.Scope shard = ShardContext.bind(ownerName)) {
+            found = changeRepository.findByOwnerNameAndSequenceGreaterThanOrderBySequenceAsc(
+                    ownerName, since, PageRequest.of(0, limit + 1));
+        }
+        // sequences are taken before the insert, so a gap can be a change that is still being written;
+        // stop in front of it unless it is old enough to be a failed write
+        LocalDateTime settled = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(gapGraceMs));
+        List<FileChangeResponse> changes = new ArrayList<>();
+        long cursor = since;
+        boolean hasMore = false;
+        for (FileChange change : found) {
+            if (changes.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            if (change.getSequence() != cursor + 1 && change.getChangedAt().isAfter(settled)) {
+                break;
+            }
+            changes.add(toResponse(change));
+            cursor = change.getSequence();
+        }
+        return ChangesResponse.builder().changes(changes).cursor(cursor).hasMore(hasMore).build();
+    }
+
+    private static FileChangeResponse toResponse(FileChange change) {
+        return FileChangeResponse.builder()
+                .sequence(change.getSequence())
+                .type(change.getType())
+                .filename(change.getFileName())
+                .previousFilename(change.getPreviousFileName())
+                .size(change.getType() == FileChange.Type.DELETED ? null : change.getSize())
+                .contentType(change.getContentType())
+                .changedAt(change.getChangedAt())
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
+import com.example.fileservice.model.FileDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Single flight for file contents: concurrent downloads of the same document share one storage fetch
+ * and one buffered copy. The key includes the document id, which changes whenever the content does
+ * (delete and upload again), so a waiter never gets the content of a file it did not look up. Nothing is
+ * kept once the last waiter has its copy; this is not a cache.
+ */
+@Component
+public class DownloadCoalescer {
+
+    public record Fetched(FileDocument document, TransferMemoryBudget.Reservation reservation) {
+    }
+
+    private record Key(String ownerName, String fileName, String id) {
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<Queue<Fetched>> result = new CompletableFuture<>();
+        private int waiters;
+    }
+
+    private final TransferMemoryBudget memoryBudget;
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+    private final Counter fetches;
+    private final Counter coalesced;
+
+    public DownloadCoalescer(MeterRegistry meterRegistry, TransferMemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        this.fetches = Counter.builder("file.download.fetches")
+                .description("Content fetches from storage for downloads")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("file.download.coalesced")
+                .description("Downloads served by a fetch another request had already started")
+                .register(meterRegistry);
+        Gauge.builder("file.download.flights", flights, Map::size)
+                .description("Content fetches currently in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the content of the file described by {@code metadata}, loading it with {@code loader}
+     * unless the same content is already being loaded. Every caller gets its own handle on the memory
+     * reservation of the shared copy and must close it.
+     */
+    public Fetched fetch(FileDocument metadata, Supplier<FileDocument> loader) {
+        Key key = new Key(metadata.getOwnerName(), metadata.getFileName(), metadata.getId());
+        boolean[] leader = new boolean[1];
+        Flight flight = flights.compute(key, (k, existing) -> {
+            Flight f = existing;
+            if (f == null) {
+                f = new Flight();
+                leader[0] = true;
+            }
+            f.waiters++;
+            return f;
+        });
+        if (!leader[0]) {
+            coalesced.increment();
+            return await(flight);
+        }
+        // the first caller loads; waiters are counted under the map lock and the count is final once
+        // the flight is removed, so there is exactly one reservation handle for each of them
+        fetches.increment();
+        TransferMemoryBudget.Reservation reservation = null;
+        try {
+            reservation = memoryBudget.reserve(metadata.getSize());
+            FileDocument document = loader.get();
+            int waiters = land(key);
+            Queue<Fetched> handles = new ConcurrentLinkedQueue<>();
+            handles.add(new Fetched(document, reservation));
+            for (int i = 1; i < waiters; i++) {
+                handles.add(new Fetched(document, reservation.retain()));
+            }
+            flight.result.complete(handles);
+        } catch (RuntimeException | Error e) {
+            land(key);
+            if (reservation != null) {
+                reservation.close();
+            }
+            flight.result.completeExceptionally(e);
+        }
+        return await(flight);
+    }
+
+    private int land(Key key) {
+        int[] waiters = new int[1];
+        flights.computeIfPresent(key, (k, f) -> {
+            waiters[0] = f.waiters;
+            return null;
+        });
+        return waiters[0];
+    }
+
+    private static Fetched await(Flight flight) {
+        try {
+            return flight.result.join().poll();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+}
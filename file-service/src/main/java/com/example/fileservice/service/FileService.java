@@ -1,16 +1,29 @@
 package com.example.fileservice.service;
 
+import com.example.fileservice.access.AccessStats;
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
 import com.example.fileservice.dto.FileDownloadResponse;
 import com.example.fileservice.dto.FileListResponse;
 import com.example.fileservice.exception.FileNotFoundException;
+import com.example.fileservice.index.FileMetadataIndex;
+import com.example.fileservice.metrics.FileMetrics;
+import com.example.fileservice.metrics.FileOperationEvent;
+import com.example.fileservice.model.FileChange;
 import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.PendingChange;
+import com.example.fileservice.replica.ReadRouting;
 import com.example.fileservice.repository.FileRepository;
+import com.example.fileservice.shard.ShardContext;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.tier.ArchiveSegments;
 import com.example.securitylib.JwtService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -27,90 +40,203 @@ public class FileService {
     private final JwtService jwtService;
 
     private final FileRepository fileRepository;
+    private final FileMetrics fileMetrics;
+    private final TransferMemoryBudget memoryBudget;
+    private final DownloadCoalescer downloadCoalescer;
+    private final ChangeFeedService changeFeedService;
+    private final FileMetadataIndex metadataIndex;
+    private final ReadRouting readRouting;
+    private final ArchiveSegments archiveSegments;
+    private final AccessStats accessStats;
+    private final ShardDirectory shardDirectory;
     @Value("${spring.servlet.multipart.max-file-size}")
     private long MaxFileSize;
 
+    @Observed(name = "file.service", contextualName = "file-upload", lowCardinalityKeyValues = {"operation", "upload"})
     public void uploadFile(String token, String fileName, MultipartFile file) throws IOException {
-        String username = extractUsernameFromToken(token);
-        log.info("User '{}' is uploading file '{}'", username, fileName);
-
-        validateFileUpload(file, username, fileName);
+        fileMetrics.record(FileMetrics.UPLOAD, event -> {
+            String username = extractUsernameFromToken(token);
+            log.debug("User '{}' is uploading file '{}'", username, fileName);
+            event.owner(username);
+            try (ShardContext.Scope shard = ShardContext.bind(username)) {
+                event.file(fileName, file.getSize());
 
-        FileDocument doc = buildFileDocument(fileName, file, username);
+                validateFileUpload(event, file, username, fileName);
 
-        fileRepository.save(doc);
-        log.info("File '{}' uploaded successfully", fileName);
+                try (TransferMemoryBudget.Reservation reservation = memoryBudget.reserve(file.getSize())) {
+                    FileDocument doc = buildFileDocument(fileName, file, username);
+                    FileDocument saved = event.storage(() -> saveNew(doc, username, fileName));
+                    metadataIndex.added(saved != null ? saved : doc);
+                    readRouting.wrote(username);
+                    event.transferred(doc.getSize());
+                    fileMetrics.uploaded(doc.getSize());
+                    publish(saved != null ? saved : doc);
+                }
+                log.debug("File '{}' uploaded successfully", fileName);
+                return null;
+            }
+        });
     }
 
+    @Observed(name = "file.service", contextualName = "file-delete", lowCardinalityKeyValues = {"operation", "delete"})
     public void deleteFile(String token, String fileName) {
-        String username = extractUsernameFromToken(token);
-        log.info("User '{}' is deleting file '{}'", username, fileName);
+        fileMetrics.record(FileMetrics.DELETE, event -> {
+            String username = extractUsernameFromToken(token);
+            log.debug("User '{}' is deleting file '{}'", username, fileName);
+            event.owner(username);
+            try (ShardContext.Scope shard = ShardContext.bind(username)) {
+                FileDocument fileDoc = findFileOrThrow(event, username, fileName, "Delete");
+                event.file(fileName, fileDoc.getSize());
+                publishLeftover(fileDoc);
 
-        FileDocument fileDoc = findFileOrThrow(username, fileName, "Delete");
-        fileRepository.delete(fileDoc);
+                // the document is marked first and removed once the tombstone is in the feed;
+                // updates skip the mapping events ShardWriteGuard fences on, so the fence is checked here
+                PendingChange deleted = PendingChange.of(FileChange.Type.DELETED, null);
+                shardDirectory.beforeWrite(username);
+                if (event.storage(() -> fileRepository.updatePendingChangeById(fileDoc.getId(), deleted)) == 0) {
+                    throw notFound(fileName, username, "Delete");
+                }
+                metadataIndex.removed(username, fileName);
+                readRouting.wrote(username);
+                fileDoc.setPendingChange(deleted);
+                publish(fileDoc);
 
-        log.info("File '{}' deleted successfully by user '{}'", fileName, username);
+                log.debug("File '{}' deleted successfully by user '{}'", fileName, username);
+                return null;
+            }
+        });
     }
 
+    @Observed(name = "file.service", contextualName = "file-download", lowCardinalityKeyValues = {"operation", "download"})
     public FileDownloadResponse downloadFile(String token, String fileName) {
-        String username = extractUsernameFromToken(token);
-        log.info("User '{}' is downloading file '{}'", username, fileName);
+        return fileMetrics.record(FileMetrics.DOWNLOAD, event -> {
+            String username = extractUsernameFromToken(token);
+            log.debug("User '{}' is downloading file '{}'", username, fileName);
+            event.owner(username);
+            try (ShardContext.Scope shard = ShardContext.bind(username);
+                 ReadRouting.Scope reads = readRouting.relaxed(username)) {
+                FileDocument metadata = event.storage(() -> fileRepository.findMetadataByOwnerNameAndFileName(username, fileName))
+                        .orElseThrow(() -> notFound(fileName, username, "Download"));
+                event.file(fileName, metadata.getSize());
 
-        FileDocument fileDoc = findFileOrThrow(username, fileName, "Download");
+                // content of a document never changes, a concurrent delete shows up as not found
+                DownloadCoalescer.Fetched fetched = downloadCoalescer.fetch(metadata, () -> rehydrate(event,
+                        event.storage(() -> fileRepository.findById(metadata.getId()))
+                                .orElseThrow(() -> notFound(fileName, username, "Download"))));
+                FileDocument fileDoc = fetched.document();
+                accessStats.recordDownload(metadata.getId(), username);
+                event.transferred(fileDoc.getSize());
+                fileMetrics.downloaded(fileDoc.getSize());
 
-        log.info("File '{}' successfully prepared for download by '{}'", fileName, username);
-        return buildDownloadResponse(fileDoc);
+                log.debug("File '{}' successfully prepared for download by '{}'", fileName, username);
+                return buildDownloadResponse(fileDoc, fetched.reservation());
+            }
+        });
     }
 
+    @Observed(name = "file.service", contextualName = "file-rename", lowCardinalityKeyValues = {"operation", "rename"})
     public void renameFile(String token, String oldName, String newName) {
-        String username = extractUsernameFromToken(token);
-        log.info("User '{}' is renaming file '{}' to '{}'", username, oldName, newName);
+        fileMetrics.record(FileMetrics.RENAME, event -> {
+            String username = extractUsernameFromToken(token);
+            log.debug("User '{}' is renaming file '{}' to '{}'", username, oldName, newName);
+            event.owner(username);
+            try (ShardContext.Scope shard = ShardContext.bind(username)) {
+                FileDocument fileDoc = findFileOrThrow(event, username, oldName, "Rename");
+                event.file(oldName, fileDoc.getSize());
+                publishLeftover(fileDoc);
 
-        FileDocument fileDoc = findFileOrThrow(username, oldName, "Rename");
+                if (event.storage(() -> metadataIndex.exists(username, newName))) {
+                    log.warn("Rename failed: file '{}' already exists for user '{}'", newName, username);
+                    throw new IllegalArgumentException("File with name '" + newName + "' already exists");
+                }
 
-        if (fileRepository.findByOwnerNameAndFileName(username, newName).isPresent()) {
-            log.warn("Rename failed: file '{}' already exists for user '{}'", newName, username);
-            throw new IllegalArgumentException("File with name '" + newName + "' already exists");
-        }
-
-        fileDoc.setFileName(newName);
-        fileRepository.save(fileDoc);
-        log.info("File '{}' renamed to '{}' by user '{}'", oldName, newName, username);
+                // a targeted $set, saving the loaded document would overwrite counters flushed meanwhile;
+                // updates skip the mapping events ShardWriteGuard fences on, so the fence is checked here
+                PendingChange renamed = PendingChange.of(FileChange.Type.RENAMED, oldName);
+                shardDirectory.beforeWrite(username);
+                if (event.storage(() -> updateFileName(fileDoc, newName, renamed, username)) == 0) {
+                    throw notFound(oldName, username, "Rename");
+                }
+                metadataIndex.renamed(username, oldName, newName);
+                readRouting.wrote(username);
+                fileDoc.setFileName(newName);
+                fileDoc.setPendingChange(renamed);
+                publish(fileDoc);
+                log.debug("File '{}' renamed to '{}' by user '{}'", oldName, newName, username);
+                return null;
+            }
+        });
     }
 
+    @Observed(name = "file.service", contextualName = "file-list", lowCardinalityKeyValues = {"operation", "list"})
     public List<FileListResponse> getAllFiles(String token, Integer limit) {
+        return fileMetrics.record(FileMetrics.LIST, event -> listFiles(event, token, limit, 0L));
+    }
+
+    /**
+     * The listing reflecting at least every change up to {@code namespaceVersion}, so a response tagged
+     * with that version never carries an older body.
+     */
+    @Observed(name = "file.service", contextualName = "file-list", lowCardinalityKeyValues = {"operation", "list"})
+    public List<FileListResponse> getAllFiles(String token, Integer limit, long namespaceVersion) {
+        return fileMetrics.record(FileMetrics.LIST, event -> listFiles(event, token, limit, namespaceVersion));
+    }
+
+    /** Version of one user's file namespace; sequences are per user, so it only means something with the owner. */
+    public record NamespaceVersion(String ownerName, long sequence) {
+    }
+
+    /**
+     * Version of the user's file namespace, the last change feed sequence: it moves on every upload,
+     * rename and delete, so an unchanged version means an unchanged listing. A change whose feed insert
+     * failed moves it once {@link PendingChangeSweeper} records it. Reads one small document.
+     */
+    public NamespaceVersion namespaceVersion(String token) {
         String username = extractUsernameFromToken(token);
-        log.info("User '{}' is requesting all files", username);
+        return new NamespaceVersion(username, changeFeedService.currentSequence(username));
+    }
 
-        List<FileDocument> files = fileRepository.findByOwnerName(username);
+    private List<FileListResponse> listFiles(FileOperationEvent event, String token, Integer limit, long namespaceVersion) {
+        String username = extractUsernameFromToken(token);
+        log.debug("User '{}' is requesting all files", username);
+        event.owner(username);
+        try (ShardContext.Scope shard = ShardContext.bind(username)) {
+            // the index caches what it loads, so listings are relaxed only while it is off; a listing
+            // bound to a version read on the primary stays there, a secondary may be behind it
+            boolean relaxed = !metadataIndex.isEnabled() && namespaceVersion == 0L;
+            List<FileDocument> files;
+            try (ReadRouting.Scope reads = relaxed ? readRouting.relaxed(username) : ReadRouting.Scope.NONE) {
+                files = event.storage(() -> metadataIndex.list(username, limit, namespaceVersion));
+            }
 
-        if (files == null || files.isEmpty()) {
-            log.info("User '{}' has no files", username);
-            return Collections.emptyList();
-        }
+            if (files == null || files.isEmpty()) {
+                log.debug("User '{}' has no files", username);
+                return Collections.emptyList();
+            }
 
-        List<FileListResponse> result = files.stream()
-                .sorted((f1, f2) -> f2.getUploadDate().compareTo(f1.getUploadDate()))
-                .limit(limit != null && limit > 0 ? limit : files.size())
-                .map(doc -> FileListResponse.builder()
-                        .filename(doc.getFileName())
-                        .size(doc.getSize())
-                        .uploadDate(doc.getUploadDate())
-                        .contentType(doc.getContentType())
-                        .build())
-                .toList();
+            List<FileListResponse> result = files.stream()
+                    .sorted((f1, f2) -> f2.getUploadDate().compareTo(f1.getUploadDate()))
+                    .limit(limit != null && limit > 0 ? limit : files.size())
+                    .map(doc -> FileListResponse.builder()
+                            .filename(doc.getFileName())
+                            .size(doc.getSize())
+                            .uploadDate(doc.getUploadDate())
+                            .contentType(doc.getContentType())
+                            .build())
+                    .toList();
 
-        log.info("User '{}' has {} files", username, result.size());
-        return result;
+            log.debug("User '{}' has {} files", username, result.size());
+            return result;
+        }
     }
 
     private String extractUsernameFromToken(String token) {
         return jwtService.getUsername(token);
     }
 
-    private void validateFileUpload(MultipartFile file, String username, String fileName) {
+    private void validateFileUpload(FileOperationEvent event, MultipartFile file, String username, String fileName) {
 
-        if (fileRepository.findByOwnerNameAndFileName(username, fileName).isPresent()) {
+        if (event.storage(() -> metadataIndex.exists(username, fileName))) {
             log.warn("Upload failed: file '{}' already exists for user '{}'", fileName, username);
             throw new IllegalArgumentException("File already exists");
         }
@@ -129,24 +255,110 @@ public class FileService {
                 .size(file.getSize())
                 .uploadDate(LocalDateTime.now())
                 .fileData(file.getBytes())
+                .pendingChange(PendingChange.of(FileChange.Type.UPLOADED, null))
                 .build();
     }
 
-    private FileDocument findFileOrThrow(String username, String fileName, String operation) {
-        return fileRepository.findByOwnerNameAndFileName(username, fileName)
-                .orElseThrow(() -> {
-                    log.warn("{} failed: file '{}' not found for user '{}'", operation, fileName, username);
-                    return new FileNotFoundException("File not found: " + fileName);
-                });
+    // the existence check is only a hint, a concurrent upload of the same name loses on the unique index
+    private FileDocument saveNew(FileDocument doc, String username, String fileName) {
+        try {
+            return fileRepository.save(doc);
+        } catch (DuplicateKeyException e) {
+            if (!finishPendingDelete(username, fileName)) {
+                throw uploadConflict(username, fileName);
+            }
+        }
+        try {
+            return fileRepository.save(doc);
+        } catch (DuplicateKeyException e) {
+            throw uploadConflict(username, fileName);
+        }
+    }
+
+    private IllegalArgumentException uploadConflict(String username, String fileName) {
+        log.warn("Upload failed: file '{}' already exists for user '{}'", fileName, username);
+        metadataIndex.invalidate(username);
+        return new IllegalArgumentException("File already exists");
+    }
+
+    private long updateFileName(FileDocument fileDoc, String newName, PendingChange renamed, String username) {
+        try {
+            return fileRepository.updateFileNameById(fileDoc.getId(), newName, renamed);
+        } catch (DuplicateKeyException e) {
+            if (!finishPendingDelete(username, newName)) {
+                throw renameConflict(username, newName);
+            }
+        }
+        try {
+            return fileRepository.updateFileNameById(fileDoc.getId(), newName, renamed);
+        } catch (DuplicateKeyException e) {
+            throw renameConflict(username, newName);
+        }
+    }
+
+    private IllegalArgumentException renameConflict(String username, String newName) {
+        log.warn("Rename failed: file '{}' already exists for user '{}'", newName, username);
+        metadataIndex.invalidate(username);
+        return new IllegalArgumentException("File with name '" + newName + "' already exists");
+    }
+
+    // a delete whose tombstone is not in the feed yet still holds the name on owner_file:
+    // recording it now removes the document and frees the name
+    private boolean finishPendingDelete(String username, String fileName) {
+        FileDocument holder = fileRepository.findNameHolder(username, fileName).orElse(null);
+        if (holder == null || holder.getPendingChange() == null
+                || holder.getPendingChange().getType() != FileChange.Type.DELETED) {
+            return false;
+        }
+        log.debug("Recording leftover delete of '{}' for user '{}' to free the name", fileName, username);
+        changeFeedService.publish(holder);
+        return true;
+    }
+
+    // the file write already happened: a failed insert leaves the change on the document for the sweeper
+    private void publish(FileDocument doc) {
+        try {
+            metadataIndex.recorded(doc.getOwnerName(), changeFeedService.publish(doc));
+        } catch (RuntimeException e) {
+            log.warn("Change of file '{}' for user '{}' not in the feed yet, left for the sweeper",
+                    doc.getFileName(), doc.getOwnerName(), e);
+        }
+    }
+
+    // a change left on the document by a failed request goes into the feed before the next one;
+    // readers never return a document marked deleted, so it is an upload or a rename
+    private void publishLeftover(FileDocument doc) {
+        if (doc.getPendingChange() != null) {
+            changeFeedService.publish(doc);
+        }
+    }
+
+    private FileDocument findFileOrThrow(FileOperationEvent event, String username, String fileName, String operation) {
+        return event.storage(() -> fileRepository.findByOwnerNameAndFileName(username, fileName))
+                .orElseThrow(() -> notFound(fileName, username, operation));
+    }
+
+    // cold files keep their content in an archive segment instead of the document
+    private FileDocument rehydrate(FileOperationEvent event, FileDocument doc) {
+        if (doc.getFileData() == null && doc.getArchive() != null) {
+            doc.setFileData(event.storage(() -> archiveSegments.read(doc.getArchive())));
+        }
+        return doc;
+    }
+
+    private FileNotFoundException notFound(String fileName, String username, String operation) {
+        log.warn("{} failed: file '{}' not found for user '{}'", operation, fileName, username);
+        return new FileNotFoundException("File not found: " + fileName);
     }
 
-    private FileDownloadResponse buildDownloadResponse(FileDocument fileDoc) {
+    private FileDownloadResponse buildDownloadResponse(FileDocument fileDoc, TransferMemoryBudget.Reservation reservation) {
         Resource resource = new ByteArrayResource(fileDoc.getFileData());
         return FileDownloadResponse.builder()
                 .resource(resource)
                 .contentType(fileDoc.getContentType())
                 .fileName(fileDoc.getFileName())
                 .size(fileDoc.getSize())
+                .reservation(reservation)
                 .build();
     }
 }
\ No newline at end of file
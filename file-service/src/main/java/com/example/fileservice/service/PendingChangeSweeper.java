@@ -0,0 +1,115 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Records the changes file writes left on their documents when the change feed insert failed or the
+ * process died before it. Until then the namespace version does not move and sync clients do not see
+ * the change. Changes younger than {@code change-feed.sweep.grace-ms} are still being published by
+ * their request and are left alone.
+ */
+@Component
+@Slf4j
+public class PendingChangeSweeper {
+
+    private final StorageShards shards;
+    private final ShardDirectory directory;
+    private final ChangeFeedService changeFeedService;
+    private final boolean enabled;
+    private final long intervalMs;
+    private final long graceMs;
+    private final int batchSize;
+    private final Counter recorded;
+    private ScheduledExecutorService sweeper;
+
+    public PendingChangeSweeper(StorageShards shards,
+                                ShardDirectory directory,
+                                ChangeFeedService changeFeedService,
+                                MeterRegistry meterRegistry,
+                                @Value("${change-feed.sweep.enabled:true}") boolean enabled,
+                                @Value("${change-feed.sweep.interval-ms:10000}") long intervalMs,
+                                @Value("${change-feed.sweep.grace-ms:10000}") long graceMs,
+                                @Value("${change-feed.sweep.batch-size:500}") int batchSize) {
+        this.shards = shards;
+        this.directory = directory;
+        this.changeFeedService = changeFeedService;
+        this.enabled = enabled;
+        this.intervalMs = intervalMs;
+        this.graceMs = graceMs;
+        this.batchSize = batchSize;
+        this.recorded = Counter.builder("change.feed.swept")
+                .description("File changes recorded by the sweep instead of the request that made them")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("change-sweep-"));
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /** Publishes the pending changes older than the grace period; returns how many were published. */
+    public long sweep() {
+        LocalDateTime before = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(graceMs));
+        long published = 0;
+        for (StorageShards.Shard shard : shards.all()) {
+            Query pending = query(where("pendingChange.createdAt").lt(before)).limit(batchSize);
+            pending.fields().exclude("fileData");
+            for (FileDocument doc : shard.template().find(pending, FileDocument.class)) {
+                // copies left on a shard the owner is moving away from are deleted by the move
+                if (directory.isSharded() && !directory.shardOf(doc.getOwnerName()).id().equals(shard.id())) {
+                    continue;
+                }
+                try {
+                    changeFeedService.publish(doc);
+                    published++;
+                } catch (RuntimeException e) {
+                    log.warn("Pending change of file '{}' for user '{}' not recorded, retrying next sweep",
+                            doc.getFileName(), doc.getOwnerName(), e);
+                }
+            }
+        }
+        recorded.increment(published);
+        if (published > 0) {
+            log.info("Recorded {} file changes left pending by failed requests", published);
+        }
+        return published;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.warn("Pending change sweep failed", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.fileservice.shard;
+
+/**
+ * Owner whose shard the Mongo calls of the current thread go to. Bound around each file operation;
+ * calls made with no owner bound go to the home shard.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> OWNER = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String owner() {
+        return OWNER.get();
+    }
+
+    /** Routes this thread's Mongo calls to the owner's shard until the scope is closed. */
+    public static Scope bind(String owner) {
+        String previous = OWNER.get();
+        OWNER.set(owner);
+        return () -> {
+            if (previous != null) {
+                OWNER.set(previous);
+            } else {
+                OWNER.remove();
+            }
+        };
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.fileservice.shard;
+
+import com.example.fileservice.exception.ShardMoveInProgressException;
+import com.example.fileservice.model.FileChange;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.ShardAssignment;
+import com.example.fileservice.model.UserSequence;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Which shard each owner lives on. Owners are placed by rendezvous hashing and the placement is pinned
+ * in {@code shard_directory} on their first write, so adding a shard never strands existing data; only
+ * {@link ShardRebalancer} moves an owner afterwards. Every instance keeps the whole directory in memory
+ * and polls for entries changed since its last poll.
+ */
+@Component
+@Slf4j
+public class ShardDirectory {
+
+    // entries written by instances with a slightly different clock are still picked up
+    private static final long CLOCK_SKEW_SECONDS = 30;
+
+    private final StorageShards shards;
+    private final MongoMappingContext mappingContext;
+    private final long refreshMs;
+    private final MongoTemplate directory;
+    private final Map<String, ShardAssignment> assignments = new ConcurrentHashMap<>();
+    private volatile LocalDateTime refreshedUpTo = LocalDateTime.MIN;
+    private ScheduledExecutorService refresher;
+
+    public ShardDirectory(StorageShards shards,
+                          MongoMappingContext mappingContext,
+                          @Value("${storage.directory.refresh-ms:2000}") long refreshMs) {
+        this.shards = shards;
+        this.mappingContext = mappingContext;
+        this.refreshMs = refreshMs;
+        this.directory = shards.home().template();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!shards.isSharded()) {
+            return;
+        }
+        ensureIndexes();
+        pinUnassignedOwners();
+        refresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("shard-directory-"));
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+        log.info("Storage sharded over {}, {} owners pinned", shards.all().stream().map(StorageShards.Shard::id).toList(),
+                assignments.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public boolean isSharded() {
+        return shards.isSharded();
+    }
+
+    /** How long it takes until every instance has seen a directory change. */
+    public long propagationMs() {
+        return 2 * refreshMs;
+    }
+
+    public StorageShards.Shard shardOf(String owner) {
+        if (owner == null || !shards.isSharded()) {
+            return shards.home();
+        }
+        ShardAssignment assignment = assignments.get(owner);
+        return assignment != null ? shards.byId(assignment.getShard()) : shards.rendezvous(owner);
+    }
+
+    /** Pins the owner's placement before its first write and refuses writes while the owner is moving. */
+    public void beforeWrite(String owner) {
+        if (owner == null || !shards.isSharded()) {
+            return;
+        }
+        ShardAssignment assignment = assignments.get(owner);
+        if (assignment == null) {
+            assignment = pin(owner);
+        }
+        if (assignment.getMovingTo() != null) {
+            throw new ShardMoveInProgressException("Files of user '" + owner + "' are being moved, retry later");
+        }
+    }
+
+    public ShardAssignment pin(String owner) {
+        ShardAssignment assignment = directory.findAndModify(
+                query(where("_id").is(owner)),
+                new Update()
+                        .setOnInsert("shard", shards.rendezvous(owner).id())
+                        .setOnInsert("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                ShardAssignment.class);
+        assignments.put(owner, assignment);
+        return assignment;
+    }
+
+    /** Fences the owner's writes; fails when another move of the owner is already running. */
+    void beginMove(String owner, String target) {
+        ShardAssignment assignment = directory.findAndModify(
+                query(where("_id").is(owner).and("movingTo").isNull()),
+                new Update().set("movingTo", target).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                ShardAssignment.class);
+        if (assignment == null) {
+            throw new IllegalArgumentException("User '" + owner + "' is already being moved");
+        }
+        assignments.put(owner, assignment);
+    }
+
+    void completeMove(String owner, String target) {
+        update(owner, new Update().set("shard", target).unset("movingTo").set("updatedAt", LocalDateTime.now()));
+    }
+
+    void abortMove(String owner) {
+        update(owner, new Update().unset("movingTo").set("updatedAt", LocalDateTime.now()));
+    }
+
+    private void update(String owner, Update update) {
+        ShardAssignment assignment = directory.findAndModify(query(where("_id").is(owner)), update,
+                FindAndModifyOptions.options().returnNew(true), ShardAssignment.class);
+        if (assignment != null) {
+            assignments.put(owner, assignment);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Shard directory refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        LocalDateTime since = refreshedUpTo.equals(LocalDateTime.MIN)
+                ? LocalDateTime.MIN : refreshedUpTo.minusSeconds(CLOCK_SKEW_SECONDS);
+        List<ShardAssignment> changed = since.equals(LocalDateTime.MIN)
+                ? directory.findAll(ShardAssignment.class)
+                : directory.find(query(where("updatedAt").gte(since)), ShardAssignment.class);
+        LocalDateTime latest = refreshedUpTo;
+        for (ShardAssignment assignment : changed) {
+            assignments.put(assignment.getOwnerName(), assignment);
+            if (assignment.getUpdatedAt() != null && assignment.getUpdatedAt().isAfter(latest)) {
+                latest = assignment.getUpdatedAt();
+            }
+        }
+        refreshedUpTo = latest.equals(LocalDateTime.MIN) ? LocalDateTime.now() : latest;
+    }
+
+    // owners written before sharding was switched on live on the home shard
+    private void pinUnassignedOwners() {
+        if (directory.estimatedCount(ShardAssignment.class) > 0) {
+            return;
+        }
+        MongoTemplate home = shards.home().template();
+        List<String> owners = home.findDistinct(new Query(),
+                "ownerName", FileDocument.class, String.class);
+        for (String owner : owners) {
+            directory.upsert(query(where("_id").is(owner)),
+                    new Update().setOnInsert("shard", shards.home().id()).setOnInsert("updatedAt", LocalDateTime.now()),
+                    ShardAssignment.class);
+        }
+        for (UserSequence sequence : home.findAll(UserSequence.class)) {
+            directory.upsert(query(where("_id").is(sequence.getOwnerName())),
+                    new Update().setOnInsert("shard", shards.home().id()).setOnInsert("updatedAt", LocalDateTime.now()),
+                    ShardAssignment.class);
+        }
+        log.info("Pinned {} existing owners to the home shard", owners.size());
+    }
+
+    // auto-index-creation only covers the home shard
+    private void ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        for (StorageShards.Shard shard : shards.all()) {
+            for (Class<?> type : List.of(FileDocument.class, FileChange.class)) {
+                resolver.resolveIndexFor(type).forEach(index -> shard.template().indexOps(type).createIndex(index));
+            }
+        }
+        resolver.resolveIndexFor(ShardAssignment.class)
+                .forEach(index -> directory.indexOps(ShardAssignment.class).createIndex(index));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.fileservice.shard;
+
+import com.example.fileservice.dto.ShardMoveResponse;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves an owner to another shard while the service keeps running. The owner's documents are copied
+ * while it keeps working; then its writes are fenced for as long as it takes every instance to see the
+ * fence, the documents written meanwhile are copied, the directory switches to the target, and once
+ * every instance reads from the target the source copy is deleted. Reads never stop; writes of that
+ * one owner get 503 for a few seconds.
+ */
+@Service
+@Slf4j
+public class ShardRebalancer {
+
+    // collection -> field holding the owner
+    private static final Map<String, String> OWNED_COLLECTIONS = Map.of(
+            "files", "ownerName",
+            "file_changes", "ownerName",
+            "user_sequences", "_id");
+    private static final int BATCH_SIZE = 16;
+
+    private final StorageShards shards;
+    private final ShardDirectory directory;
+    private final long inFlightWriteMs;
+
+    public ShardRebalancer(StorageShards shards,
+                           ShardDirectory directory,
+                           @Value("${storage.rebalance.in-flight-write-ms:2000}") long inFlightWriteMs) {
+        this.shards = shards;
+        this.directory = directory;
+        this.inFlightWriteMs = inFlightWriteMs;
+    }
+
+    public ShardMoveResponse move(String owner, String targetId) {
+        StorageShards.Shard target = shards.byId(targetId);
+        StorageShards.Shard source = directory.shardOf(owner);
+        if (source.id().equals(target.id())) {
+            return ShardMoveResponse.builder().owner(owner).from(source.id()).to(target.id()).moved(false).build();
+        }
+        long start = System.nanoTime();
+        directory.pin(owner);
+        log.info("Moving user '{}' from {} to {}", owner, source.id(), target.id());
+
+        copy(owner, source, target, false);
+        directory.beginMove(owner, target.id());
+        long documents;
+        try {
+            settle(directory.propagationMs() + inFlightWriteMs);
+            documents = copy(owner, source, target, true);
+            directory.completeMove(owner, target.id());
+        } catch (RuntimeException e) {
+            directory.abortMove(owner);
+            log.warn("Moving user '{}' to {} failed, it stays on {}", owner, target.id(), source.id(), e);
+            throw e;
+        }
+
+        // instances that have not seen the switch yet still read the source
+        settle(directory.propagationMs());
+        delete(owner, source);
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Moved user '{}' from {} to {}: {} documents in {} ms", owner, source.id(), target.id(), documents, durationMs);
+        return ShardMoveResponse.builder()
+                .owner(owner)
+                .from(source.id())
+                .to(target.id())
+                .moved(true)
+                .documents(documents)
+                .durationMs(durationMs)
+                .build();
+    }
+
+    // upserts by _id, so a second pass only rewrites; with prune it also drops what the source no longer has
+    private long copy(String owner, StorageShards.Shard source, StorageShards.Shard target, boolean prune) {
+        long copied = 0;
+        for (Map.Entry<String, String> owned : OWNED_COLLECTIONS.entrySet()) {
+            MongoCollection<Document> from = source.template().getCollection(owned.getKey());
+            MongoCollection<Document> to = target.template().getCollection(owned.getKey());
+            Bson filter = Filters.eq(owned.getValue(), owner);
+            Set<Object> ids = new HashSet<>();
+            List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+            for (Document document : from.find(filter)) {
+                ids.add(document.get("_id"));
+                batch.add(new ReplaceOneModel<>(Filters.eq("_id", document.get("_id")), document,
+                        new ReplaceOptions().upsert(true)));
+                if (batch.size() == BATCH_SIZE) {
+                    to.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                to.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+            }
+            if (prune) {
+                to.deleteMany(Filters.and(filter, Filters.nin("_id", ids)));
+            }
+            copied += ids.size();
+        }
+        return copied;
+    }
+
+    private void delete(String owner, StorageShards.Shard shard) {
+        for (Map.Entry<String, String> owned : OWNED_COLLECTIONS.entrySet()) {
+            shard.template().getCollection(owned.getKey()).deleteMany(Filters.eq(owned.getValue(), owner));
+        }
+    }
+
+    private static void settle(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving an owner", e);
+        }
+    }
+}
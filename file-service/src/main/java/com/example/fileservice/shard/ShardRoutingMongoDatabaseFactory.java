@@ -0,0 +1,52 @@
+package com.example.fileservice.shard;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+/**
+ * Database factory behind the application's {@code MongoTemplate} and repositories: each call goes to the
+ * shard of the owner bound in {@link ShardContext}, calls without an owner to the home shard.
+ */
+public class ShardRoutingMongoDatabaseFactory implements MongoDatabaseFactory {
+
+    private final ShardDirectory directory;
+    private final MongoDatabaseFactory home;
+
+    public ShardRoutingMongoDatabaseFactory(ShardDirectory directory, StorageShards shards) {
+        this.directory = directory;
+        this.home = shards.home().factory();
+    }
+
+    private MongoDatabaseFactory current() {
+        return directory.shardOf(ShardContext.owner()).factory();
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase() throws DataAccessException {
+        return current().getMongoDatabase();
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase(String dbName) throws DataAccessException {
+        return current().getMongoDatabase(dbName);
+    }
+
+    @Override
+    public PersistenceExceptionTranslator getExceptionTranslator() {
+        return home.getExceptionTranslator();
+    }
+
+    @Override
+    public ClientSession getSession(ClientSessionOptions options) {
+        return current().getSession(options);
+    }
+
+    @Override
+    public MongoDatabaseFactory withSession(ClientSession session) {
+        return current().withSession(session);
+    }
+}
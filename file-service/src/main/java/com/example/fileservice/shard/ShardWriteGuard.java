@@ -0,0 +1,25 @@
+package com.example.fileservice.shard;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.stereotype.Component;
+
+/** Runs {@link ShardDirectory#beforeWrite} for the bound owner ahead of every save and delete. */
+@Component
+@RequiredArgsConstructor
+public class ShardWriteGuard extends AbstractMongoEventListener<Object> {
+
+    private final ShardDirectory directory;
+
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<Object> event) {
+        directory.beforeWrite(ShardContext.owner());
+    }
+
+    @Override
+    public void onBeforeDelete(BeforeDeleteEvent<Object> event) {
+        directory.beforeWrite(ShardContext.owner());
+    }
+}
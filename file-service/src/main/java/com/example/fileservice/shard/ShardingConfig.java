@@ -0,0 +1,63 @@
+package com.example.fileservice.shard;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class ShardingConfig {
+
+    @Bean
+    public StorageShards storageShards(MongoClient mongoClient,
+                                       MongoProperties mongoProperties,
+                                       ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers,
+                                       @Value("${storage.shards:}") List<String> uris) {
+        List<StorageShards.Shard> shards = new ArrayList<>();
+        List<MongoClient> ownedClients = new ArrayList<>();
+        shards.add(shard("shard-0", mongoClient, mongoProperties.getMongoClientDatabase()));
+        for (String uri : uris) {
+            if (uri.isBlank()) {
+                continue;
+            }
+            ConnectionString connectionString = new ConnectionString(uri.trim());
+            if (connectionString.getDatabase() == null) {
+                throw new IllegalArgumentException("storage.shards URI needs a database: " + connectionString);
+            }
+            // same pool sizing and command listeners as the home shard
+            MongoClientSettings.Builder settings = MongoClientSettings.builder().applyConnectionString(connectionString);
+            customizers.orderedStream().forEach(customizer -> customizer.customize(settings));
+            MongoClient client = MongoClients.create(settings.build());
+            ownedClients.add(client);
+            shards.add(shard("shard-" + shards.size(), client, connectionString.getDatabase()));
+        }
+        return new StorageShards(shards, ownedClients);
+    }
+
+    // replaces Boot's factory, so MongoTemplate and the repositories follow ShardContext
+    @Bean
+    @Primary
+    @ConditionalOnProperty("storage.shards")
+    public MongoDatabaseFactory shardRoutingMongoDatabaseFactory(ShardDirectory directory, StorageShards shards) {
+        return new ShardRoutingMongoDatabaseFactory(directory, shards);
+    }
+
+    private static StorageShards.Shard shard(String id, MongoClient client, String database) {
+        MongoDatabaseFactory factory = new SimpleMongoClientDatabaseFactory(client, database);
+        return new StorageShards.Shard(id, client, factory, new MongoTemplate(factory));
+    }
+}
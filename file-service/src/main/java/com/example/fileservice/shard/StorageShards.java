@@ -0,0 +1,106 @@
+package com.example.fileservice.shard;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoClient;
+import com.mongodb.connection.ServerDescription;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+/**
+ * The Mongo databases file storage is spread over. {@code shard-0}, the home shard, is the database of
+ * {@code spring.data.mongodb.uri} and also holds the shard directory; {@code storage.shards} adds
+ * {@code shard-1}, {@code shard-2}, ... in order, so new shards must be appended.
+ */
+public class StorageShards implements DisposableBean {
+
+    public record Shard(String id, MongoClient client, MongoDatabaseFactory factory, MongoTemplate template) {
+    }
+
+    private final List<Shard> shards;
+    private final List<MongoClient> ownedClients;
+
+    public StorageShards(List<Shard> shards, List<MongoClient> ownedClients) {
+        this.shards = List.copyOf(shards);
+        this.ownedClients = List.copyOf(ownedClients);
+    }
+
+    public Shard home() {
+        return shards.get(0);
+    }
+
+    public List<Shard> all() {
+        return shards;
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public Shard byId(String id) {
+        for (Shard shard : shards) {
+            if (shard.id().equals(id)) {
+                return shard;
+            }
+        }
+        throw new IllegalArgumentException("Unknown storage shard '" + id + "'");
+    }
+
+    /** The shard whose client has seen the given server, the home shard if none has. */
+    public Shard servedBy(ServerAddress address) {
+        for (Shard shard : shards) {
+            if (shard.client() == null) {
+                continue;
+            }
+            for (ServerDescription server : shard.client().getClusterDescription().getServerDescriptions()) {
+                if (server.getAddress().equals(address)) {
+                    return shard;
+                }
+            }
+        }
+        return home();
+    }
+
+    /**
+     * Rendezvous hashing: the shard with the highest score for the owner. Adding a shard only takes owners
+     * from the others, but placements are pinned in the directory on first write, so existing owners stay.
+     */
+    public Shard rendezvous(String owner) {
+        long ownerHash = hash(owner);
+        Shard best = null;
+        long bestScore = 0;
+        for (Shard shard : shards) {
+            long score = mix(ownerHash ^ hash(shard.id()));
+            if (best == null || Long.compareUnsigned(score, bestScore) > 0) {
+                best = shard;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void destroy() {
+        ownedClients.forEach(MongoClient::close);
+    }
+
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
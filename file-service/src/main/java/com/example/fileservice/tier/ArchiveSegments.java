@@ -0,0 +1,228 @@
+package com.example.fileservice.tier;
+
+import com.example.fileservice.model.ArchiveLocation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only, deflate-compressed segment files holding the content of cold files. Each record is
+ * {@code magic, id length, id, raw length, compressed length, crc32 of the raw bytes, compressed bytes};
+ * a file's {@link ArchiveLocation} is the segment name and the record's offset, so reads are one
+ * positional read. Every instance appends to a segment of its own, created on its first append and
+ * sealed when it is full or the instance stops; several instances can therefore share the directory.
+ * Records of deleted files stay in place.
+ */
+@Component
+@Slf4j
+public class ArchiveSegments {
+
+    private static final int MAGIC = 0x46534547;
+    private static final int FIXED_HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final String writerId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, FileChannel> readers = new ConcurrentHashMap<>();
+    private final Counter appendedBytes;
+    private final Counter reads;
+    private FileChannel current;
+    private String currentName;
+    private long currentSize;
+    private int sequence;
+
+    public ArchiveSegments(MeterRegistry meterRegistry,
+                           @Value("${tiering.archive.dir:data/archive}") String directory,
+                           @Value("${tiering.archive.segment-max-bytes:268435456}") long segmentMaxBytes) {
+        this.directory = Path.of(directory);
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.appendedBytes = Counter.builder("tiering.archive.appended")
+                .baseUnit("bytes")
+                .description("Compressed bytes appended to archive segments")
+                .register(meterRegistry);
+        this.reads = Counter.builder("tiering.archive.reads")
+                .description("File contents read back from archive segments")
+                .register(meterRegistry);
+    }
+
+    /** Appends the content; it is durable only after {@link #sync()}. */
+    public synchronized ArchiveLocation append(String fileId, byte[] data) {
+        byte[] id = fileId.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer record = ByteBuffer.allocate(FIXED_HEADER_BYTES + id.length + compressed.length)
+                .putInt(MAGIC)
+                .putInt(id.length)
+                .put(id)
+                .putLong(data.length)
+                .putInt(compressed.length)
+                .putInt((int) crc.getValue())
+                .put(compressed)
+                .flip();
+        try {
+            if (current == null || (currentSize > 0 && currentSize + record.remaining() > segmentMaxBytes)) {
+                roll();
+            }
+            long offset = currentSize;
+            int length = record.remaining();
+            while (record.hasRemaining()) {
+                current.write(record);
+            }
+            currentSize += length;
+            appendedBytes.increment(length);
+            return ArchiveLocation.builder().segment(currentName).offset(offset).length(length).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Appending to archive segment " + currentName + " failed", e);
+        }
+    }
+
+    /** Forces everything appended so far to disk, before any document points at it. */
+    public synchronized void sync() {
+        if (current == null) {
+            return;
+        }
+        try {
+            current.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Syncing archive segment " + currentName + " failed", e);
+        }
+    }
+
+    public byte[] read(ArchiveLocation location) {
+        ByteBuffer record = ByteBuffer.allocate(location.getLength());
+        try {
+            FileChannel channel = readers.computeIfAbsent(location.getSegment(), this::openForRead);
+            long position = location.getOffset();
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    throw new IllegalStateException("Archive record at " + location + " is truncated");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reading archive record at " + location + " failed", e);
+        }
+        record.flip();
+        if (record.getInt() != MAGIC) {
+            throw new IllegalStateException("No archive record at " + location);
+        }
+        int idLength = record.getInt();
+        record.position(record.position() + idLength);
+        long rawLength = record.getLong();
+        int compressedLength = record.getInt();
+        int checksum = record.getInt();
+        byte[] data = inflate(record.array(), record.position(), compressedLength, rawLength);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalStateException("Archive record at " + location + " is corrupt");
+        }
+        reads.increment();
+        return data;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeQuietly(current);
+        current = null;
+        readers.values().forEach(ArchiveSegments::closeQuietly);
+        readers.clear();
+    }
+
+    private void roll() throws IOException {
+        closeQuietly(current);
+        Files.createDirectories(directory);
+        currentName = "segment-" + System.currentTimeMillis() + "-" + writerId + "-" + (sequence++) + SUFFIX;
+        current = FileChannel.open(directory.resolve(currentName),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSize = 0;
+        log.info("Archive segment {} opened", currentName);
+    }
+
+    private FileChannel openForRead(String segment) {
+        Path path = directory.resolve(segment).normalize();
+        if (!path.startsWith(directory.normalize()) || !segment.endsWith(SUFFIX)) {
+            throw new IllegalStateException("Invalid archive segment name '" + segment + "'");
+        }
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archive segment " + segment + " cannot be opened", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] chunk = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] source, int offset, int length, long rawLength) {
+        if (rawLength > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Archive record too large: " + rawLength + " bytes");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(source, offset, length);
+            byte[] data = new byte[(int) rawLength];
+            int filled = 0;
+            while (filled < data.length && !inflater.finished()) {
+                int inflated = inflater.inflate(data, filled, data.length - filled);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                filled += inflated;
+            }
+            if (filled != data.length) {
+                throw new IllegalStateException("Archive record inflated to " + filled + " of " + rawLength + " bytes");
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Archive record is not valid deflate data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Closing archive segment failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.fileservice.tier;
+
+import com.example.fileservice.model.ArchiveLocation;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.TieringLease;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Moves the content of cold files, uploaded long ago and not downloaded for a while, out of Mongo into
+ * {@link ArchiveSegments}. A batch is appended and synced before the documents swap {@code fileData} for
+ * the archive location, so a document never points at bytes that are not on disk. The job paces itself
+ * to {@code tiering.max-bytes-per-second} and pauses between batches, so foreground requests keep the
+ * disks and Mongo to themselves.
+ * <p>
+ * Every instance schedules the job, but a shard is only worked on by the holder of its
+ * {@link TieringLease}, taken before the first batch and renewed before each next one; the others skip
+ * the shard for this pass. Should a lease run out mid-batch anyway, the conditional update still lets
+ * only one copy become the file's archive location, the other is an unreferenced record.
+ */
+@Component
+@Slf4j
+public class TieringJob {
+
+    private final StorageShards shards;
+    private final ShardDirectory directory;
+    private final ArchiveSegments segments;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final Duration idle;
+    private final int batchSize;
+    private final long maxBytesPerSecond;
+    private final long batchPauseMs;
+    private final long intervalMs;
+    private final Duration leaseDuration;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Counter archivedFiles;
+    private final Counter archivedBytes;
+    private final Counter skippedFiles;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean stopping;
+
+    public TieringJob(StorageShards shards,
+                      ShardDirectory directory,
+                      ArchiveSegments segments,
+                      MeterRegistry meterRegistry,
+                      @Value("${tiering.enabled:true}") boolean enabled,
+                      @Value("${tiering.min-age-days:7}") long minAgeDays,
+                      @Value("${tiering.idle-days:7}") long idleDays,
+                      @Value("${tiering.batch-size:50}") int batchSize,
+                      @Value("${tiering.max-bytes-per-second:8388608}") long maxBytesPerSecond,
+                      @Value("${tiering.batch-pause-ms:200}") long batchPauseMs,
+                      @Value("${tiering.interval-ms:600000}") long intervalMs,
+                      @Value("${tiering.lease-ms:300000}") long leaseMs) {
+        this.shards = shards;
+        this.directory = directory;
+        this.segments = segments;
+        this.enabled = enabled;
+        this.minAge = Duration.ofDays(minAgeDays);
+        this.idle = Duration.ofDays(idleDays);
+        this.batchSize = batchSize;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.batchPauseMs = batchPauseMs;
+        this.intervalMs = intervalMs;
+        this.leaseDuration = Duration.ofMillis(leaseMs);
+        this.archivedFiles = Counter.builder("tiering.files.archived")
+                .description("Files whose content was moved to archive segments")
+                .register(meterRegistry);
+        this.archivedBytes = Counter.builder("tiering.bytes.archived")
+                .baseUnit("bytes")
+                .description("Uncompressed bytes moved out of Mongo")
+                .register(meterRegistry);
+        this.skippedFiles = Counter.builder("tiering.files.skipped")
+                .description("Archived files whose document was deleted or already archived meanwhile")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("tiering-"));
+        scheduler.scheduleWithFixedDelay(this::runQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("Tiering files older than {} and idle for {} to archive segments", minAge, idle);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** One pass over every shard; returns the number of files archived. */
+    public long run() {
+        LocalDateTime now = LocalDateTime.now();
+        Throttle throttle = new Throttle(maxBytesPerSecond);
+        long archived = 0;
+        for (StorageShards.Shard shard : shards.all()) {
+            archived += run(shard, now, throttle);
+        }
+        if (archived > 0) {
+            log.info("Tiering moved {} files to archive segments", archived);
+        }
+        return archived;
+    }
+
+    private long run(StorageShards.Shard shard, LocalDateTime now, Throttle throttle) {
+        MongoTemplate template = shard.template();
+        if (!acquireLease(template, shard.id())) {
+            log.debug("Tiering of shard {} is running on another instance", shard.id());
+            return 0;
+        }
+        try {
+            return archiveCold(template, shard, now, throttle);
+        } finally {
+            releaseLease(template, shard.id());
+        }
+    }
+
+    private long archiveCold(MongoTemplate template, StorageShards.Shard shard, LocalDateTime now, Throttle throttle) {
+        Criteria cold = where("archive").exists(false)
+                .and("fileData").exists(true)
+                .and("uploadDate").lt(now.minus(minAge))
+                .orOperator(where("lastAccessed").exists(false), where("lastAccessed").lt(now.minus(idle)));
+        long archived = 0;
+        ObjectId after = null;
+        while (!stopping && !Thread.currentThread().isInterrupted()) {
+            Query batchQuery = query(after == null ? cold : new Criteria().andOperator(cold, where("_id").gt(after)))
+                    .with(Sort.by("_id"))
+                    .limit(batchSize);
+            batchQuery.fields().exclude("fileData");
+            List<FileDocument> batch = template.find(batchQuery, FileDocument.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+            after = new ObjectId(batch.get(batch.size() - 1).getId());
+            archived += archive(template, shard, batch, throttle);
+            if (batch.size() < batchSize) {
+                break;
+            }
+            pause(batchPauseMs);
+            if (!acquireLease(template, shard.id())) {
+                log.warn("Tiering lease of shard {} was taken over, stopping this pass", shard.id());
+                break;
+            }
+        }
+        return archived;
+    }
+
+    /** Takes or renews the shard's lease; an upsert racing a live lease of another instance hits the unique id. */
+    private boolean acquireLease(MongoTemplate template, String shardId) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            TieringLease lease = template.findAndModify(
+                    query(where("_id").is(shardId)
+                            .orOperator(where("holder").is(instanceId), where("expiresAt").lt(now))),
+                    new Update().set("holder", instanceId).set("expiresAt", now.plus(leaseDuration)),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    TieringLease.class);
+            return lease != null && instanceId.equals(lease.getHolder());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private void releaseLease(MongoTemplate template, String shardId) {
+        template.updateFirst(query(where("_id").is(shardId).and("holder").is(instanceId)),
+                new Update().set("expiresAt", LocalDateTime.now()),
+                TieringLease.class);
+    }
+
+    private long archive(MongoTemplate template, StorageShards.Shard shard, List<FileDocument> batch, Throttle throttle) {
+        List<Appended> appended = new ArrayList<>(batch.size());
+        for (FileDocument metadata : batch) {
+            // copies left on a shard the owner is moving away from are deleted by the move
+            if (directory.isSharded() && !directory.shardOf(metadata.getOwnerName()).id().equals(shard.id())) {
+                continue;
+            }
+            // contents are loaded one at a time, a batch of them could be hundreds of megabytes
+            FileDocument doc = template.findById(new ObjectId(metadata.getId()), FileDocument.class);
+            if (doc == null || doc.getFileData() == null) {
+                continue;
+            }
+            appended.add(new Appended(doc.getId(), segments.append(doc.getId(), doc.getFileData()), doc.getFileData().length));
+            pause(throttle.delayMs(doc.getFileData().length));
+        }
+        segments.sync();
+        long archived = 0;
+        for (Appended entry : appended) {
+            // a content never changes under its id, only a delete can get in between
+            long matched = template.updateFirst(
+                    query(where("_id").is(new ObjectId(entry.id())).and("archive").exists(false)),
+                    new Update().set("archive", entry.location()).unset("fileData"),
+                    FileDocument.class).getMatchedCount();
+            if (matched == 0) {
+                skippedFiles.increment();
+                continue;
+            }
+            archived++;
+            archivedFiles.increment();
+            archivedBytes.increment(entry.bytes());
+        }
+        return archived;
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            log.warn("Tiering pass failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Appended(String id, ArchiveLocation location, int bytes) {
+    }
+
+    /** Paces a pass to a byte rate averaged from its start. */
+    private static final class Throttle {
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+
+        private Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        long delayMs(long moved) {
+            bytes += moved;
+            if (bytesPerSecond <= 0) {
+                return 0;
+            }
+            long dueNanos = (long) (bytes * 1e9 / bytesPerSecond);
+            return TimeUnit.NANOSECONDS.toMillis(dueNanos - (System.nanoTime() - startNanos));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.fileservice.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.example.fileservice.logging.AccessLogFilter;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccessLogFilterTests {
+
+    private AccessLogFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new AccessLogFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "successSampleRate", 1.0d);
+        ReflectionTestUtils.setField(filter, "slowThresholdMs", 1000L);
+    }
+
+    @Test
+    void whenRequestHasNoId_thenOneIsGeneratedAndVisibleInMdcDuringTheRequest() throws Exception {
+        // given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cloud/list");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> seenInMdc = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse res) {
+                seenInMdc.set(MDC.get(AccessLogFilter.CORRELATION_ID));
+            }
+        });
+
+        // when
+        filter.doFilter(request, response, chain);
+
+        // then
+        String id = response.getHeader(AccessLogFilter.REQUEST_ID_HEADER);
+        assertThat(id).isNotBlank();
+        assertThat(seenInMdc.get()).isEqualTo(id);
+        assertThat(MDC.get(AccessLogFilter.CORRELATION_ID)).isNull();
+    }
+
+    @Test
+    void whenRequestCarriesAnId_thenItIsReused() throws Exception {
+        // given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cloud/list");
+        request.addHeader(AccessLogFilter.REQUEST_ID_HEADER, "req-42");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // when
+        filter.doFilter(request, response, new MockFilterChain());
+
+        // then
+        assertThat(response.getHeader(AccessLogFilter.REQUEST_ID_HEADER)).isEqualTo("req-42");
+    }
+
+    @Test
+    void whenAsyncRequestTimesOut_thenItIsLoggedOnceAsAnError() throws Exception {
+        // given
+        Logger access = (Logger) LoggerFactory.getLogger("ACCESS");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        access.addAppender(appender);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cloud/changes");
+        request.setAsyncSupported(true);
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+
+        // when
+        try {
+            for (AsyncListener listener : async.getListeners()) {
+                listener.onTimeout(new AsyncEvent(async));
+            }
+            async.complete();
+        } finally {
+            access.detachAppender(appender);
+        }
+
+        // then
+        assertThat(appender.list).hasSize(1);
+        ILoggingEvent event = appender.list.get(0);
+        assertThat(event.getLevel()).isEqualTo(Level.ERROR);
+        assertThat(event.getKeyValuePairs()).anySatisfy(pair -> {
+            assertThat(pair.key).isEqualTo("status");
+            assertThat(pair.value).isEqualTo(503);
+        });
+    }
+}
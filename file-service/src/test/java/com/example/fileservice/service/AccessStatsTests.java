@@ -0,0 +1,113 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.access.AccessStats;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AccessStatsTests {
+
+    private static final String FILE_ID = "65f0c0ffee0000000000abcd";
+
+    @Mock
+    private ShardDirectory directory;
+    @Mock
+    private MongoTemplate template;
+    @Mock
+    private MongoCollection<Document> files;
+    @Mock
+    private BulkWriteResult result;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AccessStats stats;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(directory.shardOf("alice")).thenReturn(new StorageShards.Shard("shard-0", null, null, template));
+        lenient().when(template.getCollection("files")).thenReturn(files);
+        lenient().when(result.getMatchedCount()).thenReturn(1);
+        stats = new AccessStats(directory, meterRegistry, true, 10_000, 1000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void whenFileIsDownloadedConcurrently_thenOneFlushWritesTheWholeCount() throws InterruptedException {
+        // given
+        when(files.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(result);
+        ExecutorService downloads = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8_000; i++) {
+            downloads.execute(() -> stats.recordDownload(FILE_ID, "alice"));
+        }
+        downloads.shutdown();
+        assertThat(downloads.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        long updated = stats.flush();
+        long again = stats.flush();
+
+        // then
+        ArgumentCaptor<List<WriteModel<Document>>> bulk = ArgumentCaptor.forClass(List.class);
+        verify(files, times(1)).bulkWrite(bulk.capture(), any(BulkWriteOptions.class));
+        assertThat(bulk.getValue()).hasSize(1);
+        BsonDocument update = render(((UpdateOneModel<Document>) bulk.getValue().get(0)).getUpdate());
+        assertThat(update.getDocument("$inc").getNumber("downloadCount").longValue()).isEqualTo(8_000);
+        assertThat(update.getDocument("$max").isDateTime("lastAccessed")).isTrue();
+        assertThat(updated).isEqualTo(1);
+        assertThat(again).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void whenFlushFails_thenTheNextOneWritesTheSameDelta() {
+        // given
+        when(files.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenThrow(new MongoException("primary stepped down"))
+                .thenReturn(result);
+        stats.recordDownload(FILE_ID, "alice");
+        stats.recordDownload(FILE_ID, "alice");
+
+        // when
+        assertThatThrownBy(() -> stats.flush()).isInstanceOf(MongoException.class);
+        stats.recordDownload(FILE_ID, "alice");
+        stats.flush();
+
+        // then
+        ArgumentCaptor<List<WriteModel<Document>>> bulk = ArgumentCaptor.forClass(List.class);
+        verify(files, times(2)).bulkWrite(bulk.capture(), any(BulkWriteOptions.class));
+        BsonDocument retried = render(((UpdateOneModel<Document>) bulk.getAllValues().get(1).get(0)).getUpdate());
+        assertThat(retried.getDocument("$inc").getNumber("downloadCount").longValue()).isEqualTo(3);
+    }
+
+    private static BsonDocument render(Bson update) {
+        return update.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+}
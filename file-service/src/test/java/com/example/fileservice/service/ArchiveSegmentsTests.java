@@ -0,0 +1,91 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.model.ArchiveLocation;
+import com.example.fileservice.tier.ArchiveSegments;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ArchiveSegmentsTests {
+
+    @TempDir
+    Path directory;
+
+    private ArchiveSegments segments;
+
+    @AfterEach
+    void tearDown() {
+        if (segments != null) {
+            segments.close();
+        }
+    }
+
+    @Test
+    void whenContentIsAppended_thenItIsReadBackFromItsLocation() {
+        // given
+        segments = new ArchiveSegments(new SimpleMeterRegistry(), directory.toString(), 1024 * 1024);
+        byte[] text = "hello hello hello hello hello".repeat(100).getBytes();
+        byte[] random = new byte[10_000];
+        new Random(42).nextBytes(random);
+
+        // when
+        ArchiveLocation first = segments.append("file-1", text);
+        ArchiveLocation second = segments.append("file-2", random);
+        segments.sync();
+
+        // then
+        assertThat(second.getSegment()).isEqualTo(first.getSegment());
+        assertThat(second.getOffset()).isEqualTo(first.getLength());
+        assertThat(first.getLength()).isLessThan(text.length / 10);
+        assertThat(segments.read(first)).isEqualTo(text);
+        assertThat(segments.read(second)).isEqualTo(random);
+    }
+
+    @Test
+    void whenSegmentIsFull_thenAppendsGoToANewOne() {
+        // given
+        segments = new ArchiveSegments(new SimpleMeterRegistry(), directory.toString(), 64);
+        byte[] content = new byte[100];
+        new Random(7).nextBytes(content);
+
+        // when
+        ArchiveLocation first = segments.append("file-1", content);
+        ArchiveLocation second = segments.append("file-2", content);
+
+        // then
+        assertThat(second.getSegment()).isNotEqualTo(first.getSegment());
+        assertThat(second.getOffset()).isZero();
+        assertThat(segments.read(first)).isEqualTo(content);
+        assertThat(segments.read(second)).isEqualTo(content);
+    }
+
+    @Test
+    void whenRecordIsCorrupted_thenReadFails() throws IOException {
+        // given
+        segments = new ArchiveSegments(new SimpleMeterRegistry(), directory.toString(), 1024 * 1024);
+        ArchiveLocation location = segments.append("file-1", "some content".getBytes());
+        segments.sync();
+        // a byte of the compressed content, ahead of the zlib trailer
+        long position = location.getOffset() + location.getLength() - 6;
+        try (FileChannel channel = FileChannel.open(directory.resolve(location.getSegment()),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer octet = ByteBuffer.allocate(1);
+            channel.read(octet, position);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~octet.get(0)}), position);
+        }
+
+        // when & then
+        assertThatThrownBy(() -> segments.read(location)).isInstanceOf(IllegalStateException.class);
+    }
+}
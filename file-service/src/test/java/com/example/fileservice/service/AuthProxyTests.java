@@ -0,0 +1,172 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.client.AuthProxy;
+import com.example.fileservice.client.AuthServiceClient;
+import com.example.fileservice.client.CircuitBreaker;
+import com.example.fileservice.exception.AuthServiceUnavailableException;
+import com.example.securitylib.dto.LoginRequest;
+import com.example.securitylib.dto.LoginResponse;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// AuthServiceClient is replaced by a stub that simulates a slow, failing or hanging auth-service
+@ExtendWith(MockitoExtension.class)
+public class AuthProxyTests {
+
+    private static final String TEST_TOKEN = "jwt.test.token";
+
+    @Mock
+    private AuthServiceClient authServiceClient;
+    private AuthProxy authProxy;
+
+    @AfterEach
+    void tearDown() {
+        if (authProxy != null) {
+            ReflectionTestUtils.invokeMethod(authProxy, "shutdown");
+        }
+    }
+
+    @Test
+    void whenFirstLogoutAttemptIsSlow_thenHedgedAttemptAnswers() {
+        // given
+        authProxy = new AuthProxy(authServiceClient, new SimpleMeterRegistry(), 10, 5000, true, 50, 20, 0.5, 5000);
+        AtomicInteger attempts = new AtomicInteger();
+        when(authServiceClient.logout()).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                Thread.sleep(2000);
+            }
+            return ResponseEntity.ok().build();
+        });
+
+        // when
+        long start = System.nanoTime();
+        ResponseEntity<Void> response = authProxy.logout().join();
+
+        // then
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+        verify(authServiceClient, times(2)).logout();
+    }
+
+    @Test
+    void whenLoginOrRegisterIsSlow_thenItIsNotHedged() {
+        // given
+        authProxy = new AuthProxy(authServiceClient, new SimpleMeterRegistry(), 10, 5000, true, 10, 20, 0.5, 5000);
+        when(authServiceClient.login(any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return ResponseEntity.ok(new LoginResponse(TEST_TOKEN));
+        });
+        when(authServiceClient.register(any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return ResponseEntity.ok().build();
+        });
+
+        // when
+        authProxy.login(new LoginRequest()).join();
+        authProxy.register(new UserRegistrationRequest()).join();
+
+        // then
+        verify(authServiceClient, times(1)).login(any());
+        verify(authServiceClient, times(1)).register(any());
+    }
+
+    @Test
+    void whenAuthServiceKeepsFailing_thenCircuitOpensAndCallsFailFast() {
+        // given
+        authProxy = new AuthProxy(authServiceClient, new SimpleMeterRegistry(), 10, 5000, false, 0, 4, 0.5, 60000);
+        when(authServiceClient.logout()).thenThrow(new IllegalStateException("connection refused"));
+
+        // when
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<ResponseEntity<Void>> call = authProxy.logout();
+            assertThatThrownBy(call::join).hasCauseInstanceOf(IllegalStateException.class);
+        }
+
+        // then
+        assertThat(authProxy.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> authProxy.logout().join())
+                .hasCauseInstanceOf(AuthServiceUnavailableException.class);
+        verify(authServiceClient, times(4)).logout();
+    }
+
+    @Test
+    void whenRouteIsAtConcurrencyLimit_thenExtraCallIsRejected() throws InterruptedException {
+        // given
+        authProxy = new AuthProxy(authServiceClient, new SimpleMeterRegistry(), 1, 5000, false, 0, 20, 0.5, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authServiceClient.logout()).thenAnswer(invocation -> {
+            release.await();
+            return ResponseEntity.ok().build();
+        });
+
+        // when
+        CompletableFuture<ResponseEntity<Void>> first = authProxy.logout();
+        CompletableFuture<ResponseEntity<Void>> second = authProxy.logout();
+
+        // then
+        assertThatThrownBy(second::join).hasCauseInstanceOf(AuthServiceUnavailableException.class);
+        release.countDown();
+        assertThat(first.join().getStatusCode().is2xxSuccessful()).isTrue();
+    }
+
+    @Test
+    void whenAuthServiceHangs_thenCallTimesOut() {
+        // given
+        authProxy = new AuthProxy(authServiceClient, new SimpleMeterRegistry(), 10, 100, false, 0, 20, 0.5, 5000);
+        when(authServiceClient.logout()).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return ResponseEntity.ok().build();
+        });
+
+        // when & then
+        assertThatThrownBy(() -> authProxy.logout().join())
+                .hasCauseInstanceOf(AuthServiceUnavailableException.class)
+                .hasMessageContaining("timed out");
+    }
+
+    @Test
+    void whenCalledInsideObservation_thenUpstreamCallSeesTheSameObservation() {
+        // given
+        authProxy = new AuthProxy(authServiceClient, new SimpleMeterRegistry(), 10, 5000, false, 0, 20, 0.5, 5000);
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(context -> true);
+        ObservationThreadLocalAccessor.getInstance().setObservationRegistry(observationRegistry);
+        AtomicReference<Observation> seenByUpstream = new AtomicReference<>();
+        when(authServiceClient.logout()).thenAnswer(invocation -> {
+            seenByUpstream.set(observationRegistry.getCurrentObservation());
+            return ResponseEntity.ok().build();
+        });
+        Observation request = Observation.start("http.server.requests", observationRegistry);
+
+        // when
+        try (Observation.Scope scope = request.openScope()) {
+            authProxy.logout().join();
+        } finally {
+            request.stop();
+        }
+
+        // then
+        assertThat(seenByUpstream.get()).isSameAs(request);
+    }
+}
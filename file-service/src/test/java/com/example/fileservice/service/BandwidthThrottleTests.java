@@ -0,0 +1,97 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.bandwidth.BandwidthThrottle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class BandwidthThrottleTests {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final long MB = 1024 * 1024;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BandwidthThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // a 1 MB/s user can burst no more than one chunk, the second one has to wait
+        throttle = new BandwidthThrottle(meterRegistry, true, 100 * MB, MB, 100 * MB, 50);
+    }
+
+    @Test
+    void whenUserExceedsRoleRate_thenWritesAreThrottled() throws Exception {
+        // given
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        // when
+        try (BandwidthThrottle.Transfer transfer = throttle.open(caller("alice", "USER"))) {
+            OutputStream out = transfer.throttle(sink);
+            out.write(new byte[2 * CHUNK]);
+        }
+
+        // then
+        assertThat(sink.size()).isEqualTo(2 * CHUNK);
+        assertThat(counter("bandwidth.bytes")).isEqualTo(2.0 * CHUNK);
+        assertThat(counter("bandwidth.throttled.bytes")).isEqualTo(CHUNK);
+        assertThat(meterRegistry.get("bandwidth.throttle.wait").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void whenCallerIsAdmin_thenAdminRateApplies() throws Exception {
+        // given
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        // when
+        try (BandwidthThrottle.Transfer transfer = throttle.open(caller("root", "ADMIN"))) {
+            transfer.throttle(sink).write(new byte[2 * CHUNK]);
+        }
+
+        // then
+        assertThat(counter("bandwidth.throttled.bytes")).isZero();
+    }
+
+    @Test
+    void whenSeveralUsersAreActive_thenNodeBudgetIsSharedEqually() {
+        // given
+        BandwidthThrottle.Transfer alice = throttle.open(caller("alice", "USER"));
+        BandwidthThrottle.Transfer aliceAgain = throttle.open(caller("alice", "USER"));
+        BandwidthThrottle.Transfer bob = throttle.open(caller("bob", "USER"));
+
+        // when
+        double sharedByTwo = gauge("bandwidth.fair.share");
+        bob.close();
+        double afterBobLeft = gauge("bandwidth.fair.share");
+        alice.close();
+        aliceAgain.close();
+
+        // then
+        assertThat(sharedByTwo).isCloseTo(50.0 * MB, within(1.0));
+        assertThat(afterBobLeft).isCloseTo(100.0 * MB, within(1.0));
+        assertThat(gauge("bandwidth.active.users")).isZero();
+    }
+
+    private static Authentication caller(String name, String role) {
+        return new UsernamePasswordAuthenticationToken(name, null, List.of(new SimpleGrantedAuthority(role)));
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+}
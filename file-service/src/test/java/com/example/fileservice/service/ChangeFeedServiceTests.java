@@ -0,0 +1,178 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.dto.ChangesResponse;
+import com.example.fileservice.dto.FileChangeResponse;
+import com.example.fileservice.model.FileChange;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.PendingChange;
+import com.example.fileservice.model.UserSequence;
+import com.example.fileservice.repository.FileChangeRepository;
+import com.example.securitylib.JwtService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ChangeFeedServiceTests {
+
+    private static final String TEST_TOKEN = "test-jwt-token";
+    private static final String TEST_USERNAME = "testuser";
+
+    @Mock
+    private MongoOperations mongo;
+    @Mock
+    private FileChangeRepository changeRepository;
+    @Mock
+    private JwtService jwtService;
+
+    private ChangeFeedService changeFeedService;
+
+    @BeforeEach
+    void setUp() {
+        changeFeedService = new ChangeFeedService(mongo, changeRepository, jwtService, 5000, 16);
+    }
+
+    @Test
+    void whenChangeIsPublished_thenItTakesTheNextSequenceAndLeavesTheDocument() {
+        // given
+        when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSequence.class)))
+                .thenReturn(new UserSequence(TEST_USERNAME, 7));
+        FileDocument doc = pending(FileChange.Type.RENAMED, "b.txt", "a.txt");
+
+        // when
+        changeFeedService.publish(doc);
+
+        // then
+        ArgumentCaptor<FileChange> captor = ArgumentCaptor.forClass(FileChange.class);
+        verify(changeRepository).insert(captor.capture());
+        assertThat(captor.getValue().getId()).isEqualTo(doc.getPendingChange().getChangeId());
+        assertThat(captor.getValue().getSequence()).isEqualTo(7);
+        assertThat(captor.getValue().getType()).isEqualTo(FileChange.Type.RENAMED);
+        assertThat(captor.getValue().getFileName()).isEqualTo("b.txt");
+        assertThat(captor.getValue().getPreviousFileName()).isEqualTo("a.txt");
+        assertThat(captor.getValue().getOwnerName()).isEqualTo(TEST_USERNAME);
+        ArgumentCaptor<Query> marked = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> cleared = ArgumentCaptor.forClass(Update.class);
+        verify(mongo).updateFirst(marked.capture(), cleared.capture(), eq(FileDocument.class));
+        assertThat(marked.getValue().getQueryObject())
+                .containsEntry("pendingChange.changeId", doc.getPendingChange().getChangeId());
+        assertThat(cleared.getValue().getUpdateObject().get("$unset", Document.class)).containsKey("pendingChange");
+        verify(mongo, never()).remove(any(Query.class), eq(FileDocument.class));
+    }
+
+    @Test
+    void whenDeleteIsPublishedAgain_thenTheDuplicateIsSkippedAndTheDocumentRemoved() {
+        // given: an earlier attempt got the tombstone in but not the document removed
+        when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSequence.class)))
+                .thenReturn(new UserSequence(TEST_USERNAME, 8));
+        when(changeRepository.insert(any(FileChange.class))).thenThrow(new DuplicateKeyException("E11000"));
+        FileDocument doc = pending(FileChange.Type.DELETED, "a.txt", null);
+
+        // when
+        changeFeedService.publish(doc);
+
+        // then
+        verify(mongo).remove(any(Query.class), eq(FileDocument.class));
+        verify(mongo, never()).updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class));
+    }
+
+    @Test
+    void whenChangesFollowTheCursor_thenTheyAreReturnedWithTombstones() {
+        // given
+        when(jwtService.getUsername(TEST_TOKEN)).thenReturn(TEST_USERNAME);
+        LocalDateTime old = LocalDateTime.now().minusMinutes(1);
+        when(changeRepository.findByOwnerNameAndSequenceGreaterThanOrderBySequenceAsc(eq(TEST_USERNAME), eq(3L), any(Pageable.class)))
+                .thenReturn(List.of(change(4, FileChange.Type.UPLOADED, old), change(5, FileChange.Type.DELETED, old)));
+
+        // when
+        ChangesResponse response = changeFeedService.changesSince(TEST_TOKEN, 3, 10, 0).join();
+
+        // then
+        assertThat(response.getChanges()).extracting(FileChangeResponse::getSequence).containsExactly(4L, 5L);
+        assertThat(response.getChanges().get(1).getSize()).isNull();
+        assertThat(response.getCursor()).isEqualTo(5);
+        assertThat(response.isHasMore()).isFalse();
+    }
+
+    @Test
+    void whenRecentGapInSequence_thenReadStopsInFrontOfIt() {
+        // given
+        when(jwtService.getUsername(TEST_TOKEN)).thenReturn(TEST_USERNAME);
+        LocalDateTime now = LocalDateTime.now();
+        when(changeRepository.findByOwnerNameAndSequenceGreaterThanOrderBySequenceAsc(eq(TEST_USERNAME), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(change(1, FileChange.Type.UPLOADED, now), change(3, FileChange.Type.UPLOADED, now)));
+
+        // when
+        ChangesResponse response = changeFeedService.changesSince(TEST_TOKEN, 0, 10, 0).join();
+
+        // then
+        assertThat(response.getChanges()).extracting(FileChangeResponse::getSequence).containsExactly(1L);
+        assertThat(response.getCursor()).isEqualTo(1);
+    }
+
+    @Test
+    void whenLongPolling_thenNextChangeCompletesTheWaiter() throws Exception {
+        // given
+        when(jwtService.getUsername(TEST_TOKEN)).thenReturn(TEST_USERNAME);
+        when(changeRepository.findByOwnerNameAndSequenceGreaterThanOrderBySequenceAsc(eq(TEST_USERNAME), eq(1L), any(Pageable.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of())
+                .thenReturn(List.of(change(2, FileChange.Type.UPLOADED, LocalDateTime.now())));
+        when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSequence.class)))
+                .thenReturn(new UserSequence(TEST_USERNAME, 2));
+        CompletableFuture<ChangesResponse> pending = changeFeedService.changesSince(TEST_TOKEN, 1, 10, 30);
+        assertThat(pending).isNotDone();
+
+        // when
+        changeFeedService.publish(pending(FileChange.Type.UPLOADED, "b.txt", null));
+
+        // then
+        ChangesResponse response = pending.get(1, TimeUnit.SECONDS);
+        assertThat(response.getChanges()).extracting(FileChangeResponse::getSequence).containsExactly(2L);
+        assertThat(response.getCursor()).isEqualTo(2);
+    }
+
+    private static FileDocument pending(FileChange.Type type, String fileName, String previousFileName) {
+        return FileDocument.builder()
+                .id("64b7f0c2a1b2c3d4e5f60718")
+                .ownerName(TEST_USERNAME)
+                .fileName(fileName)
+                .size(10)
+                .contentType("text/plain")
+                .pendingChange(PendingChange.of(type, previousFileName))
+                .build();
+    }
+
+    private static FileChange change(long sequence, FileChange.Type type, LocalDateTime changedAt) {
+        return FileChange.builder()
+                .ownerName(TEST_USERNAME)
+                .sequence(sequence)
+                .type(type)
+                .fileName("file-" + sequence + ".txt")
+                .size(100)
+                .changedAt(changedAt)
+                .build();
+    }
+}
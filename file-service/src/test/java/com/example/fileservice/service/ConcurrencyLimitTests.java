@@ -0,0 +1,124 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.concurrency.AdaptiveConcurrencyLimit;
+import com.example.fileservice.concurrency.ConcurrencyLimitFilter;
+import com.example.fileservice.concurrency.EndpointClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimitTests {
+
+    private static final long BASE_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void whenLatencyIsStableAndLimitIsUsed_thenLimitGrows() {
+        // given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 10, 2, 100, 1.5, 0.2);
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            int inFlight = limit.tryAcquire();
+            limit.release(BASE_RTT, Math.max(inFlight, limit.getLimit()), false);
+        }
+
+        // then
+        assertThat(limit.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    void whenLatencyRises_thenLimitShrinks() {
+        // given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 50, 2, 100, 1.5, 0.2);
+        for (int i = 0; i < 20; i++) {
+            limit.release(BASE_RTT, 50, false);
+        }
+        int before = limit.getLimit();
+
+        // when
+        for (int i = 0; i < 20; i++) {
+            limit.release(BASE_RTT * 10, limit.getLimit(), false);
+        }
+
+        // then
+        assertThat(limit.getLimit()).isLessThan(before / 2);
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void whenInFlightReachesLimit_thenNextAcquireIsRefused() {
+        // given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 2, 2, 10, 1.5, 0.2);
+
+        // when
+        int first = limit.tryAcquire();
+        int second = limit.tryAcquire();
+        int third = limit.tryAcquire();
+
+        // then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(2);
+        assertThat(third).isEqualTo(-1);
+    }
+
+    @Test
+    void whenEndpointClassIsFull_thenFilterRejectsWith503AndRetryAfter() throws Exception {
+        // given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry, true, 4, 4, 4, 1.5, 0.2, 2);
+        AdaptiveConcurrencyLimit transfer = filter.limit(EndpointClass.TRANSFER);
+        for (int i = 0; i < 4; i++) {
+            transfer.tryAcquire();
+        }
+        MockHttpServletRequest download = new MockHttpServletRequest("GET", "/cloud/file");
+        download.setServletPath("/cloud/file");
+        MockHttpServletRequest list = new MockHttpServletRequest("GET", "/cloud/list");
+        list.setServletPath("/cloud/list");
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+
+        // when
+        filter.doFilter(download, rejected, new MockFilterChain());
+        filter.doFilter(list, admitted, new MockFilterChain());
+
+        // then
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(admitted.getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.get("http.concurrency.rejected").tag("endpoint", "transfer").counter().count())
+                .isEqualTo(1.0);
+        assertThat(filter.limit(EndpointClass.METADATA).getInFlight()).isZero();
+    }
+
+    @Test
+    void whenAsyncRequestTimesOut_thenItCountsAsDropAndIsReleasedOnce() throws Exception {
+        // given
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(new SimpleMeterRegistry(), true, 20, 4, 40, 1.5, 0.2, 1);
+        AdaptiveConcurrencyLimit metadata = filter.limit(EndpointClass.METADATA);
+        MockHttpServletRequest list = new MockHttpServletRequest("GET", "/cloud/list");
+        list.setServletPath("/cloud/list");
+        list.setAsyncSupported(true);
+        filter.doFilter(list, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        MockAsyncContext async = (MockAsyncContext) list.getAsyncContext();
+        assertThat(metadata.getInFlight()).isEqualTo(1);
+
+        // when
+        for (AsyncListener listener : async.getListeners()) {
+            listener.onTimeout(new AsyncEvent(async));
+        }
+        async.complete();
+
+        // then
+        assertThat(metadata.getInFlight()).isZero();
+        assertThat(metadata.getLimit()).isLessThan(20);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
+import com.example.fileservice.exception.FileNotFoundException;
+import com.example.fileservice.model.FileDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DownloadCoalescerTests {
+
+    private static final int WAITERS = 8;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferMemoryBudget memoryBudget;
+    private DownloadCoalescer coalescer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        memoryBudget = new TransferMemoryBudget(meterRegistry, 1024 * 1024, 1000);
+        coalescer = new DownloadCoalescer(meterRegistry, memoryBudget);
+        executor = Executors.newFixedThreadPool(WAITERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void whenSameFileIsFetchedConcurrently_thenStorageIsReadOnceAndMemoryReservedOnce() throws Exception {
+        // given
+        FileDocument metadata = metadata("file-1");
+        FileDocument content = FileDocument.builder().id("file-1").size(4096).fileData(new byte[4096]).build();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        // when
+        List<Future<DownloadCoalescer.Fetched>> results = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            results.add(executor.submit(() -> coalescer.fetch(metadata, () -> {
+                loads.incrementAndGet();
+                await(release);
+                return content;
+            })));
+        }
+        waitForCoalesced(WAITERS - 1);
+        release.countDown();
+        List<DownloadCoalescer.Fetched> fetched = new ArrayList<>();
+        for (Future<DownloadCoalescer.Fetched> result : results) {
+            fetched.add(result.get(5, TimeUnit.SECONDS));
+        }
+
+        // then
+        assertThat(loads).hasValue(1);
+        assertThat(fetched).allSatisfy(f -> assertThat(f.document()).isSameAs(content));
+        assertThat(memoryBudget.reservedBytes()).isEqualTo(4096);
+        assertThat(meterRegistry.get("file.download.fetches").counter().count()).isEqualTo(1);
+
+        fetched.subList(1, WAITERS).forEach(f -> f.reservation().close());
+        assertThat(memoryBudget.reservedBytes()).isEqualTo(4096);
+        fetched.get(0).reservation().close();
+        assertThat(memoryBudget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void whenFetchFails_thenEveryWaiterGetsTheErrorAndNothingStaysReserved() throws Exception {
+        // given
+        FileDocument metadata = metadata("file-1");
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when
+        List<Future<DownloadCoalescer.Fetched>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(executor.submit(() -> coalescer.fetch(metadata, () -> {
+                await(release);
+                throw new FileNotFoundException("File not found: report.pdf");
+            })));
+        }
+        waitForCoalesced(1);
+        release.countDown();
+
+        // then
+        for (Future<DownloadCoalescer.Fetched> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(FileNotFoundException.class);
+        }
+        assertThat(memoryBudget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void whenContentVersionDiffers_thenFetchesAreNotShared() {
+        // when
+        DownloadCoalescer.Fetched first = coalescer.fetch(metadata("file-1"), () -> metadata("file-1"));
+        DownloadCoalescer.Fetched second = coalescer.fetch(metadata("file-2"), () -> metadata("file-2"));
+
+        // then
+        assertThat(first.document().getId()).isEqualTo("file-1");
+        assertThat(second.document().getId()).isEqualTo("file-2");
+        assertThat(meterRegistry.get("file.download.coalesced").counter().count()).isZero();
+        first.reservation().close();
+        second.reservation().close();
+    }
+
+    private static FileDocument metadata(String id) {
+        return FileDocument.builder().id(id).ownerName("testuser").fileName("report.pdf").size(4096).build();
+    }
+
+    private void waitForCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("file.download.coalesced").counter().count() < expected
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,24 +1,38 @@
 package com.example.fileservice.service;
 
+import com.example.fileservice.bandwidth.BandwidthThrottle;
+import com.example.fileservice.bulkhead.TransferLane;
 import com.example.fileservice.controller.FileController;
 import com.example.fileservice.dto.FileDownloadResponse;
 import com.example.fileservice.dto.FileListResponse;
 import com.example.fileservice.dto.request.RenameFileRequest;
 import com.example.fileservice.exception.FileNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -30,11 +44,34 @@ public class FileControllerTests {
     private static final String TEST_TOKEN = "test-jwt-token";
     private static final String TEST_FILENAME = "test.txt";
     private static final String NEW_FILENAME = "new.txt";
+    private static final String TEST_USERNAME = "testuser";
     @Mock
     private FileService fileService;
+    @Spy
+    private TransferLane transferLane = new TransferLane(new SimpleMeterRegistry(), 2, 4);
+    @Spy
+    private BandwidthThrottle bandwidthThrottle = new BandwidthThrottle(new SimpleMeterRegistry(), false, 1, 1, 1, 0);
     @InjectMocks
     private FileController fileController;
 
+    private static String etag(String owner, long sequence, int limit) {
+        String ownerTag = DigestUtils.md5DigestAsHex(owner.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+        return "W/\"" + ownerTag + "-" + sequence + "-" + limit + "\"";
+    }
+
+    private static ServletWebRequest listRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cloud/list");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferLane.destroy();
+    }
+
     @Test
     void uploadFile_whenValidRequest_shouldReturnSuccessResponse() throws IOException {
         // given
@@ -43,7 +80,7 @@ public class FileControllerTests {
         doNothing().when(fileService).uploadFile(TEST_TOKEN, TEST_FILENAME, file);
 
         // when
-        ResponseEntity<?> response = fileController.uploadFile(TEST_TOKEN, TEST_FILENAME, file);
+        ResponseEntity<?> response = fileController.uploadFile(TEST_TOKEN, TEST_FILENAME, file).join();
 
         // then
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -65,7 +102,9 @@ public class FileControllerTests {
                 .when(fileService).uploadFile(TEST_TOKEN, TEST_FILENAME, file);
 
         // when & then
-        assertThatThrownBy(() -> fileController.uploadFile(TEST_TOKEN, TEST_FILENAME, file))
+        assertThatThrownBy(() -> fileController.uploadFile(TEST_TOKEN, TEST_FILENAME, file).join())
+                .isInstanceOf(CompletionException.class)
+                .cause()
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessage("File already exists");
     }
@@ -101,7 +140,7 @@ public class FileControllerTests {
     }
 
     @Test
-    void downloadFile_whenValidRequest_shouldReturnFileWithHeaders() {
+    void downloadFile_whenValidRequest_shouldReturnFileWithHeaders() throws IOException {
         // given
         byte[] fileContent = "Hello World".getBytes();
         ByteArrayResource resource = new ByteArrayResource(fileContent);
@@ -116,11 +155,13 @@ public class FileControllerTests {
         when(fileService.downloadFile(TEST_TOKEN, TEST_FILENAME)).thenReturn(downloadResponse);
 
         // when
-        ResponseEntity<?> response = fileController.downloadFile(TEST_TOKEN, TEST_FILENAME);
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile(TEST_TOKEN, TEST_FILENAME).join();
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        response.getBody().writeTo(written);
 
         // then
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isEqualTo(resource);
+        assertThat(written.toByteArray()).isEqualTo(fileContent);
         assertThat(response.getHeaders().getContentType().toString()).isEqualTo("text/plain");
         assertThat(response.getHeaders().getContentLength()).isEqualTo(fileContent.length);
         assertThat(response.getHeaders().get("Content-Disposition"))
@@ -136,7 +177,9 @@ public class FileControllerTests {
                 .thenThrow(new FileNotFoundException("File not found: " + TEST_FILENAME));
 
         // when & then
-        assertThatThrownBy(() -> fileController.downloadFile(TEST_TOKEN, TEST_FILENAME))
+        assertThatThrownBy(() -> fileController.downloadFile(TEST_TOKEN, TEST_FILENAME).join())
+                .isInstanceOf(CompletionException.class)
+                .cause()
                 .isInstanceOf(FileNotFoundException.class)
                 .hasMessage("File not found: " + TEST_FILENAME);
     }
@@ -194,31 +237,86 @@ public class FileControllerTests {
                         .build()
         );
 
-        when(fileService.getAllFiles(TEST_TOKEN, limit)).thenReturn(expectedFiles);
+        when(fileService.namespaceVersion(TEST_TOKEN)).thenReturn(new FileService.NamespaceVersion(TEST_USERNAME, 0L));
+        when(fileService.getAllFiles(TEST_TOKEN, limit, 0L)).thenReturn(expectedFiles);
 
         // when
-        ResponseEntity<?> response = fileController.getFileList(TEST_TOKEN, limit);
+        ResponseEntity<?> response = fileController.getFileList(TEST_TOKEN, limit, listRequest(null));
 
         // then
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(expectedFiles);
 
-        verify(fileService).getAllFiles(TEST_TOKEN, limit);
+        verify(fileService).getAllFiles(TEST_TOKEN, limit, 0L);
+    }
+
+    @Test
+    void getFileList_whenNamespaceVersionMatches_shouldAnswerNotModifiedWithoutListing() {
+        // given
+        when(fileService.namespaceVersion(TEST_TOKEN)).thenReturn(new FileService.NamespaceVersion(TEST_USERNAME, 7L));
+        ServletWebRequest unchanged = listRequest(etag(TEST_USERNAME, 7, 5));
+
+        // when
+        ResponseEntity<?> response = fileController.getFileList(TEST_TOKEN, 5, unchanged);
+
+        // then
+        assertThat(response).isNull();
+        assertThat(unchanged.getResponse().getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        verify(fileService, never()).getAllFiles(any(), anyInt(), anyLong());
+    }
+
+    @Test
+    void getFileList_whenNamespaceChanged_shouldReturnListWithNewETag() {
+        // given
+        when(fileService.namespaceVersion(TEST_TOKEN)).thenReturn(new FileService.NamespaceVersion(TEST_USERNAME, 8L));
+        when(fileService.getAllFiles(TEST_TOKEN, 5, 8L)).thenReturn(List.of());
+
+        // when
+        ResponseEntity<?> response = fileController.getFileList(TEST_TOKEN, 5, listRequest(etag(TEST_USERNAME, 7, 5)));
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo(etag(TEST_USERNAME, 8, 5));
+    }
+
+    @Test
+    void getFileList_whenAnotherUserIsAtTheSameVersion_shouldNotAnswerNotModified() {
+        // given: the browser cached alice's list at version 3, bob is at version 3 too
+        String aliceToken = "alice-token";
+        String bobToken = "bob-token";
+        when(fileService.namespaceVersion(aliceToken)).thenReturn(new FileService.NamespaceVersion("alice", 3L));
+        when(fileService.namespaceVersion(bobToken)).thenReturn(new FileService.NamespaceVersion("bob", 3L));
+        when(fileService.getAllFiles(aliceToken, 5, 3L)).thenReturn(List.of());
+        when(fileService.getAllFiles(bobToken, 5, 3L)).thenReturn(List.of());
+        String aliceTag = fileController.getFileList(aliceToken, 5, listRequest(null)).getHeaders().getETag();
+
+        // when
+        ServletWebRequest revalidation = listRequest(aliceTag);
+        ResponseEntity<?> response = fileController.getFileList(bobToken, 5, revalidation);
+
+        // then: bob gets his own list, and caches are told the list depends on the token and is private
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isNotEqualTo(aliceTag);
+        MockHttpServletResponse servletResponse = (MockHttpServletResponse) revalidation.getResponse();
+        assertThat(servletResponse.getHeader(HttpHeaders.VARY)).isEqualTo("auth-token");
+        assertThat(servletResponse.getHeader(HttpHeaders.CACHE_CONTROL)).contains("private").contains("no-cache");
+        verify(fileService).getAllFiles(bobToken, 5, 3L);
     }
 
     @Test
     void getFileList_whenNoFiles_shouldReturnEmptyList() {
         // given
         int limit = 10;
-        when(fileService.getAllFiles(TEST_TOKEN, limit)).thenReturn(List.of());
+        when(fileService.namespaceVersion(TEST_TOKEN)).thenReturn(new FileService.NamespaceVersion(TEST_USERNAME, 0L));
+        when(fileService.getAllFiles(TEST_TOKEN, limit, 0L)).thenReturn(List.of());
 
         // when
-        ResponseEntity<?> response = fileController.getFileList(TEST_TOKEN, limit);
+        ResponseEntity<?> response = fileController.getFileList(TEST_TOKEN, limit, listRequest(null));
 
         // then
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(List.of());
 
-        verify(fileService).getAllFiles(TEST_TOKEN, limit);
+        verify(fileService).getAllFiles(TEST_TOKEN, limit, 0L);
     }
 }
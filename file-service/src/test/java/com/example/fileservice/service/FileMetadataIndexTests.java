@@ -0,0 +1,180 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.index.FileMetadataIndex;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.repository.FileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FileMetadataIndexTests {
+
+    private static final String OWNER = "testuser";
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Mock
+    private FileRepository fileRepository;
+
+    private FileMetadataIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FileMetadataIndex(fileRepository, new SimpleMeterRegistry(), true, 100, 60000);
+    }
+
+    @Test
+    void whenUserIsListedRepeatedly_thenMetadataIsLoadedOnceAndServedNewestFirst() {
+        // given
+        when(fileRepository.findMetadataByOwnerName(OWNER)).thenReturn(new ArrayList<>(List.of(
+                doc("old.txt", NOW.minusDays(2)),
+                doc("new.txt", NOW),
+                doc("mid.txt", NOW.minusDays(1)))));
+        when(fileRepository.existsByOwnerNameAndFileName(OWNER, "old.txt")).thenReturn(true);
+
+        // when
+        List<FileDocument> firstTwo = index.list(OWNER, 2);
+        List<FileDocument> all = index.list(OWNER, null);
+        boolean exists = index.exists(OWNER, "old.txt");
+        boolean missing = index.exists(OWNER, "other.txt");
+
+        // then
+        assertThat(firstTwo).extracting(FileDocument::getFileName).containsExactly("new.txt", "mid.txt");
+        assertThat(all).extracting(FileDocument::getFileName).containsExactly("new.txt", "mid.txt", "old.txt");
+        assertThat(all).allSatisfy(d -> assertThat(d.getFileData()).isNull());
+        assertThat(exists).isTrue();
+        assertThat(missing).isFalse();
+        verify(fileRepository, times(1)).findMetadataByOwnerName(OWNER);
+        verify(fileRepository, never()).findByOwnerNameAndFileName(any(), any());
+    }
+
+    @Test
+    void whenFilesAreWrittenThrough_thenIndexReflectsThemWithoutReloading() {
+        // given
+        when(fileRepository.findMetadataByOwnerName(OWNER)).thenReturn(List.of(
+                doc("a.txt", NOW.minusDays(1)),
+                doc("b.txt", NOW.minusDays(2))));
+        index.list(OWNER, null);
+
+        // when
+        index.added(doc("c.txt", NOW));
+        index.renamed(OWNER, "b.txt", "d.txt");
+        index.removed(OWNER, "a.txt");
+
+        // then
+        assertThat(index.list(OWNER, null)).extracting(FileDocument::getFileName).containsExactly("c.txt", "d.txt");
+        assertThat(index.exists(OWNER, "b.txt")).isFalse();
+        verify(fileRepository, times(1)).findMetadataByOwnerName(OWNER);
+    }
+
+    @Test
+    void whenUserIsInvalidated_thenNextReadReloadsFromRepository() {
+        // given
+        when(fileRepository.findMetadataByOwnerName(OWNER))
+                .thenReturn(List.of(doc("a.txt", NOW)))
+                .thenReturn(List.of(doc("a.txt", NOW), doc("remote.txt", NOW.plusMinutes(1))));
+        assertThat(index.exists(OWNER, "remote.txt")).isFalse();
+        when(fileRepository.existsByOwnerNameAndFileName(OWNER, "remote.txt")).thenReturn(true);
+
+        // when
+        index.invalidate(OWNER);
+
+        // then
+        assertThat(index.exists(OWNER, "remote.txt")).isTrue();
+        verify(fileRepository, times(2)).findMetadataByOwnerName(OWNER);
+    }
+
+    @Test
+    void whenIndexedFileIsGoneFromStorage_thenItDoesNotExistAndIndexIsReloaded() {
+        // given: deleted by another instance without a change stream to say so
+        when(fileRepository.findMetadataByOwnerName(OWNER))
+                .thenReturn(List.of(doc("a.txt", NOW)))
+                .thenReturn(List.of());
+        when(fileRepository.existsByOwnerNameAndFileName(OWNER, "a.txt")).thenReturn(false);
+
+        // when
+        boolean exists = index.exists(OWNER, "a.txt");
+
+        // then
+        assertThat(exists).isFalse();
+        assertThat(index.list(OWNER, null)).isEmpty();
+        verify(fileRepository, times(2)).findMetadataByOwnerName(OWNER);
+    }
+
+    @Test
+    void whenNamespaceVersionMovedPastTheIndex_thenListingReloadsIt() {
+        // given: loaded at version 3, then another instance recorded change 4
+        when(fileRepository.findMetadataByOwnerName(OWNER))
+                .thenReturn(List.of(doc("a.txt", NOW.minusDays(1))))
+                .thenReturn(List.of(doc("a.txt", NOW.minusDays(1)), doc("remote.txt", NOW)));
+        index.list(OWNER, null, 3L);
+
+        // when
+        List<FileDocument> sameVersion = index.list(OWNER, null, 3L);
+        List<FileDocument> newVersion = index.list(OWNER, null, 4L);
+
+        // then: a body tagged with version 4 has the change of version 4
+        assertThat(sameVersion).extracting(FileDocument::getFileName).containsExactly("a.txt");
+        assertThat(newVersion).extracting(FileDocument::getFileName).containsExactly("remote.txt", "a.txt");
+        verify(fileRepository, times(2)).findMetadataByOwnerName(OWNER);
+    }
+
+    @Test
+    void whenOwnChangeIsRecordedNext_thenIndexMovesToItsVersionWithoutReloading() {
+        // given
+        when(fileRepository.findMetadataByOwnerName(OWNER))
+                .thenReturn(List.of(doc("a.txt", NOW.minusDays(1))))
+                .thenReturn(List.of(doc("a.txt", NOW.minusDays(1)), doc("b.txt", NOW), doc("remote.txt", NOW)));
+        index.list(OWNER, null, 3L);
+
+        // when
+        index.added(doc("b.txt", NOW));
+        index.recorded(OWNER, 4L);
+        List<FileDocument> afterOwnChange = index.list(OWNER, null, 4L);
+        // change 5 was another instance's, 6 is ours again: the gap keeps the index at 4
+        index.recorded(OWNER, 6L);
+        List<FileDocument> afterGap = index.list(OWNER, null, 6L);
+
+        // then
+        assertThat(afterOwnChange).extracting(FileDocument::getFileName).containsExactly("b.txt", "a.txt");
+        assertThat(afterGap).extracting(FileDocument::getFileName).contains("remote.txt");
+        verify(fileRepository, times(2)).findMetadataByOwnerName(OWNER);
+    }
+
+    @Test
+    void whenIndexIsDisabled_thenEveryCallGoesToRepository() {
+        // given
+        FileMetadataIndex disabled = new FileMetadataIndex(fileRepository, new SimpleMeterRegistry(), false, 100, 60000);
+        when(fileRepository.findByOwnerName(OWNER)).thenReturn(List.of(doc("a.txt", NOW)));
+
+        // when
+        disabled.list(OWNER, 10);
+        disabled.list(OWNER, 10);
+        disabled.added(doc("b.txt", NOW));
+
+        // then
+        verify(fileRepository, times(2)).findByOwnerName(OWNER);
+        verify(fileRepository, never()).findMetadataByOwnerName(any());
+    }
+
+    private static FileDocument doc(String fileName, LocalDateTime uploadDate) {
+        return FileDocument.builder()
+                .id(fileName + "-id")
+                .ownerName(OWNER)
+                .fileName(fileName)
+                .size(10)
+                .uploadDate(uploadDate)
+                .contentType("text/plain")
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.metrics.FileMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FileOperationEventTests {
+
+    private static final String EVENT = "com.example.fileservice.FileOperation";
+
+    @TempDir
+    private Path dir;
+
+    private FileMetrics fileMetrics;
+    private Recording recording;
+
+    @BeforeEach
+    void setUp() {
+        fileMetrics = new FileMetrics(new SimpleMeterRegistry());
+        recording = new Recording();
+        recording.enable(EVENT).withoutThreshold();
+        recording.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+    }
+
+    @Test
+    void whenUploadSucceeds_thenEventCarriesOwnerFileSizeAndStorageTime() throws Exception {
+        // when
+        fileMetrics.record(FileMetrics.UPLOAD, event -> {
+            event.owner("alice");
+            event.file("report.pdf", 4096);
+            event.storage(() -> sleep(20));
+            event.transferred(4096);
+            return null;
+        });
+
+        // then
+        RecordedEvent event = single(events());
+        assertThat(event.getString("operation")).isEqualTo("upload");
+        assertThat(event.getString("owner")).isEqualTo("alice");
+        assertThat(event.getString("fileName")).isEqualTo("report.pdf");
+        assertThat(event.getLong("fileSize")).isEqualTo(4096);
+        assertThat(event.getLong("bytesTransferred")).isEqualTo(4096);
+        assertThat(event.getDuration("storageLatency")).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+        assertThat(event.getDuration()).isGreaterThanOrEqualTo(event.getDuration("storageLatency"));
+        assertThat(event.getString("outcome")).isEqualTo("success");
+    }
+
+    @Test
+    void whenOperationFails_thenEventOutcomeIsTheException() throws Exception {
+        // when
+        assertThatThrownBy(() -> fileMetrics.record(FileMetrics.DELETE, event -> {
+            event.owner("bob");
+            throw new IllegalArgumentException("File not found");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        // then
+        RecordedEvent event = single(events());
+        assertThat(event.getString("operation")).isEqualTo("delete");
+        assertThat(event.getString("owner")).isEqualTo("bob");
+        assertThat(event.getString("outcome")).isEqualTo("IllegalArgumentException");
+    }
+
+    private List<RecordedEvent> events() throws Exception {
+        recording.stop();
+        Path dump = dir.resolve("recording.jfr");
+        recording.dump(dump);
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> EVENT.equals(event.getEventType().getName()))
+                .toList();
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events) {
+        assertThat(events).hasSize(1);
+        return events.get(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
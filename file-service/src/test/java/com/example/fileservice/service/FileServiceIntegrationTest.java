@@ -1,21 +1,30 @@
 package com.example.fileservice.service;
 
+import com.example.fileservice.exception.FileNotFoundException;
 import com.example.fileservice.model.FileDocument;
 import com.example.fileservice.repository.FileRepository;
+import com.example.fileservice.shard.ShardContext;
+import com.example.securitylib.JwtService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 
 @Testcontainers
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -29,6 +38,12 @@ class FileServiceIntegrationTest {
     static final MongoDBContainer mongo = new MongoDBContainer("mongo:7");
     @Autowired
     private FileRepository fileRepository;
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private JwtService jwtService;
+    @MockitoSpyBean
+    private ChangeFeedService changeFeedService;
 
     @DynamicPropertySource
     static void overrideProps(DynamicPropertyRegistry registry) {
@@ -53,5 +68,35 @@ class FileServiceIntegrationTest {
         assertThat(files).hasSize(1);
         assertThat(files.get(0).getFileName()).isEqualTo("integration.txt");
     }
-}
 
+    @Test
+    void whenDeleteIsNotRecordedYet_thenTheFileIsGoneAndItsNameIsFree() throws IOException {
+        // given: the delete marks the document, then recording its tombstone fails once
+        String owner = "pendingDeleteUser";
+        String token = jwtService.generateAccessToken(owner, List.of("USER"));
+        fileService.uploadFile(token, "report.txt", file("report.txt", "first"));
+        doThrow(new IllegalStateException("feed unavailable"))
+                .doCallRealMethod()
+                .when(changeFeedService).publish(any());
+
+        // when
+        fileService.deleteFile(token, "report.txt");
+
+        // then: the marked document is hidden from every reader and the name can be uploaded again
+        assertThat(fileService.getAllFiles(token, null)).isEmpty();
+        assertThatThrownBy(() -> fileService.downloadFile(token, "report.txt"))
+                .isInstanceOf(FileNotFoundException.class);
+
+        fileService.uploadFile(token, "report.txt", file("report.txt", "second"));
+
+        assertThat(fileService.getAllFiles(token, null)).hasSize(1);
+        try (ShardContext.Scope shard = ShardContext.bind(owner)) {
+            FileDocument holder = fileRepository.findNameHolder(owner, "report.txt").orElseThrow();
+            assertThat(holder.getFileData()).isEqualTo("second".getBytes());
+        }
+    }
+
+    private static MockMultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, "text/plain", content.getBytes());
+    }
+}
@@ -1,27 +1,45 @@
 package com.example.fileservice.service;
 
+import com.example.fileservice.access.AccessStats;
+import com.example.fileservice.bulkhead.TransferMemoryBudget;
 import com.example.fileservice.dto.FileDownloadResponse;
 import com.example.fileservice.dto.FileListResponse;
 import com.example.fileservice.exception.FileNotFoundException;
+import com.example.fileservice.exception.TransferMemoryExhaustedException;
+import com.example.fileservice.index.FileMetadataIndex;
+import com.example.fileservice.metrics.FileMetrics;
+import com.example.fileservice.model.ArchiveLocation;
+import com.example.fileservice.model.FileChange;
 import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.PendingChange;
+import com.example.fileservice.replica.ReadRouting;
 import com.example.fileservice.repository.FileRepository;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.tier.ArchiveSegments;
 import com.example.securitylib.JwtService;
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -40,6 +58,32 @@ public class FileServiceTests {
     @Mock
     private JwtService jwtService;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private FileMetrics fileMetrics = new FileMetrics(meterRegistry);
+
+    @Spy
+    private TransferMemoryBudget memoryBudget = new TransferMemoryBudget(meterRegistry, 64L * 1024 * 1024, 100);
+
+    @Mock
+    private ChangeFeedService changeFeedService;
+
+    @Spy
+    private DownloadCoalescer downloadCoalescer = new DownloadCoalescer(meterRegistry, memoryBudget);
+
+    @Spy
+    private ReadRouting readRouting = new ReadRouting(meterRegistry, true, "secondaryPreferred", 90, 90_000, 1000);
+
+    @Mock
+    private ArchiveSegments archiveSegments;
+
+    @Mock
+    private AccessStats accessStats;
+
+    @Mock
+    private ShardDirectory shardDirectory;
+
     @InjectMocks
     private FileService fileService;
 
@@ -59,6 +103,10 @@ public class FileServiceTests {
         maxFileSizeField.setAccessible(true);
         maxFileSizeField.set(fileService, MAX_FILE_SIZE);
 
+        // disabled, so existence checks and listings go straight to the repository mock
+        Field metadataIndexField = FileService.class.getDeclaredField("metadataIndex");
+        metadataIndexField.setAccessible(true);
+        metadataIndexField.set(fileService, new FileMetadataIndex(fileRepository, meterRegistry, false, 100, 5000));
     }
 
     @ParameterizedTest
@@ -88,6 +136,40 @@ public class FileServiceTests {
         assertThat(savedFile.getUploadDate()).isNotNull();
     }
 
+    @Test
+    void whenUploadFile_thenBytesAndLatencyAreRecorded() throws IOException {
+        // given
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(multipartFile.getBytes()).thenReturn(TEST_FILE_DATA);
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME))
+                .thenReturn(Optional.empty());
+
+        // when
+        fileService.uploadFile(TEST_TOKEN, TEST_FILENAME, multipartFile);
+
+        // then
+        assertThat(meterRegistry.get("file.bytes.in").counter().count()).isEqualTo(TEST_FILE_SIZE);
+        assertThat(meterRegistry.get("file.size").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("file.operation")
+                .tags("operation", FileMetrics.UPLOAD, "outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenDownloadMissingFile_thenErrorOutcomeIsRecorded() {
+        // given
+        when(fileRepository.findMetadataByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME))
+                .thenReturn(Optional.empty());
+
+        // when
+        assertThatThrownBy(() -> fileService.downloadFile(TEST_TOKEN, TEST_FILENAME))
+                .isInstanceOf(FileNotFoundException.class);
+
+        // then
+        assertThat(meterRegistry.get("file.operation")
+                .tags("operation", FileMetrics.DOWNLOAD, "exception", "FileNotFoundException").timer().count())
+                .isEqualTo(1);
+    }
+
     @Test
     void whenUploadExistingFile_thenThrowException() {
         // given
@@ -103,6 +185,49 @@ public class FileServiceTests {
         verify(fileRepository, never()).save(any());
     }
 
+    @Test
+    void whenConcurrentUploadOfSameNameWins_thenThrowException() throws IOException {
+        // given: both passed the existence check, the unique owner_file index lets one through
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(multipartFile.getBytes()).thenReturn(TEST_FILE_DATA);
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME))
+                .thenReturn(Optional.empty());
+        when(fileRepository.save(any(FileDocument.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error collection: files index: owner_file"));
+
+        // when & then
+        assertThatThrownBy(() -> fileService.uploadFile(TEST_TOKEN, TEST_FILENAME, multipartFile))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("File already exists");
+
+        verifyNoInteractions(changeFeedService);
+    }
+
+    @Test
+    void whenNameIsHeldByAnUnrecordedDelete_thenUploadRecordsItAndTakesTheName() throws IOException {
+        // given: the delete marked the document but its publish failed, so it still holds owner_file
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(multipartFile.getBytes()).thenReturn(TEST_FILE_DATA);
+        FileDocument deleted = createTestFileDocument();
+        deleted.setId("file-1");
+        deleted.setPendingChange(PendingChange.of(FileChange.Type.DELETED, null));
+        when(fileRepository.findNameHolder(TEST_USERNAME, TEST_FILENAME)).thenReturn(Optional.of(deleted));
+        when(fileRepository.save(any(FileDocument.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error collection: files index: owner_file"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // when
+        fileService.uploadFile(TEST_TOKEN, TEST_FILENAME, multipartFile);
+
+        // then
+        InOrder order = inOrder(fileRepository, changeFeedService);
+        order.verify(fileRepository).save(any(FileDocument.class));
+        order.verify(changeFeedService).publish(deleted);
+        order.verify(fileRepository).save(any(FileDocument.class));
+        order.verify(changeFeedService).publish(argThat(doc -> doc != deleted
+                && doc.getPendingChange().getType() == FileChange.Type.UPLOADED));
+    }
+
     @Test
     void whenUploadTooLargeFile_thenThrowException() {
         // given
@@ -122,14 +247,71 @@ public class FileServiceTests {
     void whenDeleteExistingFile_ThenReturnSuccess() {
         // given
         FileDocument file = createTestFileDocument();
+        file.setId("file-1");
         when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME))
                 .thenReturn(Optional.of(file));
+        when(fileRepository.updatePendingChangeById(eq("file-1"), any(PendingChange.class))).thenReturn(1L);
 
         // when
         fileService.deleteFile(TEST_TOKEN, TEST_FILENAME);
 
+        // then: the document is marked, the feed records the tombstone and removes it
+        ArgumentCaptor<PendingChange> marker = ArgumentCaptor.forClass(PendingChange.class);
+        InOrder order = inOrder(shardDirectory, fileRepository, changeFeedService);
+        order.verify(shardDirectory).beforeWrite(TEST_USERNAME);
+        order.verify(fileRepository).updatePendingChangeById(eq("file-1"), marker.capture());
+        order.verify(changeFeedService).publish(file);
+        assertThat(marker.getValue().getType()).isEqualTo(FileChange.Type.DELETED);
+        assertThat(file.getPendingChange()).isSameAs(marker.getValue());
+        verify(fileRepository, never()).delete(any());
+    }
+
+    @Test
+    void whenRecordingTheChangeFails_thenUploadSucceedsAndTheChangeStaysOnTheDocument() throws IOException {
+        // given
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(multipartFile.getBytes()).thenReturn(TEST_FILE_DATA);
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME))
+                .thenReturn(Optional.empty());
+        doThrow(new IllegalStateException("feed unavailable")).when(changeFeedService).publish(any());
+
+        // when
+        fileService.uploadFile(TEST_TOKEN, TEST_FILENAME, multipartFile);
+
+        // then: the marker was written with the file, PendingChangeSweeper records it later
+        ArgumentCaptor<FileDocument> saved = ArgumentCaptor.forClass(FileDocument.class);
+        verify(fileRepository).save(saved.capture());
+        assertThat(saved.getValue().getPendingChange().getType()).isEqualTo(FileChange.Type.UPLOADED);
+        assertThat(saved.getValue().getPendingChange().getChangeId()).isNotNull();
+    }
+
+    @Test
+    void whenFileCarriesALeftoverChange_thenItIsRecordedBeforeTheRename() {
+        // given
+        FileDocument doc = new FileDocument();
+        doc.setId("file-1");
+        doc.setFileName("old.txt");
+        PendingChange leftover = PendingChange.of(FileChange.Type.UPLOADED, null);
+        doc.setPendingChange(leftover);
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "old.txt"))
+                .thenReturn(Optional.of(doc));
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "new.txt"))
+                .thenReturn(Optional.empty());
+        when(fileRepository.updateFileNameById(eq("file-1"), eq("new.txt"), any(PendingChange.class))).thenReturn(1L);
+        List<PendingChange> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            published.add(invocation.<FileDocument>getArgument(0).getPendingChange());
+            return (long) published.size();
+        }).when(changeFeedService).publish(doc);
+
+        // when
+        fileService.renameFile(TEST_TOKEN, "old.txt", "new.txt");
+
         // then
-        verify(fileRepository).delete(file);
+        assertThat(published).hasSize(2);
+        assertThat(published.get(0)).isSameAs(leftover);
+        assertThat(published.get(1).getType()).isEqualTo(FileChange.Type.RENAMED);
+        assertThat(published.get(1).getPreviousFileName()).isEqualTo("old.txt");
     }
 
     @Test
@@ -144,6 +326,7 @@ public class FileServiceTests {
                 .hasMessage("File not found: " + TEST_FILENAME);
 
         verify(fileRepository, never()).delete(any());
+        verifyNoInteractions(changeFeedService);
     }
 
     private FileDocument createTestFileDocument() {
@@ -160,13 +343,15 @@ public class FileServiceTests {
     @Test
     void whenDownloadFileExists_thenReturnResponse() {
         FileDocument doc = new FileDocument();
+        doc.setId("file-1");
         doc.setFileName("report.pdf");
         doc.setContentType("application/pdf");
         doc.setSize(100L);
         doc.setFileData("test".getBytes());
 
-        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "report.pdf"))
+        when(fileRepository.findMetadataByOwnerNameAndFileName(TEST_USERNAME, "report.pdf"))
                 .thenReturn(Optional.of(doc));
+        when(fileRepository.findById("file-1")).thenReturn(Optional.of(doc));
 
         FileDownloadResponse response = fileService.downloadFile(TEST_TOKEN, "report.pdf");
 
@@ -174,11 +359,100 @@ public class FileServiceTests {
         assertEquals("report.pdf", response.getFileName());
         assertEquals(100L, response.getSize());
         assertEquals("application/pdf", response.getContentType());
+        assertThat(memoryBudget.reservedBytes()).isEqualTo(1024);
+
+        response.getReservation().close();
+        assertThat(memoryBudget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void whenDownloadArchivedFile_thenContentIsReadFromItsSegment() {
+        // given
+        ArchiveLocation location = ArchiveLocation.builder().segment("segment-1.seg").offset(128).length(64).build();
+        FileDocument archived = FileDocument.builder().id("file-1").ownerName(TEST_USERNAME).fileName("old.pdf")
+                .size(4L).archive(location).build();
+        when(fileRepository.findMetadataByOwnerNameAndFileName(TEST_USERNAME, "old.pdf"))
+                .thenReturn(Optional.of(archived));
+        when(fileRepository.findById("file-1")).thenReturn(Optional.of(archived));
+        when(archiveSegments.read(location)).thenReturn("test".getBytes());
+
+        // when
+        FileDownloadResponse response = fileService.downloadFile(TEST_TOKEN, "old.pdf");
+
+        // then
+        assertThat(response.getResource()).isNotNull();
+        assertThat(archived.getFileData()).isEqualTo("test".getBytes());
+        verify(accessStats).recordDownload("file-1", TEST_USERNAME);
+        response.getReservation().close();
+    }
+
+    @Test
+    void whenDownloadedFileIsDeletedBeforeContentFetch_thenReservationIsReleased() {
+        // given
+        FileDocument metadata = FileDocument.builder().id("file-1").fileName("report.pdf").size(100L).build();
+        when(fileRepository.findMetadataByOwnerNameAndFileName(TEST_USERNAME, "report.pdf"))
+                .thenReturn(Optional.of(metadata));
+        when(fileRepository.findById("file-1")).thenReturn(Optional.empty());
+
+        // when & then
+        assertThatThrownBy(() -> fileService.downloadFile(TEST_TOKEN, "report.pdf"))
+                .isInstanceOf(FileNotFoundException.class);
+        assertThat(memoryBudget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void whenUserUploads_thenItsNextDownloadReadsFromThePrimary() throws IOException {
+        // given
+        FileDocument doc = FileDocument.builder().id("file-1").fileName("report.pdf").size(100L)
+                .fileData("test".getBytes()).build();
+        List<ReadPreference> downloadReads = new ArrayList<>();
+        when(fileRepository.findMetadataByOwnerNameAndFileName(TEST_USERNAME, "report.pdf")).thenAnswer(invocation -> {
+            downloadReads.add(readRouting.current());
+            return Optional.of(doc);
+        });
+        when(fileRepository.findById("file-1")).thenReturn(Optional.of(doc));
+        List<ReadPreference> uploadChecks = new ArrayList<>();
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME)).thenAnswer(invocation -> {
+            uploadChecks.add(readRouting.current());
+            return Optional.empty();
+        });
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(multipartFile.getBytes()).thenReturn(TEST_FILE_DATA);
+
+        // when
+        fileService.downloadFile(TEST_TOKEN, "report.pdf").getReservation().close();
+        fileService.uploadFile(TEST_TOKEN, TEST_FILENAME, multipartFile);
+        fileService.downloadFile(TEST_TOKEN, "report.pdf").getReservation().close();
+
+        // then
+        assertThat(downloadReads).containsExactly(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS),
+                ReadPreference.primary());
+        assertThat(uploadChecks).containsOnlyNulls();
+        assertThat(readRouting.current()).isNull();
+    }
+
+    @Test
+    void whenMemoryBudgetIsExhausted_thenUploadIsRejectedBeforeBuffering() throws IOException {
+        // given
+        TransferMemoryBudget.Reservation held = memoryBudget.reserve(64L * 1024 * 1024);
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, TEST_FILENAME))
+                .thenReturn(Optional.empty());
+
+        // when & then
+        assertThatThrownBy(() -> fileService.uploadFile(TEST_TOKEN, TEST_FILENAME, multipartFile))
+                .isInstanceOf(TransferMemoryExhaustedException.class);
+        verify(multipartFile, never()).getBytes();
+        verify(fileRepository, never()).save(any());
+        assertThat(meterRegistry.get("transfer.memory.rejected").counter().count()).isEqualTo(1);
+
+        held.close();
+        assertThat(memoryBudget.availableBytes()).isEqualTo(64L * 1024 * 1024);
     }
 
     @Test
     void whenDownloadFileNotFound_thenThrowException() {
-        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "notfound.txt"))
+        when(fileRepository.findMetadataByOwnerNameAndFileName(TEST_USERNAME, "notfound.txt"))
                 .thenReturn(Optional.empty());
 
         assertThrows(FileNotFoundException.class, () ->
@@ -186,19 +460,29 @@ public class FileServiceTests {
     }
 
     @Test
-    void whenRenameFile_thenNameUpdated() {
+    void whenRenameFile_thenOnlyTheNameIsUpdated() {
         FileDocument doc = new FileDocument();
+        doc.setId("file-1");
         doc.setFileName("old.txt");
 
         when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "old.txt"))
                 .thenReturn(Optional.of(doc));
         when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "new.txt"))
                 .thenReturn(Optional.empty());
+        when(fileRepository.updateFileNameById(eq("file-1"), eq("new.txt"), any(PendingChange.class))).thenReturn(1L);
 
         fileService.renameFile(TEST_TOKEN, "old.txt", "new.txt");
 
-        assertEquals("new.txt", doc.getFileName());
-        verify(fileRepository).save(doc);
+        // a full save would write back the download counters as they were loaded
+        verify(fileRepository, never()).save(any());
+        ArgumentCaptor<PendingChange> marker = ArgumentCaptor.forClass(PendingChange.class);
+        InOrder order = inOrder(shardDirectory, fileRepository, changeFeedService);
+        order.verify(shardDirectory).beforeWrite(TEST_USERNAME);
+        order.verify(fileRepository).updateFileNameById(eq("file-1"), eq("new.txt"), marker.capture());
+        order.verify(changeFeedService).publish(doc);
+        assertThat(marker.getValue().getType()).isEqualTo(FileChange.Type.RENAMED);
+        assertThat(marker.getValue().getPreviousFileName()).isEqualTo("old.txt");
+        assertThat(doc.getFileName()).isEqualTo("new.txt");
     }
 
     @Test
@@ -210,6 +494,42 @@ public class FileServiceTests {
                 fileService.renameFile(TEST_TOKEN, "old.txt", "new.txt"));
     }
 
+    @Test
+    void whenFileIsDeletedDuringRename_thenThrowException() {
+        FileDocument doc = new FileDocument();
+        doc.setId("file-1");
+        doc.setFileName("old.txt");
+
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "old.txt"))
+                .thenReturn(Optional.of(doc));
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "new.txt"))
+                .thenReturn(Optional.empty());
+        when(fileRepository.updateFileNameById(eq("file-1"), eq("new.txt"), any(PendingChange.class))).thenReturn(0L);
+
+        assertThrows(FileNotFoundException.class, () ->
+                fileService.renameFile(TEST_TOKEN, "old.txt", "new.txt"));
+        verify(changeFeedService, never()).publish(any());
+    }
+
+    @Test
+    void whenConcurrentRenameTakesTheNameFirst_thenThrowException() {
+        FileDocument doc = new FileDocument();
+        doc.setId("file-1");
+        doc.setFileName("old.txt");
+
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "old.txt"))
+                .thenReturn(Optional.of(doc));
+        when(fileRepository.findByOwnerNameAndFileName(TEST_USERNAME, "new.txt"))
+                .thenReturn(Optional.empty());
+        when(fileRepository.updateFileNameById(eq("file-1"), eq("new.txt"), any(PendingChange.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error collection: files index: owner_file"));
+
+        assertThatThrownBy(() -> fileService.renameFile(TEST_TOKEN, "old.txt", "new.txt"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("File with name 'new.txt' already exists");
+        verify(changeFeedService, never()).publish(any());
+    }
+
     @Test
     void whenRenameFileToExistingName_thenThrowException() {
         FileDocument existing = new FileDocument();
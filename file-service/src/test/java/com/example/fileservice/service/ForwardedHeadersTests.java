@@ -0,0 +1,97 @@
+package com.example.fileservice.service;
+
+import org.apache.catalina.Valve;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.RemoteIpValve;
+import org.apache.catalina.valves.ValveBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatWebServerFactoryCustomizer;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// FileController hands getRemoteAddr() to the login rate limiter, so it has to be the client behind the gateway
+public class ForwardedHeadersTests {
+
+    private static final String GATEWAY = "172.28.0.10";
+    private static final String CLIENT = "203.0.113.7";
+    // the test resources shadow the main application.properties on the classpath
+    private static final FileSystemResource MAIN_PROPERTIES = new FileSystemResource("src/main/resources/application.properties");
+
+    @Test
+    void whenLoginComesThroughGateway_thenRemoteAddressIsTheClient() throws Exception {
+        // given
+        RemoteIpValve valve = remoteIpValve(Map.of("GATEWAY_PROXIES", "172\\.28\\.0\\.10"));
+
+        // when
+        String remoteAddr = remoteAddrSeenBehind(valve, GATEWAY, CLIENT);
+
+        // then
+        assertThat(remoteAddr).isEqualTo(CLIENT);
+    }
+
+    @Test
+    void whenForwardedHeaderComesFromAnotherHost_thenItIsIgnored() throws Exception {
+        // given
+        RemoteIpValve valve = remoteIpValve(Map.of("GATEWAY_PROXIES", "172\\.28\\.0\\.10"));
+
+        // when
+        String remoteAddr = remoteAddrSeenBehind(valve, "172.28.0.20", CLIENT);
+
+        // then
+        assertThat(remoteAddr).isEqualTo("172.28.0.20");
+    }
+
+    @Test
+    void whenGatewayIsNotConfigured_thenOnlyLoopbackIsTrusted() throws Exception {
+        // given
+        RemoteIpValve valve = remoteIpValve(Map.of());
+
+        // when / then
+        assertThat(remoteAddrSeenBehind(valve, "127.0.0.1", CLIENT)).isEqualTo(CLIENT);
+        assertThat(remoteAddrSeenBehind(valve, "10.0.0.5", CLIENT)).isEqualTo("10.0.0.5");
+    }
+
+    private RemoteIpValve remoteIpValve(Map<String, Object> env) throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new ResourcePropertySource(MAIN_PROPERTIES));
+        environment.getPropertySources().addFirst(new MapPropertySource("env", env));
+        ServerProperties serverProperties = Binder.get(environment).bind("server", ServerProperties.class).get();
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+        new TomcatWebServerFactoryCustomizer(environment, serverProperties).customize(factory);
+        return factory.getEngineValves().stream()
+                .filter(RemoteIpValve.class::isInstance)
+                .map(RemoteIpValve.class::cast)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private String remoteAddrSeenBehind(RemoteIpValve valve, String peer, String forwardedFor) throws Exception {
+        AtomicReference<String> seen = new AtomicReference<>();
+        Valve next = new ValveBase() {
+            @Override
+            public void invoke(Request request, Response response) {
+                seen.set(request.getRemoteAddr());
+            }
+        };
+        valve.setNext(next);
+        Request request = new Request(new Connector());
+        request.setCoyoteRequest(new org.apache.coyote.Request());
+        request.setRemoteAddr(peer);
+        request.getCoyoteRequest().getMimeHeaders().addValue("X-Forwarded-For").setString(forwardedFor);
+        valve.invoke(request, new Response());
+        return seen.get();
+    }
+}
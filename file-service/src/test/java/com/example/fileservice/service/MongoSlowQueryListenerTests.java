@@ -0,0 +1,141 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.diagnostics.MongoSlowQueryListener;
+import com.example.fileservice.shard.StorageShards;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.connection.ClusterConnectionMode;
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ClusterType;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerConnectionState;
+import com.mongodb.connection.ServerDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MongoSlowQueryListenerTests {
+
+    private static final ServerAddress HOME_SERVER = new ServerAddress("mongo-0", 27017);
+    private static final ServerAddress OTHER_SERVER = new ServerAddress("mongo-1", 27017);
+
+    private SimpleMeterRegistry meterRegistry;
+    private ObjectProvider<StorageShards> storageShards;
+    private MongoSlowQueryListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        storageShards = mock(ObjectProvider.class);
+        listener = new MongoSlowQueryListener(storageShards, meterRegistry, true, 100, 200, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(listener, "shutdown");
+    }
+
+    @Test
+    void whenQueriesDifferOnlyInValues_thenTheyShareOneShapeTimer() {
+        // given
+        String alice = "{find: 'files', filter: {ownerName: 'alice', fileName: 'a.txt'}, $db: 'cloudservice'}";
+        String bob = "{find: 'files', filter: {ownerName: 'bob', fileName: 'b.txt'}, $db: 'cloudservice'}";
+
+        // when
+        run(1, alice, 5);
+        run(2, bob, 7);
+
+        // then
+        Timer timer = meterRegistry.find("mongo.query")
+                .tag("operation", "find")
+                .tag("shape", "find files {ownerName: ?, fileName: ?}")
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(2);
+    }
+
+    @Test
+    void whenQueryIsSorted_thenSortIsPartOfTheShape() {
+        // when
+        run(3, "{find: 'files', filter: {ownerName: 'alice'}, sort: {uploadDate: -1}}", 150);
+
+        // then
+        assertThat(meterRegistry.find("mongo.query")
+                .tag("shape", "find files {ownerName: ?} sort {\"uploadDate\": -1}")
+                .timer()).isNotNull();
+    }
+
+    @Test
+    void whenSlowQueryRanOnAnotherShard_thenItIsExplainedThroughThatShardsClient() {
+        // given
+        MongoClient homeClient = client(HOME_SERVER);
+        MongoClient otherClient = client(OTHER_SERVER);
+        MongoDatabase otherDatabase = mock(MongoDatabase.class);
+        when(otherClient.getDatabase("cloudservice")).thenReturn(otherDatabase);
+        when(otherDatabase.runCommand(any(BsonDocument.class), eq(BsonDocument.class))).thenReturn(BsonDocument.parse(
+                "{queryPlanner: {winningPlan: {stage: 'COLLSCAN'}}}"));
+        when(storageShards.getIfAvailable()).thenReturn(new StorageShards(List.of(
+                new StorageShards.Shard("shard-0", homeClient, null, null),
+                new StorageShards.Shard("shard-1", otherClient, null, null)), List.of()));
+
+        // when
+        run(4, "{find: 'files', filter: {ownerName: 'bob'}}", 150, OTHER_SERVER);
+
+        // then
+        verify(otherDatabase, timeout(2000)).runCommand(any(BsonDocument.class), eq(BsonDocument.class));
+        verify(homeClient, never()).getDatabase(any());
+    }
+
+    private static MongoClient client(ServerAddress server) {
+        MongoClient client = mock(MongoClient.class);
+        when(client.getClusterDescription()).thenReturn(new ClusterDescription(ClusterConnectionMode.SINGLE,
+                ClusterType.STANDALONE, List.of(ServerDescription.builder()
+                .address(server)
+                .state(ServerConnectionState.CONNECTED)
+                .build())));
+        return client;
+    }
+
+    private void run(int requestId, String command, long elapsedMs) {
+        run(requestId, command, elapsedMs, HOME_SERVER);
+    }
+
+    private void run(int requestId, String command, long elapsedMs, ServerAddress server) {
+        BsonDocument document = BsonDocument.parse(command);
+        CommandStartedEvent started = mock(CommandStartedEvent.class);
+        when(started.getCommandName()).thenReturn("find");
+        when(started.getCommand()).thenReturn(document);
+        when(started.getRequestId()).thenReturn(requestId);
+        when(started.getDatabaseName()).thenReturn("cloudservice");
+        when(started.getConnectionDescription()).thenReturn(new ConnectionDescription(new ServerId(new ClusterId(), server)));
+        CommandSucceededEvent succeeded = mock(CommandSucceededEvent.class);
+        when(succeeded.getRequestId()).thenReturn(requestId);
+        when(succeeded.getElapsedTime(any(TimeUnit.class))).thenReturn(TimeUnit.MILLISECONDS.toNanos(elapsedMs));
+
+        listener.commandStarted(started);
+        listener.commandSucceeded(succeeded);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.model.FileChange;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.PendingChange;
+import com.example.fileservice.model.UserSequence;
+import com.example.fileservice.repository.FileChangeRepository;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PendingChangeSweeperTests {
+
+    @Mock
+    private MongoTemplate home;
+    @Mock
+    private MongoTemplate other;
+    @Mock
+    private ShardDirectory directory;
+    @Mock
+    private ChangeFeedService changeFeedService;
+    private StorageShards shards;
+    private SimpleMeterRegistry meterRegistry;
+    private PendingChangeSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        shards = new StorageShards(List.of(
+                new StorageShards.Shard("shard-0", null, null, home),
+                new StorageShards.Shard("shard-1", null, null, other)), List.of());
+        meterRegistry = new SimpleMeterRegistry();
+        sweeper = new PendingChangeSweeper(shards, directory, changeFeedService, meterRegistry, false, 10000, 10000, 500);
+    }
+
+    @Test
+    void whenChangesWereLeftPending_thenOldOnesArePublishedWithoutContent() {
+        // given
+        LocalDateTime before = LocalDateTime.now();
+        FileDocument failed = pending("alice", "a.txt");
+        FileDocument alsoFailed = pending("alice", "b.txt");
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenReturn(List.of(failed, alsoFailed));
+        doThrow(new IllegalStateException("feed unavailable")).when(changeFeedService).publish(failed);
+
+        // when
+        long published = sweeper.sweep();
+
+        // then: one failure does not hold up the rest, it is retried by the next sweep
+        assertThat(published).isEqualTo(1);
+        verify(changeFeedService).publish(alsoFailed);
+        assertThat(meterRegistry.get("change.feed.swept").counter().count()).isEqualTo(1.0);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(home).find(query.capture(), eq(FileDocument.class));
+        LocalDateTime createdBefore = (LocalDateTime) query.getValue().getQueryObject()
+                .get("pendingChange.createdAt", Document.class).get("$lt");
+        assertThat(createdBefore).isBetween(before.minusSeconds(11), before.minusSeconds(9));
+        assertThat(query.getValue().getFieldsObject()).containsEntry("fileData", 0);
+    }
+
+    @Test
+    void whenOwnerLivesOnAnotherShard_thenLeftoverCopyIsSkipped() {
+        // given: bob was moved to shard-1, the copy on shard-0 is deleted by the move
+        FileDocument leftover = pending("bob", "a.txt");
+        when(directory.isSharded()).thenReturn(true);
+        when(directory.shardOf("bob")).thenReturn(shards.byId("shard-1"));
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenReturn(List.of(leftover));
+
+        // when
+        long published = sweeper.sweep();
+
+        // then
+        assertThat(published).isZero();
+        verify(changeFeedService, never()).publish(any());
+    }
+
+    @Test
+    void whenTheFeedWriteFails_thenTheNamespaceVersionMovesWithTheSweep() {
+        // given: the sequence the /cloud/list ETag is built from, 7 before the upload
+        MongoOperations mongo = mock(MongoOperations.class);
+        AtomicLong sequence = new AtomicLong(7);
+        when(mongo.findById("alice", UserSequence.class)).thenAnswer(invocation -> new UserSequence("alice", sequence.get()));
+        when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSequence.class)))
+                .thenThrow(new DataAccessResourceFailureException("timed out"))
+                .thenAnswer(invocation -> new UserSequence("alice", sequence.incrementAndGet()));
+        ChangeFeedService feed = new ChangeFeedService(mongo, mock(FileChangeRepository.class), null, 5000, 16);
+        PendingChangeSweeper sweeper = new PendingChangeSweeper(shards, directory, feed, meterRegistry, false, 10000, 10000, 500);
+        FileDocument uploaded = pending("alice", "a.txt");
+
+        // when: the upload's own publish fails, the file is already stored with its marker
+        assertThatThrownBy(() -> feed.publish(uploaded)).isInstanceOf(DataAccessResourceFailureException.class);
+        long afterFailure = feed.currentSequence("alice");
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenReturn(List.of(uploaded));
+        sweeper.sweep();
+
+        // then: unchanged until the sweep, so a 304 is possible only in between
+        assertThat(afterFailure).isEqualTo(7);
+        assertThat(feed.currentSequence("alice")).isEqualTo(8);
+        verify(mongo).updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class));
+    }
+
+    private static FileDocument pending(String owner, String fileName) {
+        return FileDocument.builder()
+                .id("64b7f0c2a1b2c3d4e5f6071" + fileName.charAt(0))
+                .ownerName(owner)
+                .fileName(fileName)
+                .pendingChange(PendingChange.of(FileChange.Type.UPLOADED, null))
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.replica.ReadRouting;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReadRoutingTests {
+
+    private static final String TEST_USERNAME = "alice";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void whenOwnerHasNotWritten_thenReadsGoToSecondariesWithinStaleness() {
+        // given
+        ReadRouting routing = new ReadRouting(meterRegistry, true, "secondaryPreferred", 90, 90_000, 1000);
+
+        // when
+        ReadPreference inside;
+        try (ReadRouting.Scope reads = routing.relaxed(TEST_USERNAME)) {
+            inside = routing.current();
+        }
+
+        // then
+        assertThat(inside.getName()).isEqualTo("secondaryPreferred");
+        assertThat(((TaggableReadPreference) inside).getMaxStaleness(TimeUnit.SECONDS)).isEqualTo(90L);
+        assertThat(routing.current()).isNull();
+    }
+
+    @Test
+    void whenOwnerWroteWithinTheWindow_thenItsReadsStayOnPrimary() {
+        // given
+        ReadRouting routing = new ReadRouting(meterRegistry, true, "secondaryPreferred", 90, 90_000, 1000);
+        routing.wrote(TEST_USERNAME);
+
+        // when / then
+        try (ReadRouting.Scope reads = routing.relaxed(TEST_USERNAME)) {
+            assertThat(routing.current()).isEqualTo(ReadPreference.primary());
+        }
+        try (ReadRouting.Scope reads = routing.relaxed("bob")) {
+            assertThat(routing.current().getName()).isEqualTo("secondaryPreferred");
+        }
+        assertThat(meterRegistry.get("mongo.reads.routed").tag("target", "primary-after-write").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("mongo.reads.routed").tag("target", "relaxed").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void whenWindowIsShorterThanMaxStaleness_thenConfigurationIsRejected() {
+        // a read 6 s after an upload could go to a secondary that is still 60 s behind
+        assertThatThrownBy(() -> new ReadRouting(meterRegistry, true, "secondaryPreferred", 90, 5000, 1000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("read-your-writes-window-ms");
+    }
+
+    @Test
+    void whenReadsStayOnPrimary_thenAnyWindowIsAccepted() {
+        // given
+        ReadRouting routing = new ReadRouting(meterRegistry, true, "primary", 0, 0, 1000);
+
+        // when / then
+        try (ReadRouting.Scope reads = routing.relaxed(TEST_USERNAME)) {
+            assertThat(routing.current()).isEqualTo(ReadPreference.primary());
+        }
+    }
+
+    @Test
+    void whenMaxStalenessIsBelowNinetySeconds_thenConfigurationIsRejected() {
+        assertThatThrownBy(() -> new ReadRouting(meterRegistry, true, "secondaryPreferred", 89, 90_000, 1000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("max-staleness-seconds");
+    }
+
+    @Test
+    void whenMaxStalenessIsUnbounded_thenConfigurationIsRejected() {
+        assertThatThrownBy(() -> new ReadRouting(meterRegistry, true, "nearest", 0, 90_000, 1000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("max-staleness-seconds");
+    }
+
+    @Test
+    void whenRelaxedReadsAreDisabled_thenEverythingReadsFromPrimary() {
+        // given
+        ReadRouting routing = new ReadRouting(meterRegistry, false, "secondaryPreferred", 90, 5000, 1000);
+
+        // when / then
+        try (ReadRouting.Scope reads = routing.relaxed(TEST_USERNAME)) {
+            assertThat(routing.current()).isNull();
+        }
+    }
+}
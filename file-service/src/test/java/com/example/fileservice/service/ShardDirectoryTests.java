@@ -0,0 +1,145 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.exception.ShardMoveInProgressException;
+import com.example.fileservice.model.FileChange;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.ShardAssignment;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// the directory lives on the home shard's template; findAndModify answers stand in for shard_directory
+@ExtendWith(MockitoExtension.class)
+public class ShardDirectoryTests {
+
+    private static final String OWNER = "alice";
+
+    @Mock
+    private MongoTemplate home;
+    @Mock
+    private MongoTemplate other;
+    private ShardDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        StorageShards shards = new StorageShards(List.of(
+                new StorageShards.Shard("shard-0", null, null, home),
+                new StorageShards.Shard("shard-1", null, null, other)), List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        directory = new ShardDirectory(shards, mappingContext, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        directory.stop();
+    }
+
+    @Test
+    void whenOwnerIsBeingMoved_thenWritesAreRejectedUntilTheMoveCompletes() {
+        // given
+        answerFindAndModify(
+                new ShardAssignment(OWNER, "shard-0", "shard-1", LocalDateTime.now()),
+                new ShardAssignment(OWNER, "shard-1", null, LocalDateTime.now()));
+        ReflectionTestUtils.invokeMethod(directory, "beginMove", OWNER, "shard-1");
+
+        // when / then
+        assertThatThrownBy(() -> directory.beforeWrite(OWNER)).isInstanceOf(ShardMoveInProgressException.class);
+
+        ReflectionTestUtils.invokeMethod(directory, "completeMove", OWNER, "shard-1");
+        assertThatCode(() -> directory.beforeWrite(OWNER)).doesNotThrowAnyException();
+        assertThat(directory.shardOf(OWNER).id()).isEqualTo("shard-1");
+        Update completion = capturedUpdates().get(1);
+        assertThat(completion.getUpdateObject().get("$set", Document.class).get("shard")).isEqualTo("shard-1");
+        assertThat(completion.getUpdateObject().get("$unset", Document.class)).containsKey("movingTo");
+    }
+
+    @Test
+    void whenMoveIsAborted_thenOwnerStaysAndWritesResume() {
+        // given
+        answerFindAndModify(
+                new ShardAssignment(OWNER, "shard-0", "shard-1", LocalDateTime.now()),
+                new ShardAssignment(OWNER, "shard-0", null, LocalDateTime.now()));
+        ReflectionTestUtils.invokeMethod(directory, "beginMove", OWNER, "shard-1");
+        assertThatThrownBy(() -> directory.beforeWrite(OWNER)).isInstanceOf(ShardMoveInProgressException.class);
+
+        // when
+        ReflectionTestUtils.invokeMethod(directory, "abortMove", OWNER);
+
+        // then
+        assertThatCode(() -> directory.beforeWrite(OWNER)).doesNotThrowAnyException();
+        assertThat(directory.shardOf(OWNER).id()).isEqualTo("shard-0");
+        Update abort = capturedUpdates().get(1);
+        assertThat(abort.getUpdateObject().get("$set", Document.class)).doesNotContainKey("shard");
+        assertThat(abort.getUpdateObject().get("$unset", Document.class)).containsKey("movingTo");
+    }
+
+    @Test
+    void whenOwnerIsAlreadyMoving_thenSecondMoveIsRefused() {
+        // given: the movingTo == null guard matched nothing
+        when(home.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(ShardAssignment.class))).thenReturn(null);
+
+        // when / then
+        assertThatThrownBy(() -> ReflectionTestUtils.invokeMethod(directory, "beginMove", OWNER, "shard-1"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenStarted_thenIndexesAreCreatedOnEveryShard() {
+        // given
+        IndexOperations homeIndexes = mock(IndexOperations.class);
+        IndexOperations otherIndexes = mock(IndexOperations.class);
+        when(home.indexOps(any(Class.class))).thenReturn(homeIndexes);
+        when(other.indexOps(any(Class.class))).thenReturn(otherIndexes);
+        when(home.estimatedCount(ShardAssignment.class)).thenReturn(1L);
+        when(home.findAll(ShardAssignment.class)).thenReturn(List.of());
+
+        // when
+        directory.start();
+
+        // then
+        verify(other, atLeastOnce()).indexOps(FileDocument.class);
+        verify(other, atLeastOnce()).indexOps(FileChange.class);
+        verify(home, atLeastOnce()).indexOps(ShardAssignment.class);
+        verify(otherIndexes, atLeastOnce()).createIndex(any());
+        verify(homeIndexes, atLeastOnce()).createIndex(any());
+    }
+
+    private void answerFindAndModify(ShardAssignment first, ShardAssignment second) {
+        when(home.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(ShardAssignment.class))).thenReturn(first, second);
+    }
+
+    private List<Update> capturedUpdates() {
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(home, atLeastOnce()).findAndModify(any(Query.class), updates.capture(), any(FindAndModifyOptions.class),
+                eq(ShardAssignment.class));
+        return updates.getAllValues();
+    }
+}
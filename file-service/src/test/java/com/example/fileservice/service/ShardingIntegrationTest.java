@@ -0,0 +1,111 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.dto.ShardMoveResponse;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.repository.FileRepository;
+import com.example.fileservice.shard.ShardContext;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.ShardRebalancer;
+import com.example.fileservice.shard.StorageShards;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Testcontainers
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ComponentScan(basePackages = {
+        "com.example.fileservice", // file-service
+        "com.example.securitylib" // security-lib
+})
+class ShardingIntegrationTest {
+
+    @Container
+    static final MongoDBContainer homeShard = new MongoDBContainer("mongo:7");
+    @Container
+    static final MongoDBContainer secondShard = new MongoDBContainer("mongo:7");
+
+    @Autowired
+    private FileRepository fileRepository;
+    @Autowired
+    private StorageShards shards;
+    @Autowired
+    private ShardDirectory directory;
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> homeShard.getReplicaSetUrl("cloudservice"));
+        registry.add("storage.shards", () -> secondShard.getReplicaSetUrl("cloudservice"));
+        registry.add("storage.directory.refresh-ms", () -> "100");
+        registry.add("storage.rebalance.in-flight-write-ms", () -> "100");
+    }
+
+    @Test
+    void whenOwnerWrites_thenDocumentsLandOnItsShardOnly() {
+        // given
+        String owner = "sharded-writer";
+
+        // when
+        save(owner, "a.txt");
+        StorageShards.Shard shard = directory.shardOf(owner);
+
+        // then
+        for (StorageShards.Shard candidate : shards.all()) {
+            assertThat(countFiles(candidate, owner)).isEqualTo(candidate == shard ? 1 : 0);
+        }
+    }
+
+    @Test
+    void whenOwnerIsMoved_thenFilesFollowAndStayReadable() {
+        // given
+        String owner = "sharded-mover";
+        save(owner, "a.txt");
+        save(owner, "b.txt");
+        save(owner, "c.txt");
+        StorageShards.Shard source = directory.shardOf(owner);
+        StorageShards.Shard target = shards.all().stream().filter(s -> s != source).findFirst().orElseThrow();
+
+        // when
+        ShardMoveResponse response = rebalancer.move(owner, target.id());
+
+        // then
+        assertThat(response.isMoved()).isTrue();
+        assertThat(response.getDocuments()).isEqualTo(3);
+        assertThat(directory.shardOf(owner).id()).isEqualTo(target.id());
+        assertThat(countFiles(source, owner)).isZero();
+        assertThat(countFiles(target, owner)).isEqualTo(3);
+        try (ShardContext.Scope shard = ShardContext.bind(owner)) {
+            assertThat(fileRepository.findByOwnerName(owner)).hasSize(3);
+        }
+    }
+
+    private void save(String owner, String fileName) {
+        try (ShardContext.Scope shard = ShardContext.bind(owner)) {
+            fileRepository.save(FileDocument.builder()
+                    .fileName(fileName)
+                    .ownerName(owner)
+                    .contentType("text/plain")
+                    .size(5L)
+                    .uploadDate(LocalDateTime.now())
+                    .fileData("hello".getBytes())
+                    .build());
+        }
+    }
+
+    private static long countFiles(StorageShards.Shard shard, String owner) {
+        return shard.template().count(Query.query(where("ownerName").is(owner)), "files");
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.fileservice.service;
+
+import com.example.fileservice.model.ArchiveLocation;
+import com.example.fileservice.model.FileDocument;
+import com.example.fileservice.model.TieringLease;
+import com.example.fileservice.shard.ShardDirectory;
+import com.example.fileservice.shard.StorageShards;
+import com.example.fileservice.tier.ArchiveSegments;
+import com.example.fileservice.tier.TieringJob;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TieringJobTests {
+
+    private static final String TEST_USERNAME = "alice";
+
+    @Mock
+    private MongoTemplate home;
+    @Mock
+    private MongoTemplate other;
+    @Mock
+    private ShardDirectory directory;
+    @Mock
+    private ArchiveSegments segments;
+    private StorageShards shards;
+    private SimpleMeterRegistry meterRegistry;
+    private TieringJob job;
+    // shard id -> holder of its tiering lease, shared by every instance like the tiering_leases collection
+    private final Map<String, String> leases = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        shards = new StorageShards(List.of(
+                new StorageShards.Shard("shard-0", null, null, home),
+                new StorageShards.Shard("shard-1", null, null, other)), List.of());
+        meterRegistry = new SimpleMeterRegistry();
+        // 7 days old, 7 days idle, no pacing or pauses
+        job = newJob();
+        leaseStore(home);
+        leaseStore(other);
+    }
+
+    @Test
+    void whenRun_thenOnlyOldIdleUnarchivedFilesAreSelectedWithoutTheirContent() {
+        // given
+        LocalDateTime before = LocalDateTime.now();
+
+        // when
+        job.run();
+
+        // then
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(home).find(captor.capture(), eq(FileDocument.class));
+        Query query = captor.getValue();
+        Document criteria = query.getQueryObject();
+        assertThat(criteria.get("archive", Document.class)).containsEntry("$exists", false);
+        assertThat(criteria.get("fileData", Document.class)).containsEntry("$exists", true);
+        LocalDateTime uploadedBefore = (LocalDateTime) criteria.get("uploadDate", Document.class).get("$lt");
+        assertThat(uploadedBefore).isBetween(before.minusDays(7).minusSeconds(1), before.minusDays(7).plusSeconds(5));
+        List<?> idle = criteria.getList("$or", Document.class);
+        assertThat(idle).hasSize(2);
+        assertThat(((Document) idle.get(0)).get("lastAccessed", Document.class)).containsEntry("$exists", false);
+        LocalDateTime accessedBefore = (LocalDateTime) ((Document) idle.get(1)).get("lastAccessed", Document.class).get("$lt");
+        assertThat(accessedBefore).isBetween(before.minusDays(7).minusSeconds(1), before.minusDays(7).plusSeconds(5));
+        assertThat(query.getFieldsObject()).containsEntry("fileData", 0);
+        verify(other).find(any(Query.class), eq(FileDocument.class));
+    }
+
+    @Test
+    void whenColdFileIsFound_thenItsContentMovesToTheArchive() {
+        // given
+        FileDocument cold = file(TEST_USERNAME);
+        ArchiveLocation location = new ArchiveLocation("seg-1", 0, 64);
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenReturn(List.of(metadata(cold)));
+        when(home.findById(new ObjectId(cold.getId()), FileDocument.class)).thenReturn(cold);
+        when(segments.append(cold.getId(), cold.getFileData())).thenReturn(location);
+        when(home.updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // when
+        long archived = job.run();
+
+        // then
+        assertThat(archived).isEqualTo(1);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        verify(home).updateFirst(target.capture(), update.capture(), eq(FileDocument.class));
+        assertThat(target.getValue().getQueryObject().get("archive", Document.class)).containsEntry("$exists", false);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsEntry("archive", location);
+        assertThat(update.getValue().getUpdateObject().get("$unset", Document.class)).containsKey("fileData");
+        // synced before any document points at the segment
+        InOrder order = inOrder(segments, home);
+        order.verify(segments).sync();
+        order.verify(home).updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class));
+    }
+
+    @Test
+    void whenFileIsDeletedOrArchivedMeanwhile_thenItIsSkipped() {
+        // given
+        FileDocument deletedBeforeLoad = file(TEST_USERNAME);
+        FileDocument deletedAfterAppend = file(TEST_USERNAME);
+        FileDocument alreadyArchived = file(TEST_USERNAME);
+        alreadyArchived.setFileData(null);
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenReturn(List.of(
+                metadata(deletedBeforeLoad), metadata(deletedAfterAppend), metadata(alreadyArchived)));
+        when(home.findById(new ObjectId(deletedBeforeLoad.getId()), FileDocument.class)).thenReturn(null);
+        when(home.findById(new ObjectId(deletedAfterAppend.getId()), FileDocument.class)).thenReturn(deletedAfterAppend);
+        when(home.findById(new ObjectId(alreadyArchived.getId()), FileDocument.class)).thenReturn(alreadyArchived);
+        when(segments.append(eq(deletedAfterAppend.getId()), any())).thenReturn(new ArchiveLocation("seg-1", 0, 64));
+        when(home.updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // when
+        long archived = job.run();
+
+        // then
+        assertThat(archived).isZero();
+        verify(segments, times(1)).append(any(), any());
+        verify(home, times(1)).updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class));
+        assertThat(meterRegistry.get("tiering.files.skipped").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("tiering.files.archived").counter().count()).isZero();
+    }
+
+    @Test
+    void whenOwnerLivesOnAnotherShard_thenLeftoverCopyIsNotArchived() {
+        // given: bob was moved to shard-1, the copy on shard-0 is deleted by the move
+        FileDocument leftover = file("bob");
+        when(directory.isSharded()).thenReturn(true);
+        when(directory.shardOf("bob")).thenReturn(shards.byId("shard-1"));
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenReturn(List.of(metadata(leftover)));
+
+        // when
+        long archived = job.run();
+
+        // then
+        assertThat(archived).isZero();
+        verify(home, never()).findById(any(), eq(FileDocument.class));
+        verify(segments, never()).append(any(), any());
+        verify(home, never()).updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class));
+    }
+
+    @Test
+    void whenTwoInstancesRunAtOnce_thenEachShardIsTieredByOneOfThem() {
+        // given: the second instance starts its pass while the first one is in the middle of shard-0
+        TieringJob second = newJob();
+        FileDocument cold = file(TEST_USERNAME);
+        long[] archivedBySecond = new long[1];
+        when(home.find(any(Query.class), eq(FileDocument.class))).thenAnswer(invocation -> {
+            archivedBySecond[0] = second.run();
+            return List.of(metadata(cold));
+        });
+        when(home.findById(new ObjectId(cold.getId()), FileDocument.class)).thenReturn(cold);
+        when(segments.append(cold.getId(), cold.getFileData())).thenReturn(new ArchiveLocation("seg-1", 0, 64));
+        when(home.updateFirst(any(Query.class), any(Update.class), eq(FileDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // when
+        long archivedByFirst = job.run();
+
+        // then: shard-0 was read and archived once, the leases are given back for the next pass
+        assertThat(archivedByFirst).isEqualTo(1);
+        assertThat(archivedBySecond[0]).isZero();
+        verify(home, times(1)).find(any(Query.class), eq(FileDocument.class));
+        verify(segments, times(1)).append(any(), any());
+        verify(other, times(2)).find(any(Query.class), eq(FileDocument.class));
+        assertThat(leases).isEmpty();
+    }
+
+    private TieringJob newJob() {
+        // 7 days old, 7 days idle, no pacing or pauses
+        return new TieringJob(shards, directory, segments, meterRegistry, false, 7, 7, 50, 0, 0, 600000, 300000);
+    }
+
+    // a lease is granted when it is free or already held by the caller; expiry is not modelled
+    private void leaseStore(MongoTemplate template) {
+        lenient().when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(TieringLease.class))).thenAnswer(invocation -> {
+            String shardId = invocation.getArgument(0, Query.class).getQueryObject().getString("_id");
+            String holder = invocation.getArgument(1, Update.class).getUpdateObject()
+                    .get("$set", Document.class).getString("holder");
+            String current = leases.putIfAbsent(shardId, holder);
+            if (current != null && !current.equals(holder)) {
+                throw new DuplicateKeyException("E11000 duplicate key error collection: tiering_leases");
+            }
+            return new TieringLease(shardId, holder, LocalDateTime.now().plusMinutes(5));
+        });
+        lenient().when(template.updateFirst(any(Query.class), any(Update.class), eq(TieringLease.class)))
+                .thenAnswer(invocation -> {
+                    Document released = invocation.getArgument(0, Query.class).getQueryObject();
+                    boolean removed = leases.remove(released.getString("_id"), released.getString("holder"));
+                    return UpdateResult.acknowledged(removed ? 1 : 0, removed ? 1L : 0L, null);
+                });
+    }
+
+    private static FileDocument file(String owner) {
+        return FileDocument.builder()
+                .id(new ObjectId().toHexString())
+                .ownerName(owner)
+                .fileName("old.txt")
+                .uploadDate(LocalDateTime.now().minusDays(30))
+                .fileData("cold content".getBytes())
+                .build();
+    }
+
+    // the batch query leaves fileData out
+    private static FileDocument metadata(FileDocument file) {
+        return FileDocument.builder()
+                .id(file.getId())
+                .ownerName(file.getOwnerName())
+                .fileName(file.getFileName())
+                .uploadDate(file.getUploadDate())
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.gateway;
+
+import com.example.securitylib.JwtService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+// only the token parser from security-lib, the replicas authenticate requests themselves
+@SpringBootApplication
+@Import(JwtService.class)
+public class GatewayApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(GatewayApplication.class, args);
+    }
+}
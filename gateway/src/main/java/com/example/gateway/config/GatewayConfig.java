@@ -0,0 +1,53 @@
+package com.example.gateway.config;
+
+import com.example.gateway.proxy.ProxyServlet;
+import com.example.gateway.proxy.UserResolver;
+import com.example.gateway.routing.BackendPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.web.SecurityFilterChain;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class GatewayConfig {
+
+    @Bean
+    public HttpClient gatewayHttpClient(@Value("${gateway.connect-timeout-ms:1000}") long connectTimeoutMs) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    // everything under /cloud is proxied as is; actuator is on management.server.port
+    @Bean
+    public ServletRegistrationBean<ProxyServlet> proxyServlet(BackendPool pool, UserResolver userResolver,
+                                                              HttpClient gatewayHttpClient, MeterRegistry meterRegistry,
+                                                              @Value("${gateway.response-timeout-ms:60000}") long responseTimeoutMs,
+                                                              @Value("${gateway.max-failovers:1}") int maxFailovers) {
+        ServletRegistrationBean<ProxyServlet> registration = new ServletRegistrationBean<>(
+                new ProxyServlet(pool, userResolver, gatewayHttpClient, meterRegistry, responseTimeoutMs, maxFailovers),
+                "/cloud/*");
+        registration.setName("proxy");
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+
+    // spring-boot-starter-security comes with security-lib; tokens are checked by the replicas.
+    // Open on both ports: the public one only carries /cloud and the probes, the management one is not published
+    @Bean
+    public SecurityFilterChain gatewayFilterChain(HttpSecurity http) throws Exception {
+        return http
+                .csrf(AbstractHttpConfigurer::disable)
+                .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+                .build();
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.gateway.proxy;
+
+import com.example.gateway.routing.Backend;
+import com.example.gateway.routing.BackendPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams each request to the replica that owns its user and the answer back. A replica that refuses
+ * the connection is ejected and the request goes to the next one on the ring, as long as it has no body
+ * that was already consumed; uploads fail with 502 instead and the client retries.
+ */
+@Slf4j
+public class ProxyServlet extends HttpServlet {
+
+    // hop-by-hop headers, and the ones HttpClient sets itself
+    private static final Set<String> SKIPPED_HEADERS = Set.of("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "trailer", "upgrade", "host", "content-length", "expect");
+    // long polls wait on the replica they reach, and only the one that records the change wakes them
+    private static final String CHANGE_FEED_PATH = "/cloud/changes";
+
+    private final BackendPool pool;
+    private final UserResolver userResolver;
+    private final HttpClient client;
+    private final Duration responseTimeout;
+    private final int maxFailovers;
+    private final MeterRegistry meterRegistry;
+    private final Counter failovers;
+
+    public ProxyServlet(BackendPool pool, UserResolver userResolver, HttpClient client, MeterRegistry meterRegistry,
+                        long responseTimeoutMs, int maxFailovers) {
+        this.pool = pool;
+        this.userResolver = userResolver;
+        this.client = client;
+        this.responseTimeout = Duration.ofMillis(responseTimeoutMs);
+        this.maxFailovers = maxFailovers;
+        this.meterRegistry = meterRegistry;
+        this.failovers = Counter.builder("gateway.failovers")
+                .description("Requests retried on another replica after a refused connection")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String user = userResolver.resolve(request);
+        boolean replayable = request.getContentLengthLong() <= 0 && request.getHeader("Transfer-Encoding") == null;
+        boolean write = !isRead(request.getMethod());
+        boolean pinned = write || CHANGE_FEED_PATH.equals(request.getRequestURI());
+        Backend backend = pool.select(user, pinned);
+        for (int attempt = 0; ; attempt++) {
+            if (backend == null) {
+                error(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "NO_BACKEND", "No file-service replica is available");
+                return;
+            }
+            Backend target = backend;
+            long start = System.nanoTime();
+            String outcome = "error";
+            target.acquire();
+            try {
+                HttpResponse<InputStream> upstream = client.send(upstreamRequest(request, target),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                outcome = upstream.statusCode() / 100 + "xx";
+                copy(upstream, response);
+                return;
+            } catch (ConnectException | HttpConnectTimeoutException e) {
+                pool.markDown(target, "connection refused: " + e.getMessage());
+                if (!replayable || attempt >= maxFailovers) {
+                    error(response, HttpServletResponse.SC_BAD_GATEWAY, "BAD_GATEWAY", "File service replica is unreachable");
+                    return;
+                }
+                failovers.increment();
+                backend = pool.select(user, pinned);
+            } catch (IOException e) {
+                log.warn("Proxying {} {} to {} failed: {}", request.getMethod(), request.getRequestURI(), target, e.getMessage());
+                error(response, HttpServletResponse.SC_BAD_GATEWAY, "BAD_GATEWAY", "File service replica failed");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error(response, HttpServletResponse.SC_BAD_GATEWAY, "BAD_GATEWAY", "Request interrupted");
+                return;
+            } finally {
+                // also after a failed write: it may have landed on the replica before the error
+                if (write) {
+                    pool.wrote(user);
+                }
+                target.release();
+                Timer.builder("gateway.requests")
+                        .description("Requests proxied to file-service replicas")
+                        .tag("backend", target.id())
+                        .tag("outcome", outcome)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static boolean isRead(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private HttpRequest upstreamRequest(HttpServletRequest request, Backend backend) throws IOException {
+        String target = request.getRequestURI() + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        HttpRequest.Builder builder = HttpRequest.newBuilder(backend.uri().resolve(URI.create(target)))
+                .timeout(responseTimeout)
+                .method(request.getMethod(), body(request));
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            for (String value : Collections.list(request.getHeaders(name))) {
+                builder.header(name, value);
+            }
+        }
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        builder.setHeader("X-Forwarded-For", forwardedFor != null
+                ? forwardedFor + ", " + request.getRemoteAddr() : request.getRemoteAddr());
+        builder.setHeader("X-Forwarded-Proto", request.getScheme());
+        return builder.build();
+    }
+
+    private static HttpRequest.BodyPublisher body(HttpServletRequest request) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length == 0 || (length < 0 && request.getHeader("Transfer-Encoding") == null)) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        ServletInputStream in = request.getInputStream();
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> in);
+        return length > 0 ? HttpRequest.BodyPublishers.fromPublisher(stream, length) : stream;
+    }
+
+    private static void copy(HttpResponse<InputStream> upstream, HttpServletResponse response) throws IOException {
+        response.setStatus(upstream.statusCode());
+        for (Map.Entry<String, List<String>> header : upstream.headers().map().entrySet()) {
+            String name = header.getKey();
+            if (name.startsWith(":") || (SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))
+                    && !"content-length".equalsIgnoreCase(name))) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                response.addHeader(name, value);
+            }
+        }
+        try (InputStream body = upstream.body()) {
+            body.transferTo(response.getOutputStream());
+        }
+    }
+
+    private static void error(HttpServletResponse response, int status, String code, String message) throws IOException {
+        if (response.isCommitted()) {
+            return;
+        }
+        response.reset();
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.getWriter().write("{\"code\":\"" + code + "\",\"message\":\"" + message + "\"}");
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.gateway.proxy;
+
+import com.example.securitylib.JwtService;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Finds the user a request belongs to, from the same headers file-service reads. The gateway only routes;
+ * a bad token still goes through and is rejected by the replica.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserResolver {
+
+    private final JwtService jwtService;
+
+    @Value("${security.jwt.header}")
+    private String header;
+
+    /** Login in the token, {@code null} when there is no usable one. */
+    public String resolve(HttpServletRequest request) {
+        String token = request.getHeader(header);
+        if (!StringUtils.hasText(token)) {
+            String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return null;
+            }
+            token = authHeader.substring(7);
+        }
+        try {
+            return jwtService.getUsername(token);
+        } catch (ExpiredJwtException e) {
+            // keep the user on its replica, which will answer 401
+            return e.getClaims().getSubject();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
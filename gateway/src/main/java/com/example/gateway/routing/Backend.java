@@ -0,0 +1,60 @@
+package com.example.gateway.routing;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** One file-service replica: its base URI, requests currently proxied to it and its health. */
+public final class Backend {
+
+    private final String id;
+    private final URI uri;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger failedChecks = new AtomicInteger();
+    private volatile boolean healthy = true;
+
+    public Backend(URI uri) {
+        this.uri = uri;
+        this.id = uri.getAuthority();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    void healthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    int checkFailed() {
+        return failedChecks.incrementAndGet();
+    }
+
+    void checkPassed() {
+        failedChecks.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
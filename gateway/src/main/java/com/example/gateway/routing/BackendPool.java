@@ -0,0 +1,126 @@
+package com.example.gateway.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The configured file-service replicas and the ring of the healthy ones. A user's requests go to the
+ * replica their name hashes to, so its per-user caches see all of them; the ring is rebuilt whenever a
+ * replica is ejected or comes back. Reads spill to the next replica when the user's one is over the load
+ * bound, except within the read-your-writes window after a write of the user: only the replica that took
+ * the write has it in its metadata index and pins the user's Mongo reads to the primary. Change feed long
+ * polls never spill either, they are woken by the writes that land on the owner.
+ */
+@Component
+@Slf4j
+public class BackendPool {
+
+    private final List<Backend> backends;
+    private final int virtualNodes;
+    private final double loadFactor;
+    private final Cache<String, Boolean> recentWriters;
+    private final Counter spills;
+    private volatile HashRing ring;
+
+    public BackendPool(MeterRegistry meterRegistry,
+                       @Value("${gateway.backends}") List<String> backends,
+                       @Value("${gateway.virtual-nodes:160}") int virtualNodes,
+                       @Value("${gateway.load-factor:1.25}") double loadFactor,
+                       @Value("${gateway.read-your-writes-window-ms:90000}") long readYourWritesWindowMs,
+                       @Value("${gateway.max-tracked-writers:100000}") long maxTrackedWriters) {
+        if (loadFactor < 1.0) {
+            throw new IllegalArgumentException("gateway.load-factor must be at least 1.0");
+        }
+        this.backends = backends.stream().map(String::trim).map(URI::create).map(Backend::new).toList();
+        this.virtualNodes = virtualNodes;
+        this.loadFactor = loadFactor;
+        this.ring = HashRing.of(this.backends, virtualNodes);
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(readYourWritesWindowMs))
+                .maximumSize(maxTrackedWriters)
+                .build();
+        this.spills = Counter.builder("gateway.routing.spills")
+                .description("User requests sent past their own replica because it was over the load bound")
+                .register(meterRegistry);
+        Gauge.builder("gateway.ring.members", this, p -> p.ring.members().size())
+                .description("Healthy replicas in the hash ring")
+                .register(meterRegistry);
+        for (Backend backend : this.backends) {
+            Gauge.builder("gateway.backend.in.flight", backend, Backend::inFlight)
+                    .description("Requests currently proxied to the replica")
+                    .tag("backend", backend.id())
+                    .register(meterRegistry);
+            Gauge.builder("gateway.backend.healthy", backend, b -> b.isHealthy() ? 1 : 0)
+                    .description("1 while the replica is in the ring")
+                    .tag("backend", backend.id())
+                    .register(meterRegistry);
+        }
+        log.info("Routing to {} with {} virtual nodes each, load factor {}", this.backends, virtualNodes, loadFactor);
+    }
+
+    public List<Backend> backends() {
+        return backends;
+    }
+
+    /**
+     * Replica for the user, {@code null} for anonymous requests picks the least loaded; {@code null} if none
+     * is up. Pinned requests, writes and change feed polls, never spill: the owner's metadata index is the
+     * one that sees writes write-through, a spilled replica checks names against an index the write is not
+     * in yet, and a poll waiting there would not be woken by the write. Reads of a user who wrote within the
+     * window do not spill either.
+     */
+    public Backend select(String user, boolean pinned) {
+        HashRing current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        if (user == null) {
+            return current.leastLoaded();
+        }
+        if (pinned || recentWriters.getIfPresent(user) != null) {
+            return current.owner(user);
+        }
+        HashRing.Route route = current.route(user, loadFactor);
+        if (route.spilled()) {
+            spills.increment();
+        }
+        return route.backend();
+    }
+
+    /** Records a write of the user, which keeps its reads on its own replica for the window. */
+    public void wrote(String user) {
+        if (user != null) {
+            recentWriters.put(user, Boolean.TRUE);
+        }
+    }
+
+    public void markDown(Backend backend, String reason) {
+        if (backend.isHealthy()) {
+            backend.healthy(false);
+            log.warn("Replica {} left the ring: {}", backend, reason);
+            rebuild();
+        }
+    }
+
+    public void markUp(Backend backend) {
+        if (!backend.isHealthy()) {
+            backend.healthy(true);
+            log.info("Replica {} joined the ring", backend);
+            rebuild();
+        }
+    }
+
+    private synchronized void rebuild() {
+        ring = HashRing.of(backends.stream().filter(Backend::isHealthy).toList(), virtualNodes);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.gateway.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring with virtual nodes. A key belongs to the first backend clockwise from
+ * its hash; when a backend joins or leaves only the keys on its arcs move. Routing is bounded-load:
+ * a backend already carrying more than {@code loadFactor} times the average in-flight requests is
+ * skipped for the next one clockwise, so a few heavy users cannot pile onto a single replica.
+ */
+public final class HashRing {
+
+    public record Route(Backend backend, boolean spilled) {
+    }
+
+    private static final HashRing EMPTY = new HashRing(new long[0], new Backend[0], List.of());
+
+    private final long[] points;
+    private final Backend[] owners;
+    private final List<Backend> members;
+
+    private HashRing(long[] points, Backend[] owners, List<Backend> members) {
+        this.points = points;
+        this.owners = owners;
+        this.members = members;
+    }
+
+    public static HashRing of(Collection<Backend> backends, int virtualNodes) {
+        if (backends.isEmpty()) {
+            return EMPTY;
+        }
+        record Point(long hash, Backend backend) {
+        }
+        List<Point> all = new ArrayList<>(backends.size() * virtualNodes);
+        for (Backend backend : backends) {
+            for (int i = 0; i < virtualNodes; i++) {
+                all.add(new Point(hash(backend.id() + "#" + i), backend));
+            }
+        }
+        all.sort(Comparator.comparingLong(Point::hash));
+        long[] points = new long[all.size()];
+        Backend[] owners = new Backend[all.size()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = all.get(i).hash();
+            owners[i] = all.get(i).backend();
+        }
+        return new HashRing(points, owners, List.copyOf(backends));
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    public List<Backend> members() {
+        return members;
+    }
+
+    /** Backend the key hashes to, ignoring load. */
+    public Backend owner(String key) {
+        return isEmpty() ? null : owners[start(hash(key))];
+    }
+
+    /**
+     * Walks the distinct backends clockwise from the key and takes the first one under the load bound
+     * {@code ceil(loadFactor * (total in flight + 1) / members)}; at least one always is.
+     */
+    public Route route(String key, double loadFactor) {
+        if (isEmpty()) {
+            return null;
+        }
+        int total = 0;
+        for (Backend member : members) {
+            total += member.inFlight();
+        }
+        int bound = (int) Math.ceil(loadFactor * (total + 1) / members.size());
+        int index = start(hash(key));
+        Backend owner = owners[index];
+        Backend[] seen = new Backend[members.size()];
+        int distinct = 0;
+        for (int step = 0; step < owners.length && distinct < seen.length; step++) {
+            Backend candidate = owners[(index + step) % owners.length];
+            if (contains(seen, distinct, candidate)) {
+                continue;
+            }
+            if (candidate.inFlight() < bound) {
+                return new Route(candidate, candidate != owner);
+            }
+            seen[distinct++] = candidate;
+        }
+        // loads moved while walking, stay with the owner
+        return new Route(owner, false);
+    }
+
+    /** For requests without a user: the member with the fewest requests in flight. */
+    public Backend leastLoaded() {
+        Backend best = null;
+        for (Backend member : members) {
+            if (best == null || member.inFlight() < best.inFlight()) {
+                best = member;
+            }
+        }
+        return best;
+    }
+
+    private int start(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+
+    private static boolean contains(Backend[] seen, int count, Backend backend) {
+        for (int i = 0; i < count; i++) {
+            if (seen[i] == backend) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // FNV-1a over the chars with a murmur3 finaliser, no allocation per lookup
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
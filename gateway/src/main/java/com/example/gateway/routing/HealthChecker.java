@@ -0,0 +1,90 @@
+package com.example.gateway.routing;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls every replica's health endpoint. A replica is ejected after {@code unhealthy-threshold} failed
+ * checks in a row and rejoins on the first passing one; the proxy also ejects a replica at once when
+ * it refuses a connection.
+ */
+@Component
+@Slf4j
+public class HealthChecker {
+
+    private final BackendPool pool;
+    private final HttpClient client;
+    private final String path;
+    private final long intervalMs;
+    private final Duration timeout;
+    private final int unhealthyThreshold;
+    private ScheduledExecutorService scheduler;
+
+    public HealthChecker(BackendPool pool,
+                         HttpClient client,
+                         @Value("${gateway.health.path:/readyz}") String path,
+                         @Value("${gateway.health.interval-ms:2000}") long intervalMs,
+                         @Value("${gateway.health.timeout-ms:1000}") long timeoutMs,
+                         @Value("${gateway.health.unhealthy-threshold:2}") int unhealthyThreshold) {
+        this.pool = pool;
+        this.client = client;
+        this.path = path;
+        this.intervalMs = intervalMs;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.unhealthyThreshold = unhealthyThreshold;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("gateway-health-"));
+        scheduler.scheduleWithFixedDelay(this::checkAll, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** One round of checks of every replica, waiting for all of them; the scheduler runs it every interval. */
+    public void checkAll() {
+        CompletableFuture<?>[] checks = pool.backends().stream()
+                .map(this::check)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(checks).join();
+    }
+
+    private CompletableFuture<Void> check(Backend backend) {
+        HttpRequest request = HttpRequest.newBuilder(backend.uri().resolve(path))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() == 200) {
+                        backend.checkPassed();
+                        pool.markUp(backend);
+                    } else if (backend.checkFailed() >= unhealthyThreshold) {
+                        pool.markDown(backend, error != null
+                                ? "health check failed: " + error.getMessage()
+                                : "health check returned " + response.statusCode());
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.gateway.service;
+
+import com.example.gateway.routing.Backend;
+import com.example.gateway.routing.BackendPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BackendPoolTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void whenReplicaIsMarkedDown_thenPoolRoutesAroundItUntilItIsBack() {
+        // given
+        BackendPool pool = pool(2, 5000);
+        Backend owner = pool.select("alice", false);
+
+        // when
+        pool.markDown(owner, "test");
+        Backend failover = pool.select("alice", false);
+        pool.markUp(owner);
+
+        // then
+        assertThat(failover).isNotSameAs(owner);
+        assertThat(pool.select("alice", false)).isSameAs(owner);
+        assertThat(pool.select(null, false)).isNotNull();
+    }
+
+    @Test
+    void whenEveryReplicaIsDown_thenNothingIsSelected() {
+        // given
+        BackendPool pool = pool(2, 5000);
+        pool.backends().forEach(backend -> pool.markDown(backend, "test"));
+
+        // when & then
+        assertThat(pool.select("alice", false)).isNull();
+        assertThat(pool.select(null, false)).isNull();
+    }
+
+    @Test
+    void whenOwnerIsOverTheLoadBound_thenOnlyReadsSpill() {
+        // given
+        BackendPool pool = pool(3, 5000);
+        Backend owner = pool.select("heavy-user", true);
+        load(owner);
+
+        // when
+        Backend read = pool.select("heavy-user", false);
+        Backend write = pool.select("heavy-user", true);
+
+        // then: a write on another replica would be checked against that replica's stale index
+        assertThat(read).isNotSameAs(owner);
+        assertThat(write).isSameAs(owner);
+        assertThat(meterRegistry.get("gateway.routing.spills").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUserWroteRecently_thenItsReadsStayOnItsReplicaUnderLoad() {
+        // given
+        BackendPool pool = pool(3, 60_000);
+        Backend owner = pool.select("heavy-user", true);
+        pool.wrote("heavy-user");
+        load(owner);
+
+        // when
+        Backend read = pool.select("heavy-user", false);
+
+        // then: only the owner has the upload in its index and pins the user's reads to the primary
+        assertThat(read).isSameAs(owner);
+        assertThat(meterRegistry.get("gateway.routing.spills").counter().count()).isZero();
+    }
+
+    @Test
+    void whenReadYourWritesWindowIsOver_thenReadsSpillAgain() throws InterruptedException {
+        // given
+        BackendPool pool = pool(3, 50);
+        Backend owner = pool.select("heavy-user", true);
+        pool.wrote("heavy-user");
+        load(owner);
+
+        // when
+        Thread.sleep(100);
+        Backend read = pool.select("heavy-user", false);
+
+        // then
+        assertThat(read).isNotSameAs(owner);
+    }
+
+    private BackendPool pool(int replicas, long readYourWritesWindowMs) {
+        List<String> backends = IntStream.rangeClosed(1, replicas)
+                .mapToObj(i -> "http://fs-" + i + ":8080")
+                .toList();
+        return new BackendPool(meterRegistry, backends, 160, 1.25, readYourWritesWindowMs, 1000);
+    }
+
+    private static void load(Backend backend) {
+        for (int i = 0; i < 10; i++) {
+            backend.acquire();
+        }
+    }
+}
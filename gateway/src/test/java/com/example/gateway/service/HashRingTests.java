@@ -0,0 +1,81 @@
+package com.example.gateway.service;
+
+import com.example.gateway.routing.Backend;
+import com.example.gateway.routing.HashRing;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashRingTests {
+
+    private static final List<String> USERS = IntStream.range(0, 10_000).mapToObj(i -> "user-" + i).toList();
+
+    @Test
+    void whenUsersAreRouted_thenEveryReplicaOwnsAFairShare() {
+        // given
+        List<Backend> backends = backends(4);
+        HashRing ring = HashRing.of(backends, 160);
+
+        // when
+        Map<Backend, Integer> owned = new HashMap<>();
+        USERS.forEach(user -> owned.merge(ring.owner(user), 1, Integer::sum));
+
+        // then
+        assertThat(owned).hasSize(4);
+        assertThat(owned.values()).allSatisfy(count -> assertThat(count).isBetween(2_000, 3_000));
+    }
+
+    @Test
+    void whenReplicaLeaves_thenOnlyItsUsersMove() {
+        // given
+        List<Backend> backends = backends(4);
+        HashRing before = HashRing.of(backends, 160);
+        Backend leaving = backends.get(2);
+
+        // when
+        HashRing after = HashRing.of(backends.stream().filter(b -> b != leaving).toList(), 160);
+
+        // then
+        for (String user : USERS) {
+            Backend owner = before.owner(user);
+            if (owner != leaving) {
+                assertThat(after.owner(user)).isSameAs(owner);
+            } else {
+                assertThat(after.owner(user)).isNotSameAs(leaving);
+            }
+        }
+    }
+
+    @Test
+    void whenOwnerIsOverTheLoadBound_thenUserSpillsToTheNextReplica() {
+        // given
+        List<Backend> backends = backends(3);
+        HashRing ring = HashRing.of(backends, 160);
+        Backend owner = ring.owner("heavy-user");
+        for (int i = 0; i < 10; i++) {
+            owner.acquire();
+        }
+
+        // when
+        HashRing.Route route = ring.route("heavy-user", 1.25);
+        owner.release();
+        HashRing.Route idle = HashRing.of(backends(3), 160).route("heavy-user", 1.25);
+
+        // then
+        assertThat(route.spilled()).isTrue();
+        assertThat(route.backend()).isNotSameAs(owner);
+        assertThat(idle.spilled()).isFalse();
+    }
+
+    private static List<Backend> backends(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Backend(URI.create("http://file-service-" + i + ":8080")))
+                .toList();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.gateway.service;
+
+import com.example.gateway.routing.Backend;
+import com.example.gateway.routing.BackendPool;
+import com.example.gateway.routing.HealthChecker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class HealthCheckerTests {
+
+    @Mock
+    private HttpClient client;
+
+    private BackendPool pool;
+    private HealthChecker checker;
+    private Backend flaky;
+    private volatile boolean flakyUp = true;
+
+    @BeforeEach
+    void setUp() {
+        pool = new BackendPool(new SimpleMeterRegistry(), List.of("http://fs-1:8080", "http://fs-2:8080"),
+                160, 1.25, 5000, 1000);
+        checker = new HealthChecker(pool, client, "/readyz", 2000, 1000, 2);
+        flaky = pool.backends().get(0);
+        HttpResponse<?> ok = mock(HttpResponse.class);
+        when(ok.statusCode()).thenReturn(200);
+        doAnswer(invocation -> {
+            HttpRequest request = invocation.getArgument(0);
+            if (request.uri().getAuthority().equals(flaky.id()) && !flakyUp) {
+                return CompletableFuture.failedFuture(new ConnectException("Connection refused"));
+            }
+            return CompletableFuture.completedFuture(ok);
+        }).when(client).sendAsync(argThat(request -> request.uri().getPath().equals("/readyz")), any());
+    }
+
+    @Test
+    void whenReplicaFailsFewerChecksThanTheThreshold_thenItStaysInTheRing() {
+        // given
+        flakyUp = false;
+
+        // when
+        checker.checkAll();
+
+        // then
+        assertThat(flaky.isHealthy()).isTrue();
+    }
+
+    @Test
+    void whenReplicaFailsTheThreshold_thenItIsEjectedAndRejoinsOnTheFirstPassingCheck() {
+        // given
+        flakyUp = false;
+
+        // when
+        checker.checkAll();
+        checker.checkAll();
+        boolean ejected = !flaky.isHealthy();
+        Backend whileDown = pool.select(null, false);
+        flakyUp = true;
+        checker.checkAll();
+
+        // then
+        assertThat(ejected).isTrue();
+        assertThat(whileDown).isNotSameAs(flaky);
+        assertThat(flaky.isHealthy()).isTrue();
+    }
+
+    @Test
+    void whenFailuresAreNotInARow_thenReplicaIsNotEjected() {
+        // when
+        flakyUp = false;
+        checker.checkAll();
+        flakyUp = true;
+        checker.checkAll();
+        flakyUp = false;
+        checker.checkAll();
+
+        // then
+        assertThat(flaky.isHealthy()).isTrue();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.gateway.service;
+
+import com.example.gateway.proxy.ProxyServlet;
+import com.example.gateway.proxy.UserResolver;
+import com.example.gateway.routing.Backend;
+import com.example.gateway.routing.BackendPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ProxyServletTests {
+
+    private static final String USER = "alice";
+
+    @Mock
+    private HttpClient client;
+
+    @Mock
+    private UserResolver userResolver;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> sentTo = new ArrayList<>();
+    private final Set<String> refusing = new HashSet<>();
+    private BackendPool pool;
+    private ProxyServlet servlet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new BackendPool(meterRegistry, List.of("http://fs-1:8080", "http://fs-2:8080", "http://fs-3:8080"),
+                160, 1.25, 60_000, 1000);
+        servlet = new ProxyServlet(pool, userResolver, client, meterRegistry, 1000, 1);
+        when(userResolver.resolve(any())).thenReturn(USER);
+        doAnswer(invocation -> {
+            HttpRequest request = invocation.getArgument(0);
+            String backend = request.uri().getAuthority();
+            sentTo.add(backend);
+            if (refusing.contains(backend)) {
+                throw new ConnectException("Connection refused");
+            }
+            return ok();
+        }).when(client).send(any(), any());
+    }
+
+    @Test
+    void whenOwnerRefusesABodilessRequest_thenItIsEjectedAndTheNextReplicaAnswers() throws Exception {
+        // given
+        Backend owner = pool.select(USER, false);
+        refusing.add(owner.id());
+
+        // when
+        MockHttpServletResponse response = send(get("/cloud/list"));
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(sentTo).hasSize(2);
+        assertThat(sentTo.get(0)).isEqualTo(owner.id());
+        assertThat(sentTo.get(1)).isNotEqualTo(owner.id());
+        assertThat(owner.isHealthy()).isFalse();
+        assertThat(meterRegistry.get("gateway.failovers").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenOwnerRefusesAnUpload_thenItFailsWithoutFailover() throws Exception {
+        // given
+        Backend owner = pool.select(USER, true);
+        refusing.add(owner.id());
+        MockHttpServletRequest upload = new MockHttpServletRequest("POST", "/cloud/file");
+        upload.setQueryString("filename=a.txt");
+        upload.setContent("hello".getBytes());
+
+        // when
+        MockHttpServletResponse response = send(upload);
+
+        // then: the body stream may already be consumed, the client retries
+        assertThat(response.getStatus()).isEqualTo(502);
+        assertThat(sentTo).containsExactly(owner.id());
+        assertThat(owner.isHealthy()).isFalse();
+    }
+
+    @Test
+    void whenUserWroteThroughTheGateway_thenItsNextReadDoesNotSpill() throws Exception {
+        // given
+        Backend owner = pool.select(USER, true);
+        MockHttpServletRequest upload = new MockHttpServletRequest("POST", "/cloud/file");
+        upload.setContent("hello".getBytes());
+        send(upload);
+        for (int i = 0; i < 10; i++) {
+            owner.acquire();
+        }
+
+        // when
+        send(get("/cloud/file"));
+        send(get("/cloud/list"));
+
+        // then: a spilled read would miss the upload on another replica's index and Mongo secondary
+        assertThat(sentTo).containsOnly(owner.id());
+    }
+
+    @Test
+    void whenUserHasNotWritten_thenItsReadsSpillUnderLoad() throws Exception {
+        // given
+        Backend owner = pool.select(USER, false);
+        for (int i = 0; i < 10; i++) {
+            owner.acquire();
+        }
+
+        // when
+        send(get("/cloud/list"));
+
+        // then
+        assertThat(sentTo).hasSize(1);
+        assertThat(sentTo.get(0)).isNotEqualTo(owner.id());
+    }
+
+    @Test
+    void whenUserLongPollsTheChangeFeed_thenThePollDoesNotSpill() throws Exception {
+        // given
+        Backend owner = pool.select(USER, true);
+        for (int i = 0; i < 10; i++) {
+            owner.acquire();
+        }
+        MockHttpServletRequest poll = get("/cloud/changes");
+        poll.setQueryString("since=3&wait=30");
+
+        // when
+        send(poll);
+
+        // then: the owner records the user's next change, a poll waiting anywhere else sleeps the whole wait
+        assertThat(sentTo).containsExactly(owner.id());
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.service(request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<Object> ok() {
+        HttpResponse<Object> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(response.body()).thenReturn(new ByteArrayInputStream("[]".getBytes()));
+        return response;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.loadtests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Thin client for the file-service REST API. Every call returns the status and the body size
+ * instead of throwing on non-2xx, so the recorder can count errors by status code.
+ */
+public class CloudClient {
+
+    public static final String TOKEN_HEADER = "auth-token";
+
+    public record Result(int status, long bytes, String body) {
+        public boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient http;
+
+    public CloudClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public Result register(String login, String password) throws IOException, InterruptedException {
+        return sendForString(json("/cloud/register", Map.of("login", login, "password", password)));
+    }
+
+    /** Logs in during scenario setup, where a failure aborts the run instead of being counted. */
+    public String loginForToken(String login, String password) throws IOException, InterruptedException {
+        Result result = login(login, password);
+        if (!result.ok()) {
+            throw new IOException("Login for " + login + " failed with " + result.status() + ": " + result.body());
+        }
+        JsonNode body = JSON.readTree(result.body());
+        return body.path(TOKEN_HEADER).asText();
+    }
+
+    public Result login(String login, String password) throws IOException, InterruptedException {
+        return sendForString(json("/cloud/login", Map.of("login", login, "password", password)));
+    }
+
+    public Result upload(String token, String fileName, byte[] content) throws IOException, InterruptedException {
+        String boundary = "load-" + UUID.randomUUID();
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+        HttpRequest request = HttpRequest.newBuilder(uri("/cloud/file?filename=" + encode(fileName)))
+                .timeout(REQUEST_TIMEOUT)
+                .header(TOKEN_HEADER, token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head),
+                        HttpRequest.BodyPublishers.ofByteArray(content),
+                        HttpRequest.BodyPublishers.ofString(tail)))
+                .build();
+        Result result = sendForString(request);
+        return new Result(result.status(), content.length, result.body());
+    }
+
+    public Result download(String token, String fileName) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri("/cloud/file?filename=" + encode(fileName)))
+                .timeout(REQUEST_TIMEOUT)
+                .header(TOKEN_HEADER, token)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            long bytes = body.transferTo(OutputStream.nullOutputStream());
+            return new Result(response.statusCode(), bytes, null);
+        }
+    }
+
+    public Result list(String token, int limit) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri("/cloud/list?limit=" + limit))
+                .timeout(REQUEST_TIMEOUT)
+                .header(TOKEN_HEADER, token)
+                .GET()
+                .build();
+        return sendForString(request);
+    }
+
+    public Result delete(String token, String fileName) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri("/cloud/file?filename=" + encode(fileName)))
+                .timeout(REQUEST_TIMEOUT)
+                .header(TOKEN_HEADER, token)
+                .DELETE()
+                .build();
+        return sendForString(request);
+    }
+
+    private HttpRequest json(String path, Map<String, String> body) throws IOException {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private Result sendForString(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Result(response.statusCode(), response.body().length(), response.body());
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.loadtests;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation latency histograms and status counts. Only samples taken between
+ * {@link #startMeasuring()} and {@link #stopMeasuring()} count: the warm-up and the requests still in
+ * flight when the run ends are discarded.
+ */
+public class LatencyRecorder {
+
+    /** Status recorded for requests that never got a response (connect failure, timeout, reset). */
+    public static final int IO_ERROR = -1;
+
+    @FunctionalInterface
+    public interface Call {
+        CloudClient.Result execute() throws Exception;
+    }
+
+    public static final class OperationStats {
+        final Histogram latencyMicros = new ConcurrentHistogram(3);
+        final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder bytes = new LongAdder();
+
+        public long count() {
+            return latencyMicros.getTotalCount();
+        }
+
+        public long errors() {
+            return statuses.entrySet().stream()
+                    .filter(e -> e.getKey() < 200 || e.getKey() >= 400)
+                    .mapToLong(e -> e.getValue().sum())
+                    .sum();
+        }
+
+        public Map<Integer, Long> statuses() {
+            Map<Integer, Long> copy = new TreeMap<>();
+            statuses.forEach((status, count) -> copy.put(status, count.sum()));
+            return copy;
+        }
+    }
+
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private volatile boolean measuring;
+    private volatile long measuringSinceNanos;
+    private volatile long measuredNanos;
+
+    public void startMeasuring() {
+        measuringSinceNanos = System.nanoTime();
+        measuring = true;
+    }
+
+    public void stopMeasuring() {
+        measuring = false;
+        measuredNanos = System.nanoTime() - measuringSinceNanos;
+    }
+
+    public long measuredNanos() {
+        return measuredNanos;
+    }
+
+    /**
+     * Times {@code call} from {@code intendedStartNanos}: with a target rate that is when the request
+     * should have been sent, so time spent waiting behind a slow server counts (no coordinated omission).
+     */
+    public CloudClient.Result time(String operation, long intendedStartNanos, Call call) throws InterruptedException {
+        CloudClient.Result result;
+        try {
+            result = call.execute();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            result = new CloudClient.Result(IO_ERROR, 0, e.toString());
+        }
+        if (measuring) {
+            OperationStats stats = operations.computeIfAbsent(operation, k -> new OperationStats());
+            stats.latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos));
+            stats.statuses.computeIfAbsent(result.status(), k -> new LongAdder()).increment();
+            if (result.ok()) {
+                stats.bytes.add(result.bytes());
+            }
+        }
+        return result;
+    }
+
+    public Map<String, OperationStats> snapshot() {
+        return new TreeMap<>(operations);
+    }
+}
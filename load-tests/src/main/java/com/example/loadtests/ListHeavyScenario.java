@@ -0,0 +1,32 @@
+package com.example.loadtests;
+
+import java.io.IOException;
+
+/**
+ * Sync clients polling their file list: users are seeded with many small files and then only list.
+ */
+public class ListHeavyScenario implements Scenario {
+
+    private final SizeDistribution sizes;
+    private final int seedFiles;
+    private final int listLimit;
+
+    public ListHeavyScenario(SizeDistribution sizes, int seedFiles, int listLimit) {
+        this.sizes = sizes;
+        this.seedFiles = seedFiles;
+        this.listLimit = listLimit;
+    }
+
+    @Override
+    public void prepare(CloudClient client, VirtualUser user) throws IOException, InterruptedException {
+        Scenario.register(client, user);
+        user.token(client.loginForToken(user.login(), user.password()));
+        Scenario.seed(client, user, sizes.smallest(), seedFiles);
+    }
+
+    @Override
+    public void iterate(CloudClient client, VirtualUser user, LatencyRecorder recorder, long intendedStartNanos)
+            throws InterruptedException {
+        recorder.time("list", intendedStartNanos, () -> client.list(user.token(), listLimit));
+    }
+}
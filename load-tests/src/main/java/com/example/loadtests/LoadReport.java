@@ -0,0 +1,160 @@
+package com.example.loadtests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the result file ({@code <scenario>-<timestamp>.json}) and compares it with a baseline
+ * result from an earlier build.
+ */
+@Slf4j
+public final class LoadReport {
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadReport() {
+    }
+
+    public static Map<String, Object> build(LoadTestConfig config, LatencyRecorder recorder, Instant startedAt,
+                                            long measuredNanos) {
+        double seconds = measuredNanos / 1e9;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long totalCount = 0;
+        long totalErrors = 0;
+        for (Map.Entry<String, LatencyRecorder.OperationStats> entry : recorder.snapshot().entrySet()) {
+            LatencyRecorder.OperationStats stats = entry.getValue();
+            totalCount += stats.count();
+            totalErrors += stats.errors();
+            operations.put(entry.getKey(), operation(stats, seconds));
+        }
+
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("count", totalCount);
+        total.put("errors", totalErrors);
+        total.put("errorRate", totalCount == 0 ? 0.0 : (double) totalErrors / totalCount);
+        total.put("throughputPerSecond", round(totalCount / seconds));
+
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("java", System.getProperty("java.version"));
+        environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        environment.put("cpus", Runtime.getRuntime().availableProcessors());
+        environment.put("build", System.getProperty("load.build-id", "unknown"));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("measuredSeconds", round(seconds));
+        report.put("config", config.describe());
+        report.put("environment", environment);
+        report.put("total", total);
+        report.put("operations", operations);
+        return report;
+    }
+
+    public static Path write(Map<String, Object> report, Path outputDir, String scenario, Instant startedAt)
+            throws IOException {
+        Files.createDirectories(outputDir);
+        Path file = outputDir.resolve(scenario + "-" + startedAt.toString().replace(':', '-') + ".json");
+        JSON.writeValue(file.toFile(), report);
+        return file;
+    }
+
+    public static void print(Map<String, Object> report) {
+        JsonNode root = JSON.valueToTree(report);
+        log.info(String.format("%-10s %10s %10s %8s %10s %10s %10s %10s",
+                "operation", "count", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, JsonNode> op : root.path("operations").properties()) {
+            JsonNode stats = op.getValue();
+            JsonNode latency = stats.path("latencyMs");
+            log.info(String.format("%-10s %10d %10.1f %7.2f%% %10.2f %10.2f %10.2f %10.2f",
+                    op.getKey(), stats.path("count").asLong(), stats.path("throughputPerSecond").asDouble(),
+                    stats.path("errorRate").asDouble() * 100, latency.path("p50").asDouble(),
+                    latency.path("p99").asDouble(), latency.path("p999").asDouble(), latency.path("max").asDouble()));
+        }
+    }
+
+    /**
+     * Compares throughput, p99 and error rate per operation with the baseline file.
+     *
+     * @return the regressions found, empty if the run is within {@code threshold} of the baseline
+     */
+    public static List<String> compare(Map<String, Object> report, Path baselineFile, double threshold)
+            throws IOException {
+        JsonNode current = JSON.valueToTree(report);
+        JsonNode baseline = JSON.readTree(baselineFile.toFile());
+        if (!baseline.path("config").equals(current.path("config"))) {
+            log.warn("Baseline {} was recorded with different settings, comparison is indicative only", baselineFile);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> op : current.path("operations").properties()) {
+            JsonNode before = baseline.path("operations").path(op.getKey());
+            if (before.isMissingNode()) {
+                continue;
+            }
+            JsonNode after = op.getValue();
+            double throughputBefore = before.path("throughputPerSecond").asDouble();
+            double throughputAfter = after.path("throughputPerSecond").asDouble();
+            double p99Before = before.path("latencyMs").path("p99").asDouble();
+            double p99After = after.path("latencyMs").path("p99").asDouble();
+            double errorsBefore = before.path("errorRate").asDouble();
+            double errorsAfter = after.path("errorRate").asDouble();
+            log.info(String.format("%-10s throughput %+.1f%%, p99 %+.1f%%, error rate %.2f%% -> %.2f%%", op.getKey(),
+                    change(throughputBefore, throughputAfter) * 100, change(p99Before, p99After) * 100,
+                    errorsBefore * 100, errorsAfter * 100));
+            if (change(throughputBefore, throughputAfter) < -threshold) {
+                regressions.add(op.getKey() + ": throughput " + throughputBefore + " -> " + throughputAfter + " req/s");
+            }
+            if (change(p99Before, p99After) > threshold) {
+                regressions.add(op.getKey() + ": p99 " + p99Before + " -> " + p99After + " ms");
+            }
+            if (errorsAfter > errorsBefore + 0.01) {
+                regressions.add(op.getKey() + ": error rate " + errorsBefore + " -> " + errorsAfter);
+            }
+        }
+        return regressions;
+    }
+
+    private static Map<String, Object> operation(LatencyRecorder.OperationStats stats, double seconds) {
+        Histogram histogram = stats.latencyMicros;
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("mean", round(histogram.getMean() / 1000));
+        latency.put("p50", millis(histogram, 50));
+        latency.put("p90", millis(histogram, 90));
+        latency.put("p99", millis(histogram, 99));
+        latency.put("p999", millis(histogram, 99.9));
+        latency.put("max", round(histogram.getMaxValue() / 1000.0));
+
+        Map<String, Object> operation = new LinkedHashMap<>();
+        operation.put("count", stats.count());
+        operation.put("errors", stats.errors());
+        operation.put("errorRate", stats.count() == 0 ? 0.0 : (double) stats.errors() / stats.count());
+        operation.put("throughputPerSecond", round(stats.count() / seconds));
+        operation.put("bytesPerSecond", Math.round(stats.bytes.sum() / seconds));
+        operation.put("latencyMs", latency);
+        operation.put("statuses", stats.statuses());
+        return operation;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return round(histogram.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) / before;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
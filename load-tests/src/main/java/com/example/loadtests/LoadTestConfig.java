@@ -0,0 +1,76 @@
+package com.example.loadtests;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Run settings, read from {@code load.*} system properties so they can be passed straight through
+ * {@code mvn exec:java -Dload.scenario=mixed ...}.
+ */
+public record LoadTestConfig(
+        String scenario,
+        String target,
+        int users,
+        Duration warmup,
+        Duration duration,
+        double ratePerSecond,
+        SizeDistribution sizes,
+        int seedFiles,
+        int maxFilesPerUser,
+        double uploadRatio,
+        int listLimit,
+        boolean relaxRateLimits,
+        String serviceJvmArgs,
+        Path authJar,
+        Path fileJar,
+        Path outputDir,
+        Path baseline,
+        double regressionThreshold) {
+
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                property("load.scenario", "mixed"),
+                System.getProperty("load.target"),
+                Integer.parseInt(property("load.users", "32")),
+                Duration.ofSeconds(Long.parseLong(property("load.warmup-seconds", "15"))),
+                Duration.ofSeconds(Long.parseLong(property("load.duration-seconds", "60"))),
+                Double.parseDouble(property("load.rate-per-second", "0")),
+                SizeDistribution.parse(property("load.sizes", "4k:60,256k:30,4m:10")),
+                Integer.parseInt(property("load.seed-files", "5")),
+                Integer.parseInt(property("load.max-files-per-user", "50")),
+                Double.parseDouble(property("load.upload-ratio", "0.3")),
+                Integer.parseInt(property("load.list-limit", "100")),
+                Boolean.parseBoolean(property("load.relax-rate-limits", "true")),
+                property("load.service-jvm-args", "-Xmx512m"),
+                Path.of(property("load.auth-jar", "auth-service/target/auth-service-0.0.1-SNAPSHOT-exec.jar")),
+                Path.of(property("load.file-jar", "file-service/target/file-service-0.0.1-SNAPSHOT-exec.jar")),
+                Path.of(property("load.output-dir", "load-test-results")),
+                System.getProperty("load.baseline") != null ? Path.of(System.getProperty("load.baseline")) : null,
+                Double.parseDouble(property("load.regression-threshold", "0.2")));
+    }
+
+    /** Settings that shape the workload, written into the result file so runs are only compared like for like. */
+    public Map<String, Object> describe() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("scenario", scenario);
+        settings.put("target", target != null ? target : "local");
+        settings.put("users", users);
+        settings.put("warmupSeconds", warmup.toSeconds());
+        settings.put("durationSeconds", duration.toSeconds());
+        settings.put("ratePerSecond", ratePerSecond);
+        settings.put("sizes", sizes.toString());
+        settings.put("seedFiles", seedFiles);
+        settings.put("maxFilesPerUser", maxFilesPerUser);
+        settings.put("uploadRatio", uploadRatio);
+        settings.put("listLimit", listLimit);
+        settings.put("relaxRateLimits", relaxRateLimits);
+        settings.put("serviceJvmArgs", serviceJvmArgs);
+        return settings;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.loadtests;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point: starts the local stack (unless {@code load.target} points at a running file-service),
+ * prepares the virtual users, runs the scenario and writes the result file.
+ *
+ * <p>Without {@code load.rate-per-second} every user sends its next request as soon as the previous one
+ * completes (closed model, measures capacity). With a rate, users send on a fixed schedule and latency
+ * is measured from the scheduled time (open model, measures latency at a given load).
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        Scenario scenario = Scenario.named(config.scenario(), config);
+
+        ServiceStack stack = config.target() == null ? ServiceStack.start(config) : null;
+        try {
+            String target = stack != null ? stack.fileServiceUrl() : config.target();
+            run(config, scenario, new CloudClient(target));
+        } finally {
+            if (stack != null) {
+                stack.close();
+            }
+        }
+    }
+
+    private static void run(LoadTestConfig config, Scenario scenario, CloudClient client) throws Exception {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 0; i < config.users(); i++) {
+            users.add(new VirtualUser(i, runId));
+        }
+
+        log.info("Preparing {} users for scenario '{}'", users.size(), config.scenario());
+        ExecutorService setup = Executors.newFixedThreadPool(Math.min(users.size(), 16));
+        try {
+            List<Future<?>> prepared = new ArrayList<>();
+            for (VirtualUser user : users) {
+                prepared.add(setup.submit(() -> {
+                    scenario.prepare(client, user);
+                    return null;
+                }));
+            }
+            for (Future<?> future : prepared) {
+                future.get();
+            }
+        } finally {
+            setup.shutdownNow();
+        }
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long end = start + config.warmup().toNanos() + config.duration().toNanos();
+        // per-user interval: users share the target rate evenly
+        long intervalNanos = config.ratePerSecond() > 0 ? (long) (users.size() * 1e9 / config.ratePerSecond()) : 0;
+
+        List<Thread> threads = new ArrayList<>();
+        for (VirtualUser user : users) {
+            Thread thread = new Thread(() -> drive(client, scenario, user, recorder, start, end, intervalNanos),
+                    "vu-" + user.id());
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        log.info("Warming up for {} s, then measuring for {} s", config.warmup().toSeconds(), config.duration().toSeconds());
+        TimeUnit.NANOSECONDS.sleep(config.warmup().toNanos());
+        recorder.startMeasuring();
+        TimeUnit.NANOSECONDS.sleep(end - System.nanoTime());
+        recorder.stopMeasuring();
+        for (Thread thread : threads) {
+            // a request in flight finishes within the client timeout
+            thread.join(35_000);
+        }
+        threads.forEach(Thread::interrupt);
+        long measured = recorder.measuredNanos();
+
+        Map<String, Object> report = LoadReport.build(config, recorder, startedAt, measured);
+        Path file = LoadReport.write(report, config.outputDir(), config.scenario(), startedAt);
+        LoadReport.print(report);
+        log.info("Results written to {}", file);
+
+        if (config.baseline() != null) {
+            List<String> regressions = LoadReport.compare(report, config.baseline(), config.regressionThreshold());
+            if (!regressions.isEmpty()) {
+                throw new IllegalStateException("Regressions against " + config.baseline() + ": " + regressions);
+            }
+        }
+    }
+
+    private static void drive(CloudClient client, Scenario scenario, VirtualUser user, LatencyRecorder recorder,
+                              long start, long end, long intervalNanos) {
+        // users start spread over one interval so a fixed rate does not arrive in bursts
+        long next = start + (intervalNanos > 0 ? user.random().nextLong(intervalNanos) : 0);
+        try {
+            while (System.nanoTime() < end) {
+                long intended = System.nanoTime();
+                if (intervalNanos > 0) {
+                    long wait = next - intended;
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    intended = next;
+                    next += intervalNanos;
+                }
+                scenario.iterate(client, user, recorder, intended);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
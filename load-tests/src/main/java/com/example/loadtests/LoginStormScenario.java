@@ -0,0 +1,21 @@
+package com.example.loadtests;
+
+import java.io.IOException;
+
+/**
+ * Every iteration is a fresh login: exercises the login rate limiter, the Feign hop to auth-service,
+ * BCrypt and token issuing.
+ */
+public class LoginStormScenario implements Scenario {
+
+    @Override
+    public void prepare(CloudClient client, VirtualUser user) throws IOException, InterruptedException {
+        Scenario.register(client, user);
+    }
+
+    @Override
+    public void iterate(CloudClient client, VirtualUser user, LatencyRecorder recorder, long intendedStartNanos)
+            throws InterruptedException {
+        recorder.time("login", intendedStartNanos, () -> client.login(user.login(), user.password()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.loadtests;
+
+import java.io.IOException;
+
+/**
+ * Uploads and downloads with sizes drawn from the configured distribution. Once a user holds
+ * {@code maxFiles} files, each upload is followed by deleting the oldest one so the data set stays
+ * the same size for the whole run.
+ */
+public class MixedTransferScenario implements Scenario {
+
+    private final SizeDistribution sizes;
+    private final int seedFiles;
+    private final int maxFiles;
+    private final double uploadRatio;
+
+    public MixedTransferScenario(SizeDistribution sizes, int seedFiles, int maxFiles, double uploadRatio) {
+        this.sizes = sizes;
+        this.seedFiles = Math.max(1, seedFiles);
+        this.maxFiles = Math.max(this.seedFiles, maxFiles);
+        this.uploadRatio = uploadRatio;
+    }
+
+    @Override
+    public void prepare(CloudClient client, VirtualUser user) throws IOException, InterruptedException {
+        Scenario.register(client, user);
+        user.token(client.loginForToken(user.login(), user.password()));
+        for (int i = 0; i < seedFiles; i++) {
+            Scenario.seed(client, user, sizes.sample(user.random()), 1);
+        }
+    }
+
+    @Override
+    public void iterate(CloudClient client, VirtualUser user, LatencyRecorder recorder, long intendedStartNanos)
+            throws InterruptedException {
+        if (user.random().nextDouble() >= uploadRatio) {
+            String name = user.randomFile();
+            recorder.time("download", intendedStartNanos, () -> client.download(user.token(), name));
+            return;
+        }
+        String name = user.nextFileName();
+        byte[] content = sizes.sample(user.random());
+        CloudClient.Result uploaded = recorder.time("upload", intendedStartNanos,
+                () -> client.upload(user.token(), name, content));
+        if (!uploaded.ok()) {
+            return;
+        }
+        user.files().add(name);
+        if (user.files().size() > maxFiles) {
+            String oldest = user.files().remove(0);
+            recorder.time("delete", System.nanoTime(), () -> client.delete(user.token(), oldest));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.loadtests;
+
+import java.io.IOException;
+
+/**
+ * A workload: {@link #prepare} runs once per user before the clock starts, {@link #iterate} runs in a
+ * loop (or at the target rate) until the run ends.
+ */
+public interface Scenario {
+
+    void prepare(CloudClient client, VirtualUser user) throws IOException, InterruptedException;
+
+    void iterate(CloudClient client, VirtualUser user, LatencyRecorder recorder, long intendedStartNanos)
+            throws InterruptedException;
+
+    static Scenario named(String name, LoadTestConfig config) {
+        return switch (name) {
+            case "login-storm" -> new LoginStormScenario();
+            case "mixed" -> new MixedTransferScenario(config.sizes(), config.seedFiles(), config.maxFilesPerUser(),
+                    config.uploadRatio());
+            case "list-heavy" -> new ListHeavyScenario(config.sizes(), config.seedFiles(), config.listLimit());
+            default -> throw new IllegalArgumentException(
+                    "Unknown scenario '" + name + "', expected login-storm, mixed or list-heavy");
+        };
+    }
+
+    /** Registers the user; a 400 is accepted so a run against a long-lived target can reuse its users. */
+    static void register(CloudClient client, VirtualUser user) throws IOException, InterruptedException {
+        CloudClient.Result result = client.register(user.login(), user.password());
+        if (!result.ok() && result.status() != 400) {
+            throw new IOException("Registration of " + user.login() + " failed with " + result.status());
+        }
+    }
+
+    static void seed(CloudClient client, VirtualUser user, byte[] content, int count)
+            throws IOException, InterruptedException {
+        for (int i = 0; i < count; i++) {
+            String name = user.nextFileName();
+            CloudClient.Result result = client.upload(user.token(), name, content);
+            if (!result.ok()) {
+                throw new IOException("Seeding " + name + " failed with " + result.status() + ": " + result.body());
+            }
+            user.files().add(name);
+        }
+    }
+}
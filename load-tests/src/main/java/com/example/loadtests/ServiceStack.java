@@ -0,0 +1,170 @@
+package com.example.loadtests;
+
+import lombok.extern.slf4j.Slf4j;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postgres and Mongo in containers, auth-service and file-service as child JVMs started from their
+ * exec jars, so requests cross the same Feign hop as in production.
+ */
+@Slf4j
+public class ServiceStack implements AutoCloseable {
+
+    private static final String JWT_SECRET = "vdeNR3G2uMdCQD3vY3O1Z7vjBoBN4Uv3UwGM+2P3kZQ=";
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    private final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15").withDatabaseName("authdb");
+    private final MongoDBContainer mongo = new MongoDBContainer("mongo:7");
+    private final List<Process> services = new ArrayList<>();
+    private String fileServiceUrl;
+
+    public static ServiceStack start(LoadTestConfig config) throws IOException, InterruptedException {
+        ServiceStack stack = new ServiceStack();
+        try {
+            stack.startAll(config);
+            return stack;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            stack.close();
+            throw e;
+        }
+    }
+
+    public String fileServiceUrl() {
+        return fileServiceUrl;
+    }
+
+    private void startAll(LoadTestConfig config) throws IOException, InterruptedException {
+        requireJar(config.authJar());
+        requireJar(config.fileJar());
+        Files.createDirectories(config.outputDir());
+
+        log.info("Starting Postgres and Mongo containers");
+        postgres.start();
+        mongo.start();
+
+        int authPort = freePort();
+        List<String> authArgs = new ArrayList<>(List.of(
+                "--server.port=" + authPort,
+                "--management.server.port=" + freePort(),
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.jpa.hibernate.ddl-auto=update"));
+        authArgs.addAll(commonArgs(config));
+        launch("auth-service", config.authJar(), authArgs, config);
+        awaitHealthy("auth-service", "http://localhost:" + authPort);
+
+        int filePort = freePort();
+        int maxUpload = Math.max(config.sizes().largestSize(), 1024 * 1024) + 64 * 1024;
+        List<String> fileArgs = new ArrayList<>(List.of(
+                "--server.port=" + filePort,
+                "--management.server.port=" + freePort(),
+                "--spring.data.mongodb.uri=" + mongo.getReplicaSetUrl("cloudservice"),
+                "--auth-service.url=http://localhost:" + authPort,
+                "--spring.servlet.multipart.max-file-size=" + maxUpload,
+                "--spring.servlet.multipart.max-request-size=" + maxUpload));
+        fileArgs.addAll(commonArgs(config));
+        launch("file-service", config.fileJar(), fileArgs, config);
+        fileServiceUrl = "http://localhost:" + filePort;
+        awaitHealthy("file-service", fileServiceUrl);
+    }
+
+    private static List<String> commonArgs(LoadTestConfig config) {
+        List<String> args = new ArrayList<>(List.of(
+                "--security.jwt.secret=" + JWT_SECRET,
+                "--security.jwt.issuer=load-tests",
+                "--security.jwt.access-ttl-minutes=120",
+                "--security.jwt.header=" + CloudClient.TOKEN_HEADER));
+        if (config.relaxRateLimits()) {
+            // every virtual user logs in from 127.0.0.1, the per-IP limit would measure only itself
+            args.add("--security.rate-limit.login.enabled=false");
+            // and the per-user bandwidth budget would cap transfer throughput rather than the server
+            args.add("--bandwidth.enabled=false");
+        }
+        return args;
+    }
+
+    private void launch(String name, Path jar, List<String> args, LoadTestConfig config) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(config.serviceJvmArgs().trim().split("\\s+")));
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(args);
+        Path logFile = config.outputDir().resolve(name + ".log");
+        log.info("Starting {} (log: {})", name, logFile);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        services.add(process);
+    }
+
+    private void awaitHealthy(String name, String baseUrl) throws IOException, InterruptedException {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/readyz"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!services.get(services.size() - 1).isAlive()) {
+                throw new IOException(name + " exited during startup, see its log in the output directory");
+            }
+            try {
+                if (http.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    log.info("{} is up at {}", name, baseUrl);
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IOException(name + " did not become healthy within " + STARTUP_TIMEOUT);
+    }
+
+    @Override
+    public void close() {
+        for (int i = services.size() - 1; i >= 0; i--) {
+            Process process = services.get(i);
+            process.destroy();
+            try {
+                if (!process.waitFor(20, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        mongo.stop();
+        postgres.stop();
+    }
+
+    private static void requireJar(Path jar) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IOException(jar + " not found, build it first: mvn -Pload-tests -pl load-tests -am package");
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
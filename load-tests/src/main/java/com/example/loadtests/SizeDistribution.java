@@ -0,0 +1,79 @@
+package com.example.loadtests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Weighted file sizes, written as {@code 4k:60,256k:30,4m:10}. Each size gets one random payload
+ * generated up front, so the generator spends its CPU on requests rather than on filling buffers.
+ */
+public final class SizeDistribution {
+
+    private record Bucket(String label, int weight, byte[] payload) {
+    }
+
+    private final List<Bucket> buckets;
+    private final int totalWeight;
+
+    private SizeDistribution(List<Bucket> buckets) {
+        this.buckets = buckets;
+        this.totalWeight = buckets.stream().mapToInt(Bucket::weight).sum();
+    }
+
+    public static SizeDistribution parse(String spec) {
+        Random random = new Random(42);
+        List<Bucket> buckets = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected size:weight, got '" + entry + "'");
+            }
+            byte[] payload = new byte[parseSize(parts[0])];
+            random.nextBytes(payload);
+            buckets.add(new Bucket(parts[0].trim().toLowerCase(Locale.ROOT), Integer.parseInt(parts[1].trim()), payload));
+        }
+        if (buckets.isEmpty()) {
+            throw new IllegalArgumentException("Size distribution is empty");
+        }
+        return new SizeDistribution(buckets);
+    }
+
+    public byte[] sample(Random random) {
+        int pick = random.nextInt(totalWeight);
+        for (Bucket bucket : buckets) {
+            pick -= bucket.weight();
+            if (pick < 0) {
+                return bucket.payload();
+            }
+        }
+        return buckets.get(buckets.size() - 1).payload();
+    }
+
+    public byte[] smallest() {
+        return buckets.stream().map(Bucket::payload).min((a, b) -> Integer.compare(a.length, b.length)).orElseThrow();
+    }
+
+    public int largestSize() {
+        return buckets.stream().mapToInt(b -> b.payload().length).max().orElse(0);
+    }
+
+    @Override
+    public String toString() {
+        return buckets.stream().map(b -> b.label() + ":" + b.weight()).collect(Collectors.joining(","));
+    }
+
+    private static int parseSize(String value) {
+        String size = value.trim().toLowerCase(Locale.ROOT);
+        int multiplier = 1;
+        if (size.endsWith("k")) {
+            multiplier = 1024;
+        } else if (size.endsWith("m")) {
+            multiplier = 1024 * 1024;
+        }
+        String digits = multiplier == 1 ? size : size.substring(0, size.length() - 1);
+        return Math.multiplyExact(Integer.parseInt(digits), multiplier);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.loadtests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * State of one simulated client. Each user is driven by a single thread, so nothing here is shared.
+ */
+public class VirtualUser {
+
+    private final int id;
+    private final String login;
+    private final String password;
+    private final Random random;
+    private final List<String> files = new ArrayList<>();
+    private String token;
+    private long sequence;
+
+    public VirtualUser(int id, String runId) {
+        this.id = id;
+        this.login = "load-" + runId + "-" + id;
+        this.password = "secret-" + id;
+        this.random = new Random(id);
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public String login() {
+        return login;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    public Random random() {
+        return random;
+    }
+
+    public List<String> files() {
+        return files;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public void token(String token) {
+        this.token = token;
+    }
+
+    public String nextFileName() {
+        return "file-" + id + "-" + (sequence++) + ".bin";
+    }
+
+    public String randomFile() {
+        return files.get(random.nextInt(files.size()));
+    }
+}
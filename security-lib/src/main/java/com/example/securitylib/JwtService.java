@@ -1,10 +1,13 @@
 package com.example.securitylib;
 
+import com.example.securitylib.diagnostics.TokenVerificationEvent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,6 +18,7 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -34,6 +38,18 @@ public class JwtService {
 
     private SecretKey cachedKey;
 
+    // Boot adds its registries to the global one, so this works without wiring a MeterRegistry in
+    private final Timer verifiedTimer = verificationTimer("success");
+    private final Timer rejectedTimer = verificationTimer("failure");
+
+    private static Timer verificationTimer(String outcome) {
+        return Timer.builder("jwt.verification")
+                .description("Time spent verifying JWT signatures and claims")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
     private SecretKey key() {
         if (cachedKey == null) {
             try {
@@ -68,6 +84,9 @@ public class JwtService {
 
     public Jws<Claims> parse(String token) {
         log.debug("Parsing JWT token...");
+        TokenVerificationEvent event = new TokenVerificationEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             if (token.startsWith("Bearer ")) token = token.substring(7);
             Jws<Claims> claims = Jwts.parserBuilder()
@@ -75,11 +94,18 @@ public class JwtService {
                     .requireIssuer(issuer)
                     .build()
                     .parseClaimsJws(token);
+            verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.outcome = "success";
+            event.subject = claims.getBody().getSubject();
             log.debug("JWT token parsed successfully for user '{}'", claims.getBody().getSubject());
             return claims;
         } catch (Exception e) {
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.outcome = e.getClass().getSimpleName();
             log.warn("Failed to parse JWT token: {}", e.getMessage());
             throw e;
+        } finally {
+            event.commit();
         }
     }
 
@@ -1,12 +1,15 @@
 package com.example.securitylib;
 
 import io.jsonwebtoken.JwtException;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -24,10 +27,14 @@ import java.util.List;
 @RequiredArgsConstructor
 @Slf4j
 public class MyJwtFilter extends OncePerRequestFilter {
+    /** Request attribute holding the authenticated login, outlives the security context for access logging. */
+    public static final String USER_ATTRIBUTE = MyJwtFilter.class.getName() + ".user";
+
     @Value("${security.jwt.header}")
     private String header;
 
     private final JwtService jwt;
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
@@ -43,7 +50,9 @@ public class MyJwtFilter extends OncePerRequestFilter {
 
         String token = resolveToken(request);
         if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            try {
+            Observation observation = Observation.createNotStarted("security.jwt.authentication",
+                    observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP)).start();
+            try (Observation.Scope scope = observation.openScope()) {
                 var claims = jwt.parse(token).getBody();
                 String username = claims.getSubject();
                 @SuppressWarnings("unchecked")
@@ -55,13 +64,17 @@ public class MyJwtFilter extends OncePerRequestFilter {
 
                 auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(auth);
-                log.info("User '{}' authenticated successfully", username);
+                request.setAttribute(USER_ATTRIBUTE, username);
+                log.debug("User '{}' authenticated successfully", username);
             } catch (JwtException | IllegalArgumentException e) {
+                observation.error(e);
                 log.warn("Invalid or expired JWT token: {}", e.getMessage());
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.setContentType("application/json");
                 response.getWriter().write("{\"code\":\"UNAUTHORIZED\",\"message\":\"Invalid or expired token\"}");
                 return;
+            } finally {
+                observation.stop();
             }
         }
         chain.doFilter(request, response);
@@ -3,8 +3,10 @@ package com.example.securitylib;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -24,6 +26,16 @@ public class SecurityConfig {
 
     private final MyJwtFilter myJwtFilter;
 
+    // actuator is served on management.server.port, which is not published next to the service port
+    private volatile int managementPort = -1;
+
+    @EventListener
+    void onWebServerInitialized(WebServerInitializedEvent event) {
+        if ("management".equals(event.getApplicationContext().getServerNamespace())) {
+            managementPort = event.getWebServer().getPort();
+        }
+    }
+
     @Bean
     public BCryptPasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -40,6 +52,8 @@ public class SecurityConfig {
 
         http.authorizeHttpRequests(auth -> auth
                 .requestMatchers("/cloud/login", "/cloud/logout", "/cloud/register").permitAll()
+                .requestMatchers("/actuator/health/**", "/livez", "/readyz").permitAll()
+                .requestMatchers(request -> request.getLocalPort() == managementPort).permitAll()
                 .anyRequest().authenticated()
         );
 
@@ -0,0 +1,19 @@
+package com.example.securitylib.client;
+
+import com.example.securitylib.dto.LoginRequest;
+import com.example.securitylib.dto.LoginResponse;
+import com.example.securitylib.dto.UserRegistrationRequest;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Auth operations file-service needs. Implemented remotely by the Feign client and
+ * in process by the all-in-one application.
+ */
+public interface AuthOperations {
+
+    ResponseEntity<LoginResponse> login(LoginRequest request);
+
+    ResponseEntity<Void> register(UserRegistrationRequest request);
+
+    ResponseEntity<Void> logout();
+}
@@ -0,0 +1,113 @@
+package com.example.securitylib.diagnostics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store-independent part of slow query detection, used by the Mongo command listener and the
+ * JDBC statement proxy. Times queries per shape (the query with its literal values stripped),
+ * reports the ones over the threshold and runs explain for them off the request path, at most
+ * once per shape per interval.
+ */
+@Slf4j
+public class SlowQueryDetector {
+
+    /** Tag value used once {@code maxShapes} distinct shapes have been seen, to bound metric cardinality. */
+    public static final String OTHER_SHAPE = "other";
+
+    private final MeterRegistry registry;
+    private final String metricName;
+    private final long thresholdNanos;
+    private final int maxShapes;
+    private final long explainIntervalNanos;
+    private final Map<String, Boolean> shapes = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainExecutor;
+
+    public SlowQueryDetector(MeterRegistry registry, String metricName, long thresholdMs, int maxShapes,
+                             long explainIntervalSeconds) {
+        this.registry = registry;
+        this.metricName = metricName;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.maxShapes = maxShapes;
+        this.explainIntervalNanos = TimeUnit.SECONDS.toNanos(explainIntervalSeconds);
+        // explain is best effort: one thread, a short queue, and anything beyond that is dropped
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16), new CustomizableThreadFactory(metricName + "-explain-"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Records the query latency and, if it is over the threshold, logs it and schedules {@code explain}.
+     *
+     * @return {@code true} if the query was slow
+     */
+    public boolean record(String operation, String shape, long elapsedNanos, Runnable explain) {
+        String tagShape = shapes.containsKey(shape) || (shapes.size() < maxShapes && shapes.putIfAbsent(shape, Boolean.TRUE) == null)
+                ? shape : OTHER_SHAPE;
+        Timer.builder(metricName)
+                .description("Query latency per query shape")
+                .tag("operation", operation)
+                .tag("shape", tagShape)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (elapsedNanos < thresholdNanos) {
+            return false;
+        }
+        log.warn("Slow query ({} ms) {} {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), operation, shape);
+        if (explain != null && claimExplain(shape)) {
+            explainExecutor.execute(() -> {
+                try {
+                    explain.run();
+                } catch (RuntimeException e) {
+                    log.debug("Explain failed for {}: {}", shape, e.getMessage());
+                }
+            });
+        }
+        return true;
+    }
+
+    /** Logs the plan problems found by explain and counts them per shape. */
+    public void reportPlan(String shape, boolean fullScan, boolean inMemorySort, String plan) {
+        if (!fullScan && !inMemorySort) {
+            log.info("Plan for slow query {} uses indexes", shape);
+            return;
+        }
+        String tagShape = shapes.containsKey(shape) ? shape : OTHER_SHAPE;
+        if (fullScan) {
+            registry.counter(metricName + ".plan.warnings", "shape", tagShape, "problem", "full_scan").increment();
+        }
+        if (inMemorySort) {
+            registry.counter(metricName + ".plan.warnings", "shape", tagShape, "problem", "in_memory_sort").increment();
+        }
+        log.warn("Bad plan for {}: fullScan={}, inMemorySort={}, plan={}", shape, fullScan, inMemorySort, plan);
+    }
+
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+
+    private boolean claimExplain(String shape) {
+        long now = System.nanoTime();
+        Long previous = lastExplained.get(shape);
+        if (previous != null && now - previous < explainIntervalNanos) {
+            return false;
+        }
+        if (lastExplained.size() >= maxShapes && previous == null) {
+            return false;
+        }
+        return previous == null
+                ? lastExplained.putIfAbsent(shape, now) == null
+                : lastExplained.replace(shape, previous, now);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.securitylib.diagnostics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Logs startup time and memory use once the application is ready, so the all-in-one mode
+ * can be compared with auth-service and file-service running as two processes.
+ */
+@Component
+@Slf4j
+public class StartupFootprintReporter {
+
+    private static final long MB = 1024 * 1024;
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        log.info("Startup footprint of '{}': ready in {} ms, heap used {} MB, non-heap used {} MB, {} classes loaded",
+                event.getApplicationContext().getId(),
+                event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1,
+                memory.getHeapMemoryUsage().getUsed() / MB,
+                memory.getNonHeapMemoryUsage().getUsed() / MB,
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+    }
+}
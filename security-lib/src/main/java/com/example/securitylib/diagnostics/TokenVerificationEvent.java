@@ -0,0 +1,26 @@
+package com.example.securitylib.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one JWT verification; the event duration is the time spent parsing
+ * and checking the signature.
+ */
+@Name("com.example.securitylib.TokenVerification")
+@Label("Token Verification")
+@Category({"Cloud Storage", "Security"})
+@Description("Parsing and signature check of a JWT")
+@StackTrace(false)
+public class TokenVerificationEvent extends jdk.jfr.Event {
+
+    @Label("Outcome")
+    @Description("success, or the exception that rejected the token")
+    public String outcome;
+
+    @Label("Subject")
+    public String subject;
+}
@@ -0,0 +1,71 @@
+package com.example.securitylib.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One {@link TokenBucket} per key, bounded to {@code maxKeys} entries.
+ */
+final class KeyedBuckets {
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final long capacity;
+    private final double tokensPerNano;
+    private final int maxKeys;
+
+    KeyedBuckets(long capacity, long refillPerMinute, int maxKeys) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxKeys = maxKeys;
+    }
+
+    long tryAcquire(String key, long now) {
+        if (key == null || key.isBlank()) {
+            return 0L;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                evict(now);
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, now));
+        }
+        return bucket.tryConsume(capacity, tokensPerNano, now);
+    }
+
+    // an evicted bucket was full, its replacement starts full as well
+    void refund(String key) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.refund(capacity);
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    // A full bucket carries no state worth keeping, so idle keys go first;
+    // if that is not enough the map is trimmed arbitrarily to stay bounded.
+    private void evict(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.values().removeIf(bucket -> bucket.isIdle(capacity, tokensPerNano, now));
+            Iterator<String> it = buckets.keySet().iterator();
+            while (buckets.size() >= maxKeys && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
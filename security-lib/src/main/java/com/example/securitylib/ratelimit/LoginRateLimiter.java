@@ -0,0 +1,67 @@
+package com.example.securitylib.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class LoginRateLimiter {
+
+    @Value("${security.rate-limit.login.enabled:true}")
+    private boolean enabled;
+
+    @Value("${security.rate-limit.login.per-login.capacity:10}")
+    private long loginCapacity;
+
+    @Value("${security.rate-limit.login.per-login.refill-per-minute:10}")
+    private long loginRefillPerMinute;
+
+    @Value("${security.rate-limit.login.per-ip.capacity:50}")
+    private long ipCapacity;
+
+    @Value("${security.rate-limit.login.per-ip.refill-per-minute:100}")
+    private long ipRefillPerMinute;
+
+    @Value("${security.rate-limit.login.max-keys:100000}")
+    private int maxKeys;
+
+    private KeyedBuckets perLogin;
+    private KeyedBuckets perIp;
+
+    @PostConstruct
+    void init() {
+        perLogin = new KeyedBuckets(loginCapacity, loginRefillPerMinute, maxKeys);
+        perIp = new KeyedBuckets(ipCapacity, ipRefillPerMinute, maxKeys);
+        log.info("Login rate limiter enabled={}, per-login {}/{} per min, per-ip {}/{} per min",
+                enabled, loginCapacity, loginRefillPerMinute, ipCapacity, ipRefillPerMinute);
+    }
+
+    /**
+     * Takes one token from the login bucket and then one from the client IP bucket, so an attempt
+     * refused for its login does not use up the IP's budget. An attempt the IP bucket refuses gets its
+     * login token back, so a source over its own limit cannot drain other users' login buckets.
+     * Must be called before any DB lookup or password hashing happens.
+     */
+    public void acquire(String login, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long waitNanos = perLogin.tryAcquire(login, now);
+        if (waitNanos == 0L) {
+            waitNanos = perIp.tryAcquire(clientIp, now);
+            if (waitNanos > 0L) {
+                perLogin.refund(login);
+            }
+        }
+        if (waitNanos > 0L) {
+            long retryAfterSeconds = Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1L);
+            log.debug("Login rate limit exceeded for user '{}' from '{}', retry in {}s", login, clientIp, retryAfterSeconds);
+            throw new RateLimitExceededException(retryAfterSeconds);
+        }
+    }
+}
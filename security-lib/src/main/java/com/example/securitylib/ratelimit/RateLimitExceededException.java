@@ -0,0 +1,13 @@
+package com.example.securitylib.ratelimit;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(long retryAfterSeconds) {
+        super("Too many login attempts, try again later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.securitylib.ratelimit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token bucket. Tokens are refilled lazily on access, so an idle bucket costs nothing
+ * until somebody touches it again.
+ */
+final class TokenBucket {
+
+    private record State(double tokens, long refilledAtNanos) {
+    }
+
+    private final AtomicReference<State> state;
+
+    TokenBucket(long capacity, long nowNanos) {
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+
+    /**
+     * @return {@code 0} if a token was taken, otherwise the number of nanoseconds until one becomes available
+     */
+    long tryConsume(long capacity, double tokensPerNano, long nowNanos) {
+        while (true) {
+            State current = state.get();
+            double tokens = refill(current, capacity, tokensPerNano, nowNanos);
+            if (tokens < 1.0d) {
+                return (long) Math.ceil((1.0d - tokens) / tokensPerNano);
+            }
+            if (state.compareAndSet(current, new State(tokens - 1.0d, nowNanos))) {
+                return 0L;
+            }
+        }
+    }
+
+    /** Puts back a token taken by {@link #tryConsume}, never above capacity. */
+    void refund(long capacity) {
+        while (true) {
+            State current = state.get();
+            State refunded = new State(Math.min(capacity, current.tokens() + 1.0d), current.refilledAtNanos());
+            if (state.compareAndSet(current, refunded)) {
+                return;
+            }
+        }
+    }
+
+    boolean isIdle(long capacity, double tokensPerNano, long nowNanos) {
+        return refill(state.get(), capacity, tokensPerNano, nowNanos) >= capacity;
+    }
+
+    private static double refill(State current, long capacity, double tokensPerNano, long nowNanos) {
+        long elapsed = Math.max(0L, nowNanos - current.refilledAtNanos());
+        return Math.min(capacity, current.tokens() + elapsed * tokensPerNano);
+    }
+}
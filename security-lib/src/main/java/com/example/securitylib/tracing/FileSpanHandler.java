@@ -0,0 +1,185 @@
+package com.example.securitylib.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends finished spans to a file as JSON lines. Spans are handed to a writer thread through
+ * a bounded queue and dropped when it is full, so a slow disk never blocks request threads.
+ * Once the file reaches {@code maxBytes} it is rotated to {@code <path>.1}, older files shift to
+ * {@code .2} ... {@code .<maxFiles>} and the oldest one is deleted.
+ */
+@Slf4j
+public class FileSpanHandler extends SpanHandler {
+
+    private static final int DRAIN_BATCH = 512;
+
+    private final Path path;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<MutableSpan> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public FileSpanHandler(String path, int queueSize, long maxBytes, int maxFiles) {
+        this.path = Path.of(path);
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.writer = new Thread(this::writeLoop, "span-file-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause == Cause.FINISHED && !queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // the writer polls with a timeout, so it drains what is queued and exits on its own
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void writeLoop() {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        } catch (IOException e) {
+            log.error("Cannot create span export directory for '{}'", path, e);
+            return;
+        }
+        List<MutableSpan> batch = new ArrayList<>(DRAIN_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                MutableSpan first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_BATCH - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<MutableSpan> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        rotateIfFull();
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (MutableSpan span : batch) {
+                out.write(toJson(span));
+                out.newLine();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to export {} spans to '{}': {}", batch.size(), path, e.getMessage());
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("Span export queue was full, dropped {} spans", lost);
+        }
+    }
+
+    private void rotateIfFull() {
+        try {
+            if (maxFiles <= 0 || !Files.exists(path) || Files.size(path) < maxBytes) {
+                return;
+            }
+            Files.deleteIfExists(rotated(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                if (Files.exists(rotated(i))) {
+                    Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to rotate span export file '{}': {}", path, e.getMessage());
+        }
+    }
+
+    private Path rotated(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private static String toJson(MutableSpan span) {
+        StringBuilder json = new StringBuilder(256)
+                .append("{\"traceId\":\"").append(span.traceId())
+                .append("\",\"id\":\"").append(span.id()).append('"');
+        if (span.parentId() != null) {
+            json.append(",\"parentId\":\"").append(span.parentId()).append('"');
+        }
+        json.append(",\"name\":\"").append(escape(span.name()))
+                .append("\",\"kind\":\"").append(span.kind() != null ? span.kind() : "LOCAL")
+                .append("\",\"service\":\"").append(escape(span.localServiceName()))
+                .append("\",\"timestamp\":").append(span.startTimestamp())
+                .append(",\"duration\":").append(span.finishTimestamp() - span.startTimestamp());
+        if (span.error() != null) {
+            json.append(",\"error\":\"").append(escape(span.error().toString())).append('"');
+        }
+        json.append(",\"tags\":{");
+        for (int i = 0; i < span.tagCount(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(escape(span.tagKeyAt(i))).append("\":\"")
+                    .append(escape(span.tagValueAt(i))).append('"');
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.securitylib.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps finished spans in memory, for tests and local debugging. Oldest spans are dropped
+ * once {@code maxSpans} is reached.
+ */
+public class InMemorySpanCollector extends SpanHandler {
+
+    private final Queue<MutableSpan> spans = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSpans;
+
+    public InMemorySpanCollector(int maxSpans) {
+        this.maxSpans = maxSpans;
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause != Cause.FINISHED) {
+            return true;
+        }
+        spans.add(span);
+        if (size.incrementAndGet() > maxSpans && spans.poll() != null) {
+            size.decrementAndGet();
+        }
+        return true;
+    }
+
+    public List<MutableSpan> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    public List<MutableSpan> getSpans(String traceId) {
+        return spans.stream().filter(span -> traceId.equals(span.traceId())).toList();
+    }
+
+    public void clear() {
+        spans.clear();
+        size.set(0);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.securitylib.tracing;
+
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Span exporters and sampling shared by both services. Boot's Brave auto-configuration picks up
+ * every {@link brave.handler.SpanHandler} bean, so exporters are switched on by properties.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.export.file.enabled", havingValue = "true")
+    public FileSpanHandler fileSpanHandler(@Value("${tracing.export.file.path:logs/spans.jsonl}") String path,
+                                           @Value("${tracing.export.file.queue-size:10000}") int queueSize,
+                                           @Value("${tracing.export.file.max-bytes:104857600}") long maxBytes,
+                                           @Value("${tracing.export.file.max-files:5}") int maxFiles) {
+        return new FileSpanHandler(path, queueSize, maxBytes, maxFiles);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.export.memory.enabled", havingValue = "true")
+    public InMemorySpanCollector inMemorySpanCollector(@Value("${tracing.export.memory.max-spans:10000}") int maxSpans) {
+        return new InMemorySpanCollector(maxSpans);
+    }
+
+    // a fixed budget of traces per second keeps tracing cost flat however high the request rate gets;
+    // replaces management.tracing.sampling.probability when set
+    @Bean
+    @ConditionalOnProperty(name = "tracing.sampling.traces-per-second")
+    public Sampler rateLimitingSampler(@Value("${tracing.sampling.traces-per-second}") int tracesPerSecond) {
+        return RateLimitingSampler.create(tracesPerSecond);
+    }
+
+    @Bean
+    public static RepositoryObservationPostProcessor repositoryObservationPostProcessor(
+            ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new RepositoryObservationPostProcessor(observationRegistry);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.securitylib.diagnostics;
+
+import com.example.securitylib.JwtService;
+import io.jsonwebtoken.MalformedJwtException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenVerificationEventTests {
+
+    private static final String EVENT = "com.example.securitylib.TokenVerification";
+
+    @TempDir
+    private Path dir;
+
+    private JwtService jwtService;
+    private Recording recording;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", Base64.getEncoder().encodeToString(
+                "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8)));
+        ReflectionTestUtils.setField(jwtService, "issuer", "cloud-storage");
+        ReflectionTestUtils.setField(jwtService, "ttlMinutes", 5L);
+        recording = new Recording();
+        recording.enable(EVENT).withoutThreshold();
+        recording.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+    }
+
+    @Test
+    void whenTokenIsValid_thenEventCarriesSubjectAndSuccess() throws Exception {
+        // given
+        String token = jwtService.generateAccessToken("alice", List.of("USER"));
+
+        // when
+        jwtService.parse("Bearer " + token);
+
+        // then
+        RecordedEvent event = single(events());
+        assertThat(event.getString("outcome")).isEqualTo("success");
+        assertThat(event.getString("subject")).isEqualTo("alice");
+        assertThat(event.getDuration()).isPositive();
+    }
+
+    @Test
+    void whenTokenIsRejected_thenEventCarriesTheRejectingException() throws Exception {
+        // when
+        assertThatThrownBy(() -> jwtService.parse("not-a-jwt")).isInstanceOf(MalformedJwtException.class);
+
+        // then
+        RecordedEvent event = single(events());
+        assertThat(event.getString("outcome")).isEqualTo("MalformedJwtException");
+        assertThat(event.getString("subject")).isNull();
+    }
+
+    private List<RecordedEvent> events() throws Exception {
+        recording.stop();
+        Path dump = dir.resolve("recording.jfr");
+        recording.dump(dump);
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> EVENT.equals(event.getEventType().getName()))
+                .toList();
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events) {
+        assertThat(events).hasSize(1);
+        return events.get(0);
+    }
+}
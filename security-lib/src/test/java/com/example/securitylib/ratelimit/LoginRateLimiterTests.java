@@ -0,0 +1,53 @@
+package com.example.securitylib.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LoginRateLimiterTests {
+
+    private static final String CLIENT_IP = "203.0.113.7";
+
+    private LoginRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new LoginRateLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "loginCapacity", 1L);
+        ReflectionTestUtils.setField(limiter, "loginRefillPerMinute", 1L);
+        ReflectionTestUtils.setField(limiter, "ipCapacity", 2L);
+        ReflectionTestUtils.setField(limiter, "ipRefillPerMinute", 1L);
+        ReflectionTestUtils.setField(limiter, "maxKeys", 100);
+        limiter.init();
+    }
+
+    @Test
+    void whenLoginBucketRefuses_thenNoIpTokenIsSpent() {
+        // given
+        limiter.acquire("alice", CLIENT_IP);
+        assertThatThrownBy(() -> limiter.acquire("alice", CLIENT_IP)).isInstanceOf(RateLimitExceededException.class);
+
+        // when / then: the refused attempt left the second IP token in place
+        assertThatCode(() -> limiter.acquire("bob", CLIENT_IP)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> limiter.acquire("carol", CLIENT_IP)).isInstanceOf(RateLimitExceededException.class);
+    }
+
+    @Test
+    void whenIpBucketRefuses_thenTheLoginTokenIsGivenBack() {
+        // given: the IP has used up its own budget
+        limiter.acquire("alice", CLIENT_IP);
+        limiter.acquire("bob", CLIENT_IP);
+
+        // when: it keeps trying a login it has not touched yet
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> limiter.acquire("victim", CLIENT_IP)).isInstanceOf(RateLimitExceededException.class);
+        }
+
+        // then: the victim's bucket is still full for its own attempt from elsewhere
+        assertThatCode(() -> limiter.acquire("victim", "198.51.100.1")).doesNotThrowAnyException();
+    }
+}
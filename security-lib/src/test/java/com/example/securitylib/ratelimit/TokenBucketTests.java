@@ -0,0 +1,158 @@
+package com.example.securitylib.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// time is passed in explicitly, so refill is tested without sleeping
+public class TokenBucketTests {
+
+    private static final long CAPACITY = 5;
+    // 60 tokens per minute, one per second
+    private static final double TOKENS_PER_NANO = 1.0d / TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void whenBucketIsDrained_thenTheWaitIsTheTimeToTheNextToken() {
+        // given
+        TokenBucket bucket = new TokenBucket(CAPACITY, 0L);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, 0L)).isZero();
+        }
+
+        // when
+        long wait = bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, TimeUnit.MILLISECONDS.toNanos(400));
+
+        // then
+        assertThat(wait).isEqualTo(TimeUnit.MILLISECONDS.toNanos(600));
+    }
+
+    @Test
+    void whenTokenIsRefunded_thenItCanBeTakenAgainButNotAboveCapacity() {
+        // given
+        TokenBucket bucket = new TokenBucket(CAPACITY, 0L);
+        for (int i = 0; i < CAPACITY; i++) {
+            bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, 0L);
+        }
+
+        // when
+        bucket.refund(CAPACITY);
+
+        // then
+        assertThat(bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, 0L)).isZero();
+        assertThat(bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, 0L)).isPositive();
+
+        TokenBucket full = new TokenBucket(CAPACITY, 0L);
+        full.refund(CAPACITY);
+        assertThat(full.isIdle(CAPACITY, TOKENS_PER_NANO, 0L)).isTrue();
+        int taken = 0;
+        while (full.tryConsume(CAPACITY, TOKENS_PER_NANO, 0L) == 0L) {
+            taken++;
+        }
+        assertThat(taken).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void whenTimePasses_thenTokensRefillUpToCapacity() {
+        // given
+        TokenBucket bucket = new TokenBucket(CAPACITY, 0L);
+        for (int i = 0; i < CAPACITY; i++) {
+            bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, 0L);
+        }
+
+        // when: two seconds give two tokens back
+        long twoSeconds = TimeUnit.SECONDS.toNanos(2);
+        int taken = 0;
+        while (bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, twoSeconds) == 0L) {
+            taken++;
+        }
+
+        // then
+        assertThat(taken).isEqualTo(2);
+        assertThat(bucket.isIdle(CAPACITY, TOKENS_PER_NANO, twoSeconds)).isFalse();
+        // an hour later the bucket is full, not 3600 tokens deep
+        long hourLater = twoSeconds + TimeUnit.HOURS.toNanos(1);
+        assertThat(bucket.isIdle(CAPACITY, TOKENS_PER_NANO, hourLater)).isTrue();
+        int afterHour = 0;
+        while (bucket.tryConsume(CAPACITY, TOKENS_PER_NANO, hourLater) == 0L) {
+            afterHour++;
+        }
+        assertThat(afterHour).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void whenManyThreadsAcquireAtOnce_thenExactlyCapacityTokensAreHandedOut() throws Exception {
+        // given
+        long capacity = 100;
+        TokenBucket bucket = new TokenBucket(capacity, 0L);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+
+        // when: no time passes, so nothing is refilled while they race
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 50; i++) {
+                        if (bucket.tryConsume(capacity, TOKENS_PER_NANO, 0L) == 0L) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // then
+        assertThat(granted.get()).isEqualTo(capacity);
+    }
+
+    @Test
+    void whenKeysExceedTheBound_thenIdleBucketsAreEvictedFirst() {
+        // given: one token per key, refilled after a second
+        KeyedBuckets buckets = new KeyedBuckets(1, 60, 2);
+        long now = 0L;
+        assertThat(buckets.tryAcquire("idle", now)).isZero();
+        now += TimeUnit.SECONDS.toNanos(2);
+        assertThat(buckets.tryAcquire("busy", now)).isZero();
+
+        // when
+        assertThat(buckets.tryAcquire("new", now)).isZero();
+
+        // then: "idle" had refilled and went, "busy" keeps its empty bucket
+        assertThat(buckets.size()).isEqualTo(2);
+        assertThat(buckets.tryAcquire("busy", now)).isPositive();
+    }
+
+    @Test
+    void whenNoBucketIsIdle_thenTheMapIsStillBounded() {
+        // given
+        KeyedBuckets buckets = new KeyedBuckets(1, 60, 3);
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("user" + i, 0L);
+        }
+
+        // when
+        for (int i = 3; i < 10; i++) {
+            buckets.tryAcquire("user" + i, 0L);
+        }
+
+        // then
+        assertThat(buckets.size()).isLessThanOrEqualTo(3);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.securitylib.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler.Cause;
+import brave.propagation.TraceContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSpanHandlerTests {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void whenSpanFinishes_thenItIsWrittenAsOneJsonLine() throws Exception {
+        // given
+        Path file = dir.resolve("spans.jsonl");
+        FileSpanHandler handler = new FileSpanHandler(file.toString(), 16, 1024 * 1024, 2);
+        TraceContext context = context(0xabcL, 0x1L);
+
+        // when
+        handler.end(context, span(context, "file.upload", "owner", "alice \"a\""), Cause.FINISHED);
+        handler.shutdown();
+
+        // then
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0))
+                .contains("\"traceId\":\"" + context.traceIdString() + "\"")
+                .contains("\"name\":\"file.upload\"")
+                .contains("\"service\":\"file-service\"")
+                .contains("\"duration\":250")
+                .contains("\"owner\":\"alice \\\"a\\\"\"");
+    }
+
+    @Test
+    void whenSpanIsAbandoned_thenItIsNotExported() throws Exception {
+        // given
+        Path file = dir.resolve("spans.jsonl");
+        FileSpanHandler handler = new FileSpanHandler(file.toString(), 16, 1024 * 1024, 2);
+        TraceContext context = context(0xabcL, 0x2L);
+
+        // when
+        handler.end(context, span(context, "dropped", "k", "v"), Cause.ABANDONED);
+        handler.shutdown();
+
+        // then
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void whenFileReachesMaxBytes_thenItIsRotatedAndTheOldestIsDeleted() throws Exception {
+        // given: every non-empty file is full, at most one rotated file is kept
+        Path file = dir.resolve("spans.jsonl");
+        FileSpanHandler handler = new FileSpanHandler(file.toString(), 16, 1, 1);
+
+        // when: three batches, each one written after the previous one is on disk
+        for (long id = 1; id <= 3; id++) {
+            TraceContext context = context(0xabcL, id);
+            handler.end(context, span(context, "span-" + id, "k", "v"), Cause.FINISHED);
+            awaitContains(file, "span-" + id);
+        }
+        handler.shutdown();
+
+        // then
+        assertThat(Files.readAllLines(file)).singleElement().asString().contains("\"name\":\"span-3\"");
+        assertThat(Files.readAllLines(dir.resolve("spans.jsonl.1"))).singleElement().asString().contains("\"name\":\"span-2\"");
+        assertThat(dir.resolve("spans.jsonl.2")).doesNotExist();
+    }
+
+    private static TraceContext context(long traceId, long spanId) {
+        return TraceContext.newBuilder().traceId(traceId).spanId(spanId).build();
+    }
+
+    private static MutableSpan span(TraceContext context, String name, String tagKey, String tagValue) {
+        MutableSpan span = new MutableSpan(context, null);
+        span.name(name);
+        span.localServiceName("file-service");
+        span.startTimestamp(1_000_000L);
+        span.finishTimestamp(1_000_250L);
+        span.tag(tagKey, tagValue);
+        return span;
+    }
+
+    private static void awaitContains(Path file, String text) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (Files.exists(file) && Files.readString(file).contains(text)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("'" + text + "' was not written to " + file);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.securitylib.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler.Cause;
+import brave.propagation.TraceContext;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemorySpanCollectorTests {
+
+    @Test
+    void whenMoreSpansThanMaxFinish_thenOldestAreDropped() {
+        // given
+        InMemorySpanCollector collector = new InMemorySpanCollector(2);
+
+        // when
+        for (long id = 1; id <= 3; id++) {
+            finish(collector, 0x1L, id, Cause.FINISHED);
+        }
+
+        // then
+        assertThat(collector.getSpans()).extracting(MutableSpan::name).containsExactly("span-2", "span-3");
+    }
+
+    @Test
+    void whenSpansBelongToDifferentTraces_thenTheyCanBeReadPerTrace() {
+        // given
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        finish(collector, 0x1L, 1, Cause.FINISHED);
+        finish(collector, 0x2L, 2, Cause.FINISHED);
+        finish(collector, 0x1L, 3, Cause.ABANDONED);
+
+        // when
+        String traceId = TraceContext.newBuilder().traceId(0x1L).spanId(1).build().traceIdString();
+
+        // then
+        assertThat(collector.getSpans(traceId)).extracting(MutableSpan::name).containsExactly("span-1");
+        collector.clear();
+        assertThat(collector.getSpans()).isEmpty();
+    }
+
+    private static void finish(InMemorySpanCollector collector, long traceId, long spanId, Cause cause) {
+        TraceContext context = TraceContext.newBuilder().traceId(traceId).spanId(spanId).build();
+        MutableSpan span = new MutableSpan(context, null);
+        span.name("span-" + spanId);
+        collector.end(context, span, cause);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.securitylib.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryFactoryCustomizer;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+import org.springframework.data.repository.core.support.RepositoryProxyPostProcessor;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RepositoryObservationPostProcessorTests {
+
+    @Mock
+    private ObjectProvider<ObservationRegistry> observationRegistryProvider;
+    @Mock
+    private RepositoryFactoryBeanSupport<Repository<Object, Long>, Object, Long> factoryBean;
+    @Mock
+    private RepositoryFactorySupport factory;
+    @Mock
+    private RepositoryInformation information;
+
+    interface UserLookup {
+        String findByLogin(String login);
+    }
+
+    @Test
+    void whenRepositoryIsCalledInsideObservation_thenItsObservationIsAChildOfIt() {
+        // given
+        ObservationRegistry observationRegistry = registry();
+        AtomicReference<Observation> seenByRepository = new AtomicReference<>();
+        UserLookup repository = observed(login -> {
+            seenByRepository.set(observationRegistry.getCurrentObservation());
+            return "id-" + login;
+        });
+        Observation request = Observation.start("http.server.requests", observationRegistry);
+
+        // when
+        String id;
+        try (Observation.Scope scope = request.openScope()) {
+            id = repository.findByLogin("alice");
+        } finally {
+            request.stop();
+        }
+
+        // then
+        assertThat(id).isEqualTo("id-alice");
+        Observation.Context call = seenByRepository.get().getContext();
+        assertThat(call.getName()).isEqualTo("repository.call");
+        assertThat(call.getContextualName()).isEqualTo("UserLookup.findByLogin");
+        assertThat(call.getLowCardinalityKeyValue("repository").getValue()).isEqualTo("UserLookup");
+        assertThat(call.getLowCardinalityKeyValue("method").getValue()).isEqualTo("findByLogin");
+        assertThat(call.getParentObservation()).isSameAs(request);
+        assertThat(observationRegistry.getCurrentObservation()).isNull();
+    }
+
+    @Test
+    void whenRepositoryFails_thenErrorIsRecordedOnItsObservation() {
+        // given
+        ObservationRegistry observationRegistry = registry();
+        AtomicReference<Observation> seenByRepository = new AtomicReference<>();
+        UserLookup repository = observed(login -> {
+            seenByRepository.set(observationRegistry.getCurrentObservation());
+            throw new IllegalStateException("connection refused");
+        });
+
+        // when / then
+        assertThatThrownBy(() -> repository.findByLogin("alice")).isInstanceOf(IllegalStateException.class);
+        assertThat(seenByRepository.get().getContext().getError()).hasMessage("connection refused");
+    }
+
+    private ObservationRegistry registry() {
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(context -> true);
+        when(observationRegistryProvider.getIfAvailable(any())).thenReturn(observationRegistry);
+        return observationRegistry;
+    }
+
+    // runs the post-processor the way Spring Data builds a repository proxy
+    private UserLookup observed(UserLookup target) {
+        new RepositoryObservationPostProcessor(observationRegistryProvider)
+                .postProcessBeforeInitialization(factoryBean, "userLookup");
+        ArgumentCaptor<RepositoryFactoryCustomizer> customizer = ArgumentCaptor.forClass(RepositoryFactoryCustomizer.class);
+        verify(factoryBean).addRepositoryFactoryCustomizer(customizer.capture());
+        customizer.getValue().customize(factory);
+        ArgumentCaptor<RepositoryProxyPostProcessor> postProcessor = ArgumentCaptor.forClass(RepositoryProxyPostProcessor.class);
+        verify(factory).addRepositoryProxyPostProcessor(postProcessor.capture());
+        doReturn(UserLookup.class).when(information).getRepositoryInterface();
+
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(UserLookup.class);
+        postProcessor.getValue().postProcess(proxyFactory, information);
+        return (UserLookup) proxyFactory.getProxy();
+    }
+}
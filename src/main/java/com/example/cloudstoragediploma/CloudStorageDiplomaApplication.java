@@ -1,13 +0,0 @@
-package com.example.cloudstoragediploma;
-
-import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-@SpringBootApplication
-public class CloudStorageDiplomaApplication {
-
-    public static void main(String[] args) {
-        SpringApplication.run(CloudStorageDiplomaApplication.class, args);
-    }
-
-}
@@ -1,13 +0,0 @@
-package com.example.cloudstoragediploma;
-
-import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
-
-@SpringBootTest
-class CloudStorageDiplomaApplicationTests {
-
-    @Test
-    void contextLoads() {
-    }
-
-}